@@ -4,6 +4,8 @@
 echo "🧹 Cleaning build output..."
 rm -rf target
 rm -rf docs
+# A class data sharing archive only matches the jar it was recorded from
+rm -f champions-arena.jsa
 mkdir -p target
 mkdir -p docs
 
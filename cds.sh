@@ -0,0 +1,18 @@
+#!/bin/bash
+
+# Ensure the script exits on error
+set -e
+
+# Class data sharing only archives classes loaded from jars, so the game runs from its jar
+if [ ! -f champions-arena.jar ]; then
+    ./build.sh
+fi
+
+# Record the classes loaded by a representative run - the plugin scan, every champion
+# and a bot match - into an archive that later launches map instead of loading them
+echo "📼 Recording a startup profile..."
+rm -f champions-arena.jsa
+java -XX:ArchiveClassesAtExit=champions-arena.jsa -cp champions-arena.jar ChampionsArena profile > /dev/null
+
+echo "✅ Archive complete: champions-arena.jsa"
+echo "   run.sh uses it while it matches champions-arena.jar; java StartupBenchmark compares startups"
@@ -3,5 +3,10 @@
 # Ensure the script exits on error
 set -e
 
+# Run from the jar with its class data sharing archive, if cds.sh has recorded one
+if [ -f champions-arena.jsa ] && [ -f champions-arena.jar ]; then
+    exec java -XX:SharedArchiveFile=champions-arena.jsa -cp champions-arena.jar ChampionsArena console
+fi
+
 # Run the ChampionsArena main class from the compiled target directory
 java -cp target ChampionsArena console
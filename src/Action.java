@@ -56,6 +56,25 @@ public abstract class Action {
         return chargeTurns;
     }
 
+    /**
+     * Get the base damage this action deals to the enemy, before the wielder's attack
+     * power, the enemy's defense power and any modifiers are applied. Bots use this to
+     * estimate the value of an action without executing it.
+     * @return The base damage of this action, or 0 if it does not deal direct damage.
+     */
+    public int getBaseDamage() {
+        return 0;
+    }
+
+    /**
+     * Get the base amount this action heals the wielder, before any modifiers are applied.
+     * Bots use this to estimate the value of an action without executing it.
+     * @return The base healing of this action, or 0 if it does not heal.
+     */
+    public int getBaseHealing() {
+        return 0;
+    }
+
     /**
      * Executes the action in the context of a battle.
      * This method must be overridden by subclasses to define the specific
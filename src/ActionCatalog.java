@@ -0,0 +1,124 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An ActionCatalog is a champion's actions resolved once into a fixed, indexed array,
+ * so that the actions can be referred to by small integer ids (their index) and
+ * looked up without building a new list of new actions each time.
+ *
+ * getActions() stays the source of truth: a champion class's catalog is built from
+ * the first of its champions asked for one, and shared by every champion of that
+ * class. This relies on actions being stateless and fixed by the champion's class,
+ * as they are for every champion in the game; a champion whose actions vary from
+ * instance to instance overrides Champion.getActionCatalog.
+ *
+ * Catalogs are kept in a ClassValue, so they do not keep unloaded plugin champions
+ * alive.
+ */
+public final class ActionCatalog {
+    /**
+     * The id returned by idOf for an action that is not in the catalog.
+     */
+    public static final int NONE = -1;
+
+    // The catalog is filled in from an instance, which ClassValue.computeValue does not have
+    private static final ClassValue<Slot> CATALOGS = new ClassValue<Slot>() {
+        @Override
+        protected Slot computeValue(Class<?> type) {
+            return new Slot();
+        }
+    };
+
+    private final Action[] actions;
+    private final List<Action> list;
+
+    /**
+     * Create a catalog of the given actions, in order.
+     * @param actions The actions; the list is copied.
+     * @throws IllegalArgumentException if an action is null.
+     */
+    public ActionCatalog(List<Action> actions) {
+        this.actions = actions.toArray(new Action[0]);
+        for (int i = 0; i < this.actions.length; i++) {
+            if (this.actions[i] == null) {
+                throw new IllegalArgumentException("Action " + i + " is null");
+            }
+        }
+        this.list = List.of(this.actions);
+    }
+
+    /**
+     * Get the catalog of a champion's class, building it from the champion's actions
+     * the first time the class is seen.
+     * @param champ The champion.
+     * @return The catalog shared by every champion of the class.
+     */
+    public static ActionCatalog of(Champion champ) {
+        final Slot slot = CATALOGS.get(champ.getClass());
+        ActionCatalog catalog = slot.catalog;
+        if (catalog == null) {
+            // Two threads may both build one; either is as good as the other
+            catalog = new ActionCatalog(champ.getActions());
+            slot.catalog = catalog;
+        }
+        return catalog;
+    }
+
+    /**
+     * Get the number of actions.
+     * @return The number of actions; ids run from 0 to size() - 1.
+     */
+    public int size() {
+        return actions.length;
+    }
+
+    /**
+     * Get an action by its id.
+     * @param id The id of the action.
+     * @return The action.
+     * @throws IndexOutOfBoundsException if there is no action with that id.
+     */
+    public Action get(int id) {
+        return actions[id];
+    }
+
+    /**
+     * Get the id of an action. Actions are matched by class, since getActions() may
+     * return new instances.
+     * @param action The action.
+     * @return The id of the first action of the same class, or NONE if there is none
+     *         or action is null.
+     */
+    public int idOf(Action action) {
+        if (action == null) {
+            return NONE;
+        }
+        final Class<?> type = action.getClass();
+        for (int i = 0; i < actions.length; i++) {
+            if (actions[i].getClass() == type) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Get the actions as a list, in id order.
+     * @return An unmodifiable list of the actions.
+     */
+    public List<Action> asList() {
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(Arrays.stream(actions).map(Action::getName).toArray());
+    }
+
+    /**
+     * The lazily built catalog of one champion class.
+     */
+    private static final class Slot {
+        volatile ActionCatalog catalog;
+    }
+}
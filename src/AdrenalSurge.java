@@ -23,7 +23,7 @@ public class AdrenalSurge extends Gambit {
         context.getLog().addEntry(
             context.wielder, null, getName(),
             context.wielder.getName() + " surges with adrenaline and heals " + healed + " HP!",
-            context.round, BattleLog.EntryType.STATUS
+            context.round, BattleLog.EntryType.STATUS, healed
         );
 
         context.wielder.getLoadout().addTemporaryModifier(new SurgeBuff());
@@ -53,6 +53,11 @@ class Jab extends Action {
         super("Jab");
     }
 
+    @Override
+    public int getBaseDamage() {
+        return 5;
+    }
+
     /**
      * Executes the Jab action.
      * This action deals 5 damage to the opponent.
@@ -60,12 +65,12 @@ class Jab extends Action {
      */
     @Override
     public void execute(BattleContext context) {
-        final int baseDamage = 5;
+        final int baseDamage = getBaseDamage();
         final int actual = context.enemy.takeDamage(baseDamage, context);
         context.getLog().addEntry(
             context.wielder, context.enemy, getName(),
             context.wielder.getName() + " jabs for " + actual + " damage.",
-            context.round, BattleLog.EntryType.ACTION
+            context.round, BattleLog.EntryType.ACTION, actual
         );
     }
 }
@@ -103,6 +108,11 @@ class WindUpSlam extends Action {
         super("Wind-Up Slam", 1); // charges for 1 turn
     }
 
+    @Override
+    public int getBaseDamage() {
+        return 20;
+    }
+
     /**
      * Executes the Wind-Up Slam action.
      * This action deals 20 damage to the opponent after charging for 1 turn.
@@ -110,13 +120,13 @@ class WindUpSlam extends Action {
      */
     @Override
     public void execute(BattleContext context) {
-        final int base = 20;
+        final int base = getBaseDamage();
         final int actual = context.enemy.takeDamage(base, context);
 
         context.getLog().addEntry(
             context.wielder, context.enemy, getName(),
             context.wielder.getName() + " unleashes a massive slam for " + actual + " damage!",
-            context.round, BattleLog.EntryType.ACTION
+            context.round, BattleLog.EntryType.ACTION, actual
         );
     }
 }
@@ -153,6 +163,11 @@ class PoisonDart extends Action {
         super("Poison Dart");
     }
 
+    @Override
+    public int getBaseDamage() {
+        return 1;
+    }
+
     /**
      * Executes the Poison Dart action.
      * This action deals 1 damage to the opponent and applies a poison effect that reduces healing by 50% for
@@ -161,7 +176,7 @@ class PoisonDart extends Action {
      */
     @Override
     public void execute(BattleContext context) {
-        final int directDamage = 1;
+        final int directDamage = getBaseDamage();
         final int actual = context.enemy.takeDamage(directDamage, context);
 
         context.enemy.getLoadout().addTemporaryModifier(new PoisonEffect());
@@ -169,7 +184,7 @@ class PoisonDart extends Action {
         context.getLog().addEntry(
             context.wielder, context.enemy, getName(),
             context.wielder.getName() + " fires a poison dart for " + actual + " damage!",
-            context.round, BattleLog.EntryType.ACTION
+            context.round, BattleLog.EntryType.ACTION, actual
         );
     }
 }
@@ -208,7 +223,7 @@ class PoisonEffect extends TemporaryModifier {
         context.getLog().addEntry(
             context.wielder, null, getName(),
             context.wielder.getName() + " takes " + poisonDamage + " poison damage.",
-            context.round, BattleLog.EntryType.STATUS
+            context.round, BattleLog.EntryType.STATUS, poisonDamage
         );
     }
 }
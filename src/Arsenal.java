@@ -21,7 +21,8 @@ public class Arsenal {
      * and fills the remaining slots with random modifiers from the vault.
      */
     public Arsenal() {
-        this.vault = ModifierVault.getInstance();
+        // Pinned, so plugins reloaded during the match do not change what it draws
+        this.vault = ModifierVault.getInstance().pin();
         this.slots = new ArrayList<>();
 
         // Draw one of each type
@@ -56,6 +57,32 @@ public class Arsenal {
         return new ArrayList<>(slots); // defensive copy
     }
 
+    /**
+     * Get the number of modifiers currently in the arsenal.
+     * @return The number of modifiers in the arsenal.
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Get the modifier in a specific arsenal slot without copying the slots.
+     * @param index The index of the slot.
+     * @return The modifier in that slot.
+     */
+    public BattleModifier getSlot(int index) {
+        return slots.get(index);
+    }
+
+    /**
+     * Replace the modifiers in the arsenal, for restoring a recorded match.
+     * @param mods The modifiers, in slot order.
+     */
+    void setSlots(List<BattleModifier> mods) {
+        slots.clear();
+        slots.addAll(mods);
+    }
+
     /**
      * Determine if the arsenal contains a specific BattleModifier.
      * @param mod The BattleModifier to check for.
@@ -1,6 +1,7 @@
 import java.util.concurrent.CompletableFuture;
 import java.util.Arrays;
-import java.util.Random;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * The BattleEngine class is responsible for managing the battle between two champions.
@@ -12,10 +13,26 @@ public class BattleEngine {
     private final Champion champB;
     private final BattleLog log;
     private final ModifierVault vault;
-    private final ChampionController controller;
+    private final ChampionController controllerA;
+    private final ChampionController controllerB;
 
     private int round = 1;
-    private final Random random = new Random();
+    private final SeededRandom random = new SeededRandom();
+
+    private boolean printLog = true;        // Whether each round's log is printed to the console
+    private int maxRounds = Integer.MAX_VALUE; // The match is a draw once this many rounds have been played
+    private Champion winner;                // The winner of the match, or null until it ends (or on a draw)
+    private boolean over;                   // Whether the match has ended
+    private MatchListener listener;         // Told about each round, or null
+    private PluginWatchdog.Watch watch;     // Told when plugin code starts and ends, or null
+    private String forfeitReason;           // Why the loser forfeited, or null
+
+    private final List<String> initialLoadoutA; // Class names of the tactic, relic and gambit each champion started with
+    private final List<String> initialLoadoutB;
+
+    private final long[] stateWords = new long[MatchState.WORDS];   // Packed state the hash was computed from
+    private final long[] scratchWords = new long[MatchState.WORDS]; // Reused when re-packing after a change
+    private long stateHash;                                          // Incrementally updated Zobrist hash
 
     /**
      * Constructor for the BattleEngine.
@@ -26,75 +43,367 @@ public class BattleEngine {
      * @param controller The controller for player interactions.
      */
     public BattleEngine(Champion champA, Champion champB, BattleLog log, ModifierVault vault, ChampionController controller) {
+        this(champA, champB, log, vault, controller, controller);
+    }
+
+    /**
+     * Constructor for the BattleEngine where each champion has its own controller,
+     * for example a bot playing against a human or two different bots.
+     * @param champA The first champion.
+     * @param champB The second champion.
+     * @param log The battle log to record events.
+     * @param vault The vault containing modifiers.
+     * @param controllerA The controller that plans turns for the first champion.
+     * @param controllerB The controller that plans turns for the second champion.
+     */
+    public BattleEngine(Champion champA, Champion champB, BattleLog log, ModifierVault vault,
+                        ChampionController controllerA, ChampionController controllerB) {
         this.champA = champA;
         this.champB = champB;
         this.log = log;
         this.vault = vault;
-        this.controller = controller;
+        this.controllerA = controllerA;
+        this.controllerB = controllerB;
+        this.initialLoadoutA = loadoutOf(champA);
+        this.initialLoadoutB = loadoutOf(champB);
+
+        MatchState.encode(champA, champB, stateWords);
+        this.stateHash = ZobristHash.hash(stateWords);
+    }
+
+    private static List<String> loadoutOf(Champion champ) {
+        final Loadout loadout = champ.getLoadout();
+        return Collections.unmodifiableList(Arrays.asList(nameOf(loadout.getTactic()),
+            nameOf(loadout.getRelic()), nameOf(loadout.getPocketedGambit())));
+    }
+
+    private static String nameOf(BattleModifier mod) {
+        return mod == null ? null : mod.getClass().getName();
+    }
+
+    /**
+     * Seed the engine's random turn order so that a match can be repeated.
+     * @param seed The seed for the turn order.
+     */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * Set whether each round's log entries and the victory message are printed to the
+     * console. Simulations turn this off.
+     * @param printLog true to print the log (the default), false to run silently.
+     */
+    public void setPrintLog(boolean printLog) {
+        this.printLog = printLog;
+    }
+
+    /**
+     * Limit the number of rounds in the match. If both champions are still standing
+     * after this many rounds, the match ends in a draw.
+     * @param maxRounds The maximum number of rounds to play.
+     * @throws IllegalArgumentException if maxRounds is not positive.
+     */
+    public void setMaxRounds(int maxRounds) {
+        if (maxRounds <= 0) {
+            throw new IllegalArgumentException("maxRounds must be positive: " + maxRounds);
+        }
+        this.maxRounds = maxRounds;
+    }
+
+    /**
+     * Set the listener that is told when each round starts and when the match ends.
+     * @param listener The listener, or null for none.
+     */
+    public void setListener(MatchListener listener) {
+        this.listener = listener;
     }
 
     /**
      * Starts the battle between the two champions.
-     * The battle continues until one champion is defeated.
+     * The battle continues until one champion is defeated. A match that has been
+     * stepped with playRound, or restored from a MatchSnapshot, carries on from
+     * its current round.
      */
     public void runMatch() {
-        log.addEntry(null, null, "Battle Start",
-            champA.getName() + " vs. " + champB.getName(),
-            round, BattleLog.EntryType.INFO);
+        while (!isOver()) {
+            playRound();
+        }
+    }
+
+    /**
+     * Check if the match is over, either because a champion has been defeated or
+     * because the round limit has been reached.
+     * @return true if no more rounds will be played.
+     */
+    public boolean isOver() {
+        return over;
+    }
+
+    /**
+     * Play a single round of the match, and end the match if it is over afterwards.
+     * @throws IllegalStateException if the match is already over.
+     */
+    public void playRound() {
+        if (over) {
+            throw new IllegalStateException("The match is already over");
+        }
+        if (listener != null) {
+            listener.onRoundStart(this);
+        }
+        if (round == 1) {
+            log.addEntry(null, null, "Battle Start",
+                champA.getName() + " vs. " + champB.getName(),
+                round, BattleLog.EntryType.INFO);
+        }
 
-        while (champA.isAlive() && champB.isAlive()) {
-            log.addEntry(null, null, "Round " + round, "-----⚔️  Round " + round + " begins! ⚔️-----", round, BattleLog.EntryType.INFO);
+        log.addEntry(null, null, "Round " + round, "-----⚔️  Round " + round + " begins! ⚔️-----", round, BattleLog.EntryType.INFO);
 
-            // Get TurnSubmissions from both players
-            final CompletableFuture<TurnSubmission> submissionA = getTurnSubmission(champA, champB);
-            final CompletableFuture<TurnSubmission> submissionB = getTurnSubmission(champB, champA);
+        // Get TurnSubmissions from both players (bots preview plugin modifiers while planning)
+        final CompletableFuture<TurnSubmission> submissionA;
+        final CompletableFuture<TurnSubmission> submissionB;
+        enterPlugin(champA);
+        try {
+            submissionA = getTurnSubmission(champA, champB);
+            enterPlugin(champB);
+            submissionB = getTurnSubmission(champB, champA);
+        } finally {
+            exitPlugin();
+        }
 
-            // Get the player's actual turn submissions once they are ready
-            final TurnSubmission turnA = submissionA.join();
-            final TurnSubmission turnB = submissionB.join();
+        // Get the player's actual turn submissions once they are ready
+        final TurnSubmission turnA = submissionA.join();
+        final TurnSubmission turnB = submissionB.join();
 
-            // Apply Loadout Swaps
-            applyLoadoutChanges(champA, turnA);
-            applyLoadoutChanges(champB, turnB);
+        // Apply Loadout Swaps
+        applyLoadoutChanges(champA, turnA);
+        applyLoadoutChanges(champB, turnB);
+        updateStateHash();
 
-            // Randomize execution order
-            final boolean aFirst = random.nextBoolean(); // is champ A first?
+        // Randomize execution order
+        final boolean aFirst = random.nextBoolean(); // is champ A first?
 
-            final Champion first = aFirst ? champA : champB;
-            final Champion second = aFirst ? champB : champA;
+        final Champion first = aFirst ? champA : champB;
+        final Champion second = aFirst ? champB : champA;
 
-            // Execute both actions
-            final BattleContext context1 = new BattleContext(first, second, round, log);
-            final BattleContext context2 = context1.reverse();
+        // Execute both actions
+        final BattleContext context1 = new BattleContext(first, second, round, log);
+        final BattleContext context2 = context1.reverse();
 
-            // Charge any charging actions
-            final Action actionA = first.advanceCharge();
-            final Action actionB = second.advanceCharge();
+        // Charge any charging actions
+        final Action actionA = first.advanceCharge();
+        final Action actionB = second.advanceCharge();
+        updateStateHash();
 
-            // Execute the first champion's action
-            if (actionA != null) {
+        // Execute the first champion's action
+        if (actionA != null) {
+            enterPlugin(first);
+            try {
                 actionA.execute(context1);
+            } finally {
+                exitPlugin();
             }
+            updateStateHash();
+        }
 
-            // Execute the second champion's action if the first champion didn't kill the second
-            if (second.isAlive() && actionB != null) {
+        // Execute the second champion's action if the first champion didn't kill the second
+        if (second.isAlive() && actionB != null) {
+            enterPlugin(second);
+            try {
                 actionB.execute(context2);
+            } finally {
+                exitPlugin();
             }
+            updateStateHash();
+        }
 
+        enterPlugin(first);
+        try {
             first.getLoadout().endTurn(context1);
+            enterPlugin(second);
             second.getLoadout().endTurn(context2);
+        } finally {
+            exitPlugin();
+        }
+        updateStateHash();
 
-            // Print out the round log
+        // Print out the round log
+        if (printLog) {
             Arrays.stream(log.getLog())
                   .filter(e -> e.round == round)
                   .forEach(System.out::println);
+        }
 
-            round++;
+        round++;
+
+        if (champA.isAlive() && champB.isAlive() && round <= maxRounds) {
+            return;
         }
+        over = true;
 
-        final String winner = champA.isAlive() ? champA.getName() : champB.getName();
-        log.addInfoEntry("Victory", winner + " wins the match!", round);
-        System.out.println("\n🏆 " + winner + " is victorious! 🏆");
+        if (champA.isAlive() && champB.isAlive()) {
+            log.addInfoEntry("Draw", "The match ends in a draw after " + maxRounds + " rounds.", round);
+            if (printLog) {
+                System.out.println("\nThe match ends in a draw.");
+            }
+        } else {
+            winner = champA.isAlive() ? champA : champB;
+            log.addInfoEntry("Victory", winner.getName() + " wins the match!", round);
+            if (printLog) {
+                System.out.println("\n🏆 " + winner.getName() + " is victorious! 🏆");
+            }
+        }
+        if (listener != null) {
+            listener.onMatchEnd(this);
+        }
+    }
+
+    /**
+     * End the match early with a champion forfeiting, for example because its plugin
+     * has been quarantined (see PluginWatchdog). The other champion wins.
+     * @param loser The champion that forfeits.
+     * @param reason Why, for the log.
+     * @throws IllegalStateException if the match is already over.
+     */
+    void forfeit(Champion loser, String reason) {
+        if (over) {
+            throw new IllegalStateException("The match is already over");
+        }
+        over = true;
+        winner = loser == champA ? champB : champA;
+        forfeitReason = reason;
+        log.addInfoEntry("Forfeit", loser.getName() + " forfeits: " + reason, round);
+        if (printLog) {
+            System.out.println("\n" + loser.getName() + " forfeits: " + reason);
+        }
+        if (listener != null) {
+            listener.onMatchEnd(this);
+        }
+    }
+
+    /**
+     * Get the reason the match ended in a forfeit.
+     * @return The reason, or null if nobody forfeited.
+     */
+    public String getForfeitReason() {
+        return forfeitReason;
+    }
+
+    /**
+     * Get the winner of the match.
+     * @return The winning champion, or null if the match has not finished or ended in a draw.
+     */
+    public Champion getWinner() {
+        return winner;
+    }
+
+    /**
+     * Get the current round. After the match ends this is one past the last round played.
+     * @return The current round.
+     */
+    public int getRound() {
+        return round;
+    }
+
+    /**
+     * Get the first champion.
+     * @return The first champion.
+     */
+    public Champion getChampionA() {
+        return champA;
+    }
+
+    /**
+     * Get the second champion.
+     * @return The second champion.
+     */
+    public Champion getChampionB() {
+        return champB;
+    }
+
+    /**
+     * Get the loadout a champion started the match with.
+     * @param champ One of the engine's champions.
+     * @return The class names of the champion's tactic, relic and pocketed gambit when
+     *         the engine was created, with null for an empty slot.
+     */
+    public List<String> getInitialLoadout(Champion champ) {
+        return champ == champA ? initialLoadoutA : initialLoadoutB;
+    }
+
+    /**
+     * Get the Zobrist hash of the current match state. The hash is kept up to date
+     * incrementally as the engine applies each phase of a round.
+     * @return The Zobrist hash of the current match state.
+     */
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * Get a packed snapshot of the current match state.
+     * @return The current match state.
+     */
+    public MatchState getState() {
+        return new MatchState(stateWords);
+    }
+
+    /**
+     * Get the state of the engine's turn order source, so that a MatchSnapshot can capture it.
+     * @return The state of the random source that decides who moves first each round.
+     */
+    long getRandomState() {
+        return random.getState();
+    }
+
+    /**
+     * Move the engine to the start of a round captured by a MatchSnapshot. The
+     * champions must already have been restored.
+     * @param round The round that will be played next.
+     * @param randomState The state of the turn order source at the start of that round.
+     */
+    void restore(int round, long randomState) {
+        this.round = round;
+        this.random.setState(randomState);
+        this.winner = null;
+        this.over = false;
+        this.forfeitReason = null;
+        MatchState.encode(champA, champB, stateWords);
+        this.stateHash = ZobristHash.hash(stateWords);
+    }
+
+    /**
+     * Set the watch that is told when plugin code starts and ends (see PluginWatchdog).
+     * @param watch The watch, or null for none.
+     */
+    void setWatch(PluginWatchdog.Watch watch) {
+        this.watch = watch;
+    }
+
+    /**
+     * Note that plugin code is about to run on behalf of a champion: while its turn
+     * is planned, its action, or the modifier hooks of its turn end.
+     */
+    private void enterPlugin(Champion champ) {
+        if (watch != null) {
+            watch.enter(champ);
+        }
+    }
+
+    private void exitPlugin() {
+        if (watch != null) {
+            watch.exit();
+        }
+    }
+
+    /**
+     * Re-pack the match state after the engine has mutated it, and update the
+     * Zobrist hash using only the bytes that changed.
+     */
+    private void updateStateHash() {
+        MatchState.encode(champA, champB, scratchWords);
+        stateHash = ZobristHash.update(stateHash, stateWords, scratchWords);
+        System.arraycopy(scratchWords, 0, stateWords, 0, MatchState.WORDS);
     }
 
     /**
@@ -104,6 +413,7 @@ public class BattleEngine {
      * @return A CompletableFuture containing the TurnSubmission for the current turn.
      */
     private CompletableFuture<TurnSubmission> getTurnSubmission(Champion self, Champion opponent) {
+        final ChampionController controller = (self == champA) ? controllerA : controllerB;
         return controller.planTurn(self, opponent, vault);
     }
 
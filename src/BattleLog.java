@@ -81,7 +81,23 @@ public class BattleLog {
      * @param type The type of entry (ACTION, DAMAGE, MODIFIER, STATUS, INFO).
      */
     public void addEntry(Champion actor, Champion target, String actionName, String description, int round, EntryType type) {
-        entries.add(new Entry(actor, target, actionName, description, round, type));
+        addEntry(actor, target, actionName, description, round, type, 0);
+    }
+
+    /**
+     * Adds an entry with a numeric amount, such as the damage dealt or health healed,
+     * to the battle log.
+     * @param actor The champion who performed the action.
+     * @param target The champion who was targeted by the action.
+     * @param actionName The name of the action performed.
+     * @param description A description of the action.
+     * @param round The round in which the action occurred.
+     * @param type The type of entry (ACTION, DAMAGE, MODIFIER, STATUS, INFO).
+     * @param amount The amount of damage, healing or other effect.
+     */
+    public void addEntry(Champion actor, Champion target, String actionName, String description, int round,
+                         EntryType type, int amount) {
+        entries.add(new Entry(actor, target, actionName, description, round, type, amount));
     }
 
     /**
@@ -96,6 +112,21 @@ public class BattleLog {
         addEntry(actor, target, actionName, description, round, EntryType.ACTION);
     }
 
+    /**
+     * Get the number of entries in the log without copying them.
+     * @return The number of entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove all entries from the log so it can be reused.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
     /**
      * Get all entries in the log that occurred in a specific round.
      * @param round The round number to filter by.
@@ -141,6 +172,10 @@ public class BattleLog {
          * The type of entry (ACTION, DAMAGE, MODIFIER, STATUS, INFO).
          */
         public final EntryType type;
+        /**
+         * The amount of damage, healing or other effect, or 0 if the entry has none.
+         */
+        public final int amount;
 
         /**
          * Constructor for the Entry class.
@@ -153,12 +188,28 @@ public class BattleLog {
          */
         public Entry(Champion actor, Champion target, String actionName,
                      String description, int round, EntryType type) {
+            this(actor, target, actionName, description, round, type, 0);
+        }
+
+        /**
+         * Constructor for an entry with a numeric amount.
+         * @param actor The champion who performed the action.
+         * @param target The champion who was targeted by the action.
+         * @param actionName The name of the action performed.
+         * @param description A description of the action.
+         * @param round The round in which the action occurred.
+         * @param type The type of entry (ACTION, DAMAGE, MODIFIER, STATUS, INFO).
+         * @param amount The amount of damage, healing or other effect.
+         */
+        public Entry(Champion actor, Champion target, String actionName,
+                     String description, int round, EntryType type, int amount) {
             this.actor = actor;
             this.target = target;
             this.actionName = actionName;
             this.description = description;
             this.round = round;
             this.type = type;
+            this.amount = amount;
         }
 
         /**
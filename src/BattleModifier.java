@@ -96,6 +96,16 @@ public abstract class BattleModifier {
         wasUsed = true;
     }
 
+    /**
+     * Set the remaining duration when restoring a MatchSnapshot. Snapshots are taken
+     * between rounds, so the modifier is never part way through a turn.
+     * @param duration The remaining duration.
+     */
+    final void restoreDuration(int duration) {
+        this.duration = duration;
+        this.wasUsed = false;
+    }
+
     /**
      * Decrease the modifier's duration when it has been used. This method will
      * be called when the effect is applied by the modifyAttack, modifyDefense,
@@ -7,12 +7,19 @@ import java.util.List;
 public abstract class Champion {
     private final String name;   // The Champion's name
     
-    private final int maxHealth; // The Champion's maximum health
+    private int maxHealth;       // The Champion's maximum health
     private int currentHealth;   // The Champion's current health
 
-    private static final int MAX_STAT_TOTAL = 10; // The maximum total of attackPower and defensePower
-    private final int attackPower; // The Champion's attack power - adds to damage dealt
-    private final int defensePower; // The Champion's defense power - reduces damage taken
+    /**
+     * The maximum total of a Champion's attackPower and defensePower.
+     */
+    public static final int MAX_STAT_TOTAL = 10;
+    /**
+     * The maximum value of a Champion's maxHealth.
+     */
+    public static final int MAX_HEALTH = 100;
+    private int attackPower;  // The Champion's attack power - adds to damage dealt
+    private int defensePower; // The Champion's defense power - reduces damage taken
 
     private final Loadout loadout; // The Champion's items that are currently in play
     private final Arsenal arsenal; // Items that can be swapped in and out of the loadout
@@ -41,8 +48,8 @@ public abstract class Champion {
         this.attackPower = attackPower;
         this.defensePower = defensePower;
 
-        // Clamp maxHealth to be between 1 and 100
-        maxHealth = Math.max(1, Math.min(maxHealth, 100));        
+        // Clamp maxHealth to be between 1 and MAX_HEALTH
+        maxHealth = Math.max(1, Math.min(maxHealth, MAX_HEALTH));
         this.maxHealth = maxHealth;
         this.currentHealth = maxHealth;
 
@@ -60,6 +67,16 @@ public abstract class Champion {
         return List.of(new PlayGambit());
     }
 
+    /**
+     * Get this Champion's actions resolved into an indexed catalog, built once per
+     * Champion class from getActions(). Champions whose actions are not fixed by
+     * their class must override this.
+     * @return The catalog of this Champion's actions.
+     */
+    public ActionCatalog getActionCatalog() {
+        return ActionCatalog.of(this);
+    }
+
     /**
      * Set the action that this Champion has locked in to perform this turn or charge for a future turn.
      * If an action is already locked in, this method does nothing.
@@ -103,7 +120,7 @@ public abstract class Champion {
         for (BattleModifier mod : attackerModifiers) {
             if (!mod.isExpired()) {
                 int prevDamage = modifiedDamage;
-                modifiedDamage = mod.modifyAttack(prevDamage, context);
+                modifiedDamage = HookProfiler.modifyAttack(mod, prevDamage, context);
 
                 if (modifiedDamage != prevDamage) {
                     mod.effectUsedThisTurn();
@@ -116,7 +133,7 @@ public abstract class Champion {
         for (BattleModifier mod : defenderModifiers) {
             if (!mod.isExpired()) {
                 int prevDamage = modifiedDamage;
-                modifiedDamage = mod.modifyDefense(prevDamage, context);
+                modifiedDamage = HookProfiler.modifyDefense(mod, prevDamage, context);
 
                 if (modifiedDamage != prevDamage) {
                     mod.effectUsedThisTurn();
@@ -134,6 +151,38 @@ public abstract class Champion {
         return finalDamage;
     }
     
+    /**
+     * Preview how much damage this Champion would take from an attack without applying
+     * it. The damage goes through the same steps as takeDamage: the wielder's attack
+     * power, this Champion's defense power, the wielder's modifiers and then this
+     * Champion's modifiers, before being clamped to between 1 and 25. No modifier is
+     * marked as used and nothing is allocated.
+     * @param baseDamage The base damage of the attack
+     * @param context The context of the battle, with this Champion as the enemy
+     * @return The damage that takeDamage would apply, ignoring this Champion's remaining health
+     */
+    public final int previewDamage(int baseDamage, BattleContext context) {
+        int modifiedDamage = baseDamage;
+        modifiedDamage += context.wielder.getAttackPower();
+        modifiedDamage -= context.enemy.getDefensePower();
+        modifiedDamage = context.wielder.getLoadout().previewAttack(modifiedDamage, context);
+        modifiedDamage = context.enemy.getLoadout().previewDefense(modifiedDamage, context);
+        return Math.max(1, Math.min(modifiedDamage, 25));
+    }
+
+    /**
+     * Preview how much this Champion would be healed without applying it. The healing
+     * goes through this Champion's modifiers in the same order as heal. No modifier is
+     * marked as used and nothing is allocated.
+     * @param baseAmount The base amount of healing
+     * @param context The context of the battle, with this Champion as the wielder
+     * @return The healing that heal would apply
+     */
+    public final int previewHealing(int baseAmount, BattleContext context) {
+        final int modified = getLoadout().previewHealing(baseAmount, context);
+        return Math.min(modified, maxHealth - currentHealth);
+    }
+
     /**
      * Apply healing to the Champion's health. The healing is modified by any active modifiers.
      * The healing is clamped to be between 1 and the amount needed to reach maxHealth.
@@ -147,7 +196,7 @@ public abstract class Champion {
         // Apply this champion's modifiers
         for (BattleModifier mod : getLoadout().getActiveModifiers()) {
             int prevAmount = modified;
-            modified = mod.modifyHealing(prevAmount, context);
+            modified = HookProfiler.modifyHealing(mod, prevAmount, context);
 
             if (modified != prevAmount) {
                 mod.effectUsedThisTurn();
@@ -229,6 +278,39 @@ public abstract class Champion {
         return chargeTurnsRemaining;
     }
 
+    /**
+     * Put the Champion back into a state captured by a MatchSnapshot.
+     * @param currentHealth The Champion's health.
+     * @param lockedInAction The locked in action, or null for none.
+     * @param isCharging Whether the locked in action is charging.
+     * @param chargeTurnsRemaining The number of turns until the charge is complete.
+     */
+    void restore(int currentHealth, Action lockedInAction, boolean isCharging, int chargeTurnsRemaining) {
+        this.currentHealth = currentHealth;
+        this.lockedInAction = lockedInAction;
+        this.isCharging = isCharging;
+        this.chargeTurnsRemaining = chargeTurnsRemaining;
+    }
+
+    /**
+     * Give the Champion other stats before it plays, keeping everything else about it,
+     * for tools that explore a champion's stat space (see StatSweep). The same rules
+     * as in the constructor apply, and the Champion is put back to full health.
+     * @param attackPower The Champion's attack power
+     * @param defensePower The Champion's defense power
+     * @param maxHealth The Champion's maximum health, clamped to between 1 and MAX_HEALTH
+     * @throws IllegalArgumentException if attackPower and defensePower add up to more than MAX_STAT_TOTAL
+     */
+    final void setStats(int attackPower, int defensePower, int maxHealth) {
+        if (attackPower + defensePower > MAX_STAT_TOTAL) {
+            throw new IllegalArgumentException("Attack + Defense cannot exceed " + MAX_STAT_TOTAL);
+        }
+        this.attackPower = attackPower;
+        this.defensePower = defensePower;
+        this.maxHealth = Math.max(1, Math.min(maxHealth, MAX_HEALTH));
+        this.currentHealth = this.maxHealth;
+    }
+
     /**
      * Get the Champion's name
      * @return The Champion's name
@@ -295,38 +377,3 @@ class ChargingAction extends Action {
         );
     }
 }
-
-/**
- * A default action that allows the champion to play a gambit that
- * they have pocketed. The gambit is removed from the pocket
- * and activated. If no gambit is pocketed, the action does nothing.
- */
-class PlayGambit extends Action {
-    public PlayGambit() {
-        super("Play Gambit");
-    }
-
-    @Override
-    public void execute(BattleContext context) {
-        Loadout loadout = context.wielder.getLoadout();
-        Gambit pocketed = loadout.getPocketedGambit();
-
-        if (pocketed == null) {
-            context.getLog().addEntry(
-                context.wielder, null, getName(),
-                context.wielder.getName() + " tries to play a Gambit... but none is ready!",
-                context.round, BattleLog.EntryType.INFO
-            );
-            return;
-        }
-
-        pocketed.activate(context);
-        loadout.swapPocketedGambit(null); // remove it from pocket
-
-        context.getLog().addEntry(
-            context.wielder, null, pocketed.getName(),
-            context.wielder.getName() + " activates the Gambit: " + pocketed.getName() + "!",
-            context.round, BattleLog.EntryType.MODIFIER
-        );
-    }
-}
@@ -1,6 +1,5 @@
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.lang.reflect.Field;
 
 /**
  * The ChampionController interface defines the methods for player interactions
@@ -27,22 +26,12 @@ public interface ChampionController {
 
     /**
      * Get the display name (either a public static NAME variable if available or the class name) from a
-     * champion class.
+     * champion class. The name is looked up once per class by the ChampionRegistry.
      * @param clazz the champion class
      * @return the display name of the champion
      */
     public default String getChampionDisplayName(Class<? extends Champion> clazz) {
-        try {
-            Field field = clazz.getField("NAME");
-            if (java.lang.reflect.Modifier.isStatic(field.getModifiers())) {
-                Object value = field.get(null);
-                if (value instanceof String) {
-                    return (String) value;
-                }
-            }
-        } catch (NoSuchFieldException | IllegalAccessException ignored) {}
-    
-        return clazz.getSimpleName();
+        return ChampionRegistry.getDisplayName(clazz);
     }
     
 
@@ -0,0 +1,263 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ChampionRegistry holds the metadata of each champion class: its display name, its
+ * base stats, its actions and a constructor handle. The metadata is worked out once
+ * per class, the first time the class is asked for, so that lobby listings, rosters
+ * and matchmaking can read it without reflecting on the class or creating a
+ * champion each time.
+ *
+ * Stats and actions are read from one prototype champion. Creating a champion draws
+ * its arsenal, so the prototype is drawn from a throwaway seed and the current
+ * thread's seeded draws are left where they were.
+ *
+ * Entries are kept in a ClassValue, so the registry does not keep unloaded plugin
+ * champions alive.
+ */
+public final class ChampionRegistry {
+    private static final MethodType NO_ARGS = MethodType.methodType(Champion.class);
+
+    // Either an Entry, or a Failure for a class that cannot be created
+    private static final ClassValue<Object> ENTRIES = new ClassValue<Object>() {
+        @Override
+        protected Object computeValue(Class<?> type) {
+            return describe(type.asSubclass(Champion.class));
+        }
+    };
+
+    private ChampionRegistry() {
+    }
+
+    /**
+     * Get the metadata of a champion class.
+     * @param type The champion class.
+     * @return The class's entry.
+     * @throws IllegalArgumentException if the champion cannot be created.
+     * @throws IllegalStateException if the ModifierVault has not been initialized.
+     */
+    public static Entry get(Class<? extends Champion> type) {
+        final Object value = ENTRIES.get(type);
+        if (value instanceof Failure) {
+            throw new IllegalArgumentException("Cannot create " + type.getName(), ((Failure) value).cause);
+        }
+        return (Entry) value;
+    }
+
+    /**
+     * Get the metadata of every class in a roster.
+     * @param roster The champion classes.
+     * @return Their entries, in roster order.
+     * @throws IllegalArgumentException if one of the champions cannot be created.
+     */
+    public static List<Entry> getAll(List<Class<? extends Champion>> roster) {
+        final List<Entry> entries = new ArrayList<>(roster.size());
+        for (Class<? extends Champion> type : roster) {
+            entries.add(get(type));
+        }
+        return entries;
+    }
+
+    /**
+     * Get the display name of a champion class: its public static String NAME if
+     * it has one, otherwise its simple name. This also works for classes that
+     * cannot be created.
+     * @param type The champion class.
+     * @return The display name.
+     */
+    public static String getDisplayName(Class<? extends Champion> type) {
+        if (!ModifierVault.isInitialized()) {
+            return displayNameOf(type);
+        }
+        final Object value = ENTRIES.get(type);
+        return value instanceof Failure ? ((Failure) value).displayName : ((Entry) value).displayName;
+    }
+
+    private static Object describe(Class<? extends Champion> type) {
+        // Not a failure of the class, so not remembered as one
+        if (!ModifierVault.isInitialized()) {
+            throw new IllegalStateException("ModifierVault has not been initialized yet.");
+        }
+        final String displayName = displayNameOf(type);
+        final MethodHandle constructor;
+        final Champion prototype;
+        try {
+            constructor = MethodHandles.lookup().unreflectConstructor(type.getDeclaredConstructor()).asType(NO_ARGS);
+            prototype = create(constructor);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return new Failure(displayName, e);
+        }
+        return new Entry(type, displayName, constructor, prototype);
+    }
+
+    private static String displayNameOf(Class<? extends Champion> type) {
+        try {
+            final Field field = type.getField("NAME");
+            if (Modifier.isStatic(field.getModifiers())) {
+                final Object value = field.get(null);
+                if (value instanceof String) {
+                    return (String) value;
+                }
+            }
+        } catch (NoSuchFieldException | IllegalAccessException ignored) {}
+
+        return type.getSimpleName();
+    }
+
+    private static Champion create(MethodHandle constructor) {
+        // Leave the thread's seeded draws as they were, whether or not it has any
+        final SeededRandom seeded = ModifierVault.getThreadRandom();
+        ModifierVault.setThreadSeed(0);
+        try {
+            return invoke(constructor);
+        } finally {
+            if (seeded != null) {
+                ModifierVault.setThreadRandom(seeded);
+            } else {
+                ModifierVault.clearThreadSeed();
+            }
+        }
+    }
+
+    private static Champion invoke(MethodHandle constructor) {
+        try {
+            return (Champion) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Champion constructor threw " + e, e);
+        }
+    }
+
+    /**
+     * The metadata of one champion class.
+     */
+    public static final class Entry {
+        private final Class<? extends Champion> type;
+        private final String displayName;
+        private final String name;
+        private final int attackPower;
+        private final int defensePower;
+        private final int maxHealth;
+        private final ActionCatalog actions;
+        private final List<String> actionNames;
+        private final int[] chargeTurns;
+        private final MethodHandle constructor;
+
+        Entry(Class<? extends Champion> type, String displayName, MethodHandle constructor, Champion prototype) {
+            this.type = type;
+            this.displayName = displayName;
+            this.name = prototype.getName();
+            this.attackPower = prototype.getAttackPower();
+            this.defensePower = prototype.getDefensePower();
+            this.maxHealth = prototype.getMaxHealth();
+            this.actions = prototype.getActionCatalog();
+            this.constructor = constructor;
+
+            final String[] names = new String[actions.size()];
+            this.chargeTurns = new int[actions.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = actions.get(i).getName();
+                chargeTurns[i] = actions.get(i).getChargeTurns();
+            }
+            this.actionNames = List.of(names);
+        }
+
+        /**
+         * @return The champion class.
+         */
+        public Class<? extends Champion> getType() {
+            return type;
+        }
+
+        /**
+         * @return The display name, as ChampionRegistry.getDisplayName.
+         */
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * @return The name the champion gives itself, as Champion.getName.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The champion's base attack power.
+         */
+        public int getAttackPower() {
+            return attackPower;
+        }
+
+        /**
+         * @return The champion's base defense power.
+         */
+        public int getDefensePower() {
+            return defensePower;
+        }
+
+        /**
+         * @return The champion's maximum health.
+         */
+        public int getMaxHealth() {
+            return maxHealth;
+        }
+
+        /**
+         * @return The champion's actions, shared with every champion of the class.
+         */
+        public ActionCatalog getActions() {
+            return actions;
+        }
+
+        /**
+         * @return The names of the champion's actions, by action id.
+         */
+        public List<String> getActionNames() {
+            return actionNames;
+        }
+
+        /**
+         * Get the number of turns an action needs to charge.
+         * @param id The id of the action.
+         * @return The charge turns, or 0 if the action is not chargeable.
+         * @throws IndexOutOfBoundsException if there is no action with that id.
+         */
+        public int getChargeTurns(int id) {
+            return chargeTurns[id];
+        }
+
+        /**
+         * Create a new champion of this class, drawing its arsenal as usual.
+         * @return The new champion.
+         */
+        public Champion create() {
+            return invoke(constructor);
+        }
+
+        @Override
+        public String toString() {
+            return displayName + " (ATK " + attackPower + " / DEF " + defensePower + " / HP " + maxHealth + ")";
+        }
+    }
+
+    /**
+     * A class that cannot be created, which still has a display name.
+     */
+    private static final class Failure {
+        final String displayName;
+        final Throwable cause;
+
+        Failure(String displayName, Throwable cause) {
+            this.displayName = displayName;
+            this.cause = cause;
+        }
+    }
+}
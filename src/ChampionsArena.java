@@ -1,12 +1,43 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The ChampionsArena class is the entry point for the Champions Arena game.
  * It initializes the game, loads champions, and starts the battle between two players.
  */
 public class ChampionsArena {
+    /**
+     * The directory the game keeps its data files (such as ratings.log) in, unless
+     * another is chosen with -Darena.data=DIRECTORY.
+     */
+    public static final String DEFAULT_DATA_DIRECTORY = "data";
+    /**
+     * The system property that, set to true, has a tournament rate the champion
+     * classes from its results and keep the ratings in the data directory.
+     */
+    public static final String RATINGS_PROPERTY = "arena.ratings";
+    /**
+     * The system property that, set to true, has a tournament append every result to
+     * the result store in the data directory's results folder, for MatchQuery.
+     */
+    public static final String RESULTS_PROPERTY = "arena.results";
+    /**
+     * The system property that, set to true, has a tournament write the battle log of
+     * every match to logs.archive in the data directory, for column-wise analysis.
+     */
+    public static final String LOGS_PROPERTY = "arena.logs";
+    /**
+     * The system property that, set to true, profiles every modifier hook and prints
+     * the time spent in each when the game exits (see HookProfiler).
+     */
+    public static final String PROFILE_HOOKS_PROPERTY = "arena.profileHooks";
+
     /**
      * An unused constructor for the ChampionsArena class.
      * This constructor is not implemented and will throw an exception if called.
@@ -19,17 +50,33 @@ public class ChampionsArena {
     /**
      * The main method is the entry point for the Champions Arena game.
      * It initializes the game, loads champions, and starts the battle between two players.
-     * @param args Command line arguments to specify the controller type (console, gui, web).
+     * @param args Command line arguments to specify the controller type (console, gui, web, bot, policy,
+     *             profile) and, for the policy controller, the policy file to load. The profile type plays
+     *             a bot match after creating every champion once, as a representative startup for
+     *             recording a class data sharing archive (see cds.sh). Instead of a controller type,
+     *             tournament runs a bot tournament between the champions, optionally followed by the
+     *             format (round-robin, swiss or elimination), the number of entrants, the number of
+     *             worker threads and the seed; with -Darena.ratings=true it also rates the champions,
+     *             with -Darena.results=true it stores every result, and with -Darena.logs=true it
+     *             archives every battle log. And matchup, followed by two champion class names and
+     *             optionally the number of matches and the first seed, prints the summary of a batch
+     *             of bot matches between them, cached in the data directory's simulations folder.
+     *             In any mode, -Darena.profileHooks=true prints the cost of each modifier hook at exit.
      */
     public static void main(String[] args) {
         if (args.length < 1) {
             System.err.println("Usage: java ChampionsArena <controller_type>");
-            System.err.println("Available controller types: console, gui, web");
+            System.err.println("Available controller types: console, gui, web, bot, policy [file], profile");
+            System.err.println("Or: java ChampionsArena tournament [round-robin|swiss|elimination] [entrants] [workers] [seed]");
+            System.err.println("Or: java ChampionsArena matchup <champion> <champion> [matches] [first seed]");
             args = new String[] {"console"};
         }
         
         // Determine the controller type based on command line argument
         ChampionController controller = null;
+        boolean profile = false;
+        boolean tournament = false;
+        boolean matchup = false;
         switch(args[0]) {
             case "gui":
                 controller = new GuiChampionController();
@@ -37,14 +84,45 @@ public class ChampionsArena {
             case "web":
                 controller = new WebChampionController();
                 break;
+            case "bot":
+                controller = new GreedyChampionController();
+                break;
+            case "profile":
+                // Seeded, so every recording plays the same match
+                controller = new GreedyChampionController(0);
+                profile = true;
+                break;
+            case "tournament":
+                tournament = true;
+                break;
+            case "matchup":
+                matchup = true;
+                break;
+            case "policy":
+                try {
+                    controller = new PolicyChampionController(
+                        LinearPolicy.load(Paths.get(args.length > 1 ? args[1] : "policy.txt")));
+                } catch (IOException e) {
+                    System.err.println("Could not load policy: " + e.getMessage());
+                    return;
+                }
+                break;
             default:
             case "console":
                 controller = new ConsoleChampionController();
                 break;
         };
 
+        if (Boolean.getBoolean(PROFILE_HOOKS_PROPERTY)) {
+            HookProfiler.setEnabled(true);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(HookProfiler.formatReport())));
+        }
+
+        // Scan the plugin folder once, for both champions and modifiers
+        PluginCatalog catalog = openCatalog("./");
+
         // Load champions from the specified folder
-        List<Class<? extends Champion>> championClasses = loadChampionClasses("./");
+        List<Class<? extends Champion>> championClasses = loadChampionClasses(catalog);
         championClasses.add(TrainingDummy.class);
         championClasses.add(AdvancedTrainingDummy.class);
 
@@ -55,7 +133,31 @@ public class ChampionsArena {
         }
 
         // Initialize the vault with modifiers
-        ModifierVault vault = ModifierVault.initialize("./");
+        ModifierVault vault = catalog != null ? ModifierVault.initializeFrom(catalog) : ModifierVault.initialize(null);
+        if (catalog != null) {
+            // Champions can only be created, to catalog their names, once the vault exists
+            catalog.save();
+        }
+        if (tournament) {
+            runTournament(vault, championClasses, args);
+            return;
+        }
+        if (matchup) {
+            runMatchup(vault, championClasses, args);
+            return;
+        }
+        if (profile) {
+            // Load and link every champion and its actions, plugins included, as a lobby would
+            for (Class<? extends Champion> championClass : championClasses) {
+                try {
+                    ChampionRegistry.get(championClass);
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+            // Seed the arsenals too, so that the match is the same from recording to recording
+            ModifierVault.setThreadSeed(0);
+        }
 
         // Allow players to choose their champions
         CompletableFuture<Champion> playerOneFuture = controller.chooseChampion("Player 1", championClasses);
@@ -66,23 +168,227 @@ public class ChampionsArena {
         // Initialize the battle log and engine
         BattleLog log = new BattleLog();
         BattleEngine engine = new BattleEngine(playerOne, playerTwo, log, vault, controller);
+        if (profile) {
+            engine.setSeed(0);
+        }
 
         // Start the battle
         engine.runMatch();
     }
 
     /**
-     * Loads champion classes from the specified folder.
-     * @param folderPath The path to the folder containing champion classes.
-     * @return A list of champion classes.
+     * Run a bot tournament between the champions, repeated to fill the field, and
+     * print the leaders as results come in and the final standings. If ratings are
+     * turned on (see RATINGS_PROPERTY), every result also rates its champion classes,
+     * a rating period closing every time as many results are pending as there are
+     * entrants, and the champion leaderboard is printed at the end. If results are
+     * turned on (see RESULTS_PROPERTY), every result is also stored, and if logs are
+     * (see LOGS_PROPERTY), every battle log is archived.
+     * @param vault The vault of battle modifiers.
+     * @param championClasses The champions to enter.
+     * @param args The command line: "tournament", then optionally the format, the number
+     *             of entrants, the number of worker threads and the seed.
+     */
+    private static void runTournament(ModifierVault vault, List<Class<? extends Champion>> championClasses, String[] args) {
+        final String formatName = args.length > 1 ? args[1] : "swiss";
+        final int size = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        final int workers = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        final long seed = args.length > 4 ? Long.parseLong(args[4]) : 42L;
+        final Tournament.Format format;
+        switch (formatName) {
+            case "round-robin": format = Tournament.Format.ROUND_ROBIN; break;
+            case "swiss": format = Tournament.Format.SWISS; break;
+            case "elimination": format = Tournament.Format.SINGLE_ELIMINATION; break;
+            default:
+                System.err.println("Unknown tournament format: " + formatName);
+                return;
+        }
+
+        List<Class<? extends Champion>> roster = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            roster.add(championClasses.get(i % championClasses.size()));
+        }
+        RatingService ratings = null;
+        if (Boolean.getBoolean(RATINGS_PROPERTY)) {
+            try {
+                ratings = new RatingService(ratingsFile(), size);
+            } catch (IOException e) {
+                System.err.println("Could not open ratings: " + e.getMessage());
+                return;
+            }
+        }
+        final RatingService rated = ratings;
+        MatchSimulator simulator = new MatchSimulator(vault);
+        ResultStore results = null;
+        if (Boolean.getBoolean(RESULTS_PROPERTY)) {
+            try {
+                results = new ResultStore(dataDirectory().resolve("results"));
+            } catch (IOException e) {
+                System.err.println("Could not open the result store: " + e.getMessage());
+                return;
+            }
+            simulator.setResultStore(results);
+        }
+        LogArchive.Writer archive = null;
+        if (Boolean.getBoolean(LOGS_PROPERTY)) {
+            try {
+                archive = new LogArchive.Writer(dataDirectory().resolve("logs.archive"));
+            } catch (IOException e) {
+                System.err.println("Could not open the log archive: " + e.getMessage());
+                return;
+            }
+            simulator.setLogArchive(archive);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        Tournament tournament = new Tournament(simulator, roster, pool, seed);
+        final long reportEvery = Math.max(1, size / 4);
+        tournament.setListener((round, a, b, result) -> {
+            if (rated != null && result != null) {
+                rated.report(result);
+            }
+            final long played = tournament.getMatchesPlayed();
+            if (result != null && played % reportEvery == 0) {
+                StringBuilder line = new StringBuilder(String.format("%6d matches  leaders:", played));
+                for (Tournament.Entrant e : tournament.getStandings().subList(0, Math.min(3, size))) {
+                    line.append(String.format("  %s %.1f", e, e.getPoints()));
+                }
+                System.out.println(line);
+            }
+        });
+
+        final long start = System.nanoTime();
+        List<Tournament.Entrant> standings = tournament.run(format).join();
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("%s with %d entrants: %d matches in %.2fs on %d workers%n",
+            format, size, tournament.getMatchesPlayed(), seconds, workers);
+        for (int i = 0; i < Math.min(10, standings.size()); i++) {
+            final Tournament.Entrant e = standings.get(i);
+            System.out.printf("%4d. %-28s %5.1f pts  %d-%d-%d%n", i + 1, e, e.getPoints(),
+                e.getWins(), e.getDraws(), e.getLosses());
+        }
+
+        if (results != null) {
+            try {
+                results.close();
+                System.out.println(results.size() + " results in the store");
+            } catch (IOException e) {
+                System.err.println("Could not save the result store: " + e.getMessage());
+            }
+        }
+        if (archive != null) {
+            try {
+                archive.close();
+                System.out.println("Battle logs archived in " + dataDirectory().resolve("logs.archive"));
+            } catch (IOException e) {
+                System.err.println("Could not save the log archive: " + e.getMessage());
+            }
+        }
+        if (rated != null) {
+            try {
+                rated.close();
+                System.out.println("Champion ratings:");
+                for (RatingService.Standing s : rated.top(RatingService.Kind.CHAMPION, 10)) {
+                    System.out.printf("  %-28s %s%n", s.entity.name,
+                        rated.getRating(RatingService.Kind.CHAMPION, s.entity.name));
+                }
+            } catch (IOException e) {
+                System.err.println("Could not update ratings: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Print the summary of a batch of seeded bot matches between two champions,
+     * simulating it only if the simulation cache does not already hold it.
+     * @param vault The vault of battle modifiers.
+     * @param championClasses The champions to choose from.
+     * @param args The command line: "matchup", the names of the two champion classes, then
+     *             optionally the number of matches and the seed of the first.
+     */
+    private static void runMatchup(ModifierVault vault, List<Class<? extends Champion>> championClasses, String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: java ChampionsArena matchup <champion> <champion> [matches] [first seed]");
+            return;
+        }
+        final Class<? extends Champion> classA = findChampion(championClasses, args[1]);
+        final Class<? extends Champion> classB = findChampion(championClasses, args[2]);
+        if (classA == null || classB == null) {
+            System.err.println("Unknown champion: " + (classA == null ? args[1] : args[2]));
+            return;
+        }
+        final int matches = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        final long firstSeed = args.length > 4 ? Long.parseLong(args[4]) : 0L;
+
+        final SimulationCache cache;
+        try {
+            cache = new SimulationCache(vault, MatchSimulator.DEFAULT_MAX_ROUNDS,
+                                        dataDirectory().resolve("simulations"), 16);
+        } catch (IOException e) {
+            System.err.println("Could not open the simulation cache: " + e.getMessage());
+            return;
+        }
+        final SimulationCache.Summary summary = cache.simulate(classA, classB, "greedy",
+            GreedyChampionController::new, firstSeed, matches);
+        System.out.printf("%s vs %s: %s (%s)%n", args[1], args[2], summary,
+            cache.getMisses() > 0 ? "simulated" : "cached");
+    }
+
+    /**
+     * Find a champion class by its name.
+     * @return The class, or null if there is none of that name.
+     */
+    private static Class<? extends Champion> findChampion(List<Class<? extends Champion>> championClasses, String name) {
+        for (Class<? extends Champion> championClass : championClasses) {
+            if (championClass.getName().equals(name)) {
+                return championClass;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the ratings file, in the data directory, creating the directory if needed.
+     * @return The path of ratings.log.
+     * @throws IOException if the data directory cannot be created.
+     */
+    static Path ratingsFile() throws IOException {
+        return dataDirectory().resolve("ratings.log");
+    }
+
+    /**
+     * Get the data directory, creating it if needed.
+     * @return The path of the data directory.
+     * @throws IOException if the directory cannot be created.
      */
-    private static List<Class<? extends Champion>> loadChampionClasses(String folderPath) {
+    static Path dataDirectory() throws IOException {
+        return Files.createDirectories(Paths.get(System.getProperty("arena.data", DEFAULT_DATA_DIRECTORY)));
+    }
+
+    /**
+     * Opens the plugin catalog of the specified folder, which is kept in the folder's
+     * own catalog file (PluginCatalog.CATALOG_FILE), whatever the working directory.
+     * @param folderPath The path to the folder containing champion and modifier classes.
+     * @return The catalog, or null if the folder cannot be scanned.
+     */
+    private static PluginCatalog openCatalog(String folderPath) {
         try {
-            DynamicClassLoader loader = new DynamicClassLoader(folderPath);
-            return loader.getSubtypesOf(Champion.class);
+            // Skip hidden directories such as .git
+            return new PluginCatalog(folderPath, Paths.get(folderPath, PluginCatalog.CATALOG_FILE), List.of(), List.of(".*", "**/.*"));
         } catch (Exception e) {
-            System.err.println("Error loading champions: " + e.getMessage());
-            return List.of();
+            System.err.println("Error loading plugins: " + e.getMessage());
+            return null;
         }
     }
+
+    /**
+     * Loads champion classes from the plugin catalog.
+     * @param catalog The catalog of the plugin folder, or null if it could not be opened.
+     * @return A list of champion classes.
+     */
+    private static List<Class<? extends Champion>> loadChampionClasses(PluginCatalog catalog) {
+        return catalog == null ? new ArrayList<>() : catalog.getSubtypesOf(Champion.class);
+    }
 }
@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A column-oriented copy of one ResultStore segment, for queries that scan many
+ * results but only need a few of their fields. Each field is stored as one
+ * contiguous array, so a query reads only the columns it uses.
+ *
+ * The header keeps, for every column, the smallest and largest value and a 64-bit
+ * bitmap of the ids in it (id modulo 64) for the class name columns, so a query can
+ * skip the whole segment when its filters cannot match.
+ */
+final class ColumnSegment {
+    /**
+     * A stored column, with its width in bytes.
+     */
+    enum Column {
+        TIME(8), SEED(8), CHAMPION_A(4), CHAMPION_B(4),
+        TACTIC_A(2), RELIC_A(2), GAMBIT_A(2), TACTIC_B(2), RELIC_B(2), GAMBIT_B(2),
+        WINNER(1), HEALTH_A(1), HEALTH_B(1), ROUNDS(4);
+
+        final int width;
+
+        Column(int width) {
+            this.width = width;
+        }
+
+        /**
+         * @return true if the column holds class name ids.
+         */
+        boolean isName() {
+            return this.compareTo(CHAMPION_A) >= 0 && this.compareTo(GAMBIT_B) <= 0;
+        }
+    }
+
+    private static final Column[] COLUMNS = Column.values();
+    private static final int MAGIC = 0x43530001;  // "CS", version 1
+    private static final int HEADER = 8 + COLUMNS.length * 24;
+
+    final int rows;
+    private final ByteBuffer data;
+    private final int[] start = new int[COLUMNS.length];
+
+    private ColumnSegment(ByteBuffer data) {
+        this.data = data;
+        if (data.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a column segment");
+        }
+        this.rows = data.getInt(4);
+        layout();
+    }
+
+    /**
+     * Create an empty segment to be filled with set and then finished.
+     * @param rows The number of rows.
+     */
+    ColumnSegment(int rows) {
+        this.rows = rows;
+        this.data = ByteBuffer.allocate(size(rows));
+        data.putInt(0, MAGIC).putInt(4, rows);
+        layout();
+    }
+
+    private static int size(int rows) {
+        int size = HEADER;
+        for (Column c : COLUMNS) {
+            size += (c.width * rows + 7) & ~7;
+        }
+        return size;
+    }
+
+    private void layout() {
+        int at = HEADER;
+        for (Column c : COLUMNS) {
+            start[c.ordinal()] = at;
+            at += (c.width * rows + 7) & ~7;
+        }
+    }
+
+    /**
+     * Map a column segment file.
+     * @param file The file.
+     * @return The segment.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the file is not a column segment.
+     */
+    static ColumnSegment map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ColumnSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Write the segment to a file, replacing it atomically.
+     * @param file The file.
+     * @throws IOException if the file cannot be written.
+     */
+    void write(Path file) throws IOException {
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, data.array());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Set a value while filling the segment.
+     * @param row The row.
+     * @param column The column.
+     * @param value The value, which must fit the column's width.
+     */
+    void set(int row, Column column, long value) {
+        final int at = start[column.ordinal()] + row * column.width;
+        switch (column.width) {
+            case 8:
+                data.putLong(at, value);
+                break;
+            case 4:
+                data.putInt(at, (int) value);
+                break;
+            case 2:
+                data.putShort(at, (short) value);
+                break;
+            default:
+                data.put(at, (byte) value);
+        }
+    }
+
+    /**
+     * Get a value.
+     * @param column The column.
+     * @param row The row.
+     * @return The value. Name ids are unsigned; other narrow columns are signed.
+     */
+    long get(Column column, int row) {
+        final int at = start[column.ordinal()] + row * column.width;
+        switch (column.width) {
+            case 8:
+                return data.getLong(at);
+            case 4:
+                return data.getInt(at);
+            case 2:
+                return data.getShort(at) & 0xFFFF;
+            default:
+                return data.get(at);
+        }
+    }
+
+    /**
+     * Compute the header statistics once every row has been set.
+     */
+    void finish() {
+        for (Column c : COLUMNS) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            long bits = 0;
+            for (int row = 0; row < rows; row++) {
+                final long v = get(c, row);
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+                bits |= 1L << (v & 63);
+            }
+            final int at = 8 + c.ordinal() * 24;
+            data.putLong(at, min).putLong(at + 8, max).putLong(at + 16, c.isName() ? bits : -1L);
+        }
+    }
+
+    /**
+     * @param column The column.
+     * @return The smallest value in the column.
+     */
+    long min(Column column) {
+        return data.getLong(8 + column.ordinal() * 24);
+    }
+
+    /**
+     * @param column The column.
+     * @return The largest value in the column.
+     */
+    long max(Column column) {
+        return data.getLong(8 + column.ordinal() * 24 + 8);
+    }
+
+    /**
+     * Check if a column might contain a value, using its bitmap for name columns and
+     * its range for the others.
+     * @param column The column.
+     * @param value The value.
+     * @return false if the column certainly does not contain the value.
+     */
+    boolean mightContain(Column column, long value) {
+        return value >= min(column) && value <= max(column)
+            && (data.getLong(8 + column.ordinal() * 24 + 16) & (1L << (value & 63))) != 0;
+    }
+}
@@ -45,16 +45,16 @@ public class ConsoleChampionController implements ChampionController {
         int choice = getIntInput("Enter number: ", 0, availableChampions.size() - 1);
 
         try {
-            // Use reflection to create an instance of the chosen Champion class
-            Champion champ = availableChampions.get(choice).getDeclaredConstructor().newInstance();
+            // Create an instance of the chosen Champion class through its registered constructor
+            Champion champ = ChampionRegistry.get(availableChampions.get(choice)).create();
 
             // Allow the champion to select their initial loadout - their tactic, relic, and gambit
             selectInitialLoadoutFor(champ);
 
             return CompletableFuture.completedFuture(champ);
-        } catch (NoSuchMethodException e) {
-            // This should never happen since we are using the default constructor
-            System.err.println("Failed to instantiate Champion. Try again." +
+        } catch (IllegalArgumentException e) {
+            // The class has no usable default constructor, or its prototype could not be created
+            System.err.println("Failed to instantiate Champion. Try again. " +
                     e.getMessage());
             return chooseChampion(playerName, availableChampions); // re-call
         } catch (Exception e) {
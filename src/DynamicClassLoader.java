@@ -1,19 +1,53 @@
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 import java.lang.reflect.Modifier;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * DynamicClassLoader is a utility class that loads classes from a specified directory.
  * It can be used to load classes dynamically at runtime, allowing for greater flexibility
  * in applications that require loading of external classes or plugins.
+ *
+ * The constructor loads every class file it finds. discover is much faster for large
+ * plugin folders: it reads the class files' headers and only loads the Champion and
+ * BattleModifier subtypes.
  */
 public class DynamicClassLoader {
 
+    // SHA-256 of each class's class file, recorded as it is loaded (the loader is closed afterwards)
+    private static final Map<Class<?>, byte[]> bytecodeHashes = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // The types that discover looks for
+    private static final List<Class<?>> PLUGIN_TYPES = List.of(Champion.class, BattleModifier.class);
+
     private final List<Class<?>> loadedClasses = new ArrayList<>();
 
+    private DynamicClassLoader() {
+    }
+
     /**
      * Constructor for DynamicClassLoader.
      * @param rootDirectoryPath The path to the directory containing class files.
@@ -47,14 +81,459 @@ public class DynamicClassLoader {
                 try {
                     Class<?> clazz = loader.loadClass(className);
                     loadedClasses.add(clazz);
-                } catch (ClassNotFoundException e) {
+                    bytecodeHashes.put(clazz, sha256(Files.readAllBytes(classFile.toPath())));
+                } catch (ClassNotFoundException | LinkageError e) {
+                    // A class file under a different root (such as target/classes) has the wrong name from here
                     System.err.println("Failed to load: " + className);
                 }
             }
         }
         catch (java.io.IOException e) {
-            throw new RuntimeException("Failed to close class loader", e);
+            throw new RuntimeException("Failed to read or close class loader", e);
+        }
+    }
+
+    /**
+     * Discover the Champion and BattleModifier subtypes in a directory without loading
+     * any other class. Class files and jars are found with include and exclude globs,
+     * which are matched against paths relative to the directory (so "**" + "/*.class"
+     * does not match a class file directly in it, but "*.class" does), and excluded
+     * directories are not walked at all. Jars are read in place without extracting
+     * them (see PluginJar). Their headers are read in parallel to
+     * get each class's name, superclass and flags, and the superclass chains are
+     * followed through the scanned classes and then the application's own classes.
+     *
+     * Only concrete, top-level subtypes are loaded, in order of their names. Each
+     * class file's root is worked out from the class's real name, so classes under
+     * nested roots such as target/classes load correctly. Each root or jar is a
+     * plugin and gets its own class loader, so a plugin sees only its own classes and
+     * the game's. The loaders are left open so that the discovered classes can load the helper
+     * classes (such as actions) next to them later.
+     * @param rootDirectoryPath The path to the directory containing class files.
+     * @param includes Globs of the class files and jars to read, or an empty list for all of them.
+     * @param excludes Globs of the files and directories to skip.
+     * @return A DynamicClassLoader holding the discovered classes.
+     * @throws IllegalArgumentException if the provided path is not a valid directory.
+     * @throws UncheckedIOException if the directory cannot be walked.
+     */
+    public static DynamicClassLoader discover(String rootDirectoryPath, List<String> includes, List<String> excludes) {
+        final Path rootDir = Paths.get(rootDirectoryPath).toAbsolutePath().normalize();
+        if (!Files.isDirectory(rootDir)) {
+            throw new IllegalArgumentException("Invalid folder: " + rootDirectoryPath);
+        }
+        // Walk the tree first, skipping excluded directories, then read the headers in parallel
+        final List<Path> files = new ArrayList<>();
+        walk(rootDir, includes, excludes, (file, attrs) -> files.add(file));
+        final List<ClassHeader> headers = files.parallelStream()
+            .flatMap(file -> readHeaders(file).stream())
+            .collect(Collectors.toList());
+
+        // The first class file found for a name wins, as it would on a class path
+        final Map<String, ClassHeader> byName = new HashMap<>();
+        final Map<String, String> superNames = new HashMap<>();
+        for (ClassHeader header : headers) {
+            if (byName.putIfAbsent(header.name, header) == null) {
+                superNames.put(header.name, header.superName);
+            }
+        }
+
+        final Map<String, Class<?>> kinds = new HashMap<>();
+        final List<ClassHeader> matching = new ArrayList<>();
+        for (ClassHeader header : byName.values()) {
+            if (isCandidate(header.name, header.access) && pluginKind(header.name, superNames, kinds) != null) {
+                matching.add(header);
+            }
+        }
+        matching.sort(Comparator.comparing(h -> h.name));
+
+        final DynamicClassLoader discovered = new DynamicClassLoader();
+        if (matching.isEmpty()) {
+            return discovered;
+        }
+        // One loader per root, so plugins are isolated from each other. Not closed: the
+        // discovered classes load their helpers, and getBytecodeHash reads them, through them
+        final Map<Path, PluginLoader> loaders = new HashMap<>();
+        for (ClassHeader header : matching) {
+            final PluginLoader loader = loaders.computeIfAbsent(header.root, root -> new PluginLoader(root, new HashMap<>()));
+            loader.definitions.put(header.name, header.bytes);
+        }
+        for (ClassHeader header : matching) {
+            try {
+                final Class<?> clazz = loaders.get(header.root).loadClass(header.name);
+                discovered.loadedClasses.add(clazz);
+            } catch (ClassNotFoundException | LinkageError e) {
+                System.err.println("Failed to load: " + header.name);
+            }
+        }
+        return discovered;
+    }
+
+    /**
+     * Loads the classes of one plugin directory, isolated from every other plugin so
+     * that it can be unloaded on its own. Discovered classes are defined from the
+     * bytes discovery has already read, and every other class is read from the
+     * directory. It counts the classes it defines and their footprint.
+     */
+    static final class PluginLoader extends URLClassLoader {
+        // Definitions are measured one at a time, so each one's metaspace growth is its own
+        private static final Object DEFINING = new Object();
+        private static final MemoryPoolMXBean METASPACE = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getName().equals("Metaspace")).findFirst().orElse(null);
+        private static int depth;
+
+        private final Map<String, byte[]> definitions;
+        private int classes;
+        private long classBytes;
+        private long metaspaceBytes;
+
+        /**
+         * @param root The directory to find classes in.
+         * @param definitions The bytes of classes that have already been read, by name.
+         */
+        PluginLoader(Path root, Map<String, byte[]> definitions) {
+            super(new URL[] { url(root) }, DynamicClassLoader.class.getClassLoader());
+            this.definitions = definitions;
+        }
+
+        private static URL url(Path root) {
+            try {
+                return root.toUri().toURL();
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("Invalid directory: " + root, e);
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes;
+            synchronized (definitions) {
+                bytes = definitions.remove(name);
+            }
+            if (bytes == null) {
+                final URL file = findResource(name.replace('.', '/') + ".class");
+                if (file == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                try (InputStream in = file.openStream()) {
+                    bytes = in.readAllBytes();
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+            synchronized (DEFINING) {
+                // Defining a class can load its superclass from here too; that counts towards the outer one
+                final boolean outermost = depth++ == 0;
+                final long before = outermost ? metaspaceUsed() : 0;
+                final Class<?> clazz;
+                try {
+                    clazz = defineClass(name, bytes, 0, bytes.length);
+                } finally {
+                    depth--;
+                }
+                classes++;
+                classBytes += bytes.length;
+                if (outermost) {
+                    metaspaceBytes += Math.max(0, metaspaceUsed() - before);
+                }
+                return clazz;
+            }
+        }
+
+        private static long metaspaceUsed() {
+            return METASPACE == null ? 0 : METASPACE.getUsage().getUsed();
+        }
+
+        /**
+         * @return The number of classes this loader has defined.
+         */
+        int getLoadedClasses() {
+            synchronized (DEFINING) {
+                return classes;
+            }
+        }
+
+        /**
+         * @return The total size of the class files this loader has defined.
+         */
+        long getClassBytes() {
+            synchronized (DEFINING) {
+                return classBytes;
+            }
+        }
+
+        /**
+         * @return The growth in metaspace use while this loader defined its classes. It
+         *         is approximate: classes loaded by other loaders at the same time count too.
+         */
+        long getMetaspaceBytes() {
+            synchronized (DEFINING) {
+                return metaspaceBytes;
+            }
+        }
+    }
+
+    /**
+     * Walk the class files and jars under a directory that match include and exclude
+     * globs, as described for discover, skipping excluded directories.
+     * @param rootDir The directory.
+     * @param includes Globs of the files to visit, or an empty list for every class file and jar.
+     * @param excludes Globs of the files and directories to skip.
+     * @param visitor Called with each class file or jar and its attributes.
+     * @throws UncheckedIOException if the directory cannot be walked.
+     */
+    static void walk(Path rootDir, List<String> includes, List<String> excludes,
+                     BiConsumer<Path, BasicFileAttributes> visitor) {
+        final List<PathMatcher> include = matchers(includes);
+        final List<PathMatcher> exclude = matchers(excludes);
+        try {
+            Files.walkFileTree(rootDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return !dir.equals(rootDir) && matches(exclude, rootDir.relativize(dir))
+                        ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    final Path relative = rootDir.relativize(file);
+                    final String name = file.getFileName().toString();
+                    if ((name.endsWith(".class") || PluginJar.isJar(file))
+                            && (include.isEmpty() || matches(include, relative)) && !matches(exclude, relative)) {
+                        visitor.accept(file, attrs);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    System.err.println("Failed to read: " + file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<PathMatcher> matchers(List<String> globs) {
+        final List<PathMatcher> matchers = new ArrayList<>();
+        for (String glob : globs) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        }
+        return matchers;
+    }
+
+    private static boolean matches(List<PathMatcher> matchers, Path path) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Work out which plugin type a scanned class is, if it is a plugin at all. A
+     * scanned class the application's class loader can load is one of the game's own
+     * classes (run.sh scans the directory target is in), so it is not a plugin.
+     * @param name The class's name.
+     * @param superNames The superclass name of each scanned class.
+     * @param kinds The plugin types worked out so far, which this adds to.
+     * @return The plugin type (Champion or BattleModifier), or null if it is not a plugin.
+     */
+    static Class<?> pluginKind(String name, Map<String, String> superNames, Map<String, Class<?>> kinds) {
+        if (applicationClass(name) != null) {
+            return null;
+        }
+        return kindOf(superNames.get(name), superNames, kinds);
+    }
+
+    /**
+     * Work out which plugin type a class is a subtype of. A class the application's
+     * class loader can load is resolved through it, so a copy of Champion or
+     * BattleModifier among the scanned classes is not mistaken for a plugin's own
+     * class; otherwise the superclass chain is followed through the scanned classes.
+     * @param name The class's name.
+     * @param superNames The superclass name of each scanned class.
+     * @param kinds The plugin types worked out so far, which this adds to.
+     * @return The plugin type (Champion or BattleModifier), or null if it is not a subtype of one.
+     */
+    static Class<?> kindOf(String name, Map<String, String> superNames, Map<String, Class<?>> kinds) {
+        if (name == null) {
+            return null;
+        }
+        if (kinds.containsKey(name)) {
+            return kinds.get(name);
+        }
+        kinds.put(name, null);  // Guards against a cycle in malformed class files
+        Class<?> kind = null;
+        final Class<?> known = applicationClass(name);
+        if (known != null) {
+            for (Class<?> type : PLUGIN_TYPES) {
+                if (type.isAssignableFrom(known)) {
+                    kind = type;
+                }
+            }
+        } else if (superNames.containsKey(name)) {
+            kind = kindOf(superNames.get(name), superNames, kinds);
+        }
+        kinds.put(name, kind);
+        return kind;
+    }
+
+    private static Class<?> applicationClass(String name) {
+        try {
+            return Class.forName(name, false, DynamicClassLoader.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            // Not one of ours
+            return null;
+        }
+    }
+
+    /**
+     * Read the headers of the class files in a file found by walk: the file itself if
+     * it is a class file, or the class files in it if it is a jar (see PluginJar).
+     */
+    static List<ClassHeader> readHeaders(Path file) {
+        if (PluginJar.isJar(file)) {
+            return PluginJar.readHeaders(file);
+        }
+        final ClassHeader header = readHeader(file);
+        return header == null ? List.of() : List.of(header);
+    }
+
+    /**
+     * Read a class file's header, or return null if it is not a class file whose path
+     * matches its name.
+     */
+    static ClassHeader readHeader(Path file) {
+        final ClassHeader header;
+        try {
+            header = readHeader(Files.readAllBytes(file), file.toString());
+        } catch (IOException e) {
+            System.err.println("Failed to read: " + file);
+            return null;
+        }
+        if (header == null) {
+            return null;
+        }
+        // The root is the file's path without the class's package directories
+        final Path expected = Paths.get(header.name.replace('.', '/') + ".class");
+        if (!file.endsWith(expected)) {
+            System.err.println("Skipping " + file + ": it holds " + header.name);
+            return null;
+        }
+        Path root = file;
+        for (int i = 0; i < expected.getNameCount(); i++) {
+            root = root.getParent();
+        }
+        return header.withRoot(root);
+    }
+
+    /**
+     * Read a class file's name, superclass and flags from its constant pool, or
+     * return null if it is not a class file. Only the two class names are decoded;
+     * every other constant is skipped. The header has no root yet.
+     * @param bytes The class file.
+     * @param source Where the class file came from, for warnings.
+     */
+    static ClassHeader readHeader(byte[] bytes, String source) {
+        try {
+            final ByteBuffer in = ByteBuffer.wrap(bytes);
+            if (in.getInt() != 0xCAFEBABE) {
+                System.err.println("Not a class file: " + source);
+                return null;
+            }
+            in.position(8);     // Skip the minor and major versions
+            final int count = in.getShort() & 0xFFFF;
+            final int[] offsets = new int[count];  // Where each Utf8 or Class entry's contents start
+            for (int i = 1; i < count; i++) {
+                final int tag = in.get();
+                offsets[i] = in.position();
+                switch (tag) {
+                    case 1:     // Utf8
+                        in.position(in.position() + 2 + (in.getShort(in.position()) & 0xFFFF));
+                        break;
+                    case 7: case 8: case 16: case 19: case 20:  // Class, String, MethodType, Module, Package
+                        in.position(in.position() + 2);
+                        break;
+                    case 15:    // MethodHandle
+                        in.position(in.position() + 3);
+                        break;
+                    case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+                        in.position(in.position() + 4);
+                        break;
+                    case 5: case 6: // Long and Double take two entries
+                        in.position(in.position() + 8);
+                        i++;
+                        break;
+                    default:
+                        System.err.println("Unknown constant pool tag " + tag + " in " + source);
+                        return null;
+                }
+            }
+            final int access = in.getShort() & 0xFFFF;
+            final String internalName = className(in, offsets, in.getShort() & 0xFFFF);
+            final int superClass = in.getShort() & 0xFFFF;
+            final String superName = superClass == 0 ? null : className(in, offsets, superClass).replace('/', '.');
+            return new ClassHeader(internalName.replace('/', '.'), superName, access, null, bytes);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to read: " + source);
+            return null;
+        }
+    }
+
+    private static String className(ByteBuffer in, int[] offsets, int classEntry) {
+        final int utf8 = offsets[in.getShort(offsets[classEntry]) & 0xFFFF];
+        final int length = in.getShort(utf8) & 0xFFFF;
+        // Class names in the default package and ours are plain ASCII; anything else goes through modified UTF-8
+        final byte[] bytes = new byte[length];
+        in.get(utf8 + 2, bytes);
+        for (byte b : bytes) {
+            if (b <= 0) {
+                try {
+                    return new DataInputStream(new ByteArrayInputStream(in.array(), utf8, length + 2)).readUTF();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
         }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * The parts of a class file that discovery needs.
+     */
+    static final class ClassHeader {
+        final String name;          // Binary name, such as "pkg.Champ"
+        final String superName;     // Null only for java.lang.Object
+        final int access;           // Access flags
+        final Path root;            // The directory the class's package directories start in, or its jar
+        final byte[] bytes;         // The whole class file
+
+        ClassHeader(String name, String superName, int access, Path root, byte[] bytes) {
+            this.name = name;
+            this.superName = superName;
+            this.access = access;
+            this.root = root;
+            this.bytes = bytes;
+        }
+
+        ClassHeader withRoot(Path root) {
+            return new ClassHeader(name, superName, access, root, bytes);
+        }
+    }
+
+    /**
+     * Check if a class could be a plugin: concrete and top-level.
+     * @param name The class's name.
+     * @param access The access flags from its class file.
+     * @return true if the class could be a plugin.
+     */
+    static boolean isCandidate(String name, int access) {
+        // Not abstract, an interface, an annotation, an enum or a module, nor nested
+        return (access & (Modifier.ABSTRACT | Modifier.INTERFACE | 0x2000 | 0x4000 | 0x8000)) == 0
+            && name.indexOf('$') < 0;
     }
 
     /**
@@ -83,6 +562,55 @@ public class DynamicClassLoader {
         return relativePath.replace(File.separatorChar, '.').replaceAll("\\.class$", "");
     }
 
+    /**
+     * Get a hash of a class's bytecode, which changes whenever the class is recompiled
+     * with different code. Classes loaded by the DynamicClassLoader constructor are
+     * hashed as they are loaded; other classes are hashed from their class file
+     * through their own class loader.
+     * @param type The class.
+     * @return The SHA-256 hash of the class file.
+     * @throws IllegalArgumentException if the class file cannot be found.
+     * @throws UncheckedIOException if the class file cannot be read.
+     */
+    public static byte[] getBytecodeHash(Class<?> type) {
+        final byte[] known = bytecodeHashes.get(type);
+        if (known != null) {
+            return known.clone();
+        }
+        final ClassLoader loader = type.getClassLoader() != null ? type.getClassLoader() : ClassLoader.getSystemClassLoader();
+        try (InputStream in = loader.getResourceAsStream(type.getName().replace('.', '/') + ".class")) {
+            if (in == null) {
+                throw new IllegalArgumentException("Cannot find the class file of " + type.getName());
+            }
+            final byte[] hash = sha256(in.readAllBytes());
+            bytecodeHashes.put(type, hash);
+            return hash.clone();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Remember the hash of a class's bytecode, computed by whoever read its class file.
+     * @param type The class.
+     * @param hash The SHA-256 hash of its class file.
+     */
+    static void recordBytecodeHash(Class<?> type, byte[] hash) {
+        bytecodeHashes.put(type, hash.clone());
+    }
+
+    /**
+     * @param bytes The bytes to hash.
+     * @return Their SHA-256 hash.
+     */
+    static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
     /**
      * Returns a list of all loaded classes.
      * @return A list of loaded classes.
@@ -38,4 +38,13 @@ public abstract class Gambit extends BattleModifier {
         // Set the gambit as activated
         this.activated = true;
     }
+
+    /**
+     * Set whether the gambit has been activated when restoring a MatchSnapshot,
+     * without running any activation effects.
+     * @param activated true if the gambit had been activated.
+     */
+    final void restoreActivated(boolean activated) {
+        this.activated = activated;
+    }
 }
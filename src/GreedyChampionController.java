@@ -0,0 +1,365 @@
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The GreedyChampionController class implements the ChampionController interface
+ * with a lightweight bot. Each turn it scores every action and every arsenal swap in
+ * a single pass by estimating the expected damage and healing through the same
+ * attacker and defender modifier chain that Champion.takeDamage and Champion.heal use,
+ * via the side-effect free Champion.previewDamage and Champion.previewHealing.
+ *
+ * Deciding a turn does not allocate: actions are cached per champion class, the
+ * arsenal is read slot by slot and battle contexts are reused. Only the returned
+ * TurnSubmission and its future are created. This makes the bot cheap enough to
+ * fill thousands of concurrent simulated matches for load generation.
+ *
+ * A controller keeps per-match scratch state, so each match thread should use its
+ * own instance. One instance can play both sides of the same match.
+ */
+public class GreedyChampionController implements ChampionController {
+    private static final double HEAL_WEIGHT = 0.75;     // Healing is worth a little less than damage
+    private static final double LETHAL_BONUS = 100.0;   // Finishing the opponent beats everything else
+    private static final double GAMBIT_BIAS = 2.0;      // Gambits often have effects we cannot preview
+    private static final int SAMPLE_INCOMING = 8;       // Base damage used to value defensive modifiers
+    private static final int SAMPLE_HEALING = 5;        // Base healing used to value healing modifiers
+
+    private final Random random;
+    private final BattleLog scratchLog = new BattleLog(); // Absorbs anything a hook logs during a preview
+
+    // A two entry cache of contexts, one per side of the match being played
+    private Champion contextSelf0, contextSelf1;
+    private BattleContext context0, context1;
+
+    /**
+     * Constructor for the GreedyChampionController with a random seed.
+     */
+    public GreedyChampionController() {
+        this(new Random().nextLong());
+    }
+
+    /**
+     * Constructor for the GreedyChampionController.
+     * @param seed The seed used when choosing a champion, so simulations can be repeated.
+     */
+    public GreedyChampionController(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Choose a random champion from the available options and pick the best scoring
+     * tactic, relic and gambit from its arsenal as the initial loadout.
+     * @param playerName The name of the player choosing the champion.
+     * @param availableChampions A list of available champion classes to choose from.
+     * @return A CompletableFuture containing the chosen champion instance, which
+     *         completes exceptionally if the champion could not be created.
+     */
+    @Override
+    public CompletableFuture<Champion> chooseChampion(String playerName,
+            List<Class<? extends Champion>> availableChampions) {
+        Class<? extends Champion> clazz = availableChampions.get(random.nextInt(availableChampions.size()));
+        try {
+            Champion champ = ChampionRegistry.get(clazz).create();
+            selectInitialLoadoutFor(champ);
+            return CompletableFuture.completedFuture(champ);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Plan a turn by scoring each action and each arsenal swap and taking the best of each.
+     * @param self The champion whose turn it is.
+     * @param opponent The opponent champion.
+     * @param vault The vault containing available modifiers.
+     * @return A CompletableFuture containing the TurnSubmission for the current turn.
+     */
+    @Override
+    public CompletableFuture<TurnSubmission> planTurn(Champion self, Champion opponent, ModifierVault vault) {
+        // Refill the arsenal with new modifiers if it has empty slots
+        self.getArsenal().refill();
+        scratchLog.clear();
+
+        final BattleContext context = contextFor(self, opponent);
+
+        final BattleModifier swap = chooseSwap(self, context);
+        final BattleModifier discard = chooseDiscard(self, swap, context);
+
+        Action action = self.getLockedInAction();
+        if (!self.isCharging()) {
+            final List<Action> actions = actionsOf(self);
+            action = actions.get(chooseActionIndex(self, opponent, actions, context));
+        }
+
+        TurnSubmission submission = new TurnSubmission(action,
+            swap instanceof Tactic ? (Tactic) swap : null,
+            swap instanceof Relic ? (Relic) swap : null,
+            swap instanceof Gambit ? (Gambit) swap : null,
+            discard);
+        return CompletableFuture.completedFuture(submission);
+    }
+
+    /**
+     * Get the actions the bot chooses from for a champion. By default these come
+     * from the champion's action catalog.
+     * @param self The champion whose turn it is.
+     * @return The champion's actions.
+     */
+    protected List<Action> actionsOf(Champion self) {
+        return actionsFor(self);
+    }
+
+    /**
+     * Get the actions for a champion from its action catalog.
+     * @param champ The champion.
+     * @return The champion's actions.
+     */
+    protected static List<Action> actionsFor(Champion champ) {
+        return champ.getActionCatalog().asList();
+    }
+
+    /**
+     * Choose the index of the action with the highest expected value.
+     * @param self The champion whose turn it is.
+     * @param opponent The opponent champion.
+     * @param actions The champion's actions.
+     * @param context A context with self as the wielder and opponent as the enemy.
+     * @return The index of the chosen action.
+     */
+    protected int chooseActionIndex(Champion self, Champion opponent, List<Action> actions, BattleContext context) {
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < actions.size(); i++) {
+            if (!isPlayable(actions.get(i), self)) continue;
+            final double score = scoreAction(actions.get(i), self, opponent, context);
+            if (score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Check if an action can be played right now. Playing a gambit needs a pocketed
+     * gambit that has not been activated yet, since activating one twice fails.
+     * @param action The action.
+     * @param self The champion who would play it.
+     * @return true if the action can be played.
+     */
+    protected boolean isPlayable(Action action, Champion self) {
+        if (action instanceof PlayGambit) {
+            final Gambit gambit = self.getLoadout().getPocketedGambit();
+            return gambit != null && !gambit.isActivated();
+        }
+        return true;
+    }
+
+    /**
+     * Get a bit mask of the actions that can be played right now.
+     * @param actions The champion's actions, of which only the first 32 are considered.
+     * @param self The champion who would play them.
+     * @return A mask with bit i set if action i can be played.
+     */
+    protected int playableMask(List<Action> actions, Champion self) {
+        int mask = 0;
+        for (int i = 0; i < actions.size() && i < Integer.SIZE; i++) {
+            if (isPlayable(actions.get(i), self)) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Score an action by its expected damage and healing. Charged actions are
+     * discounted by the number of turns they take to land.
+     * @param action The action to score.
+     * @param self The champion whose turn it is.
+     * @param opponent The opponent champion.
+     * @param context A context with self as the wielder and opponent as the enemy.
+     * @return The expected value of the action.
+     */
+    protected double scoreAction(Action action, Champion self, Champion opponent, BattleContext context) {
+        if (action instanceof PlayGambit) {
+            final Gambit gambit = self.getLoadout().getPocketedGambit();
+            if (gambit == null || gambit.isActivated()) {
+                return -1.0;
+            }
+            return GAMBIT_BIAS + scoreModifier(gambit, self, context);
+        }
+
+        double score = 0.0;
+        if (action.getBaseDamage() > 0) {
+            final int damage = Math.min(opponent.previewDamage(action.getBaseDamage(), context),
+                                        opponent.getCurrentHealth());
+            score += damage;
+            if (damage >= opponent.getCurrentHealth() && !action.needsCharging()) {
+                score += LETHAL_BONUS;
+            }
+        }
+        if (action.getBaseHealing() > 0) {
+            score += HEAL_WEIGHT * self.previewHealing(action.getBaseHealing(), context);
+        }
+        return score / (1 + action.getChargeTurns());
+    }
+
+    /**
+     * Choose the arsenal modifier that most improves the loadout, if any.
+     * @param self The champion whose turn it is.
+     * @param context A context with self as the wielder.
+     * @return The modifier to swap in, or null if no swap improves the loadout.
+     */
+    protected BattleModifier chooseSwap(Champion self, BattleContext context) {
+        final Arsenal arsenal = self.getArsenal();
+        final Loadout loadout = self.getLoadout();
+
+        BattleModifier best = null;
+        double bestGain = 0.0;
+        for (int i = 0; i < arsenal.size(); i++) {
+            final BattleModifier candidate = arsenal.getSlot(i);
+            final BattleModifier current;
+            if (candidate instanceof Tactic) {
+                current = loadout.getTactic();
+            } else if (candidate instanceof Relic) {
+                current = loadout.getRelic();
+            } else if (candidate instanceof Gambit) {
+                current = loadout.getPocketedGambit();
+                // Never throw away a gambit that is already in effect, or pocket a spent one
+                if (current != null && ((Gambit) current).isActivated()) continue;
+                if (((Gambit) candidate).isActivated()) continue;
+            } else {
+                continue;
+            }
+            if (candidate == current) continue;
+
+            final double gain = scoreModifier(candidate, self, context)
+                              - (current == null ? 0.0 : scoreModifier(current, self, context));
+            if (gain > bestGain) {
+                bestGain = gain;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Choose an arsenal modifier to discard so that a new one is drawn. The weakest
+     * modifier is discarded when the arsenal is full and it adds nothing.
+     * @param self The champion whose turn it is.
+     * @param keep A modifier that must not be discarded (the one being swapped in).
+     * @param context A context with self as the wielder.
+     * @return The modifier to discard, or null to keep the arsenal as it is.
+     */
+    protected BattleModifier chooseDiscard(Champion self, BattleModifier keep, BattleContext context) {
+        final Arsenal arsenal = self.getArsenal();
+        if (!arsenal.isFull()) {
+            return null;
+        }
+
+        BattleModifier worst = null;
+        double worstScore = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < arsenal.size(); i++) {
+            final BattleModifier mod = arsenal.getSlot(i);
+            if (mod == keep) continue;
+            final double score = scoreModifier(mod, self, context);
+            if (score < worstScore) {
+                worstScore = score;
+                worst = mod;
+            }
+        }
+        return worstScore <= 0.0 ? worst : null;
+    }
+
+    /**
+     * Score a modifier by how much it would change a typical attack, defense and heal
+     * for its remaining duration. The modifier's hooks are called directly and it is
+     * not marked as used.
+     * @param mod The modifier to score.
+     * @param self The champion who would hold the modifier.
+     * @param context A context with self as the wielder.
+     * @return The estimated value of holding the modifier.
+     */
+    protected double scoreModifier(BattleModifier mod, Champion self, BattleContext context) {
+        final int attack = SAMPLE_INCOMING + self.getAttackPower();
+        final double perUse = (mod.modifyAttack(attack, context) - attack)
+                            + (SAMPLE_INCOMING - mod.modifyDefense(SAMPLE_INCOMING, context))
+                            + HEAL_WEIGHT * (mod.modifyHealing(SAMPLE_HEALING, context) - SAMPLE_HEALING);
+        return perUse * Math.max(mod.getDuration(), 1);
+    }
+
+    /**
+     * Pick the best scoring tactic, relic and gambit from the champion's arsenal and
+     * move them into its loadout.
+     * @param champ The champion.
+     */
+    protected void selectInitialLoadoutFor(Champion champ) {
+        final BattleContext context = contextFor(champ, champ);
+        final Loadout loadout = champ.getLoadout();
+
+        final BattleModifier tactic = bestOfType(champ, Tactic.class, context);
+        if (tactic != null) {
+            loadout.swapTactic((Tactic) tactic);
+            champ.getArsenal().discard(tactic);
+        }
+
+        final BattleModifier relic = bestOfType(champ, Relic.class, context);
+        if (relic != null) {
+            loadout.swapRelic((Relic) relic);
+            champ.getArsenal().discard(relic);
+        }
+
+        final BattleModifier gambit = bestOfType(champ, Gambit.class, context);
+        if (gambit != null) {
+            loadout.swapPocketedGambit((Gambit) gambit);
+            champ.getArsenal().discard(gambit);
+        }
+    }
+
+    /**
+     * Find the best scoring modifier of a type in the champion's arsenal.
+     * @param champ The champion.
+     * @param type The type of modifier.
+     * @param context A context with the champion as the wielder.
+     * @return The best modifier of that type, or null if there is none.
+     */
+    private BattleModifier bestOfType(Champion champ, Class<? extends BattleModifier> type, BattleContext context) {
+        final Arsenal arsenal = champ.getArsenal();
+        BattleModifier best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < arsenal.size(); i++) {
+            final BattleModifier mod = arsenal.getSlot(i);
+            if (!type.isInstance(mod)) continue;
+            if (mod instanceof Gambit && ((Gambit) mod).isActivated()) continue;
+            final double score = scoreModifier(mod, champ, context);
+            if (score > bestScore) {
+                bestScore = score;
+                best = mod;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Get a context for previews with self as the wielder, reusing one from an
+     * earlier turn when the same champions are playing.
+     * @param self The wielder.
+     * @param opponent The enemy.
+     * @return A context with self as the wielder and opponent as the enemy.
+     */
+    protected BattleContext contextFor(Champion self, Champion opponent) {
+        if (contextSelf0 == self && context0.enemy == opponent) {
+            return context0;
+        }
+        if (contextSelf1 == self && context1.enemy == opponent) {
+            return context1;
+        }
+
+        // Replace the older entry
+        contextSelf1 = contextSelf0;
+        context1 = context0;
+        contextSelf0 = self;
+        context0 = new BattleContext(self, opponent, 0, scratchLog);
+        return context0;
+    }
+}
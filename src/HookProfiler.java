@@ -0,0 +1,268 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HookProfiler accounts for the time spent in each modifier class's hooks, so that
+ * a slow community plugin can be found when match throughput drops. The engine
+ * calls every modifier hook through it (see Champion.takeDamage, Champion.heal and
+ * Loadout); while profiling is off that costs one read of a flag, and while it is
+ * on each call is timed with System.nanoTime and counted.
+ *
+ * Counts and times are kept per modifier class and hook in LongAdders, which are
+ * striped, so matches on many threads do not contend on them. Modifier classes are
+ * only referenced by name, so profiling does not keep unloaded plugins alive.
+ */
+public class HookProfiler {
+    /**
+     * The modifier hooks that are profiled.
+     */
+    public enum Hook {
+        MODIFY_ATTACK("modifyAttack"),
+        MODIFY_DEFENSE("modifyDefense"),
+        MODIFY_HEALING("modifyHealing"),
+        ON_TURN_END("onTurnEnd");
+
+        private final String methodName;
+
+        Hook(String methodName) {
+            this.methodName = methodName;
+        }
+
+        /**
+         * @return The name of the hook's BattleModifier method.
+         */
+        @Override
+        public String toString() {
+            return methodName;
+        }
+    }
+
+    private static final Hook[] HOOKS = Hook.values();
+    private static final Queue<Counters> ALL = new ConcurrentLinkedQueue<>();
+    private static final ClassValue<Counters> COUNTERS = new ClassValue<Counters>() {
+        @Override
+        protected Counters computeValue(Class<?> type) {
+            final Counters counters = new Counters(type.getName());
+            ALL.add(counters);
+            return counters;
+        }
+    };
+
+    private static volatile boolean enabled;
+
+    private HookProfiler() {
+    }
+
+    /**
+     * Turn profiling on or off. Counts are kept when it is turned off.
+     * @param on true to profile modifier hooks.
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Check whether profiling is on.
+     * @return true if modifier hooks are being profiled.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Forget every count and time recorded so far.
+     */
+    public static void reset() {
+        for (Counters counters : ALL) {
+            for (int i = 0; i < HOOKS.length; i++) {
+                counters.calls[i].reset();
+                counters.nanos[i].reset();
+            }
+        }
+    }
+
+    /**
+     * Call a modifier's modifyAttack, profiling it if profiling is on.
+     * @param mod The modifier.
+     * @param damage The damage before modification.
+     * @param context The context of the battle.
+     * @return The modified damage.
+     */
+    static int modifyAttack(BattleModifier mod, int damage, BattleContext context) {
+        if (!enabled) {
+            return mod.modifyAttack(damage, context);
+        }
+        final long start = System.nanoTime();
+        try {
+            return mod.modifyAttack(damage, context);
+        } finally {
+            record(mod, Hook.MODIFY_ATTACK, start);
+        }
+    }
+
+    /**
+     * Call a modifier's modifyDefense, profiling it if profiling is on.
+     * @param mod The modifier.
+     * @param damage The damage before modification.
+     * @param context The context of the battle.
+     * @return The modified damage.
+     */
+    static int modifyDefense(BattleModifier mod, int damage, BattleContext context) {
+        if (!enabled) {
+            return mod.modifyDefense(damage, context);
+        }
+        final long start = System.nanoTime();
+        try {
+            return mod.modifyDefense(damage, context);
+        } finally {
+            record(mod, Hook.MODIFY_DEFENSE, start);
+        }
+    }
+
+    /**
+     * Call a modifier's modifyHealing, profiling it if profiling is on.
+     * @param mod The modifier.
+     * @param amount The healing before modification.
+     * @param context The context of the battle.
+     * @return The modified healing.
+     */
+    static int modifyHealing(BattleModifier mod, int amount, BattleContext context) {
+        if (!enabled) {
+            return mod.modifyHealing(amount, context);
+        }
+        final long start = System.nanoTime();
+        try {
+            return mod.modifyHealing(amount, context);
+        } finally {
+            record(mod, Hook.MODIFY_HEALING, start);
+        }
+    }
+
+    /**
+     * Call a modifier's onTurnEnd, profiling it if profiling is on.
+     * @param mod The modifier.
+     * @param context The context of the battle.
+     */
+    static void onTurnEnd(BattleModifier mod, BattleContext context) {
+        if (!enabled) {
+            mod.onTurnEnd(context);
+            return;
+        }
+        final long start = System.nanoTime();
+        try {
+            mod.onTurnEnd(context);
+        } finally {
+            record(mod, Hook.ON_TURN_END, start);
+        }
+    }
+
+    private static void record(BattleModifier mod, Hook hook, long start) {
+        final long elapsed = System.nanoTime() - start;
+        final Counters counters = COUNTERS.get(mod.getClass());
+        counters.calls[hook.ordinal()].increment();
+        counters.nanos[hook.ordinal()].add(elapsed);
+    }
+
+    /**
+     * Get the recorded cost of every modifier hook that has been called, with the
+     * classes of reloaded plugins counted together by name.
+     * @return The rows, most total time first.
+     */
+    public static List<Row> report() {
+        final Map<String, long[]> totals = new HashMap<>();
+        for (Counters counters : ALL) {
+            for (int i = 0; i < HOOKS.length; i++) {
+                final long calls = counters.calls[i].sum();
+                if (calls > 0) {
+                    final long[] total = totals.computeIfAbsent(counters.className + "#" + i, k -> new long[2]);
+                    total[0] += calls;
+                    total[1] += counters.nanos[i].sum();
+                }
+            }
+        }
+        final List<Row> rows = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            final int separator = entry.getKey().lastIndexOf('#');
+            rows.add(new Row(entry.getKey().substring(0, separator),
+                HOOKS[Integer.parseInt(entry.getKey().substring(separator + 1))],
+                entry.getValue()[0], entry.getValue()[1]));
+        }
+        rows.sort(Comparator.comparingLong((Row row) -> row.nanos).reversed()
+            .thenComparing(row -> row.className).thenComparing(row -> row.hook));
+        return rows;
+    }
+
+    /**
+     * Format the report as a table, most total time first.
+     * @return The table, with a header line.
+     */
+    public static String formatReport() {
+        final StringBuilder table = new StringBuilder(String.format("%-32s %-14s %12s %12s %10s%n",
+            "Modifier", "Hook", "Calls", "Total ms", "Avg ns"));
+        for (Row row : report()) {
+            table.append(String.format("%-32s %-14s %12d %12.2f %10.1f%n",
+                row.className, row.hook, row.calls, row.nanos / 1e6, row.getAverageNanos()));
+        }
+        return table.toString();
+    }
+
+    /**
+     * The counters of one modifier class.
+     */
+    private static final class Counters {
+        final String className;
+        final LongAdder[] calls = new LongAdder[HOOKS.length];
+        final LongAdder[] nanos = new LongAdder[HOOKS.length];
+
+        Counters(String className) {
+            this.className = className;
+            for (int i = 0; i < HOOKS.length; i++) {
+                calls[i] = new LongAdder();
+                nanos[i] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * The recorded cost of one hook of one modifier class.
+     */
+    public static final class Row {
+        /**
+         * The modifier's class name.
+         */
+        public final String className;
+        /**
+         * The hook.
+         */
+        public final Hook hook;
+        /**
+         * The number of calls.
+         */
+        public final long calls;
+        /**
+         * The total time spent in the calls, in nanoseconds.
+         */
+        public final long nanos;
+
+        Row(String className, Hook hook, long calls, long nanos) {
+            this.className = className;
+            this.hook = hook;
+            this.calls = calls;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Get the average time of a call.
+         * @return The average in nanoseconds.
+         */
+        public double getAverageNanos() {
+            return calls == 0 ? 0 : (double) nanos / calls;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A linear action-value policy for choosing a champion's action. For each champion
+ * class the policy keeps one weight vector per action index, and the value of taking
+ * an action in a state is the dot product of that vector with a small set of state
+ * features. The best action is the one with the highest value.
+ *
+ * Weights are read by many match threads while a single learner thread updates them.
+ * Reads are not synchronized, so a match may see a partially applied update; for a
+ * policy that is being trained anyway this is harmless and keeps inference lock-free.
+ *
+ * Policies can be saved to and loaded from a plain text file with one line of
+ * weights per champion class.
+ */
+public class LinearPolicy {
+    /**
+     * The number of features describing a state.
+     */
+    public static final int FEATURES = 8;
+
+    /**
+     * The maximum number of actions per champion the policy can score.
+     */
+    public static final int MAX_ACTIONS = 8;
+
+    private static final String HEADER = "# ChampionsArena linear policy v1";
+
+    private final Map<String, double[]> weights = new ConcurrentHashMap<>();
+
+    /**
+     * Extract the state features from a champion's point of view.
+     * @param self The champion choosing an action.
+     * @param opponent The opponent champion.
+     * @param out The array to write FEATURES values into.
+     */
+    public static void features(Champion self, Champion opponent, double[] out) {
+        final double selfHealth = (double) self.getCurrentHealth() / self.getMaxHealth();
+        final double opponentHealth = (double) opponent.getCurrentHealth() / opponent.getMaxHealth();
+        final Gambit gambit = self.getLoadout().getPocketedGambit();
+
+        out[0] = 1.0;                                              // Bias
+        out[1] = selfHealth;
+        out[2] = opponentHealth;
+        out[3] = opponent.isCharging() ? 1.0 : 0.0;
+        out[4] = (gambit != null && !gambit.isActivated()) ? 1.0 : 0.0;
+        out[5] = selfHealth <= 0.25 ? 1.0 : 0.0;
+        out[6] = opponentHealth <= 0.25 ? 1.0 : 0.0;
+        out[7] = self.getLoadout().getTemporaryModifiers().isEmpty() ? 0.0 : 1.0;
+    }
+
+    /**
+     * Check if the policy has weights for a champion class.
+     * @param championClass The name of the champion class.
+     * @return true if the policy has been trained for this class.
+     */
+    public boolean knows(String championClass) {
+        return weights.containsKey(championClass);
+    }
+
+    /**
+     * Get the value of taking an action in a state.
+     * @param championClass The name of the champion class.
+     * @param action The index of the action in the champion's action list.
+     * @param features The state features.
+     * @return The estimated value, or 0 if the class is unknown.
+     */
+    public double value(String championClass, int action, double[] features) {
+        final double[] w = weights.get(championClass);
+        if (w == null || action >= MAX_ACTIONS) {
+            return 0.0;
+        }
+        double sum = 0.0;
+        final int base = action * FEATURES;
+        for (int f = 0; f < FEATURES; f++) {
+            sum += w[base + f] * features[f];
+        }
+        return sum;
+    }
+
+    /**
+     * Find the action with the highest value in a state.
+     * @param championClass The name of the champion class.
+     * @param actionCount The number of actions the champion has.
+     * @param features The state features.
+     * @param allowed A mask with bit i set if action i may be chosen.
+     * @return The index of the best allowed action, or 0 if none is allowed.
+     */
+    public int bestAction(String championClass, int actionCount, double[] features, int allowed) {
+        int best = 0;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int a = 0; a < actionCount && a < MAX_ACTIONS; a++) {
+            if ((allowed & (1 << a)) == 0) continue;
+            final double v = value(championClass, a, features);
+            if (v > bestValue) {
+                bestValue = v;
+                best = a;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Move the value of an action in a state towards a target with one step of
+     * stochastic gradient descent on the squared error.
+     * @param championClass The name of the champion class.
+     * @param action The index of the action.
+     * @param features The state features.
+     * @param target The observed return.
+     * @param learningRate The step size.
+     */
+    public void update(String championClass, int action, double[] features, double target, double learningRate) {
+        if (action >= MAX_ACTIONS) {
+            return;
+        }
+        final double[] w = weights.computeIfAbsent(championClass, k -> new double[MAX_ACTIONS * FEATURES]);
+        final double error = target - value(championClass, action, features);
+        final int base = action * FEATURES;
+        for (int f = 0; f < FEATURES; f++) {
+            w[base + f] += learningRate * error * features[f];
+        }
+    }
+
+    /**
+     * Save the policy to a text file.
+     * @param file The file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            out.write("features " + FEATURES + " actions " + MAX_ACTIONS);
+            out.newLine();
+            for (Map.Entry<String, double[]> entry : weights.entrySet()) {
+                StringBuilder line = new StringBuilder(entry.getKey());
+                for (double w : entry.getValue()) {
+                    line.append(' ').append(w);
+                }
+                out.write(line.toString());
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Load a policy from a text file written by save.
+     * @param file The file to read.
+     * @return The loaded policy.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the file is not a policy of this shape.
+     */
+    public static LinearPolicy load(Path file) throws IOException {
+        LinearPolicy policy = new LinearPolicy();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) {
+                throw new IllegalArgumentException("Not a linear policy file: " + file);
+            }
+            if (!("features " + FEATURES + " actions " + MAX_ACTIONS).equals(in.readLine())) {
+                throw new IllegalArgumentException("Policy shape does not match: " + file);
+            }
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                String[] parts = line.trim().split(" ");
+                if (parts.length != 1 + MAX_ACTIONS * FEATURES) {
+                    throw new IllegalArgumentException("Bad policy line for " + parts[0]);
+                }
+                double[] w = new double[MAX_ACTIONS * FEATURES];
+                for (int i = 0; i < w.length; i++) {
+                    w[i] = Double.parseDouble(parts[i + 1]);
+                }
+                policy.weights.put(parts[0], w);
+            }
+        }
+        return policy;
+    }
+}
@@ -1,5 +1,6 @@
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
 
 /**
  * A champion's loadout, which includes a tactic, a relic, and a pocketed gambit, and any
@@ -13,6 +14,10 @@ public class Loadout {
     private Gambit pocketedGambit;
     private final List<BattleModifier> temporaryModifiers = new ArrayList<>();
 
+    private static final int HOOK_ATTACK = 0;
+    private static final int HOOK_DEFENSE = 1;
+    private static final int HOOK_HEALING = 2;
+
     /**
      * Constructor for the Loadout class. Initializes the loadout with no
      * tactic, relic, or pocketed gambit.
@@ -128,6 +133,14 @@ public class Loadout {
         temporaryModifiers.add(mod);
     }
 
+    /**
+     * Get the temporary modifiers that are currently in the loadout.
+     * @return An unmodifiable view of the temporary modifiers.
+     */
+    public List<BattleModifier> getTemporaryModifiers() {
+        return Collections.unmodifiableList(temporaryModifiers);
+    }
+
     /**
      * Get a list of all active modifiers in the loadout. This includes the
      * current tactic, relic, and any temporary modifiers that are active. The
@@ -155,6 +168,88 @@ public class Loadout {
         return active;
     }
 
+    /**
+     * Preview the effect of this loadout's active modifiers on outgoing damage, visiting
+     * the modifiers in the same order as getActiveModifiers(). Unlike an attack, the
+     * preview does not build a list or mark any modifier as used.
+     * @param damage The damage before this loadout's modifiers are applied.
+     * @param context The context of the battle, with this loadout's champion as the wielder.
+     * @return The damage after this loadout's attack modifiers.
+     */
+    public int previewAttack(int damage, BattleContext context) {
+        return preview(HOOK_ATTACK, damage, context);
+    }
+
+    /**
+     * Preview the effect of this loadout's active modifiers on incoming damage, visiting
+     * the modifiers in the same order as getActiveModifiers(). Unlike a defense, the
+     * preview does not build a list or mark any modifier as used.
+     * @param damage The damage before this loadout's modifiers are applied.
+     * @param context The context of the battle, with this loadout's champion as the enemy.
+     * @return The damage after this loadout's defense modifiers.
+     */
+    public int previewDefense(int damage, BattleContext context) {
+        return preview(HOOK_DEFENSE, damage, context);
+    }
+
+    /**
+     * Preview the effect of this loadout's active modifiers on healing, visiting the
+     * modifiers in the same order as getActiveModifiers(). Unlike a heal, the preview
+     * does not build a list or mark any modifier as used.
+     * @param amount The healing before this loadout's modifiers are applied.
+     * @param context The context of the battle, with this loadout's champion as the wielder.
+     * @return The healing after this loadout's healing modifiers.
+     */
+    public int previewHealing(int amount, BattleContext context) {
+        return preview(HOOK_HEALING, amount, context);
+    }
+
+    /**
+     * Run one modifier hook over the active modifiers without allocating.
+     * @param hook HOOK_ATTACK, HOOK_DEFENSE or HOOK_HEALING.
+     * @param amount The amount before modification.
+     * @param context The context of the battle.
+     * @return The amount after modification.
+     */
+    private int preview(int hook, int amount, BattleContext context) {
+        if (tactic != null && !tactic.isExpired()) {
+            amount = applyHook(hook, tactic, amount, context);
+        }
+        if (relic != null && !relic.isExpired()) {
+            amount = applyHook(hook, relic, amount, context);
+        }
+        if (pocketedGambit != null && pocketedGambit.isActivated() && !pocketedGambit.isExpired()) {
+            amount = applyHook(hook, pocketedGambit, amount, context);
+        }
+        for (int i = 0; i < temporaryModifiers.size(); i++) {
+            BattleModifier mod = temporaryModifiers.get(i);
+            // Damage skips expired temporary modifiers, healing does not (see Champion.heal)
+            if (hook == HOOK_HEALING || !mod.isExpired()) {
+                amount = applyHook(hook, mod, amount, context);
+            }
+        }
+        return amount;
+    }
+
+    /**
+     * Apply a single modifier hook.
+     * @param hook HOOK_ATTACK, HOOK_DEFENSE or HOOK_HEALING.
+     * @param mod The modifier.
+     * @param amount The amount before modification.
+     * @param context The context of the battle.
+     * @return The amount after modification.
+     */
+    private static int applyHook(int hook, BattleModifier mod, int amount, BattleContext context) {
+        switch (hook) {
+            case HOOK_ATTACK:
+                return HookProfiler.modifyAttack(mod, amount, context);
+            case HOOK_DEFENSE:
+                return HookProfiler.modifyDefense(mod, amount, context);
+            default:
+                return HookProfiler.modifyHealing(mod, amount, context);
+        }
+    }
+
     /**
      * End the turn by removing expired modifiers and clearing temporary
      * modifiers. This method should be called at the end of each turn to
@@ -166,7 +261,7 @@ public class Loadout {
         // End the turn for all active modifiers
         for (BattleModifier mod : getActiveModifiers()) {
             if (!mod.isExpired()) {
-                mod.onTurnEnd(context);
+                HookProfiler.onTurnEnd(mod, context);
                 mod.endRound();
             }
         }
@@ -187,4 +282,19 @@ public class Loadout {
         temporaryModifiers.removeIf(BattleModifier::isExpired);
     }
 
+    /**
+     * Put the loadout back into a state captured by a MatchSnapshot.
+     * @param tactic The equipped tactic, or null for none.
+     * @param relic The equipped relic, or null for none.
+     * @param pocketedGambit The pocketed gambit, or null for none.
+     * @param temporaryModifiers The active temporary modifiers.
+     */
+    void restore(Tactic tactic, Relic relic, Gambit pocketedGambit, List<BattleModifier> temporaryModifiers) {
+        this.tactic = tactic;
+        this.relic = relic;
+        this.pocketedGambit = pocketedGambit;
+        this.temporaryModifiers.clear();
+        this.temporaryModifiers.addAll(temporaryModifiers);
+    }
+
 }
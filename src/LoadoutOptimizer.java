@@ -0,0 +1,542 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * LoadoutOptimizer evolves loadout policies for a champion with a genetic algorithm.
+ *
+ * A genome gives every modifier class in the ModifierVault registry a preference
+ * from 0 to 7, plus a swap margin and a discard threshold. A champion playing a
+ * genome picks its most preferred tactic, relic and gambit as its initial loadout,
+ * swaps in an arsenal modifier when it is preferred over the equipped one by more
+ * than the swap margin, and discards its least preferred modifier when the arsenal
+ * is full and that modifier's preference is below the discard threshold. Actions
+ * are chosen by the greedy bot.
+ *
+ * Each genome is scored against a pool of opponents (greedy bots playing every
+ * champion in the roster) over the same fixed seeds, so genomes are compared on
+ * identical arsenals and turn orders. A population is evaluated in parallel, and
+ * the fitness of every genome already evaluated is cached. Fitness has two
+ * objectives: the overall win rate, to maximize, and the variance of the win rate
+ * across opponents, to minimize. The optimizer returns the Pareto front of the two,
+ * and reports each generation to an optional progress listener.
+ *
+ * Usage: java LoadoutOptimizer [plugin folder] [generations] [population] [matches per opponent]
+ */
+public class LoadoutOptimizer {
+    private static final int MAX_PREFERENCE = 7;
+    private static final double MUTATION_RATE = 0.1;
+    private static final int TOURNAMENT_SIZE = 3;
+    private static final int TRIES_PER_GENOME = 20;     // Children bred per free place before giving up on new ones
+
+    private final List<Class<? extends BattleModifier>> registry;
+    private final Map<Class<?>, Integer> registryIndex = new HashMap<>();
+    private final List<Class<? extends Champion>> opponents;
+    private final MatchSimulator simulator;
+    private final long[] seeds;
+    private final Random random;
+
+    private final Map<String, Fitness> fitnessCache = new ConcurrentHashMap<>();
+    private int evaluations;
+    private Consumer<Progress> progressListener;
+
+    /**
+     * Constructor for the LoadoutOptimizer.
+     * @param vault The vault whose registry the genomes are defined over.
+     * @param opponents The champion classes in the opponent pool.
+     * @param matchesPerOpponent The number of seeded matches played against each opponent.
+     * @param seed The seed for the match seeds and the genetic operators.
+     */
+    public LoadoutOptimizer(ModifierVault vault, List<Class<? extends Champion>> opponents,
+                            int matchesPerOpponent, long seed) {
+        this(vault, vault.getRegistry(), opponents, matchesPerOpponent, seed);
+    }
+
+    /**
+     * Constructor for a LoadoutOptimizer whose genomes only have preferences for some
+     * of the vault's modifier classes; the others are never preferred.
+     * @param vault The vault the matches draw from.
+     * @param registry The modifier classes the genomes are defined over.
+     * @param opponents The champion classes in the opponent pool.
+     * @param matchesPerOpponent The number of seeded matches played against each opponent.
+     * @param seed The seed for the match seeds and the genetic operators.
+     */
+    LoadoutOptimizer(ModifierVault vault, List<Class<? extends BattleModifier>> registry,
+                     List<Class<? extends Champion>> opponents, int matchesPerOpponent, long seed) {
+        this.registry = List.copyOf(registry);
+        for (int i = 0; i < registry.size(); i++) {
+            registryIndex.put(registry.get(i), i);
+        }
+        this.opponents = List.copyOf(opponents);
+        this.simulator = new MatchSimulator(vault);
+        this.random = new Random(seed);
+        this.seeds = new long[matchesPerOpponent];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Set a listener to be told about each generation as evolve makes it, on the
+     * thread calling evolve.
+     * @param listener The listener, or null for none.
+     */
+    public void setProgressListener(Consumer<Progress> listener) {
+        this.progressListener = listener;
+    }
+
+    /**
+     * Evolve loadout policies for a champion. Each generation keeps the Pareto front
+     * and breeds new genomes for the other places; if the genome space is too small
+     * (or the population has converged too far) to breed enough new ones, the
+     * generation is left smaller.
+     * @param champion The champion class to optimize.
+     * @param generations The number of generations.
+     * @param populationSize The number of genomes per generation.
+     * @return The Pareto front of the final population, sorted by win rate.
+     */
+    public List<Scored> evolve(Class<? extends Champion> champion, int generations, int populationSize) {
+        List<Genome> population = new ArrayList<>();
+        for (int i = 0; i < populationSize; i++) {
+            population.add(randomGenome());
+        }
+
+        List<Scored> scored = evaluate(champion, population);
+        for (int gen = 1; gen <= generations; gen++) {
+            final List<Scored> front = paretoFront(scored);
+            final Consumer<Progress> listener = progressListener;
+            if (listener != null) {
+                listener.accept(new Progress(gen, scored.stream().mapToDouble(s -> s.fitness.winRate).max().orElse(0),
+                                             front.size(), evaluations));
+            }
+
+            // Keep the front, fill the rest with children of tournament winners
+            Set<Genome> next = new LinkedHashSet<>();
+            for (Scored s : front) {
+                next.add(s.genome);
+            }
+            for (int tries = TRIES_PER_GENOME * populationSize; next.size() < populationSize && tries > 0; tries--) {
+                Genome child = crossover(select(scored), select(scored));
+                next.add(mutate(child));
+            }
+            scored = evaluate(champion, new ArrayList<>(next));
+        }
+
+        List<Scored> front = paretoFront(scored);
+        front.sort(Comparator.comparingDouble((Scored s) -> -s.fitness.winRate));
+        return front;
+    }
+
+    /**
+     * Evaluate a population in parallel, reusing cached fitness where possible.
+     * @param champion The champion class playing the genomes.
+     * @param population The genomes to evaluate.
+     * @return The genomes with their fitness.
+     */
+    private List<Scored> evaluate(Class<? extends Champion> champion, List<Genome> population) {
+        List<Scored> scored = population.parallelStream()
+            .map(g -> new Scored(g, fitness(champion, g)))
+            .collect(Collectors.toList());
+        evaluations = fitnessCache.size();
+        return scored;
+    }
+
+    /**
+     * Get the fitness of a genome, playing its matches if it has not been evaluated yet.
+     * @param champion The champion class playing the genome.
+     * @param genome The genome.
+     * @return The genome's fitness.
+     */
+    private Fitness fitness(Class<? extends Champion> champion, Genome genome) {
+        final String key = champion.getName() + ':' + genome;
+        Fitness cached = fitnessCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        double[] perOpponent = new double[opponents.size()];
+        for (int o = 0; o < opponents.size(); o++) {
+            double score = 0;
+            for (long seed : seeds) {
+                GenomeController self = new GenomeController(genome, registryIndex, seed);
+                GreedyChampionController opponent = new GreedyChampionController(seed);
+                score += simulator.run(champion, self, opponents.get(o), opponent, seed).scoreA();
+            }
+            perOpponent[o] = score / seeds.length;
+        }
+
+        final double mean = Arrays.stream(perOpponent).average().orElse(0);
+        final double variance = Arrays.stream(perOpponent).map(w -> (w - mean) * (w - mean)).average().orElse(0);
+        Fitness fitness = new Fitness(mean, variance);
+        fitnessCache.putIfAbsent(key, fitness);
+        return fitness;
+    }
+
+    /**
+     * Find the genomes that no other genome beats on both win rate and variance.
+     * @param scored The scored genomes.
+     * @return The non-dominated genomes.
+     */
+    static List<Scored> paretoFront(List<Scored> scored) {
+        List<Scored> front = new ArrayList<>();
+        for (Scored candidate : scored) {
+            boolean dominated = false;
+            for (Scored other : scored) {
+                if (other.fitness.dominates(candidate.fitness)) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated) {
+                front.add(candidate);
+            }
+        }
+        return front;
+    }
+
+    /**
+     * Pick a parent by tournament: the best of a few random genomes, preferring
+     * non-dominated ones and then higher win rates.
+     * @param scored The scored population.
+     * @return The selected genome.
+     */
+    private Genome select(List<Scored> scored) {
+        Scored best = scored.get(random.nextInt(scored.size()));
+        for (int i = 1; i < TOURNAMENT_SIZE; i++) {
+            Scored other = scored.get(random.nextInt(scored.size()));
+            if (other.fitness.dominates(best.fitness)
+                || (!best.fitness.dominates(other.fitness) && other.fitness.winRate > best.fitness.winRate)) {
+                best = other;
+            }
+        }
+        return best.genome;
+    }
+
+    /**
+     * Create a random genome.
+     * @return A genome with uniformly random genes.
+     */
+    private Genome randomGenome() {
+        int[] genes = new int[registry.size() + 2];
+        for (int i = 0; i < genes.length; i++) {
+            genes[i] = random.nextInt(MAX_PREFERENCE + 1);
+        }
+        return new Genome(genes);
+    }
+
+    /**
+     * Combine two genomes with uniform crossover.
+     * @param a The first parent.
+     * @param b The second parent.
+     * @return The child genome.
+     */
+    private Genome crossover(Genome a, Genome b) {
+        int[] genes = new int[a.genes.length];
+        for (int i = 0; i < genes.length; i++) {
+            genes[i] = random.nextBoolean() ? a.genes[i] : b.genes[i];
+        }
+        return new Genome(genes);
+    }
+
+    /**
+     * Nudge some genes of a genome up or down by one.
+     * @param genome The genome to mutate.
+     * @return The mutated genome.
+     */
+    private Genome mutate(Genome genome) {
+        int[] genes = genome.genes.clone();
+        for (int i = 0; i < genes.length; i++) {
+            if (random.nextDouble() < MUTATION_RATE) {
+                genes[i] = Math.max(0, Math.min(MAX_PREFERENCE, genes[i] + (random.nextBoolean() ? 1 : -1)));
+            }
+        }
+        return new Genome(genes);
+    }
+
+    /**
+     * Describe a genome's preferred picks in terms of the registry.
+     * @param genome The genome.
+     * @return A short description of the genome.
+     */
+    String describe(Genome genome) {
+        StringBuilder sb = new StringBuilder();
+        for (Class<? extends BattleModifier> type : List.of(Tactic.class, Relic.class, Gambit.class)) {
+            int best = -1;
+            for (int i = 0; i < registry.size(); i++) {
+                if (type.isAssignableFrom(registry.get(i))
+                    && (best < 0 || genome.genes[i] > genome.genes[best])) {
+                    best = i;
+                }
+            }
+            sb.append(type.getSimpleName()).append('=')
+              .append(best < 0 ? "None" : registry.get(best).getSimpleName()).append(' ');
+        }
+        return sb.append("swap>").append(genome.swapMargin())
+                 .append(" discard<").append(genome.discardThreshold()).toString();
+    }
+
+    /**
+     * Optimize the loadout policy of every champion in the roster.
+     * @param args An optional plugin folder, the number of generations, the population
+     *             size and the number of matches per opponent.
+     */
+    public static void main(String[] args) {
+        final String folder = args.length > 0 && !args[0].isEmpty() ? args[0] : null;
+        final int generations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final int population = args.length > 2 ? Integer.parseInt(args[2]) : 24;
+        final int matches = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        ModifierVault vault = ModifierVault.initialize(folder);
+        Set<Class<? extends Champion>> roster = new LinkedHashSet<>();
+        roster.add(TrainingDummy.class);
+        roster.add(AdvancedTrainingDummy.class);
+        if (folder != null) {
+            roster.addAll(new DynamicClassLoader(folder).getSubtypesOf(Champion.class));
+        }
+
+        LoadoutOptimizer optimizer = new LoadoutOptimizer(vault, new ArrayList<>(roster), matches, 42L);
+        optimizer.setProgressListener(p -> System.out.println("  " + p));
+        for (Class<? extends Champion> champion : roster) {
+            System.out.println("Optimizing " + champion.getSimpleName() + "...");
+            List<Scored> front = optimizer.evolve(champion, generations, population);
+            System.out.println("Pareto front (win rate vs variance across opponents):");
+            Set<String> printed = new LinkedHashSet<>();
+            for (Scored s : front) {
+                printed.add(String.format("  win %.3f  var %.4f  %s",
+                    s.fitness.winRate, s.fitness.variance, optimizer.describe(s.genome)));
+            }
+            printed.forEach(System.out::println);
+        }
+    }
+
+    /**
+     * A loadout policy genome: one preference per registry class, then the swap margin
+     * and the discard threshold.
+     */
+    static final class Genome {
+        final int[] genes;
+
+        Genome(int[] genes) {
+            this.genes = genes;
+        }
+
+        int preference(int registryIndex) {
+            return genes[registryIndex];
+        }
+
+        int swapMargin() {
+            return genes[genes.length - 2];
+        }
+
+        int discardThreshold() {
+            return genes[genes.length - 1];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Genome && Arrays.equals(genes, ((Genome) o).genes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(genes);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int g : genes) {
+                sb.append(g);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * What one generation of evolve came to.
+     */
+    public static final class Progress {
+        /**
+         * The number of the generation, from 1.
+         */
+        public final int generation;
+
+        /**
+         * The best win rate in the population.
+         */
+        public final double bestWinRate;
+
+        /**
+         * The number of genomes on the Pareto front.
+         */
+        public final int frontSize;
+
+        /**
+         * The number of genomes evaluated so far, across generations.
+         */
+        public final int evaluations;
+
+        Progress(int generation, double bestWinRate, int frontSize, int evaluations) {
+            this.generation = generation;
+            this.bestWinRate = bestWinRate;
+            this.frontSize = frontSize;
+            this.evaluations = evaluations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Generation %d: best win rate %.3f, front size %d, %d genomes evaluated",
+                generation, bestWinRate, frontSize, evaluations);
+        }
+    }
+
+    /**
+     * The two objectives of a genome.
+     */
+    static final class Fitness {
+        final double winRate;
+        final double variance;
+
+        Fitness(double winRate, double variance) {
+            this.winRate = winRate;
+            this.variance = variance;
+        }
+
+        /**
+         * Check if this fitness is at least as good on both objectives and better on one.
+         * @param other The other fitness.
+         * @return true if this fitness Pareto-dominates the other.
+         */
+        boolean dominates(Fitness other) {
+            return winRate >= other.winRate && variance <= other.variance
+                && (winRate > other.winRate || variance < other.variance);
+        }
+    }
+
+    /**
+     * A genome together with its fitness.
+     */
+    static final class Scored {
+        final Genome genome;
+        final Fitness fitness;
+
+        Scored(Genome genome, Fitness fitness) {
+            this.genome = genome;
+            this.fitness = fitness;
+        }
+    }
+
+    /**
+     * A greedy bot whose loadout decisions follow a genome.
+     */
+    static final class GenomeController extends GreedyChampionController {
+        private final Genome genome;
+        private final Map<Class<?>, Integer> registryIndex;
+
+        GenomeController(Genome genome, Map<Class<?>, Integer> registryIndex, long seed) {
+            super(seed);
+            this.genome = genome;
+            this.registryIndex = registryIndex;
+        }
+
+        /**
+         * Get the genome's preference for a modifier. Modifiers that are not in the
+         * registry have no preference.
+         * @param mod The modifier, or null for an empty slot.
+         * @return The preference, or -1 for an empty slot.
+         */
+        private int preference(BattleModifier mod) {
+            if (mod == null) {
+                return -1;
+            }
+            final Integer index = registryIndex.get(mod.getClass());
+            return index == null ? 0 : genome.preference(index);
+        }
+
+        @Override
+        protected void selectInitialLoadoutFor(Champion champ) {
+            final Loadout loadout = champ.getLoadout();
+            final BattleModifier tactic = mostPreferred(champ.getArsenal(), Tactic.class);
+            if (tactic != null) {
+                loadout.swapTactic((Tactic) tactic);
+                champ.getArsenal().discard(tactic);
+            }
+            final BattleModifier relic = mostPreferred(champ.getArsenal(), Relic.class);
+            if (relic != null) {
+                loadout.swapRelic((Relic) relic);
+                champ.getArsenal().discard(relic);
+            }
+            final BattleModifier gambit = mostPreferred(champ.getArsenal(), Gambit.class);
+            if (gambit != null) {
+                loadout.swapPocketedGambit((Gambit) gambit);
+                champ.getArsenal().discard(gambit);
+            }
+        }
+
+        private BattleModifier mostPreferred(Arsenal arsenal, Class<? extends BattleModifier> type) {
+            BattleModifier best = null;
+            for (int i = 0; i < arsenal.size(); i++) {
+                final BattleModifier mod = arsenal.getSlot(i);
+                if (type.isInstance(mod) && preference(mod) > preference(best)) {
+                    best = mod;
+                }
+            }
+            return best;
+        }
+
+        @Override
+        protected BattleModifier chooseSwap(Champion self, BattleContext context) {
+            final Arsenal arsenal = self.getArsenal();
+            final Loadout loadout = self.getLoadout();
+            BattleModifier best = null;
+            int bestGain = genome.swapMargin();
+            for (int i = 0; i < arsenal.size(); i++) {
+                final BattleModifier candidate = arsenal.getSlot(i);
+                final BattleModifier current;
+                if (candidate instanceof Tactic) {
+                    current = loadout.getTactic();
+                } else if (candidate instanceof Relic) {
+                    current = loadout.getRelic();
+                } else if (candidate instanceof Gambit) {
+                    current = loadout.getPocketedGambit();
+                    if (current != null && ((Gambit) current).isActivated()) continue;
+                    if (((Gambit) candidate).isActivated()) continue;
+                } else {
+                    continue;
+                }
+                if (candidate == current) continue;
+                final int gain = preference(candidate) - Math.max(preference(current), 0);
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    best = candidate;
+                }
+            }
+            return best;
+        }
+
+        @Override
+        protected BattleModifier chooseDiscard(Champion self, BattleModifier keep, BattleContext context) {
+            final Arsenal arsenal = self.getArsenal();
+            if (!arsenal.isFull()) {
+                return null;
+            }
+            BattleModifier worst = null;
+            for (int i = 0; i < arsenal.size(); i++) {
+                final BattleModifier mod = arsenal.getSlot(i);
+                if (mod != keep && (worst == null || preference(mod) < preference(worst))) {
+                    worst = mod;
+                }
+            }
+            return worst != null && preference(worst) < genome.discardThreshold() ? worst : null;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A LogArchive is a column-oriented file of the battle logs of many matches, for
+ * analysis that would otherwise parse the text of each entry.
+ *
+ * Entries are written in blocks of up to BLOCK_ENTRIES. Each block stores every
+ * field as its own column: the match, round, entry type, actor, target, action name,
+ * numeric amount and description. Strings are dictionary-encoded per block, so a
+ * repeated name or description costs one varint per entry. A block header holds
+ * the byte length of each column, so a reader that only needs some columns skips
+ * the others without decoding them. The writer only holds one block in memory,
+ * however many matches it writes.
+ *
+ * The file is the magic bytes {'B', 'L', 1} followed by blocks of
+ * [entries int][column length int per column][column data...].
+ */
+public class LogArchive {
+    /**
+     * The most entries in one block.
+     */
+    public static final int BLOCK_ENTRIES = 1 << 16;
+
+    private static final byte[] MAGIC = {'B', 'L', 1};
+
+    /**
+     * A column of the archive.
+     */
+    public enum Column {
+        /** The match the entry belongs to, as given to Writer.write. */
+        MATCH,
+        /** The round in which the entry occurred. */
+        ROUND,
+        /** The entry type. */
+        TYPE,
+        /** The name of the champion who acted, or null. */
+        ACTOR,
+        /** The name of the champion who was targeted, or null. */
+        TARGET,
+        /** The name of the action. */
+        ACTION,
+        /** The amount of damage, healing or other effect, or 0. */
+        AMOUNT,
+        /** The description of the entry. */
+        DESCRIPTION
+    }
+
+    private static final Column[] COLUMNS = Column.values();
+    private static final int HEADER = 4 + 4 * COLUMNS.length;
+    private static final BattleLog.EntryType[] TYPES = BattleLog.EntryType.values();
+
+    private LogArchive() {
+    }
+
+    /**
+     * Writes battle logs to an archive file, one block at a time.
+     */
+    public static final class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final long[] matches = new long[BLOCK_ENTRIES];
+        private final int[] rounds = new int[BLOCK_ENTRIES];
+        private final byte[] types = new byte[BLOCK_ENTRIES];
+        private final int[] amounts = new int[BLOCK_ENTRIES];
+        private final Dictionary actors = new Dictionary();
+        private final Dictionary targets = new Dictionary();
+        private final Dictionary actions = new Dictionary();
+        private final Dictionary descriptions = new Dictionary();
+        private int size;
+
+        /**
+         * Create a new archive, replacing any file already there.
+         * @param file The file.
+         * @throws IOException if the file cannot be created.
+         */
+        public Writer(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                            StandardOpenOption.TRUNCATE_EXISTING);
+            writeFully(ByteBuffer.wrap(MAGIC));
+        }
+
+        /**
+         * Append the entries of one match's log.
+         * @param match An id for the match, such as its seed.
+         * @param log The match's log.
+         * @throws UncheckedIOException if a block cannot be written.
+         */
+        public synchronized void write(long match, BattleLog log) {
+            for (BattleLog.Entry e : log.getLog()) {
+                matches[size] = match;
+                rounds[size] = e.round;
+                types[size] = (byte) e.type.ordinal();
+                amounts[size] = e.amount;
+                actors.add(size, e.actor == null ? null : e.actor.getName());
+                targets.add(size, e.target == null ? null : e.target.getName());
+                actions.add(size, e.actionName);
+                descriptions.add(size, e.description);
+                if (++size == BLOCK_ENTRIES) {
+                    flush();
+                }
+            }
+        }
+
+        private void flush() {
+            if (size == 0) {
+                return;
+            }
+            final ByteArrayOutputStream[] columns = new ByteArrayOutputStream[COLUMNS.length];
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = new ByteArrayOutputStream(size * 2);
+            }
+            long previous = 0;
+            for (int i = 0; i < size; i++) {
+                Replay.putVarint(columns[Column.MATCH.ordinal()], Replay.zigzag(matches[i] - previous));
+                previous = matches[i];
+                Replay.putVarint(columns[Column.ROUND.ordinal()], rounds[i]);
+                columns[Column.TYPE.ordinal()].write(types[i]);
+                Replay.putVarint(columns[Column.AMOUNT.ordinal()], Replay.zigzag(amounts[i]));
+            }
+            actors.writeTo(columns[Column.ACTOR.ordinal()], size);
+            targets.writeTo(columns[Column.TARGET.ordinal()], size);
+            actions.writeTo(columns[Column.ACTION.ordinal()], size);
+            descriptions.writeTo(columns[Column.DESCRIPTION.ordinal()], size);
+
+            final ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(size);
+            for (ByteArrayOutputStream column : columns) {
+                header.putInt(column.size());
+            }
+            try {
+                writeFully(header.flip());
+                for (ByteArrayOutputStream column : columns) {
+                    writeFully(ByteBuffer.wrap(column.toByteArray()));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            size = 0;
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        /**
+         * Write the last block and close the file.
+         * @throws IOException if the file cannot be written.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                flush();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * The strings of one column of the block being written, numbered in the order
+     * they were first seen. Id 0 is null.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final String[] strings = new String[BLOCK_ENTRIES + 1];
+        private final int[] values = new int[BLOCK_ENTRIES];
+
+        void add(int row, String s) {
+            if (s == null) {
+                values[row] = 0;
+                return;
+            }
+            Integer id = ids.get(s);
+            if (id == null) {
+                id = ids.size() + 1;
+                ids.put(s, id);
+                strings[id] = s;
+            }
+            values[row] = id;
+        }
+
+        void writeTo(ByteArrayOutputStream out, int rows) {
+            Replay.putVarint(out, ids.size());
+            for (int id = 1; id <= ids.size(); id++) {
+                Replay.putBytes(out, strings[id].getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < rows; i++) {
+                Replay.putVarint(out, values[i]);
+            }
+            Arrays.fill(strings, 1, ids.size() + 1, null);
+            ids.clear();
+        }
+    }
+
+    /**
+     * Reads an archive one block at a time, decoding only the columns asked for.
+     */
+    public static final class Reader implements AutoCloseable {
+        private final FileChannel channel;
+        private final Set<Column> columns;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER);
+        private ByteBuffer buffer = ByteBuffer.allocate(0);
+        private long bytesRead;
+
+        /**
+         * Open an archive.
+         * @param file The file.
+         * @param columns The columns to read. Reading any other column of a block fails.
+         * @throws IOException if the file cannot be read.
+         * @throws IllegalArgumentException if the file is not a log archive.
+         */
+        public Reader(Path file, Set<Column> columns) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.columns = EnumSet.copyOf(columns);
+            final ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            if (!readFully(magic) || !Arrays.equals(magic.array(), MAGIC)) {
+                channel.close();
+                throw new IllegalArgumentException("Not a log archive: " + file);
+            }
+        }
+
+        /**
+         * Read the next block.
+         * @return The block, or null at the end of the archive.
+         * @throws IOException if the file cannot be read.
+         * @throws IllegalArgumentException if the archive is corrupt.
+         */
+        public Block next() throws IOException {
+            header.clear();
+            if (!readFully(header)) {
+                return null;
+            }
+            header.flip();
+            final Block block = new Block(header.getInt());
+            try {
+                for (Column c : COLUMNS) {
+                    final int length = header.getInt();
+                    if (!columns.contains(c)) {
+                        channel.position(channel.position() + length);
+                        continue;
+                    }
+                    if (buffer.capacity() < length) {
+                        buffer = ByteBuffer.allocate(length);
+                    }
+                    buffer.clear().limit(length);
+                    if (!readFully(buffer)) {
+                        throw new EOFException("Truncated log archive");
+                    }
+                    bytesRead += length;
+                    block.decode(c, buffer.flip());
+                }
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Corrupt log archive", e);
+            }
+            return block;
+        }
+
+        /**
+         * Get the number of column bytes read so far, which does not count skipped columns.
+         * @return The number of bytes.
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        private boolean readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Close the file.
+         * @throws IOException if the file cannot be closed.
+         */
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * The decoded columns of one block of entries.
+     */
+    public static final class Block {
+        private final int size;
+        private long[] matches;
+        private int[] rounds;
+        private byte[] types;
+        private int[] amounts;
+        private final String[][] dictionaries = new String[COLUMNS.length][];
+        private final int[][] ids = new int[COLUMNS.length][];
+
+        private Block(int size) {
+            this.size = size;
+        }
+
+        private void decode(Column column, ByteBuffer in) {
+            switch (column) {
+                case MATCH:
+                    matches = new long[size];
+                    long match = 0;
+                    for (int i = 0; i < size; i++) {
+                        match += Replay.unzigzag(Replay.getVarint(in));
+                        matches[i] = match;
+                    }
+                    break;
+                case ROUND:
+                    rounds = new int[size];
+                    for (int i = 0; i < size; i++) {
+                        rounds[i] = (int) Replay.getVarint(in);
+                    }
+                    break;
+                case TYPE:
+                    types = new byte[size];
+                    in.get(types);
+                    break;
+                case AMOUNT:
+                    amounts = new int[size];
+                    for (int i = 0; i < size; i++) {
+                        amounts[i] = (int) Replay.unzigzag(Replay.getVarint(in));
+                    }
+                    break;
+                default:
+                    final String[] dictionary = new String[(int) Replay.getVarint(in) + 1];
+                    for (int id = 1; id < dictionary.length; id++) {
+                        dictionary[id] = new String(Replay.getBytes(in), StandardCharsets.UTF_8);
+                    }
+                    final int[] values = new int[size];
+                    for (int i = 0; i < size; i++) {
+                        values[i] = (int) Replay.getVarint(in);
+                    }
+                    dictionaries[column.ordinal()] = dictionary;
+                    ids[column.ordinal()] = values;
+            }
+        }
+
+        private static <T> T check(T column, Column name) {
+            if (column == null) {
+                throw new IllegalStateException("The " + name + " column was not read");
+            }
+            return column;
+        }
+
+        private String string(Column column, int i) {
+            return check(dictionaries[column.ordinal()], column)[ids[column.ordinal()][i]];
+        }
+
+        /**
+         * @return The number of entries in the block.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param i The entry's index in the block.
+         * @return The entry's match.
+         */
+        public long getMatch(int i) {
+            return check(matches, Column.MATCH)[i];
+        }
+
+        /**
+         * @param i The entry's index in the block.
+         * @return The entry's round.
+         */
+        public int getRound(int i) {
+            return check(rounds, Column.ROUND)[i];
+        }
+
+        /**
+         * @param i The entry's index in the block.
+         * @return The entry's type.
+         */
+        public BattleLog.EntryType getType(int i) {
+            return TYPES[check(types, Column.TYPE)[i]];
+        }
+
+        /**
+         * @param i The entry's index in the block.
+         * @return The name of the champion who acted, or null.
+         */
+        public String getActor(int i) {
+            return string(Column.ACTOR, i);
+        }
+
+        /**
+         * @param i The entry's index in the block.
+         * @return The name of the champion who was targeted, or null.
+         */
+        public String getTarget(int i) {
+            return string(Column.TARGET, i);
+        }
+
+        /**
+         * @param i The entry's index in the block.
+         * @return The name of the action.
+         */
+        public String getAction(int i) {
+            return string(Column.ACTION, i);
+        }
+
+        /**
+         * @param i The entry's index in the block.
+         * @return The entry's amount of damage, healing or other effect.
+         */
+        public int getAmount(int i) {
+            return check(amounts, Column.AMOUNT)[i];
+        }
+
+        /**
+         * @param i The entry's index in the block.
+         * @return The entry's description.
+         */
+        public String getDescription(int i) {
+            return string(Column.DESCRIPTION, i);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * MatchCheckpoints is a write-ahead file of checkpoints for live matches, so that a
+ * MatchHost can resume its matches after the process dies. Each match appends a
+ * record when it starts, a MatchSnapshot at the start of every round and a record
+ * when it ends. On restart, every match that started but did not end can be resumed
+ * from its latest checkpoint without re-running the earlier rounds.
+ *
+ * Every record is a length, a CRC-32 and a payload, so a record that was only partly
+ * written when the process died is detected and cut off when the file is next
+ * opened. Records are appended by copying them into a memory-mapped region of the
+ * file, so an append is a memory copy rather than a system call. The mapped pages
+ * belong to the operating system, which is enough to survive the process dying;
+ * call sync to also survive the machine losing power. Once the file has grown to
+ * several times the size of the live matches' latest checkpoints, it is compacted
+ * down to those checkpoints.
+ */
+public class MatchCheckpoints implements AutoCloseable {
+    private static final byte[] MAGIC = {'C', 'W', 1};
+    private static final byte BEGIN = 1;
+    private static final byte CHECKPOINT = 2;
+    private static final byte END = 3;
+    private static final int COMPACT_FACTOR = 4;         // Compact when the file is this many times the live size
+    private static final long COMPACT_MINIMUM = 1 << 20;
+    private static final int REGION_SIZE = 4 << 20;      // Bytes mapped at a time for appending
+
+    private final Path file;
+    private final Map<Long, InFlight> live = new LinkedHashMap<>();
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private MappedByteBuffer region;   // Mapped from the end of the last record onwards
+    private long size;
+    private long liveSize;   // Bytes the live matches' latest records would take after compacting
+
+    /**
+     * Constructor for MatchCheckpoints, which reads any matches that were in flight
+     * when the file was last written and cuts off a torn record at its end.
+     * @param file The checkpoint file, which is created if it does not exist.
+     * @throws IOException if the file cannot be read or opened.
+     * @throws IllegalArgumentException if the file is not a checkpoint file.
+     */
+    public MatchCheckpoints(Path file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            channel.write(ByteBuffer.wrap(MAGIC));
+            size = MAGIC.length;
+        } else {
+            size = load();
+            // The unused end of the last mapped region is zeros; anything else is a torn record
+            final ByteBuffer next = ByteBuffer.allocate(4);
+            if (channel.read(next, size) == 4 && next.getInt(0) != 0) {
+                System.err.println("Warning: dropping a torn checkpoint record at the end of " + file);
+            }
+            channel.truncate(size);
+        }
+        region = channel.map(FileChannel.MapMode.READ_WRITE, size, REGION_SIZE);
+    }
+
+    /**
+     * Record that a match has started.
+     * @param id The match's unique id.
+     * @param seed The match's seed, which seeds its draws and turn order.
+     * @param playerA The name of the first player.
+     * @param playerB The name of the second player.
+     * @param championA The class of the first champion.
+     * @param championB The class of the second champion.
+     * @throws UncheckedIOException if the record could not be written.
+     */
+    public synchronized void begin(long id, long seed, String playerA, String playerB,
+                                   Class<? extends Champion> championA, Class<? extends Champion> championB) {
+        final InFlight match = new InFlight(id, seed, playerA, playerB, championA.getName(), championB.getName());
+        live.put(id, match);
+        final ByteBuffer record = match.beginRecord();
+        match.bytes = 8 + record.remaining();
+        liveSize += match.bytes;
+        append(record);
+    }
+
+    /**
+     * Record the state of a match at the start of a round.
+     * @param id The match's id.
+     * @param snapshot The match state.
+     * @param logPosition The number of entries in the match's log so far.
+     * @throws UncheckedIOException if the record could not be written.
+     */
+    public synchronized void checkpoint(long id, MatchSnapshot snapshot, int logPosition) {
+        final InFlight match = live.get(id);
+        if (match == null) {
+            throw new IllegalStateException("Match " + id + " has not begun");
+        }
+        match.checkpoint = snapshot;
+        match.logPosition = logPosition;
+        final ByteBuffer record = match.checkpointRecord();
+        liveSize += 8 + record.remaining() - match.checkpointBytes;
+        match.checkpointBytes = 8 + record.remaining();
+        append(record);
+    }
+
+    /**
+     * Record that a match has ended, so that it is not resumed.
+     * @param id The match's id.
+     * @throws UncheckedIOException if the record could not be written.
+     */
+    public synchronized void end(long id) {
+        final InFlight match = live.remove(id);
+        if (match != null) {
+            liveSize -= match.bytes + match.checkpointBytes;
+            final ByteBuffer record = ByteBuffer.allocate(9);
+            record.put(END).putLong(id).flip();
+            append(record);
+        }
+    }
+
+    /**
+     * Get the matches that have started but not ended.
+     * @return The matches, in the order they started.
+     */
+    public synchronized List<InFlight> getInFlight() {
+        return new ArrayList<>(live.values());
+    }
+
+    /**
+     * Force every record written so far to the storage device.
+     * @throws IOException if the file could not be synced.
+     */
+    public synchronized void sync() throws IOException {
+        region.force();
+    }
+
+    /**
+     * Sync and close the checkpoint file.
+     * @throws IOException if the file could not be synced or closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            region.force();
+            region = null;
+            channel.truncate(size);
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    private void append(ByteBuffer payload) {
+        try {
+            final ByteBuffer record = frame(payload);
+            if (record.remaining() > region.remaining()) {
+                region = channel.map(FileChannel.MapMode.READ_WRITE, size, Math.max(REGION_SIZE, record.remaining()));
+            }
+            size += record.remaining();
+            region.put(record);
+            if (size > COMPACT_MINIMUM && size > COMPACT_FACTOR * (MAGIC.length + liveSize)) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write to " + file, e);
+        }
+    }
+
+    /**
+     * Add the length and checksum in front of a record's payload.
+     * @return The whole record.
+     */
+    private ByteBuffer frame(ByteBuffer payload) {
+        crc.reset();
+        crc.update(payload.duplicate());
+        final ByteBuffer record = ByteBuffer.allocate(8 + payload.remaining());
+        record.putInt(payload.remaining()).putInt((int) crc.getValue()).put(payload).flip();
+        return record;
+    }
+
+    /**
+     * Read the file's records, keeping the latest checkpoint of each match that has
+     * not ended.
+     * @return The length of the file up to the end of the last whole record.
+     */
+    private long load() throws IOException {
+        final ByteBuffer in = ByteBuffer.allocate((int) channel.size());
+        while (in.hasRemaining() && channel.read(in, in.position()) >= 0) {
+            // Keep reading until the buffer is full
+        }
+        in.flip();
+        for (byte b : MAGIC) {
+            if (!in.hasRemaining() || in.get() != b) {
+                throw new IllegalArgumentException("Not a checkpoint file: " + file);
+            }
+        }
+        while (in.remaining() >= 8) {
+            final int start = in.position();
+            final int length = in.getInt();
+            final int checksum = in.getInt();
+            if (length <= 0 || length > in.remaining()) {
+                in.position(start);
+                break;
+            }
+            final ByteBuffer payload = in.slice(in.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                in.position(start);
+                break;
+            }
+            in.position(in.position() + length);
+            try {
+                read(payload);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                in.position(start);
+                break;
+            }
+        }
+        return in.position();
+    }
+
+    private void read(ByteBuffer payload) {
+        final byte type = payload.get();
+        final long id = payload.getLong();
+        if (type == BEGIN) {
+            final long seed = payload.getLong();
+            final InFlight match = new InFlight(id, seed, getString(payload), getString(payload),
+                                                getString(payload), getString(payload));
+            match.bytes = 8 + payload.limit();
+            liveSize += match.bytes;
+            live.put(id, match);
+        } else if (type == CHECKPOINT) {
+            final InFlight match = live.get(id);
+            final int logPosition = (int) Replay.getVarint(payload);
+            final byte[] snapshot = new byte[payload.remaining()];
+            payload.get(snapshot);
+            if (match != null) {
+                match.checkpoint = MatchSnapshot.fromBytes(snapshot);
+                match.logPosition = logPosition;
+                liveSize += 8 + payload.limit() - match.checkpointBytes;
+                match.checkpointBytes = 8 + payload.limit();
+            }
+        } else if (type == END) {
+            final InFlight match = live.remove(id);
+            if (match != null) {
+                liveSize -= match.bytes + match.checkpointBytes;
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown checkpoint record " + type);
+        }
+    }
+
+    /**
+     * Rewrite the file with just the live matches' latest records and switch to
+     * appending to it.
+     */
+    private void compact() throws IOException {
+        final Path temp = file.resolveSibling(file.getFileName() + ".compact");
+        long written = MAGIC.length;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.wrap(MAGIC));
+            for (InFlight match : live.values()) {
+                written += out.write(frame(match.beginRecord()));
+                if (match.checkpoint != null) {
+                    written += out.write(frame(match.checkpointRecord()));
+                }
+            }
+            out.force(false);
+        }
+        region = null;
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = written;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, size, REGION_SIZE);
+    }
+
+    private static void putString(ByteArrayOutputStream out, String s) {
+        Replay.putBytes(out, s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String getString(ByteBuffer in) {
+        return new String(Replay.getBytes(in), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A match that started but had not ended when the checkpoint file was written.
+     */
+    public static final class InFlight {
+        /** The match's unique id. */
+        public final long id;
+        /** The match's seed. */
+        public final long seed;
+        /** The name of the first player. */
+        public final String playerA;
+        /** The name of the second player. */
+        public final String playerB;
+        /** The class name of the first champion. */
+        public final String championA;
+        /** The class name of the second champion. */
+        public final String championB;
+        private MatchSnapshot checkpoint;
+        private int logPosition;
+        private long bytes;             // Size of the begin record
+        private long checkpointBytes;   // Size of the latest checkpoint record
+
+        InFlight(long id, long seed, String playerA, String playerB, String championA, String championB) {
+            this.id = id;
+            this.seed = seed;
+            this.playerA = playerA;
+            this.playerB = playerB;
+            this.championA = championA;
+            this.championB = championB;
+        }
+
+        /**
+         * Get the latest checkpoint of the match.
+         * @return The match state at the start of the latest checkpointed round, or
+         *         null if the match had not reached its first checkpoint.
+         */
+        public MatchSnapshot getCheckpoint() {
+            return checkpoint;
+        }
+
+        /**
+         * Get the number of log entries the match had written by its latest checkpoint.
+         * Those entries were only kept in memory and are lost.
+         * @return The log position.
+         */
+        public int getLogPosition() {
+            return logPosition;
+        }
+
+        private ByteBuffer beginRecord() {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+            out.write(BEGIN);
+            out.writeBytes(ByteBuffer.allocate(16).putLong(id).putLong(seed).array());
+            putString(out, playerA);
+            putString(out, playerB);
+            putString(out, championA);
+            putString(out, championB);
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+
+        private ByteBuffer checkpointRecord() {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(320);
+            out.write(CHECKPOINT);
+            out.writeBytes(ByteBuffer.allocate(8).putLong(id).array());
+            Replay.putVarint(out, logPosition);
+            out.writeBytes(checkpoint.toBytes());
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,256 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MatchHost runs the matches made by a MatchmakingQueue. Each match gets its own
+ * BattleEngine on one of the host's threads, with greedy bots standing in for the
+ * two players, and its result is optionally reported to a RatingService.
+ *
+ * With MatchCheckpoints set, every live match is checkpointed at the start of each
+ * round, and after a crash resume carries on every match that was in flight from
+ * its latest checkpoint. The bots of a resumed match are new, so they may not play
+ * the rest of the match exactly as the originals would have.
+ */
+public class MatchHost {
+    private final ModifierVault vault;
+    private final ExecutorService executor;
+    private final LongAdder hosted = new LongAdder();
+    private volatile RatingService ratings;
+    private volatile MatchCheckpoints checkpoints;
+    private volatile PluginWatchdog watchdog;
+    private volatile List<Class<? extends Champion>> champions = List.of();
+    private volatile PluginReloader plugins;
+
+    /**
+     * Constructor for a MatchHost.
+     * @param vault The vault of battle modifiers.
+     * @param threads The number of matches that can run at once.
+     */
+    public MatchHost(ModifierVault vault, int threads) {
+        this.vault = vault;
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "match-host");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Set the rating service that receives every hosted result.
+     * @param ratings The rating service, or null for none.
+     */
+    public void setRatings(RatingService ratings) {
+        this.ratings = ratings;
+    }
+
+    /**
+     * Set the checkpoint file that matches started from now on are checkpointed to.
+     * @param checkpoints The checkpoint file, or null for none.
+     */
+    public void setCheckpoints(MatchCheckpoints checkpoints) {
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * Set the watchdog that matches started from now on run under, so that a plugin
+     * stuck in a loop forfeits its match instead of taking over a host thread.
+     * @param watchdog The watchdog, or null for none.
+     */
+    public void setWatchdog(PluginWatchdog watchdog) {
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * Set the champion classes that resume looks for by name before the application's
+     * class loader, such as the plugin champions of a PluginCatalog, which that loader
+     * cannot see.
+     * @param champions The champion classes.
+     */
+    public void setChampions(List<Class<? extends Champion>> champions) {
+        this.champions = List.copyOf(champions);
+    }
+
+    /**
+     * Set the plugin reloader whose current generation resume looks in for plugin
+     * champions, after the classes given to setChampions. The generation is read
+     * afresh for every match, so matches resumed after a reload find the reloaded
+     * classes.
+     * @param plugins The reloader, or null for none.
+     */
+    public void setPlugins(PluginReloader plugins) {
+        this.plugins = plugins;
+    }
+
+    /**
+     * Start a match between two matched players.
+     * @param match The pair of players.
+     * @return A future completed with the result once the match has been played.
+     */
+    public CompletableFuture<MatchResult> host(MatchmakingQueue.Match match) {
+        final long id = ThreadLocalRandom.current().nextLong();
+        final long seed = match.a.id * 0x9E3779B97F4A7C15L ^ match.b.id;
+        return CompletableFuture.supplyAsync(() -> play(id, seed, match.a.player, match.b.player,
+            match.a.champion, match.b.champion, false, null, 0), executor);
+    }
+
+    /**
+     * Resume every match that was in flight in the checkpoint file when it was last
+     * written, each from its latest checkpoint. Champion classes are found among the
+     * classes given to setChampions, then in the plugin reloader's current generation
+     * (see setPlugins), or else through the application's class loader;
+     * matches whose champion classes cannot be found are skipped with a warning and
+     * left in the file.
+     * @return A future for each resumed match.
+     * @throws IllegalStateException if no checkpoint file has been set.
+     */
+    public List<CompletableFuture<MatchResult>> resume() {
+        final MatchCheckpoints c = checkpoints;
+        if (c == null) {
+            throw new IllegalStateException("No checkpoint file has been set");
+        }
+        final List<CompletableFuture<MatchResult>> resumed = new ArrayList<>();
+        for (MatchCheckpoints.InFlight match : c.getInFlight()) {
+            // Both champions come from the same generation, even if a reload lands in between
+            final PluginReloader p = plugins;
+            final List<Class<? extends Champion>> generation = p == null ? List.of() : p.getGeneration().getChampions();
+            final Class<? extends Champion> classA;
+            final Class<? extends Champion> classB;
+            try {
+                classA = findChampion(match.championA, generation);
+                classB = findChampion(match.championB, generation);
+            } catch (ClassNotFoundException | ClassCastException e) {
+                System.err.println("Warning: cannot resume match " + match.id + ": " + e);
+                continue;
+            }
+            resumed.add(CompletableFuture.supplyAsync(() -> play(match.id, match.seed, match.playerA, match.playerB,
+                classA, classB, true, match.getCheckpoint(), match.getLogPosition()), executor));
+        }
+        return resumed;
+    }
+
+    private Class<? extends Champion> findChampion(String name, List<Class<? extends Champion>> generation)
+            throws ClassNotFoundException {
+        for (Class<? extends Champion> type : champions) {
+            if (type.getName().equals(name)) {
+                return type;
+            }
+        }
+        for (Class<? extends Champion> type : generation) {
+            if (type.getName().equals(name)) {
+                return type;
+            }
+        }
+        return Class.forName(name, false, MatchHost.class.getClassLoader()).asSubclass(Champion.class);
+    }
+
+    /**
+     * Play a match, or the rest of a resumed one.
+     * @param id The match's unique id in the checkpoint file.
+     * @param seed The match's seed.
+     * @param playerA The name of the first player.
+     * @param playerB The name of the second player.
+     * @param classA The first champion's class.
+     * @param classB The second champion's class.
+     * @param resumed Whether the match is being resumed after a crash.
+     * @param checkpoint The checkpoint to resume from, or null to start from the beginning.
+     * @param logPosition The number of log entries written before the checkpoint.
+     * @return The result of the match.
+     */
+    private MatchResult play(long id, long seed, String playerA, String playerB,
+                             Class<? extends Champion> classA, Class<? extends Champion> classB,
+                             boolean resumed, MatchSnapshot checkpoint, int logPosition) {
+        final GreedyChampionController controllerA = new GreedyChampionController(seed);
+        final GreedyChampionController controllerB = new GreedyChampionController(~seed);
+        final MatchCheckpoints c = checkpoints;
+        final BattleLog log = new BattleLog();
+
+        final BattleEngine engine;
+        PluginWatchdog.Forfeit forfeit = null;
+        ModifierVault.setThreadSeed(seed);
+        try {
+            final Champion champA = controllerA.chooseChampion(playerA, List.of(classA)).join();
+            final Champion champB = controllerB.chooseChampion(playerB, List.of(classB)).join();
+            engine = new BattleEngine(champA, champB, log, vault, controllerA, controllerB);
+            engine.setPrintLog(false);
+            engine.setMaxRounds(MatchSimulator.DEFAULT_MAX_ROUNDS);
+            engine.setSeed(seed);
+            if (checkpoint != null) {
+                checkpoint.restore(engine, vault.getRegistry());
+                log.addInfoEntry("Resumed", "Resumed from a checkpoint; the " + logPosition
+                                 + " earlier log entries were lost.", engine.getRound());
+            }
+            if (c != null) {
+                if (!resumed) {
+                    c.begin(id, seed, playerA, playerB, classA, classB);
+                }
+                engine.setListener(new Checkpointer(c, id, log));
+            }
+            final PluginWatchdog w = watchdog;
+            if (w != null) {
+                forfeit = w.runMatch(engine);
+            } else {
+                engine.runMatch();
+            }
+        } finally {
+            ModifierVault.clearThreadSeed();
+        }
+        hosted.increment();
+
+        // An abandoned engine belongs to the thread stuck in it, and never ends
+        final MatchResult result = forfeit != null ? forfeit.toResult(seed) : MatchResult.of(engine, seed);
+        if (forfeit != null && c != null) {
+            c.end(id);
+        }
+        final RatingService r = ratings;
+        if (r != null) {
+            r.report(result, playerA, playerB);
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of matches that have finished.
+     * @return The number of hosted matches.
+     */
+    public long getHosted() {
+        return hosted.sum();
+    }
+
+    /**
+     * Stop accepting matches. Matches that have not started are dropped.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Appends a checkpoint of a match at the start of every round, and marks the
+     * match as ended when it is over.
+     */
+    private final class Checkpointer implements MatchListener {
+        private final MatchCheckpoints checkpoints;
+        private final long id;
+        private final BattleLog log;
+
+        Checkpointer(MatchCheckpoints checkpoints, long id, BattleLog log) {
+            this.checkpoints = checkpoints;
+            this.id = id;
+            this.log = log;
+        }
+
+        @Override
+        public void onRoundStart(BattleEngine engine) {
+            checkpoints.checkpoint(id, MatchSnapshot.capture(engine), log.size());
+        }
+
+        @Override
+        public void onMatchEnd(BattleEngine engine) {
+            checkpoints.end(id);
+        }
+    }
+}
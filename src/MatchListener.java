@@ -0,0 +1,20 @@
+/**
+ * A MatchListener is told about the progress of a match by the BattleEngine, for
+ * example to take snapshots of the match state between rounds. The engine calls the
+ * listener on the thread that runs the match.
+ */
+public interface MatchListener {
+    /**
+     * Called before a round is played, before either controller plans its turn.
+     * @param engine The engine running the match, with getRound() returning the round about to be played.
+     */
+    default void onRoundStart(BattleEngine engine) {
+    }
+
+    /**
+     * Called once the match is over and the winner (if any) has been decided.
+     * @param engine The engine that ran the match.
+     */
+    default void onMatchEnd(BattleEngine engine) {
+    }
+}
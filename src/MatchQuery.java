@@ -0,0 +1,390 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * MatchQuery answers balance questions over the results in a ResultStore, such as
+ * "the win rate of RecklessBurst holders against StoneAmulet holders by round count".
+ * A query filters results, groups them and aggregates each group.
+ *
+ * Every match is seen from both champions' points of view, so fields like CHAMPION,
+ * RELIC and SCORE refer to one champion and the OPPONENT fields to the other. A match
+ * that passes the filters from both points of view counts twice.
+ *
+ * The store's segments are scanned in parallel in column order (see ColumnSegment),
+ * so a query only reads the fields it uses. Filters are pushed down to each
+ * segment's column statistics first, and a segment, or one point of view within
+ * it, is skipped when they show the filters cannot match.
+ */
+public class MatchQuery {
+    /**
+     * A field of a result, seen from one champion's point of view.
+     */
+    public enum Field {
+        /** When the match was played, in milliseconds since the epoch. */
+        TIME(ColumnSegment.Column.TIME, ColumnSegment.Column.TIME),
+        /** The number of rounds played. */
+        ROUNDS(ColumnSegment.Column.ROUNDS, ColumnSegment.Column.ROUNDS),
+        /** The champion's class. */
+        CHAMPION(ColumnSegment.Column.CHAMPION_A, ColumnSegment.Column.CHAMPION_B),
+        /** The champion's starting tactic. */
+        TACTIC(ColumnSegment.Column.TACTIC_A, ColumnSegment.Column.TACTIC_B),
+        /** The champion's starting relic. */
+        RELIC(ColumnSegment.Column.RELIC_A, ColumnSegment.Column.RELIC_B),
+        /** The champion's starting gambit. */
+        GAMBIT(ColumnSegment.Column.GAMBIT_A, ColumnSegment.Column.GAMBIT_B),
+        /** The champion's health at the end of the match. */
+        HEALTH(ColumnSegment.Column.HEALTH_A, ColumnSegment.Column.HEALTH_B),
+        /** The opponent's class. */
+        OPPONENT(ColumnSegment.Column.CHAMPION_B, ColumnSegment.Column.CHAMPION_A),
+        /** The opponent's starting tactic. */
+        OPPONENT_TACTIC(ColumnSegment.Column.TACTIC_B, ColumnSegment.Column.TACTIC_A),
+        /** The opponent's starting relic. */
+        OPPONENT_RELIC(ColumnSegment.Column.RELIC_B, ColumnSegment.Column.RELIC_A),
+        /** The opponent's starting gambit. */
+        OPPONENT_GAMBIT(ColumnSegment.Column.GAMBIT_B, ColumnSegment.Column.GAMBIT_A),
+        /** The opponent's health at the end of the match. */
+        OPPONENT_HEALTH(ColumnSegment.Column.HEALTH_B, ColumnSegment.Column.HEALTH_A),
+        /** The champion's score in half points: 2 for a win, 1 for a draw, 0 for a loss. */
+        SCORE(ColumnSegment.Column.WINNER, ColumnSegment.Column.WINNER);
+
+        private final ColumnSegment.Column[] columns;
+
+        Field(ColumnSegment.Column sideA, ColumnSegment.Column sideB) {
+            this.columns = new ColumnSegment.Column[] {sideA, sideB};
+        }
+
+        /**
+         * @return true if the field holds a class name.
+         */
+        public boolean isName() {
+            return columns[0].isName();
+        }
+    }
+
+    private static final int KEY_BITS = 21;     // Bits of each grouped field in a group key
+    private static final int MAX_GROUP_FIELDS = 3;
+
+    private final ResultStore store;
+    private final List<Filter> filters = new ArrayList<>();
+    private final List<Field> groupFields = new ArrayList<>();
+    private final List<Long> groupWidths = new ArrayList<>();
+    private Field averaged;
+    private boolean empty;          // A filter names a class that was never stored
+    private final LongAdder segmentsSkipped = new LongAdder();
+
+    /**
+     * Constructor for a query over every result in a store.
+     * @param store The store.
+     */
+    public MatchQuery(ResultStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Only keep results where a field is within a range.
+     * @param field The field.
+     * @param min The smallest value to keep.
+     * @param max The largest value to keep.
+     * @return This query.
+     */
+    public MatchQuery where(Field field, long min, long max) {
+        filters.add(new Filter(field, min, max));
+        return this;
+    }
+
+    /**
+     * Only keep results where a class name field is a given class.
+     * @param field The field, which must hold class names.
+     * @param className The class name, or null for an empty loadout slot.
+     * @return This query.
+     * @throws IllegalArgumentException if the field does not hold class names.
+     */
+    public MatchQuery where(Field field, String className) {
+        if (!field.isName()) {
+            throw new IllegalArgumentException(field + " does not hold class names");
+        }
+        final int id = className == null ? 0 : store.idOf(className);
+        if (id < 0) {
+            empty = true;
+        }
+        return where(field, id, id);
+    }
+
+    /**
+     * Group results by a field.
+     * @param field The field.
+     * @return This query.
+     */
+    public MatchQuery groupBy(Field field) {
+        return groupBy(field, 1);
+    }
+
+    /**
+     * Group results by a field, in buckets of a given width (for example 5 rounds, or
+     * a day of TIME).
+     * @param field The field.
+     * @param width The width of each bucket.
+     * @return This query.
+     * @throws IllegalArgumentException if the width is not positive or there are
+     *         already three grouped fields.
+     */
+    public MatchQuery groupBy(Field field, long width) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("The bucket width must be positive: " + width);
+        }
+        if (groupFields.size() == MAX_GROUP_FIELDS) {
+            throw new IllegalArgumentException("At most " + MAX_GROUP_FIELDS + " fields can be grouped");
+        }
+        groupFields.add(field);
+        groupWidths.add(width);
+        return this;
+    }
+
+    /**
+     * Also average a field in each group.
+     * @param field The field.
+     * @return This query.
+     */
+    public MatchQuery average(Field field) {
+        this.averaged = field;
+        return this;
+    }
+
+    /**
+     * Get the number of segments the last run skipped using their column statistics.
+     * @return The number of skipped segments.
+     */
+    public long getSegmentsSkipped() {
+        return segmentsSkipped.sum();
+    }
+
+    /**
+     * Run the query.
+     * @return One row per group, in order of their keys.
+     * @throws IllegalArgumentException if a grouped value does not fit in a group key.
+     */
+    public List<Row> run() {
+        segmentsSkipped.reset();
+        if (empty) {
+            return List.of();
+        }
+        final Groups groups = IntStream.range(0, store.getSegments()).parallel()
+            .mapToObj(n -> scan(store.columns(n)))
+            .reduce(Groups::merge)
+            .orElseGet(Groups::new);
+        return groups.rows();
+    }
+
+    /**
+     * Scan one segment from each point of view that its statistics do not rule out.
+     */
+    private Groups scan(ColumnSegment segment) {
+        final Groups groups = new Groups();
+        final Filter[] filters = this.filters.toArray(new Filter[0]);
+        final Field[] grouped = groupFields.toArray(new Field[0]);
+        final long[] widths = groupWidths.stream().mapToLong(Long::longValue).toArray();
+        boolean scanned = false;
+        for (int side = 0; side < 2; side++) {
+            if (!mightMatch(segment, side)) {
+                continue;
+            }
+            scanned = true;
+            rows:
+            for (int row = 0; row < segment.rows; row++) {
+                for (Filter f : filters) {
+                    final long v = value(segment, f.field, side, row);
+                    if (v < f.min || v > f.max) {
+                        continue rows;
+                    }
+                }
+                long key = 0;
+                for (int g = 0; g < grouped.length; g++) {
+                    final long bucket = Math.floorDiv(value(segment, grouped[g], side, row), widths[g]);
+                    if (bucket < 0 || bucket >= 1L << KEY_BITS) {
+                        throw new IllegalArgumentException("Cannot group " + grouped[g]
+                            + " by " + widths[g] + ": use a wider bucket");
+                    }
+                    key = (key << KEY_BITS) | bucket;
+                }
+                groups.add(key, value(segment, Field.SCORE, side, row),
+                           averaged == null ? 0 : value(segment, averaged, side, row));
+            }
+        }
+        if (!scanned) {
+            segmentsSkipped.increment();
+        }
+        return groups;
+    }
+
+    private boolean mightMatch(ColumnSegment segment, int side) {
+        for (Filter f : filters) {
+            if (f.field == Field.SCORE) {
+                continue;
+            }
+            final ColumnSegment.Column column = f.field.columns[side];
+            if (f.min == f.max ? !segment.mightContain(column, f.min)
+                               : f.max < segment.min(column) || f.min > segment.max(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long value(ColumnSegment segment, Field field, int side, int row) {
+        final long v = segment.get(field.columns[side], row);
+        if (field == Field.SCORE) {
+            return v == MatchResult.DRAW ? 1 : (v == side ? 2 : 0);
+        }
+        return v;
+    }
+
+    /**
+     * A range filter on a field.
+     */
+    private static final class Filter {
+        final Field field;
+        final long min;
+        final long max;
+
+        Filter(Field field, long min, long max) {
+            this.field = field;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    /**
+     * One group of a query's results.
+     */
+    public static final class Row {
+        /**
+         * The grouped values, in the order they were grouped by: class names (null
+         * for an empty slot) for class name fields, otherwise the start of the bucket.
+         */
+        public final List<Object> key;
+        /**
+         * The number of results in the group, counting each point of view.
+         */
+        public final long count;
+        /**
+         * The share of points won in the group, counting a draw as half.
+         */
+        public final double winRate;
+        /**
+         * The average of the averaged field, or 0 if no field was averaged.
+         */
+        public final double average;
+
+        Row(List<Object> key, long count, double winRate, double average) {
+            this.key = key;
+            this.count = count;
+            this.winRate = winRate;
+            this.average = average;
+        }
+
+        /**
+         * @return A string representation of the row.
+         */
+        @Override
+        public String toString() {
+            return String.format("%s: %d results, %.1f%% win rate, average %.2f", key, count, 100 * winRate, average);
+        }
+    }
+
+    /**
+     * Aggregates per group key, in an open-addressing hash table so that adding a
+     * result does not allocate.
+     */
+    private final class Groups {
+        private long[] keys = new long[16];
+        private long[] counts = new long[16];
+        private long[] scores = new long[16];
+        private long[] sums = new long[16];
+        private boolean[] used = new boolean[16];
+        private int size;
+
+        void add(long key, long score, long value) {
+            final int slot = slot(key);
+            counts[slot]++;
+            scores[slot] += score;
+            sums[slot] += value;
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (!used[slot]) {
+                if (2 * (size + 1) > keys.length) {
+                    grow();
+                    return slot(key);
+                }
+                used[slot] = true;
+                keys[slot] = key;
+                size++;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            final long[] oldKeys = keys;
+            final long[] oldCounts = counts;
+            final long[] oldScores = scores;
+            final long[] oldSums = sums;
+            final boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            counts = new long[keys.length];
+            scores = new long[keys.length];
+            sums = new long[keys.length];
+            used = new boolean[keys.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    final int slot = slot(oldKeys[i]);
+                    counts[slot] = oldCounts[i];
+                    scores[slot] = oldScores[i];
+                    sums[slot] = oldSums[i];
+                }
+            }
+        }
+
+        Groups merge(Groups other) {
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.used[i]) {
+                    final int slot = slot(other.keys[i]);
+                    counts[slot] += other.counts[i];
+                    scores[slot] += other.scores[i];
+                    sums[slot] += other.sums[i];
+                }
+            }
+            return this;
+        }
+
+        List<Row> rows() {
+            final List<long[]> entries = new ArrayList<>();
+            for (int i = 0; i < keys.length; i++) {
+                if (used[i]) {
+                    entries.add(new long[] {keys[i], counts[i], scores[i], sums[i]});
+                }
+            }
+            entries.sort(Comparator.comparingLong(e -> e[0]));
+            final List<Row> rows = new ArrayList<>();
+            for (long[] e : entries) {
+                final Object[] key = new Object[groupFields.size()];
+                for (int g = groupFields.size() - 1, shift = 0; g >= 0; g--, shift += KEY_BITS) {
+                    final long bucket = (e[0] >>> shift) & ((1L << KEY_BITS) - 1);
+                    key[g] = groupFields.get(g).isName() ? store.name((int) bucket)
+                                                         : (Object) (bucket * groupWidths.get(g));
+                }
+                rows.add(new Row(Arrays.asList(key), e[1], e[2] / (2.0 * e[1]), (double) e[3] / e[1]));
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.List;
+
+/**
+ * The outcome of a finished match: which champions played, who won, how long it
+ * took and how much health each champion had left.
+ */
+public class MatchResult {
+    /**
+     * The value of winner when the first champion won.
+     */
+    public static final int WINNER_A = 0;
+    /**
+     * The value of winner when the second champion won.
+     */
+    public static final int WINNER_B = 1;
+    /**
+     * The value of winner when the match ended in a draw.
+     */
+    public static final int DRAW = -1;
+
+    /**
+     * The class name of the first champion.
+     */
+    public final String championA;
+    /**
+     * The class name of the second champion.
+     */
+    public final String championB;
+    /**
+     * WINNER_A, WINNER_B or DRAW.
+     */
+    public final int winner;
+    /**
+     * The number of rounds played.
+     */
+    public final int rounds;
+    /**
+     * The first champion's health at the end of the match.
+     */
+    public final int healthA;
+    /**
+     * The second champion's health at the end of the match.
+     */
+    public final int healthB;
+    /**
+     * The seed the match was played with.
+     */
+    public final long seed;
+    /**
+     * The class names of the first champion's starting tactic, relic and pocketed
+     * gambit (null for an empty slot), or an empty list if they are not known.
+     */
+    public final List<String> loadoutA;
+    /**
+     * The class names of the second champion's starting tactic, relic and pocketed
+     * gambit (null for an empty slot), or an empty list if they are not known.
+     */
+    public final List<String> loadoutB;
+
+    /**
+     * Constructor for MatchResult.
+     * @param championA The class name of the first champion.
+     * @param championB The class name of the second champion.
+     * @param winner WINNER_A, WINNER_B or DRAW.
+     * @param rounds The number of rounds played.
+     * @param healthA The first champion's health at the end of the match.
+     * @param healthB The second champion's health at the end of the match.
+     * @param seed The seed the match was played with.
+     */
+    public MatchResult(String championA, String championB, int winner,
+                       int rounds, int healthA, int healthB, long seed) {
+        this(championA, championB, winner, rounds, healthA, healthB, seed, List.of(), List.of());
+    }
+
+    /**
+     * Constructor for MatchResult with the champions' starting loadouts.
+     * @param championA The class name of the first champion.
+     * @param championB The class name of the second champion.
+     * @param winner WINNER_A, WINNER_B or DRAW.
+     * @param rounds The number of rounds played.
+     * @param healthA The first champion's health at the end of the match.
+     * @param healthB The second champion's health at the end of the match.
+     * @param seed The seed the match was played with.
+     * @param loadoutA The first champion's starting tactic, relic and gambit class names.
+     * @param loadoutB The second champion's starting tactic, relic and gambit class names.
+     */
+    public MatchResult(String championA, String championB, int winner, int rounds,
+                       int healthA, int healthB, long seed, List<String> loadoutA, List<String> loadoutB) {
+        this.championA = championA;
+        this.championB = championB;
+        this.winner = winner;
+        this.rounds = rounds;
+        this.healthA = healthA;
+        this.healthB = healthB;
+        this.seed = seed;
+        this.loadoutA = loadoutA;
+        this.loadoutB = loadoutB;
+    }
+
+    /**
+     * Create a result from an engine whose match has finished.
+     * @param engine The engine that ran the match.
+     * @param seed The seed the match was played with.
+     * @return The result of the match.
+     */
+    public static MatchResult of(BattleEngine engine, long seed) {
+        final Champion a = engine.getChampionA();
+        final Champion b = engine.getChampionB();
+        final Champion w = engine.getWinner();
+        final int winner = w == null ? DRAW : (w == a ? WINNER_A : WINNER_B);
+        return new MatchResult(a.getClass().getName(), b.getClass().getName(), winner,
+                               engine.getRound() - 1, a.getCurrentHealth(), b.getCurrentHealth(), seed,
+                               engine.getInitialLoadout(a), engine.getInitialLoadout(b));
+    }
+
+    /**
+     * Get the score of the first champion: 1 for a win, 0.5 for a draw and 0 for a loss.
+     * @return The first champion's score.
+     */
+    public double scoreA() {
+        return winner == WINNER_A ? 1.0 : (winner == DRAW ? 0.5 : 0.0);
+    }
+
+    /**
+     * @return A string representation of the result.
+     */
+    @Override
+    public String toString() {
+        final String outcome = winner == DRAW ? "draw" : (winner == WINNER_A ? championA : championB) + " wins";
+        return championA + " vs " + championB + ": " + outcome + " in " + rounds
+            + " rounds (" + healthA + " - " + healthB + " HP, seed " + seed + ")";
+    }
+}
@@ -0,0 +1,172 @@
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * MatchSimulator plays headless, reproducible matches. A match is fully determined
+ * by its seed: the seed drives the modifier draws for both arsenals (through
+ * ModifierVault.setThreadSeed) and the engine's turn order, so with deterministic
+ * controllers the same seed always produces the same result.
+ *
+ * A simulator holds no per-match state and can be shared by many threads. Each
+ * thread reuses its own battle log from match to match, so a long-running worker
+ * stays warm instead of regrowing a log for every match. Results can also be
+ * appended to a ResultStore, and logs to a LogArchive, as matches finish.
+ */
+public class MatchSimulator {
+    /**
+     * The default number of rounds after which a simulated match is a draw.
+     */
+    public static final int DEFAULT_MAX_ROUNDS = 200;
+
+    private final ModifierVault vault;
+    private final int maxRounds;
+    private final ThreadLocal<BattleLog> logs = ThreadLocal.withInitial(BattleLog::new);
+    private volatile PluginWatchdog watchdog;
+    private volatile ResultStore results;
+    private volatile LogArchive.Writer archive;
+
+    /**
+     * Constructor for a MatchSimulator with the default round limit.
+     * @param vault The vault of battle modifiers.
+     */
+    public MatchSimulator(ModifierVault vault) {
+        this(vault, DEFAULT_MAX_ROUNDS);
+    }
+
+    /**
+     * Constructor for a MatchSimulator.
+     * @param vault The vault of battle modifiers.
+     * @param maxRounds The number of rounds after which a match is a draw.
+     */
+    public MatchSimulator(ModifierVault vault, int maxRounds) {
+        this.vault = vault;
+        this.maxRounds = maxRounds;
+    }
+
+    /**
+     * Run matches started from now on under a watchdog's CPU budgets.
+     * @param watchdog The watchdog, or null to run matches unwatched.
+     */
+    public void setWatchdog(PluginWatchdog watchdog) {
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * Append the result of every match finished from now on to a result store, so
+     * that MatchQuery can answer questions about them later.
+     * @param results The store, or null to keep no results.
+     */
+    public void setResultStore(ResultStore results) {
+        this.results = results;
+    }
+
+    /**
+     * Write the log of every match finished from now on to a log archive, under the
+     * match's seed. The log of a match whose plugin was abandoned by the watchdog is
+     * left out, since the plugin may still be writing to it.
+     * @param archive The archive, or null to keep no logs.
+     */
+    public void setLogArchive(LogArchive.Writer archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Play a match between two champion classes. Each controller creates its champion
+     * (and picks its initial loadout) through chooseChampion, then plans its turns.
+     * @param classA The first champion's class.
+     * @param controllerA The controller for the first champion.
+     * @param classB The second champion's class.
+     * @param controllerB The controller for the second champion.
+     * @param seed The seed for the match.
+     * @return The result of the match.
+     */
+    public MatchResult run(Class<? extends Champion> classA, ChampionController controllerA,
+                           Class<? extends Champion> classB, ChampionController controllerB, long seed) {
+        return run(() -> controllerA.chooseChampion("Player 1", List.of(classA)).join(), controllerA,
+                   () -> controllerB.chooseChampion("Player 2", List.of(classB)).join(), controllerB, seed);
+    }
+
+    /**
+     * Play a match between two champions built by factories, for champions that
+     * cannot be created from their class alone (such as parameterized variants).
+     * The factories are called after the thread's draws have been seeded, and should
+     * return champions whose initial loadout has already been chosen.
+     * @param createA Creates the first champion.
+     * @param controllerA The controller for the first champion.
+     * @param createB Creates the second champion.
+     * @param controllerB The controller for the second champion.
+     * @param seed The seed for the match.
+     * @return The result of the match.
+     */
+    public MatchResult run(Supplier<? extends Champion> createA, ChampionController controllerA,
+                           Supplier<? extends Champion> createB, ChampionController controllerB, long seed) {
+        return run(createA, controllerA, createB, controllerB, seed, null);
+    }
+
+    /**
+     * Play a match between two champions built by factories, telling a listener
+     * about each round (for example to capture snapshots of the match).
+     * @param createA Creates the first champion.
+     * @param controllerA The controller for the first champion.
+     * @param createB Creates the second champion.
+     * @param controllerB The controller for the second champion.
+     * @param seed The seed for the match.
+     * @param listener The listener for the match, or null for none.
+     * @return The result of the match.
+     */
+    public MatchResult run(Supplier<? extends Champion> createA, ChampionController controllerA,
+                           Supplier<? extends Champion> createB, ChampionController controllerB, long seed,
+                           MatchListener listener) {
+        ModifierVault.setThreadSeed(seed);
+        try {
+            final Champion champA = createA.get();
+            final Champion champB = createB.get();
+            return play(champA, controllerA, champB, controllerB, seed, listener);
+        } finally {
+            ModifierVault.clearThreadSeed();
+        }
+    }
+
+    /**
+     * Play a match between two champions that have already been created.
+     * @param champA The first champion.
+     * @param controllerA The controller for the first champion.
+     * @param champB The second champion.
+     * @param controllerB The controller for the second champion.
+     * @param seed The seed for the engine's turn order.
+     * @param listener The listener for the match, or null for none.
+     * @return The result of the match.
+     */
+    private MatchResult play(Champion champA, ChampionController controllerA,
+                             Champion champB, ChampionController controllerB, long seed,
+                             MatchListener listener) {
+        final BattleLog log = logs.get();
+        log.clear();
+        BattleEngine engine = new BattleEngine(champA, champB, log, vault, controllerA, controllerB);
+        engine.setPrintLog(false);
+        engine.setMaxRounds(maxRounds);
+        engine.setSeed(seed);
+        engine.setListener(listener);
+        final PluginWatchdog w = watchdog;
+        PluginWatchdog.Forfeit forfeit = null;
+        if (w != null) {
+            forfeit = w.runMatch(engine);
+            if (forfeit != null) {
+                // An abandoned plugin may still be writing to the log, so the next match gets its own
+                logs.remove();
+            }
+        } else {
+            engine.runMatch();
+        }
+        final MatchResult result = forfeit != null ? forfeit.toResult(seed) : MatchResult.of(engine, seed);
+        final ResultStore r = results;
+        if (r != null) {
+            r.append(result);
+        }
+        final LogArchive.Writer a = archive;
+        if (a != null && forfeit == null) {
+            a.write(seed, log);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,249 @@
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Constructor;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A MatchSnapshot is the full state of a match at the start of a round: both
+ * champions' health, charging actions, loadouts and arsenals, every modifier's
+ * remaining duration, and where the engine's turn order and the thread's seeded
+ * draws are up to. Restoring a snapshot into an engine built with the same champion
+ * classes and controllers lets the match carry on exactly as it would have.
+ *
+ * Modifiers are stored once each in a table and referenced by index, since the same
+ * modifier can be in a champion's loadout and arsenal at once. Modifiers are stored
+ * by class name rather than by registry position, which changes when the registry
+ * is reloaded or the game restarts with other plugins. On restore, a name is looked
+ * up in the registry first and then through the champions' class loaders. Every
+ * modifier must have a no-argument constructor.
+ *
+ * Champions and modifiers that keep mutable state of their own, beyond what
+ * Champion, BattleModifier and Gambit track, are restored as newly constructed.
+ */
+public final class MatchSnapshot {
+    private final int round;
+    private final byte[] data;
+
+    private MatchSnapshot(int round, byte[] data) {
+        this.round = round;
+        this.data = data;
+    }
+
+    /**
+     * Capture the state of a match between rounds.
+     * @param engine The engine running the match, with draws seeded by ModifierVault.setThreadSeed.
+     * @return The snapshot.
+     * @throws IllegalStateException if the thread's draws are not seeded.
+     */
+    public static MatchSnapshot capture(BattleEngine engine) {
+        final SeededRandom draws = ModifierVault.getThreadRandom();
+        if (draws == null) {
+            throw new IllegalStateException("Snapshots need draws seeded with ModifierVault.setThreadSeed");
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        Replay.putVarint(out, engine.getRandomState());
+        Replay.putVarint(out, draws.getState());
+
+        // Number the modifiers first so each champion can refer to them by index
+        final Map<BattleModifier, Integer> ids = new IdentityHashMap<>();
+        final List<BattleModifier> table = new ArrayList<>();
+        for (Champion champ : List.of(engine.getChampionA(), engine.getChampionB())) {
+            final Loadout loadout = champ.getLoadout();
+            number(loadout.getTactic(), ids, table);
+            number(loadout.getRelic(), ids, table);
+            number(loadout.getPocketedGambit(), ids, table);
+            for (BattleModifier mod : loadout.getTemporaryModifiers()) {
+                number(mod, ids, table);
+            }
+            for (int i = 0; i < champ.getArsenal().size(); i++) {
+                number(champ.getArsenal().getSlot(i), ids, table);
+            }
+        }
+        Replay.putVarint(out, table.size());
+        for (BattleModifier mod : table) {
+            // 0 marks a class name; snapshots once stored registry positions here
+            Replay.putVarint(out, 0);
+            Replay.putBytes(out, mod.getClass().getName().getBytes(StandardCharsets.UTF_8));
+            Replay.putVarint(out, Replay.zigzag(mod.getDuration()));
+            out.write(mod instanceof Gambit && ((Gambit) mod).isActivated() ? 1 : 0);
+        }
+
+        for (Champion champ : List.of(engine.getChampionA(), engine.getChampionB())) {
+            Replay.putVarint(out, champ.getCurrentHealth());
+            Replay.putVarint(out, actionIndex(champ));
+            out.write(champ.isCharging() ? 1 : 0);
+            Replay.putVarint(out, champ.getChargeTurnsRemaining());
+
+            final Loadout loadout = champ.getLoadout();
+            Replay.putVarint(out, ref(loadout.getTactic(), ids));
+            Replay.putVarint(out, ref(loadout.getRelic(), ids));
+            Replay.putVarint(out, ref(loadout.getPocketedGambit(), ids));
+            final List<BattleModifier> temps = loadout.getTemporaryModifiers();
+            Replay.putVarint(out, temps.size());
+            for (BattleModifier mod : temps) {
+                Replay.putVarint(out, ref(mod, ids));
+            }
+            final Arsenal arsenal = champ.getArsenal();
+            Replay.putVarint(out, arsenal.size());
+            for (int i = 0; i < arsenal.size(); i++) {
+                Replay.putVarint(out, ref(arsenal.getSlot(i), ids));
+            }
+        }
+        return new MatchSnapshot(engine.getRound(), out.toByteArray());
+    }
+
+    private static void number(BattleModifier mod, Map<BattleModifier, Integer> ids, List<BattleModifier> table) {
+        if (mod != null && !ids.containsKey(mod)) {
+            ids.put(mod, table.size());
+            table.add(mod);
+        }
+    }
+
+    private static int ref(BattleModifier mod, Map<BattleModifier, Integer> ids) {
+        return mod == null ? 0 : ids.get(mod) + 1;
+    }
+
+    private static int actionIndex(Champion champ) {
+        final Action locked = champ.getLockedInAction();
+        if (locked == null) {
+            return 0;
+        }
+        final int id = champ.getActionCatalog().idOf(locked);
+        if (id != ActionCatalog.NONE) {
+            return id + 1;
+        }
+        throw new IllegalStateException(champ.getName() + "'s locked in action is not one of its actions");
+    }
+
+    /**
+     * Get the round that will be played next when the snapshot is restored.
+     * @return The round.
+     */
+    public int getRound() {
+        return round;
+    }
+
+    /**
+     * Put a match into the captured state. The engine must have been built with
+     * champions of the same classes as the captured match, and the current thread's
+     * draws continue from where the captured match's were, until
+     * ModifierVault.clearThreadSeed is called.
+     * @param engine The engine to restore.
+     * @param registry The vault's modifier registry, which need not be the same as when
+     *                 the snapshot was captured.
+     * @throws IllegalArgumentException if the snapshot is corrupt or refers to a modifier that cannot be created.
+     */
+    public void restore(BattleEngine engine, List<Class<? extends BattleModifier>> registry) {
+        final ByteBuffer in = ByteBuffer.wrap(data);
+        try {
+            final long turnOrder = Replay.getVarint(in);
+            final SeededRandom draws = new SeededRandom(0L);
+            draws.setState(Replay.getVarint(in));
+
+            final BattleModifier[] table = new BattleModifier[(int) Replay.getVarint(in)];
+            for (int i = 0; i < table.length; i++) {
+                if (Replay.getVarint(in) != 0) {
+                    throw new IllegalArgumentException("Match snapshot refers to modifiers by registry position");
+                }
+                final Class<?> type = load(new String(Replay.getBytes(in), StandardCharsets.UTF_8), registry, engine);
+                table[i] = create(type);
+                table[i].restoreDuration((int) Replay.unzigzag(Replay.getVarint(in)));
+                final boolean activated = in.get() != 0;
+                if (table[i] instanceof Gambit) {
+                    ((Gambit) table[i]).restoreActivated(activated);
+                }
+            }
+
+            for (Champion champ : List.of(engine.getChampionA(), engine.getChampionB())) {
+                final int health = (int) Replay.getVarint(in);
+                final int action = (int) Replay.getVarint(in);
+                final boolean charging = in.get() != 0;
+                final int chargeTurns = (int) Replay.getVarint(in);
+                champ.restore(health, action == 0 ? null : champ.getActionCatalog().get(action - 1), charging, chargeTurns);
+
+                final Tactic tactic = (Tactic) lookup(table, (int) Replay.getVarint(in));
+                final Relic relic = (Relic) lookup(table, (int) Replay.getVarint(in));
+                final Gambit gambit = (Gambit) lookup(table, (int) Replay.getVarint(in));
+                final List<BattleModifier> temps = new ArrayList<>();
+                for (int n = (int) Replay.getVarint(in); n > 0; n--) {
+                    temps.add(lookup(table, (int) Replay.getVarint(in)));
+                }
+                champ.getLoadout().restore(tactic, relic, gambit, temps);
+
+                final List<BattleModifier> slots = new ArrayList<>();
+                for (int n = (int) Replay.getVarint(in); n > 0; n--) {
+                    slots.add(lookup(table, (int) Replay.getVarint(in)));
+                }
+                champ.getArsenal().setSlots(slots);
+            }
+
+            ModifierVault.setThreadRandom(draws);
+            engine.restore(round, turnOrder);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException e) {
+            throw new IllegalArgumentException("Corrupt match snapshot", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create a modifier in the snapshot", e);
+        }
+    }
+
+    private static Class<?> load(String name, List<Class<? extends BattleModifier>> registry, BattleEngine engine)
+            throws ClassNotFoundException {
+        for (Class<? extends BattleModifier> type : registry) {
+            if (type.getName().equals(name)) {
+                return type;
+            }
+        }
+        // Temporary modifiers come from the same place as the champion that applies them
+        try {
+            return Class.forName(name, false, engine.getChampionA().getClass().getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return Class.forName(name, false, engine.getChampionB().getClass().getClassLoader());
+        }
+    }
+
+    private static BattleModifier lookup(BattleModifier[] table, int ref) {
+        return ref == 0 ? null : table[ref - 1];
+    }
+
+    private static BattleModifier create(Class<?> type) throws ReflectiveOperationException {
+        // Temporary modifiers are usually package-private classes
+        final Constructor<?> constructor = type.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return (BattleModifier) constructor.newInstance();
+    }
+
+    /**
+     * Encode this snapshot in its binary form.
+     * @return The encoded snapshot.
+     */
+    public byte[] toBytes() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + 4);
+        Replay.putVarint(out, round);
+        out.writeBytes(data);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a snapshot from its binary form. The contents are only checked when
+     * the snapshot is restored.
+     * @param bytes The encoded snapshot.
+     * @return The snapshot.
+     * @throws IllegalArgumentException if the bytes are truncated.
+     */
+    public static MatchSnapshot fromBytes(byte[] bytes) {
+        final ByteBuffer in = ByteBuffer.wrap(bytes);
+        try {
+            final int round = (int) Replay.getVarint(in);
+            final byte[] data = new byte[in.remaining()];
+            in.get(data);
+            return new MatchSnapshot(round, data);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated match snapshot", e);
+        }
+    }
+}
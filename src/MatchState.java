@@ -0,0 +1,299 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compact, immutable encoding of the state of a match between two champions.
+ * The state is packed into a few longs so that search bots and cycle detection
+ * can compare and hash states without walking the Champion, Loadout and
+ * BattleModifier object graph.
+ *
+ * Each champion is packed into three words:
+ * <ul>
+ *   <li>Word 0: health, charging flag, charge turns remaining, locked action index,
+ *       tactic id and duration, relic id and duration, temporary modifier count,
+ *       arsenal size and the gambit's activated flag.</li>
+ *   <li>Word 1: gambit id and duration, followed by the ids and durations of up to
+ *       three temporary modifiers.</li>
+ *   <li>Word 2: the ids of the modifiers in the champion's arsenal.</li>
+ * </ul>
+ * Modifier ids are a hash of the class name, so a state packs (and hashes) the same
+ * in every process, whatever order classes are first met in; replays and hashes can
+ * be checked on another host. Two class names that hash to the same id are refused
+ * rather than silently sharing it. Durations and charge turns are clamped to 15, and
+ * temporary modifiers beyond the third are only reflected in the count.
+ */
+public final class MatchState {
+    /**
+     * The number of longs used to encode a single champion.
+     */
+    public static final int WORDS_PER_CHAMPION = 3;
+
+    /**
+     * The number of longs used to encode a match (both champions).
+     */
+    public static final int WORDS = 2 * WORDS_PER_CHAMPION;
+
+    /**
+     * The locked action index used when a champion has no action locked in.
+     */
+    public static final int NO_ACTION = 0xF;
+
+    private static final int ID_BITS = 12;
+    private static final int MAX_ID = (1 << ID_BITS) - 1;
+    private static final int MAX_NIBBLE = 0xF;
+    private static final int MAX_TEMPORARY = 3;            // Temporary modifiers stored in word 1
+    private static final int MAX_ARSENAL = 5;              // Arsenal slots stored in word 2
+
+    // Word 0 layout
+    private static final int HEALTH_SHIFT = 0;          // 7 bits
+    private static final int CHARGING_SHIFT = 7;        // 1 bit
+    private static final int CHARGE_TURNS_SHIFT = 8;    // 4 bits
+    private static final int LOCKED_ACTION_SHIFT = 12;  // 4 bits
+    private static final int TACTIC_SHIFT = 16;         // 12 + 4 bits
+    private static final int RELIC_SHIFT = 32;          // 12 + 4 bits
+    private static final int TEMP_COUNT_SHIFT = 48;     // 3 bits
+    private static final int ARSENAL_SIZE_SHIFT = 51;   // 3 bits
+    private static final int GAMBIT_ACTIVE_SHIFT = 54;  // 1 bit
+
+    // The class name holding each id. Names, not classes, so that a reloaded plugin
+    // keeps its id and unloaded plugins are not kept alive
+    private static final ConcurrentHashMap<Integer, String> idNames = new ConcurrentHashMap<>();
+
+    // Ids are held in a ClassValue so that plugin classes can still be unloaded
+    private static final ClassValue<Integer> modifierIds = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            final int id = idOf(type.getName());
+            final String holder = idNames.putIfAbsent(id, type.getName());
+            if (holder != null && !holder.equals(type.getName())) {
+                throw new IllegalStateException("Modifier classes " + holder + " and " + type.getName()
+                    + " share match state id " + id + "; rename one of them");
+            }
+            return id;
+        }
+    };
+
+    private final long[] words;
+    private final long hash;
+
+    /**
+     * Create a MatchState from already packed words.
+     * @param words The packed words, which must have a length of WORDS. The array is copied.
+     * @throws IllegalArgumentException if the array has the wrong length.
+     */
+    public MatchState(long[] words) {
+        if (words.length != WORDS) {
+            throw new IllegalArgumentException("A match state needs exactly " + WORDS + " words");
+        }
+        this.words = words.clone();
+        this.hash = ZobristHash.hash(this.words);
+    }
+
+    /**
+     * Capture the current state of a match.
+     * @param champA The first champion.
+     * @param champB The second champion.
+     * @return The packed state of the match.
+     */
+    public static MatchState capture(Champion champA, Champion champB) {
+        long[] words = new long[WORDS];
+        encode(champA, champB, words);
+        return new MatchState(words);
+    }
+
+    /**
+     * Pack the state of both champions into the given array without allocating a MatchState.
+     * @param champA The first champion, packed into words 0 to 2.
+     * @param champB The second champion, packed into words 3 to 5.
+     * @param out The array to write into, which must have room for WORDS longs.
+     */
+    public static void encode(Champion champA, Champion champB, long[] out) {
+        encode(champA, out, 0);
+        encode(champB, out, WORDS_PER_CHAMPION);
+    }
+
+    /**
+     * Pack the state of a single champion into three consecutive words.
+     * @param champ The champion to encode.
+     * @param out The array to write into.
+     * @param offset The index of the first of the three words to write.
+     */
+    public static void encode(Champion champ, long[] out, int offset) {
+        final Loadout loadout = champ.getLoadout();
+        final Gambit gambit = loadout.getPocketedGambit();
+        final List<BattleModifier> temporary = loadout.getTemporaryModifiers();
+        final Arsenal arsenal = champ.getArsenal();
+
+        long core = 0;
+        core |= (long) Math.min(champ.getCurrentHealth(), 0x7F) << HEALTH_SHIFT;
+        core |= (champ.isCharging() ? 1L : 0L) << CHARGING_SHIFT;
+        core |= (long) Math.min(champ.getChargeTurnsRemaining(), MAX_NIBBLE) << CHARGE_TURNS_SHIFT;
+        core |= (long) lockedActionIndex(champ) << LOCKED_ACTION_SHIFT;
+        core |= (long) slot(loadout.getTactic()) << TACTIC_SHIFT;
+        core |= (long) slot(loadout.getRelic()) << RELIC_SHIFT;
+        core |= (long) Math.min(temporary.size(), 7) << TEMP_COUNT_SHIFT;
+        core |= (long) Math.min(arsenal.size(), 7) << ARSENAL_SIZE_SHIFT;
+        core |= (gambit != null && gambit.isActivated() ? 1L : 0L) << GAMBIT_ACTIVE_SHIFT;
+
+        long modifiers = slot(gambit);
+        for (int i = 0; i < temporary.size() && i < MAX_TEMPORARY; i++) {
+            modifiers |= (long) slot(temporary.get(i)) << (16 * (i + 1));
+        }
+
+        long slots = 0;
+        for (int i = 0; i < arsenal.size() && i < MAX_ARSENAL; i++) {
+            slots |= (long) modifierId(arsenal.getSlot(i).getClass()) << (ID_BITS * i);
+        }
+
+        out[offset] = core;
+        out[offset + 1] = modifiers;
+        out[offset + 2] = slots;
+    }
+
+    /**
+     * Get the compact id of a modifier class. Ids are between 1 and 4095, so that 0
+     * can mean an empty slot.
+     * @param clazz The modifier class.
+     * @return The id of the class.
+     * @throws IllegalStateException if another modifier class already has the id.
+     */
+    public static int modifierId(Class<?> clazz) {
+        return modifierIds.get(clazz);
+    }
+
+    /**
+     * Hash a class name to an id, with 32 bit FNV-1a folded into 1 to MAX_ID.
+     * @param name The class name.
+     * @return The id.
+     */
+    static int idOf(String name) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x01000193;
+        }
+        return 1 + Integer.remainderUnsigned(hash ^ (hash >>> 16), MAX_ID);
+    }
+
+    /**
+     * Pack a loadout slot into 16 bits: a 12 bit class id and a 4 bit duration.
+     * @param mod The modifier in the slot, or null if the slot is empty.
+     * @return The packed slot.
+     */
+    private static int slot(BattleModifier mod) {
+        if (mod == null) {
+            return 0;
+        }
+        return modifierId(mod.getClass()) | Math.min(Math.max(mod.getDuration(), 0), MAX_NIBBLE) << ID_BITS;
+    }
+
+    /**
+     * Find the index of the champion's locked in action within its action catalog.
+     * @param champ The champion.
+     * @return The index of the locked in action, or NO_ACTION if none is locked in.
+     */
+    private static int lockedActionIndex(Champion champ) {
+        final Action locked = champ.getLockedInAction();
+        if (locked == null) {
+            return NO_ACTION;
+        }
+        final int id = champ.getActionCatalog().idOf(locked);
+        return id == ActionCatalog.NONE || id >= NO_ACTION ? NO_ACTION : id;
+    }
+
+    /**
+     * Get the packed word at the given index.
+     * @param index The index of the word, between 0 and WORDS - 1.
+     * @return The packed word.
+     */
+    public long word(int index) {
+        return words[index];
+    }
+
+    /**
+     * Get a copy of the packed words.
+     * @return A copy of the packed words.
+     */
+    public long[] toWords() {
+        return words.clone();
+    }
+
+    /**
+     * Get the Zobrist hash of this state.
+     * @return The Zobrist hash of this state.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the health of one of the champions.
+     * @param side 0 for the first champion, 1 for the second.
+     * @return The champion's current health.
+     */
+    public int getHealth(int side) {
+        return (int) (words[side * WORDS_PER_CHAMPION] >>> HEALTH_SHIFT) & 0x7F;
+    }
+
+    /**
+     * Check whether one of the champions is charging an action.
+     * @param side 0 for the first champion, 1 for the second.
+     * @return true if the champion is charging.
+     */
+    public boolean isCharging(int side) {
+        return ((words[side * WORDS_PER_CHAMPION] >>> CHARGING_SHIFT) & 1L) != 0;
+    }
+
+    /**
+     * Get the number of charge turns remaining for one of the champions.
+     * @param side 0 for the first champion, 1 for the second.
+     * @return The number of charge turns remaining, clamped to 15.
+     */
+    public int getChargeTurnsRemaining(int side) {
+        return (int) (words[side * WORDS_PER_CHAMPION] >>> CHARGE_TURNS_SHIFT) & MAX_NIBBLE;
+    }
+
+    /**
+     * Get the index of the locked in action for one of the champions.
+     * @param side 0 for the first champion, 1 for the second.
+     * @return The index of the locked in action, or NO_ACTION if none is locked in.
+     */
+    public int getLockedActionIndex(int side) {
+        return (int) (words[side * WORDS_PER_CHAMPION] >>> LOCKED_ACTION_SHIFT) & MAX_NIBBLE;
+    }
+
+    /**
+     * Check if two states are identical.
+     * @param other The object to compare against.
+     * @return true if the other object is a MatchState with the same packed words.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof MatchState)) return false;
+        MatchState that = (MatchState) other;
+        return hash == that.hash && Arrays.equals(words, that.words);
+    }
+
+    /**
+     * @return A hash code derived from the Zobrist hash.
+     */
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * @return A string representation of the packed words.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("MatchState[");
+        for (int i = 0; i < WORDS; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(String.format("%016x", words[i]));
+        }
+        return sb.append(']').toString();
+    }
+}
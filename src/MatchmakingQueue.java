@@ -0,0 +1,430 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * MatchmakingQueue pairs players who join with a rating and a chosen champion class.
+ * Two players are paired when their ratings are within the matching window of the
+ * player who has waited longer. A window starts narrow and widens the longer a
+ * player waits, up to a maximum, so players are matched closely when the queue is
+ * busy and still find a match when it is quiet.
+ *
+ * Waiting players are kept in buckets of concurrent deques by rating, and there is
+ * no global lock. A player who joins looks for a partner in the nearest buckets
+ * straight away and only waits if there is none. Each ticket is claimed with a
+ * compare-and-set, so two threads can never pair the same player. A sweeper thread
+ * revisits waiting players as their windows widen. Every pair is handed to a match
+ * consumer, such as a MatchHost.
+ *
+ * Usage: java MatchmakingQueue [enqueues per second] [seconds] [producer threads] [host threads] [plugin folder]
+ */
+public class MatchmakingQueue {
+    /**
+     * The width in rating points of each bucket.
+     */
+    public static final int BUCKET_WIDTH = 50;
+    /**
+     * The highest rating the buckets cover; higher ratings share the last bucket.
+     */
+    public static final int MAX_RATING = 4000;
+
+    private static final int WAITING = 0;
+    private static final int CLAIMED = 1;   // Held briefly by a thread looking for a partner
+    private static final int CANCELLED = 2;
+    private static final int MATCHED = 3;
+
+    private final ConcurrentLinkedDeque<Ticket>[] buckets;
+    private final double baseWindow;
+    private final double widenPerSecond;
+    private final double maxWindow;
+    private final Consumer<Match> onMatch;
+    private final AtomicLong nextTicket = new AtomicLong();
+    private final LongAdder waiting = new LongAdder();
+    private final LongAdder matched = new LongAdder();
+    private volatile Thread sweeper;
+
+    /**
+     * Constructor for a MatchmakingQueue.
+     * @param baseWindow The rating difference accepted as soon as a player joins.
+     * @param widenPerSecond How much the window widens for each second a player waits.
+     * @param maxWindow The widest the window gets.
+     * @param onMatch Receives every pair, on the thread that made it.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MatchmakingQueue(double baseWindow, double widenPerSecond, double maxWindow, Consumer<Match> onMatch) {
+        this.baseWindow = baseWindow;
+        this.widenPerSecond = widenPerSecond;
+        this.maxWindow = maxWindow;
+        this.onMatch = onMatch;
+        this.buckets = new ConcurrentLinkedDeque[MAX_RATING / BUCKET_WIDTH + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ConcurrentLinkedDeque<>();
+        }
+    }
+
+    /**
+     * Join the queue.
+     * @param player The player's name.
+     * @param rating The player's rating.
+     * @param champion The champion class the player will play.
+     * @return The player's ticket, whose future completes when the player is matched.
+     */
+    public Ticket enqueue(String player, double rating, Class<? extends Champion> champion) {
+        final Ticket ticket = new Ticket(nextTicket.getAndIncrement(), player, rating, champion, System.nanoTime());
+
+        // The new ticket is not visible to anyone else yet, so it needs no claim
+        ticket.state.set(CLAIMED);
+        if (!tryMatch(ticket, ticket.enqueuedAt)) {
+            ticket.state.set(WAITING);
+            waiting.increment();
+            buckets[bucket(rating)].addLast(ticket);
+        }
+        return ticket;
+    }
+
+    /**
+     * Leave the queue.
+     * @param ticket The ticket to cancel.
+     * @return true if the ticket was cancelled, false if it had already been matched
+     *         or cancelled.
+     */
+    public boolean cancel(Ticket ticket) {
+        // A claimed ticket is either matched or put back within one search, so wait that out
+        for (int spins = 0; ; spins++) {
+            final int state = ticket.state.get();
+            if (state == WAITING) {
+                if (ticket.state.compareAndSet(WAITING, CANCELLED)) {
+                    waiting.decrement();
+                    buckets[bucket(ticket.rating)].remove(ticket);
+                    ticket.future.cancel(false);
+                    return true;
+                }
+            } else if (state == CLAIMED) {
+                if (spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            } else {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Look for a partner for a ticket the caller holds claimed, searching outwards
+     * from the ticket's own bucket. On success both tickets are completed.
+     * @param ticket The claimed ticket.
+     * @param now The current time from System.nanoTime.
+     * @return true if the ticket was matched.
+     */
+    private boolean tryMatch(Ticket ticket, long now) {
+        final double window = window(ticket, now);
+        final int home = bucket(ticket.rating);
+        final int reach = (int) Math.ceil(maxWindow / BUCKET_WIDTH);
+        for (int d = 0; d <= reach; d++) {
+            // The nearest possible rating in a bucket d away is more than (d - 1) widths away
+            if (d > 1 && (d - 1) * BUCKET_WIDTH > maxWindow) break;
+            if (match(ticket, window, home - d, now) || (d > 0 && match(ticket, window, home + d, now))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean match(Ticket ticket, double window, int bucket, long now) {
+        if (bucket < 0 || bucket >= buckets.length) {
+            return false;
+        }
+        for (Iterator<Ticket> it = buckets[bucket].iterator(); it.hasNext();) {
+            final Ticket other = it.next();
+            final int state = other.state.get();
+            if (state != WAITING) {
+                if (state == CANCELLED || state == MATCHED) {
+                    it.remove();  // Drop tickets that have left the queue
+                }
+                continue;
+            }
+            final double diff = Math.abs(other.rating - ticket.rating);
+            if (diff > Math.max(window, window(other, now))) continue;
+            if (other.state.compareAndSet(WAITING, CLAIMED)) {
+                it.remove();
+                waiting.decrement();
+                pair(other, ticket, now);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void pair(Ticket a, Ticket b, long now) {
+        // Both are claimed by this thread, so a cancel of either is waiting on this
+        a.state.set(MATCHED);
+        b.state.set(MATCHED);
+        matched.increment();
+        final Match match = new Match(a, b, now);
+        a.future.complete(match);
+        b.future.complete(match);
+        onMatch.accept(match);
+    }
+
+    /**
+     * Get the matching window of a ticket.
+     * @param ticket The ticket.
+     * @param now The current time from System.nanoTime.
+     * @return The rating difference the ticket accepts.
+     */
+    private double window(Ticket ticket, long now) {
+        final double waited = (now - ticket.enqueuedAt) / 1e9;
+        return Math.min(maxWindow, baseWindow + widenPerSecond * waited);
+    }
+
+    private static int bucket(double rating) {
+        return (int) Math.max(0, Math.min(MAX_RATING, rating)) / BUCKET_WIDTH;
+    }
+
+    /**
+     * Revisit every waiting ticket once, trying again with its widened window.
+     * @return The number of tickets matched.
+     */
+    public int sweep() {
+        int pairs = 0;
+        final long now = System.nanoTime();
+        for (ConcurrentLinkedDeque<Ticket> bucket : buckets) {
+            for (Iterator<Ticket> it = bucket.iterator(); it.hasNext();) {
+                final Ticket ticket = it.next();
+                if (!ticket.state.compareAndSet(WAITING, CLAIMED)) continue;
+                it.remove();
+                waiting.decrement();
+                if (tryMatch(ticket, now)) {
+                    pairs++;
+                } else {
+                    // Put it back in front, since it has waited longer than most
+                    waiting.increment();
+                    bucket.addFirst(ticket);
+                    ticket.state.set(WAITING);
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Start a daemon thread that sweeps the queue at a fixed interval.
+     * @param interval The time between sweeps.
+     * @param unit The unit of the interval.
+     */
+    public synchronized void startSweeper(long interval, TimeUnit unit) {
+        if (sweeper != null) {
+            throw new IllegalStateException("The sweeper is already running");
+        }
+        final long nanos = unit.toNanos(interval);
+        sweeper = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                sweep();
+                LockSupport.parkNanos(nanos);
+            }
+        }, "matchmaking-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    /**
+     * Stop the sweeper thread, if it is running.
+     */
+    public synchronized void stopSweeper() {
+        if (sweeper != null) {
+            sweeper.interrupt();
+            sweeper = null;
+        }
+    }
+
+    /**
+     * Get the number of players waiting to be matched.
+     * @return The number of waiting players.
+     */
+    public long getWaiting() {
+        return waiting.sum();
+    }
+
+    /**
+     * Get the number of pairs made so far.
+     * @return The number of matches made.
+     */
+    public long getMatched() {
+        return matched.sum();
+    }
+
+    /**
+     * A player's place in the queue.
+     */
+    public static final class Ticket {
+        final long id;
+        final String player;
+        final double rating;
+        final Class<? extends Champion> champion;
+        final long enqueuedAt;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        final CompletableFuture<Match> future = new CompletableFuture<>();
+
+        Ticket(long id, String player, double rating, Class<? extends Champion> champion, long enqueuedAt) {
+            this.id = id;
+            this.player = player;
+            this.rating = rating;
+            this.champion = champion;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        /**
+         * Get the future that completes when this player is matched.
+         * @return The future match.
+         */
+        public CompletableFuture<Match> getMatch() {
+            return future;
+        }
+    }
+
+    /**
+     * Two players who have been paired.
+     */
+    public static final class Match {
+        final Ticket a;
+        final Ticket b;
+        final long matchedAt;
+
+        Match(Ticket a, Ticket b, long matchedAt) {
+            this.a = a;
+            this.b = b;
+            this.matchedAt = matchedAt;
+        }
+
+        /**
+         * Get how long a player waited in the queue.
+         * @param ticket One of the two tickets in this match.
+         * @return The wait in nanoseconds.
+         */
+        public long waitNanos(Ticket ticket) {
+            return Math.max(0, matchedAt - ticket.enqueuedAt);
+        }
+    }
+
+    /**
+     * Generate load on a queue and report time-to-match percentiles. Players have
+     * normally distributed ratings and a random champion; every pair is hosted. With
+     * a plugin folder, its champions join the roster, and plugins added, changed or
+     * removed while the queue runs are reloaded: each player picks from the newest
+     * generation of plugins.
+     * @param args The number of enqueues per second, the number of seconds, the number
+     *             of producer threads, the number of host threads (0 to not host) and
+     *             optionally the plugin folder.
+     * @throws InterruptedException if interrupted while waiting for the producers.
+     * @throws IOException if the plugin folder cannot be watched.
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        final int rate = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        final int producers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        final int hostThreads = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        final List<Class<? extends Champion>> roster = List.of(TrainingDummy.class, AdvancedTrainingDummy.class);
+        final ModifierVault vault = ModifierVault.initialize(null);
+        final PluginReloader plugins = args.length > 4
+            ? new PluginReloader(vault, args[4], Paths.get(args[4], PluginCatalog.CATALOG_FILE)) : null;
+        if (plugins != null) {
+            plugins.setListener(g -> System.out.println("Plugin generation " + g.number + ": "
+                                                        + g.getChampions().size() + " champions"));
+        }
+        final MatchHost host = hostThreads > 0 ? new MatchHost(vault, hostThreads) : null;
+        if (host != null) {
+            host.setPlugins(plugins);
+        }
+        final long[][] waits = new long[producers][];
+        final AtomicInteger[] waitCounts = new AtomicInteger[producers];
+
+        final MatchmakingQueue queue = new MatchmakingQueue(25, 100, 400, match -> {
+            if (host != null) {
+                host.host(match);
+            }
+        });
+        queue.startSweeper(5, TimeUnit.MILLISECONDS);
+
+        final int perProducer = rate * seconds / producers;
+        List<Thread> threads = new ArrayList<>();
+        final long start = System.nanoTime();
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            waits[p] = new long[perProducer];
+            waitCounts[p] = new AtomicInteger();
+            Thread producer = new Thread(() -> {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                final long interval = 1_000_000_000L * producers / rate;
+                long next = System.nanoTime();
+                for (int i = 0; i < perProducer; i++) {
+                    final double rating = 1500 + 300 * random.nextGaussian();
+                    final List<Class<? extends Champion>> loaded =
+                        plugins == null ? List.of() : plugins.getGeneration().getChampions();
+                    final int pick = random.nextInt(roster.size() + loaded.size());
+                    final Ticket ticket = queue.enqueue("p" + id + "-" + i, rating,
+                        pick < roster.size() ? roster.get(pick) : loaded.get(pick - roster.size()));
+                    ticket.getMatch().thenAccept(m -> {
+                        final int slot = waitCounts[id].getAndIncrement();
+                        waits[id][slot] = m.waitNanos(ticket);
+                    });
+                    next += interval;
+                    final long sleep = next - System.nanoTime();
+                    if (sleep > 0) {
+                        LockSupport.parkNanos(sleep);
+                    }
+                }
+            }, "producer-" + p);
+            threads.add(producer);
+            producer.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        final double elapsed = (System.nanoTime() - start) / 1e9;
+        Thread.sleep(500); // Let the last players be swept into matches
+        queue.stopSweeper();
+
+        int total = 0;
+        for (AtomicInteger count : waitCounts) {
+            total += count.get();
+        }
+        long[] all = new long[total];
+        int k = 0;
+        for (int p = 0; p < producers; p++) {
+            final int n = waitCounts[p].get();
+            System.arraycopy(waits[p], 0, all, k, n);
+            k += n;
+        }
+        Arrays.sort(all);
+
+        System.out.printf("%d enqueues in %.2fs (%.0f/s), %d matches, %d still waiting%n",
+            perProducer * producers, elapsed, perProducer * producers / elapsed, queue.getMatched(), queue.getWaiting());
+        if (total > 0) {
+            System.out.printf("Time to match: p50 %.2f ms  p90 %.2f ms  p99 %.2f ms  max %.2f ms%n",
+                all[total / 2] / 1e6, all[(int) (total * 0.9)] / 1e6, all[(int) (total * 0.99)] / 1e6,
+                all[total - 1] / 1e6);
+        }
+        if (host != null) {
+            System.out.println("Hosted " + host.getHosted() + " matches so far");
+            host.shutdown();
+        }
+        if (plugins != null) {
+            plugins.close();
+        }
+    }
+}
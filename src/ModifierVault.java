@@ -11,11 +11,15 @@ import java.util.Random;
  */
 
 public class ModifierVault {
-    private final List<Class<? extends BattleModifier>> registry = new ArrayList<>();
-    private final Random random = new Random();
+    // Copy-on-write, so draws and reloads never see a half-updated registry
+    private volatile List<Class<? extends BattleModifier>> registry = List.of();
+    private final Random random;
 
     private static ModifierVault instance;
 
+    // Lets a simulation thread draw from its own seeded sequence instead of the shared one
+    private static final ThreadLocal<SeededRandom> threadRandom = new ThreadLocal<>();
+
     /**
      * Get the singleton instance of the ModifierVault.
      * @return The instance of ModifierVault.
@@ -28,6 +32,14 @@ public class ModifierVault {
         return instance;
     }
 
+    /**
+     * Check if the vault has been initialized.
+     * @return true if initialize has been called.
+     */
+    static boolean isInitialized() {
+        return instance != null;
+    }
+
     /**
      * Initialize the vault loading the modifiers from a specified path. If no path is provided,
      * it will initialize with only default modifiers.
@@ -50,18 +62,39 @@ public class ModifierVault {
         return instance;
     }
 
+    /**
+     * Initialize the vault with the default modifiers and the modifiers in a plugin
+     * catalog, for callers that already have one.
+     * @param catalog The catalog of the plugin folder.
+     * @throws IllegalStateException if the vault has already been initialized.
+     * @return The instance of ModifierVault.
+     */
+    public static ModifierVault initializeFrom(PluginCatalog catalog) {
+        if (instance != null) {
+            throw new IllegalStateException("ModifierVault has already been initialized.");
+        }
+        instance = new ModifierVault();
+        instance.swapModifiers(List.of(), catalog.getSubtypesOf(BattleModifier.class));
+        return instance;
+    }
+
     /**
      * Initialize the vault with default modifiers.
      */
     private ModifierVault() {
         // Initialize the vault with default modifiers
-        registry.add(EmberCrystal.class);
-        registry.add(StoneAmulet.class);
-        registry.add(Chargebreaker.class);
-        registry.add(LastLight.class);
-        registry.add(AdrenalSurge.class);
-        registry.add(RecklessBurst.class);
+        this.random = new Random();
+        this.registry = List.of(EmberCrystal.class, StoneAmulet.class, Chargebreaker.class,
+                                LastLight.class, AdrenalSurge.class, RecklessBurst.class);
+    }
 
+    /**
+     * A vault that always draws from a fixed registry, sharing the random source of
+     * the vault it was pinned from.
+     */
+    private ModifierVault(List<Class<? extends BattleModifier>> registry, Random random) {
+        this.registry = registry;
+        this.random = random;
     }
 
     /**
@@ -76,32 +109,121 @@ public class ModifierVault {
 
         if (modifierPath != null && !modifierPath.isEmpty()) {
             try {
-                DynamicClassLoader classLoader = new DynamicClassLoader(modifierPath);
+                DynamicClassLoader classLoader = DynamicClassLoader.discover(modifierPath, List.of(), List.of(".*", "**/.*"));
                 List<Class<? extends BattleModifier>> classes = classLoader.getSubtypesOf(BattleModifier.class);
-                registry.addAll(classes);
+                swapModifiers(List.of(), classes);
             } catch (Exception e) {
                 throw new IllegalArgumentException("Invalid path: " + modifierPath, e);
             }
         }
     }
 
+    /**
+     * Make every draw on the current thread come from a sequence seeded with the given
+     * seed, so that the arsenals of a simulated match can be reproduced exactly. Call
+     * clearThreadSeed when the match is over.
+     * @param seed The seed for this thread's draws.
+     */
+    public static void setThreadSeed(long seed) {
+        threadRandom.set(new SeededRandom(seed));
+    }
+
+    /**
+     * Go back to drawing from the vault's shared random sequence on the current thread.
+     */
+    public static void clearThreadSeed() {
+        threadRandom.remove();
+    }
+
+    /**
+     * Get the seeded random source for draws on the current thread, so that a
+     * MatchSnapshot can capture where the draws are up to.
+     * @return The thread's seeded random source, or null if setThreadSeed has not been called.
+     */
+    static SeededRandom getThreadRandom() {
+        return threadRandom.get();
+    }
+
+    /**
+     * Continue the current thread's draws from a random source restored from a MatchSnapshot.
+     * @param seeded The random source to draw from until clearThreadSeed is called.
+     */
+    static void setThreadRandom(SeededRandom seeded) {
+        threadRandom.set(seeded);
+    }
+
+    /**
+     * Get the random source for draws on the current thread.
+     * @return The thread's seeded random source if one is set, otherwise the shared one.
+     */
+    private Random random() {
+        final Random seeded = threadRandom.get();
+        return seeded != null ? seeded : random;
+    }
+
+    /**
+     * Get the classes of battle modifiers registered in the vault.
+     * @return An unmodifiable snapshot of the registry, in registration order.
+     */
+    public List<Class<? extends BattleModifier>> getRegistry() {
+        return registry;
+    }
+
     /**
      * Register a new battle modifier class to the vault.
      * @param clazz The class of the battle modifier to register.
+     * @throws IllegalStateException if the class's match state id is taken by another class.
      */
-    public void registerBattleModifier(Class<? extends BattleModifier> clazz) {
+    public synchronized void registerBattleModifier(Class<? extends BattleModifier> clazz) {
         if (clazz != null && !registry.contains(clazz)) {
-            registry.add(clazz);
+            MatchState.modifierId(clazz);   // Refuse a class whose state id is taken now, not mid-match
+            final List<Class<? extends BattleModifier>> next = new ArrayList<>(registry);
+            next.add(clazz);
+            registry = List.copyOf(next);
         }
     }
-    
+
+    /**
+     * Atomically replace one set of modifier classes in the registry with another, for
+     * example when plugins are reloaded. Draws see either the old registry or the new
+     * one, never a mix, and vaults pinned before the swap keep the old one.
+     * @param removed The classes to take out, such as the previous plugin generation's.
+     * @param added The classes to add, in order, after the remaining ones.
+     * @throws IllegalStateException if an added class's match state id is taken by another class.
+     */
+    public synchronized void swapModifiers(List<Class<? extends BattleModifier>> removed,
+                                           List<Class<? extends BattleModifier>> added) {
+        final List<Class<? extends BattleModifier>> next = new ArrayList<>(registry);
+        next.removeAll(removed);
+        for (Class<? extends BattleModifier> clazz : added) {
+            MatchState.modifierId(clazz);
+        }
+        for (Class<? extends BattleModifier> clazz : added) {
+            if (!next.contains(clazz)) {
+                next.add(clazz);
+            }
+        }
+        registry = List.copyOf(next);
+    }
+
+    /**
+     * Get a vault that keeps drawing from the registry as it is now, even after
+     * modifiers are swapped. A champion's arsenal pins the vault when it is created, so
+     * a match in progress keeps the modifier classes it started with.
+     * @return The pinned vault.
+     */
+    public ModifierVault pin() {
+        return new ModifierVault(registry, random);
+    }
+
     /**
      * Draw a random battle modifier from the vault.
      * @return A random instance of a battle modifier, or null if the vault is empty.
      */
     public BattleModifier drawRandom() {
+        final List<Class<? extends BattleModifier>> registry = this.registry;
         if (registry.isEmpty()) return null;
-        return instantiate(registry.get(random.nextInt(registry.size())));
+        return instantiate(registry.get(random().nextInt(registry.size())));
     }
 
     /**
@@ -115,7 +237,7 @@ public class ModifierVault {
             .toList();
 
         if (matches.isEmpty()) return null;
-        return instantiate(matches.get(random.nextInt(matches.size())));
+        return instantiate(matches.get(random().nextInt(matches.size())));
     }
 
     /**
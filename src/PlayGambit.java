@@ -0,0 +1,34 @@
+/**
+ * A default action that allows the champion to play a gambit that
+ * they have pocketed. The gambit is removed from the pocket
+ * and activated. If no gambit is pocketed, the action does nothing.
+ */
+class PlayGambit extends Action {
+    public PlayGambit() {
+        super("Play Gambit");
+    }
+
+    @Override
+    public void execute(BattleContext context) {
+        Loadout loadout = context.wielder.getLoadout();
+        Gambit pocketed = loadout.getPocketedGambit();
+
+        if (pocketed == null) {
+            context.getLog().addEntry(
+                context.wielder, null, getName(),
+                context.wielder.getName() + " tries to play a Gambit... but none is ready!",
+                context.round, BattleLog.EntryType.INFO
+            );
+            return;
+        }
+
+        pocketed.activate(context);
+        loadout.swapPocketedGambit(null); // remove it from pocket
+
+        context.getLog().addEntry(
+            context.wielder, null, pocketed.getName(),
+            context.wielder.getName() + " activates the Gambit: " + pocketed.getName() + "!",
+            context.round, BattleLog.EntryType.MODIFIER
+        );
+    }
+}
@@ -0,0 +1,583 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A PluginCatalog is the set of Champion and BattleModifier plugins in a directory,
+ * kept in a catalog file so that later launches do not read the class files again.
+ *
+ * The catalog has a line for every class file under the directory, plugin or not,
+ * with its path, modification time, size, SHA-256 hash, class name, superclass and
+ * flags, and for plugins their display name. Class files in a jar have a line each,
+ * with a path such as "packs/fire.jar!/Blaze.class" and the jar's modification time
+ * and size. Opening a catalog walks the directory with one stat per file. Only class
+ * files and jars that are new or whose modification time or size changed are read
+ * again, in parallel, using the same header parsing as DynamicClassLoader.discover
+ * (and PluginJar for jars, which are not extracted). Unchanged plugins are not loaded
+ * until a caller asks for their classes. The file is only rewritten when something
+ * changed.
+ *
+ * Each class path root holding plugins (such as a community pack's folder), and
+ * each jar, is a Plugin with its own class loader, so that it can be unloaded
+ * without the others.
+ *
+ * One catalog can serve every caller that needs plugins from the same directory, so
+ * the directory is scanned once per launch (see ChampionsArena). ChampionsArena keeps
+ * the catalog file in the directory it catalogs, named CATALOG_FILE, so that each
+ * plugin folder has its own.
+ */
+public class PluginCatalog {
+    /**
+     * The name of the catalog file kept in a plugin folder.
+     */
+    public static final String CATALOG_FILE = "plugins.catalog";
+
+    private static final String HEADER = "# plugin catalog v1";
+    private static final String NONE = "-";
+    private static final String JAR_SEPARATOR = "!/";     // Between a jar's path and a class file's in it
+
+    private final Path root;
+    private final Map<String, Line> lines = new LinkedHashMap<>();   // By relative path, in walk order
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<Path, Plugin> plugins = new TreeMap<>();     // By root
+    private final Path catalogFile;
+    private int filesRead;
+    private boolean dirty;
+
+    /**
+     * Open the catalog of a directory, bringing it up to date with the directory.
+     * @param directory The directory containing plugin class files and jars.
+     * @param catalogFile The catalog file, created if it does not exist.
+     * @param includes Globs of the class files and jars to catalog, as for DynamicClassLoader.discover.
+     * @param excludes Globs of the files and directories to skip.
+     * @throws IllegalArgumentException if the directory is not valid.
+     * @throws UncheckedIOException if the directory cannot be walked or the catalog cannot be written.
+     */
+    public PluginCatalog(String directory, Path catalogFile, List<String> includes, List<String> excludes) {
+        this.root = Paths.get(directory).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("Invalid folder: " + directory);
+        }
+        final Map<String, Line> previous = read(catalogFile);
+
+        // A jar has a line per class in it, each keyed by the jar's modification time and size
+        final Map<String, List<Line>> previousJars = new HashMap<>();
+        for (Line line : previous.values()) {
+            final int separator = line.path.indexOf(JAR_SEPARATOR);
+            if (separator >= 0) {
+                previousJars.computeIfAbsent(line.path.substring(0, separator), k -> new ArrayList<>()).add(line);
+            }
+        }
+
+        // One stat per file, from the walk itself; changed files are read again below
+        final List<Path> files = new ArrayList<>();
+        final Map<Path, List<Line>> unchanged = new HashMap<>();
+        final List<Path> changed = new ArrayList<>();
+        final Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+        DynamicClassLoader.walk(root, includes, excludes, (file, attrs) -> {
+            final String path = root.relativize(file).toString();
+            final List<Line> old = PluginJar.isJar(file) ? previousJars.get(path)
+                : previous.containsKey(path) ? List.of(previous.get(path)) : null;
+            files.add(file);
+            if (old != null && old.get(0).modified == attrs.lastModifiedTime().toMillis()
+                    && old.get(0).size == attrs.size()) {
+                unchanged.put(file, old);
+            } else {
+                changed.add(file);
+                attributes.put(file, attrs);
+            }
+        });
+        // Class files and jars alike are read in parallel, each jar by one thread
+        final Map<Path, List<DynamicClassLoader.ClassHeader>> read = new ConcurrentHashMap<>();
+        changed.parallelStream().forEach(file -> read.put(file, DynamicClassLoader.readHeaders(file)));
+        filesRead = changed.size();
+        for (Path file : files) {
+            if (unchanged.containsKey(file)) {
+                for (Line line : unchanged.get(file)) {
+                    lines.put(line.path, line);
+                }
+                continue;
+            }
+            final String path = root.relativize(file).toString();
+            final boolean jar = PluginJar.isJar(file);
+            final BasicFileAttributes attrs = attributes.get(file);
+            for (DynamicClassLoader.ClassHeader header : read.get(file)) {
+                final String linePath = jar ? path + JAR_SEPARATOR + header.name.replace('.', '/') + ".class" : path;
+                lines.put(linePath, new Line(linePath, attrs.lastModifiedTime().toMillis(),
+                    jar ? attrs.size() : header.bytes.length,
+                    HexFormat.of().formatHex(DynamicClassLoader.sha256(header.bytes)), header.name,
+                    header.superName, header.access, null, header));
+            }
+        }
+
+        // The first class file found for a name wins, as it would on a class path
+        final Map<String, Line> byName = new HashMap<>();
+        final Map<String, String> superNames = new HashMap<>();
+        for (Line line : lines.values()) {
+            if (byName.putIfAbsent(line.className, line) == null) {
+                superNames.put(line.className, line.superName);
+            }
+        }
+        final Map<String, Class<?>> kinds = new HashMap<>();
+        for (Line line : byName.values()) {
+            final Class<?> kind = DynamicClassLoader.isCandidate(line.className, line.access)
+                ? DynamicClassLoader.pluginKind(line.className, superNames, kinds) : null;
+            if (kind != null) {
+                // Each root is a plugin with its own loader, so it can be unloaded on its own
+                final Plugin plugin = plugins.computeIfAbsent(line.root(root), Plugin::new);
+                final Entry entry = new Entry(line, kind, plugin);
+                entries.add(entry);
+                plugin.entries.add(entry);
+                if (line.header != null) {
+                    plugin.definitions.put(line.className, line.header.bytes);
+                }
+            }
+        }
+        entries.sort(Comparator.comparing(e -> e.line.className));
+        for (Plugin plugin : plugins.values()) {
+            plugin.entries.sort(Comparator.comparing(e -> e.line.className));
+        }
+
+        this.catalogFile = catalogFile;
+        this.dirty = !previous.keySet().equals(lines.keySet()) || filesRead > 0;
+        for (Line line : lines.values()) {
+            line.header = null;     // Only needed to define the changed classes
+        }
+        save();
+    }
+
+    /**
+     * Write the catalog file if anything has changed since it was read or last saved.
+     * Plugins whose display names are not known yet are created to get them, except
+     * for champions while the ModifierVault is not initialized (champions need it to
+     * be created), so call this again once it is.
+     * @throws UncheckedIOException if the catalog cannot be written.
+     */
+    public synchronized void save() {
+        for (Entry entry : entries) {
+            if (entry.line.displayName == null) {
+                entry.line.displayName = displayName(entry);
+                dirty |= entry.line.displayName != null;
+            }
+        }
+        if (dirty) {
+            write(catalogFile);
+            dirty = false;
+        }
+    }
+
+    private String displayName(Entry entry) {
+        if (entry.kind == Champion.class && !ModifierVault.isInitialized()) {
+            return null;
+        }
+        try {
+            final Object plugin = entry.load().getDeclaredConstructor().newInstance();
+            return plugin instanceof Champion ? ((Champion) plugin).getName() : ((BattleModifier) plugin).getName();
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            System.err.println("Cannot create " + entry.getClassName() + " for its name: " + e);
+            return entry.getClassName();
+        }
+    }
+
+    private static Map<String, Line> read(Path file) {
+        final Map<String, Line> previous = new LinkedHashMap<>();   // In file order, so each jar's lines stay in order
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) {
+                System.err.println("Ignoring a catalog in an unknown format: " + file);
+                return previous;
+            }
+            String text;
+            while ((text = in.readLine()) != null) {
+                final String[] parts = text.split("\t");
+                if (parts.length != 8) {
+                    System.err.println("Ignoring a bad catalog line: " + text);
+                    continue;
+                }
+                previous.put(parts[0], new Line(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3],
+                    parts[4], NONE.equals(parts[5]) ? null : parts[5], Integer.parseInt(parts[6]),
+                    NONE.equals(parts[7]) ? null : parts[7], null));
+            }
+        } catch (NoSuchFileException e) {
+            // A first launch: every class file is read
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Ignoring an unreadable catalog: " + file);
+            previous.clear();
+        }
+        return previous;
+    }
+
+    private void write(Path file) {
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        final Set<String> pluginPaths = new HashSet<>();
+        for (Entry entry : entries) {
+            pluginPaths.add(entry.line.path);
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (Line line : lines.values()) {
+                final String name = pluginPaths.contains(line.path) && line.displayName != null
+                    ? line.displayName.replaceAll("[\t\r\n]", " ") : NONE;
+                out.write(String.join("\t", line.path, Long.toString(line.modified), Long.toString(line.size),
+                    line.hash, line.className, line.superName == null ? NONE : line.superName,
+                    Integer.toString(line.access), name));
+                out.newLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Get the plugins in the directory, in order of their class names.
+     * @return The plugins.
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Get the plugin directories, each with its own class loader, in order of their paths.
+     * @return The plugins, including any that have been unloaded.
+     */
+    public List<Plugin> getPlugins() {
+        return List.copyOf(plugins.values());
+    }
+
+    /**
+     * Load the plugins of a type.
+     * @param type Champion or BattleModifier.
+     * @param <T> The type.
+     * @return The loaded classes, in order of their names. Plugins that fail to load,
+     *         and those in unloaded plugin directories, are left out.
+     */
+    public <T> List<Class<? extends T>> getSubtypesOf(Class<T> type) {
+        final List<Class<? extends T>> results = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (type.isAssignableFrom(entry.kind) && entry.plugin.getState() == State.LOADED) {
+                try {
+                    results.add(entry.load().asSubclass(type));
+                } catch (ClassNotFoundException | LinkageError | ClassCastException e) {
+                    System.err.println("Failed to load: " + entry.getClassName());
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Get the number of class files and jars that were read when the catalog was
+     * opened, because they were new or had changed.
+     * @return The number of files read.
+     */
+    public int getFilesRead() {
+        return filesRead;
+    }
+
+    /**
+     * Get the number of class files in the catalog, plugins or not.
+     * @return The number of class files.
+     */
+    public int getFiles() {
+        return lines.size();
+    }
+
+    /**
+     * One catalog line.
+     */
+    private static final class Line {
+        final String path;
+        final long modified;
+        final long size;
+        final String hash;
+        final String className;
+        final String superName;
+        final int access;
+        String displayName;
+        DynamicClassLoader.ClassHeader header;  // Only for files read while opening
+
+        Line(String path, long modified, long size, String hash, String className, String superName, int access,
+             String displayName, DynamicClassLoader.ClassHeader header) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+            this.hash = hash;
+            this.className = className;
+            this.superName = superName;
+            this.access = access;
+            this.displayName = displayName;
+            this.header = header;
+        }
+
+        Path root(Path directory) {
+            final int separator = path.indexOf(JAR_SEPARATOR);
+            if (separator >= 0) {
+                return directory.resolve(path.substring(0, separator));
+            }
+            Path root = directory.resolve(path);
+            for (int i = className.split("\\.").length; i > 0; i--) {
+                root = root.getParent();
+            }
+            return root;
+        }
+    }
+
+    /**
+     * A plugin in the catalog.
+     */
+    public final class Entry {
+        private final Line line;
+        private final Class<?> kind;
+        private final Plugin plugin;
+        private Class<?> loaded;
+
+        private Entry(Line line, Class<?> kind, Plugin plugin) {
+            this.line = line;
+            this.kind = kind;
+            this.plugin = plugin;
+        }
+
+        /**
+         * @return The plugin's class name.
+         */
+        public String getClassName() {
+            return line.className;
+        }
+
+        /**
+         * @return The plugin's direct superclass name.
+         */
+        public String getSuperName() {
+            return line.superName;
+        }
+
+        /**
+         * @return Champion or BattleModifier.
+         */
+        public Class<?> getKind() {
+            return kind;
+        }
+
+        /**
+         * @return The name the plugin gives itself, known without loading it, or null
+         *         if it has not been worked out yet (see save).
+         */
+        public String getDisplayName() {
+            return line.displayName;
+        }
+
+        /**
+         * @return The plugin's class file, or the jar it is in.
+         */
+        public Path getFile() {
+            final int separator = line.path.indexOf(JAR_SEPARATOR);
+            return root.resolve(separator < 0 ? line.path : line.path.substring(0, separator));
+        }
+
+        /**
+         * @return The plugin directory the class is loaded from.
+         */
+        public Plugin getPlugin() {
+            return plugin;
+        }
+
+        /**
+         * @return The SHA-256 hash of the plugin's class file, in hex.
+         */
+        public String getHash() {
+            return line.hash;
+        }
+
+        /**
+         * Load the plugin's class, if it has not been loaded yet.
+         * @return The class.
+         * @throws ClassNotFoundException if the class file has gone.
+         * @throws IllegalStateException if its plugin directory has been unloaded.
+         */
+        public synchronized Class<?> load() throws ClassNotFoundException {
+            if (loaded == null) {
+                final DynamicClassLoader.PluginLoader loader = plugin.loader;
+                if (loader == null) {
+                    throw new IllegalStateException("Plugin has been unloaded: " + plugin.root);
+                }
+                loaded = loader.loadClass(line.className);
+                if (loaded.getClassLoader() == loader) {
+                    DynamicClassLoader.recordBytecodeHash(loaded, HexFormat.of().parseHex(line.hash));
+                }
+            }
+            return loaded;
+        }
+
+        /**
+         * @return A string representation of the entry.
+         */
+        @Override
+        public String toString() {
+            return line.className + " (" + kind.getName() + ", \"" + line.displayName + "\")";
+        }
+    }
+
+    /**
+     * The life of a plugin directory.
+     */
+    public enum State {
+        /** Its classes can be loaded. */
+        LOADED,
+        /** Unloaded, but its classes are still in use somewhere. */
+        UNLOADING,
+        /** Unloaded, and its class loader has been garbage collected. */
+        COLLECTED
+    }
+
+    /**
+     * A plugin directory: a class path root or jar holding plugins, loaded by its own
+     * class loader. Its footprint is tracked as its classes are defined, and once it is
+     * unloaded the catalog lets go of its loader, so its classes can be garbage
+     * collected as soon as nothing else (such as a match in progress) uses them.
+     */
+    public final class Plugin {
+        private final Path root;
+        private final List<Entry> entries = new ArrayList<>();
+        private final Map<String, byte[]> definitions = new HashMap<>();
+        private volatile DynamicClassLoader.PluginLoader loader;
+        private volatile WeakReference<DynamicClassLoader.PluginLoader> unloaded;
+
+        private Plugin(Path root) {
+            this.root = root;
+            // Not closed while loaded: plugins load their helper classes through it on first use
+            this.loader = new DynamicClassLoader.PluginLoader(root, definitions);
+        }
+
+        /**
+         * @return The plugin directory, or jar.
+         */
+        public Path getRoot() {
+            return root;
+        }
+
+        /**
+         * @return The plugins in the directory, in order of their class names.
+         */
+        public List<Entry> getEntries() {
+            return Collections.unmodifiableList(entries);
+        }
+
+        /**
+         * @return Whether the plugin directory is loaded, unloading or collected.
+         */
+        public State getState() {
+            if (loader != null) {
+                return State.LOADED;
+            }
+            return unloaded.get() != null ? State.UNLOADING : State.COLLECTED;
+        }
+
+        /**
+         * Check whether a class was loaded from this plugin directory.
+         * @param type The class.
+         * @return True if its class loader is this plugin's.
+         */
+        public boolean owns(Class<?> type) {
+            final ClassLoader owner = type.getClassLoader();
+            return owner != null && (owner == loader || unloaded != null && owner == unloaded.get());
+        }
+
+        /**
+         * @return The number of classes loaded from the directory, helpers included.
+         */
+        public int getLoadedClasses() {
+            final DynamicClassLoader.PluginLoader current = current();
+            return current == null ? 0 : current.getLoadedClasses();
+        }
+
+        /**
+         * @return The total size of the class files loaded from the directory.
+         */
+        public long getClassBytes() {
+            final DynamicClassLoader.PluginLoader current = current();
+            return current == null ? 0 : current.getClassBytes();
+        }
+
+        /**
+         * Estimate the memory the directory's classes hold, which unloading it frees
+         * once they are collected. It is the growth in metaspace use measured while they
+         * were defined, so it is approximate, and leaves out the heap held by their
+         * static fields and instances.
+         * @return The estimate in bytes.
+         */
+        public long getRetainedEstimate() {
+            final DynamicClassLoader.PluginLoader current = current();
+            return current == null ? 0 : current.getMetaspaceBytes();
+        }
+
+        private DynamicClassLoader.PluginLoader current() {
+            final DynamicClassLoader.PluginLoader current = loader;
+            return current != null ? current : unloaded.get();
+        }
+
+        /**
+         * Unload the plugin directory. Its classes can no longer be loaded through the
+         * catalog, and the catalog keeps no strong reference to them. Callers must stop
+         * offering them too (such as removing its modifiers from the ModifierVault, see
+         * PluginReloader.unload); matches in progress keep them until they end.
+         */
+        public void unload() {
+            synchronized (PluginCatalog.this) {
+                final DynamicClassLoader.PluginLoader current = loader;
+                if (current == null) {
+                    return;
+                }
+                for (Entry entry : entries) {
+                    synchronized (entry) {
+                        entry.loaded = null;
+                    }
+                }
+                synchronized (definitions) {
+                    definitions.clear();
+                }
+                try {
+                    current.close();    // Closes its class path, not the classes already loaded
+                } catch (IOException e) {
+                    System.err.println("Failed to close the loader of " + root + ": " + e.getMessage());
+                }
+                unloaded = new WeakReference<>(current);
+                loader = null;
+            }
+        }
+
+        /**
+         * @return A string representation of the plugin directory and its footprint.
+         */
+        @Override
+        public String toString() {
+            return String.format("%s (%s): %d plugins, %d classes, %d bytes of class files, ~%d bytes of metaspace",
+                root, getState(), entries.size(), getLoadedClasses(), getClassBytes(), getRetainedEstimate());
+        }
+    }
+}
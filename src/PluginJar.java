@@ -0,0 +1,250 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the class files in a plugin jar without extracting it. The jar is memory
+ * mapped and its central directory read in place; each class file's header is then
+ * parsed straight from its stored or inflated bytes (see DynamicClassLoader.readHeader).
+ * Jars the mapped reader does not handle (zip64, over 2 GB, or entries compressed
+ * other than by deflate) are read through JarFile instead.
+ *
+ * Multi-release jars are honoured: for each class, the entry under
+ * META-INF/versions/N with the highest N no newer than the running Java is used,
+ * as the class loader will when it loads the class.
+ */
+final class PluginJar {
+    private static final int END_SIGNATURE = 0x06054b50;       // End of central directory record
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;   // Central directory file header
+    private static final int LOCAL_SIGNATURE = 0x04034b50;     // Local file header
+    private static final int END_LENGTH = 22;
+    private static final String MANIFEST = "META-INF/MANIFEST.MF";
+    private static final String VERSIONS = "META-INF/versions/";
+    private static final int RUNTIME_VERSION = Runtime.version().feature();
+
+    private PluginJar() {
+    }
+
+    /**
+     * Check if a file is a jar, by its name.
+     * @param file The file.
+     * @return true if it ends in .jar.
+     */
+    static boolean isJar(Path file) {
+        return file.getFileName().toString().endsWith(".jar");
+    }
+
+    /**
+     * Read the headers of the class files in a jar. Their root is the jar itself.
+     * @param jar The jar.
+     * @return The headers, in the order of the jar's central directory. Entries that
+     *         are not valid class files are left out with a warning.
+     */
+    static List<DynamicClassLoader.ClassHeader> readHeaders(Path jar) {
+        try {
+            final Map<String, byte[]> classes = readMapped(jar);
+            return headers(jar, classes != null ? classes : readZipFile(jar));
+        } catch (IOException | RuntimeException | DataFormatException e) {
+            System.err.println("Failed to read: " + jar + " (" + e + ")");
+            return List.of();
+        }
+    }
+
+    private static List<DynamicClassLoader.ClassHeader> headers(Path jar, Map<String, byte[]> classes) {
+        final List<DynamicClassLoader.ClassHeader> headers = new ArrayList<>(classes.size());
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            final DynamicClassLoader.ClassHeader header =
+                DynamicClassLoader.readHeader(entry.getValue(), jar + "!/" + entry.getKey());
+            if (header == null) {
+                continue;
+            }
+            if (!entry.getKey().equals(header.name.replace('.', '/') + ".class")) {
+                System.err.println("Skipping " + jar + "!/" + entry.getKey() + ": it holds " + header.name);
+                continue;
+            }
+            headers.add(header.withRoot(jar));
+        }
+        return headers;
+    }
+
+    /**
+     * The class files of a jar by their unversioned entry names, read from a mapping
+     * of the jar, or null if the jar needs the JarFile fallback.
+     */
+    private static Map<String, byte[]> readMapped(Path jar) throws IOException, DataFormatException {
+        final ByteBuffer zip;
+        try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE || channel.size() < END_LENGTH) {
+                return null;
+            }
+            // The mapping outlives the channel; it is released when the buffer is collected
+            zip = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        // The end record is last, unless the jar has a comment of up to 64 KB after it
+        int end = -1;
+        for (int i = zip.limit() - END_LENGTH; i >= Math.max(0, zip.limit() - END_LENGTH - 0xFFFF); i--) {
+            if (zip.getInt(i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException("No central directory");
+        }
+        final int count = zip.getShort(end + 10) & 0xFFFF;
+        final long offset = zip.getInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+            return null;    // Zip64
+        }
+
+        // Versioned entries replace base ones only in a multi-release jar
+        final Map<String, Integer> versions = new HashMap<>();
+        final Map<String, byte[]> classes = new LinkedHashMap<>();
+        byte[] manifest = null;
+        int at = (int) offset;
+        for (int i = 0; i < count; i++) {
+            if (zip.getInt(at) != CENTRAL_SIGNATURE) {
+                throw new IOException("Bad central directory entry at " + at);
+            }
+            final int flags = zip.getShort(at + 8) & 0xFFFF;
+            final int method = zip.getShort(at + 10) & 0xFFFF;
+            final int compressed = zip.getInt(at + 20);
+            final int size = zip.getInt(at + 24);
+            final int nameLength = zip.getShort(at + 28) & 0xFFFF;
+            final int extraLength = zip.getShort(at + 30) & 0xFFFF;
+            final int commentLength = zip.getShort(at + 32) & 0xFFFF;
+            final int local = zip.getInt(at + 42);
+            final byte[] nameBytes = new byte[nameLength];
+            zip.get(at + 46, nameBytes);
+            final String name = new String(nameBytes, StandardCharsets.UTF_8);
+            at += 46 + nameLength + extraLength + commentLength;
+
+            final boolean isClass = name.endsWith(".class");
+            if (!isClass && !name.equals(MANIFEST)) {
+                continue;
+            }
+            if ((flags & 1) != 0 || (method != 0 && method != 8) || compressed < 0 || size < 0 || local < 0) {
+                return null;    // Encrypted, another compression method, or sizes past 2 GB
+            }
+            String base = name;
+            int version = 0;
+            if (name.startsWith(VERSIONS)) {
+                final int slash = name.indexOf('/', VERSIONS.length());
+                try {
+                    version = slash < 0 ? -1 : Integer.parseInt(name.substring(VERSIONS.length(), slash));
+                } catch (NumberFormatException e) {
+                    version = -1;
+                }
+                if (version <= 0 || version > RUNTIME_VERSION) {
+                    continue;
+                }
+                base = name.substring(slash + 1);
+            }
+            if (isClass && versions.getOrDefault(base, -1) >= version) {
+                continue;
+            }
+            // The local header's name and extra field lengths can differ from the central directory's
+            final int data = local + 30 + (zip.getShort(local + 26) & 0xFFFF) + (zip.getShort(local + 28) & 0xFFFF);
+            if (zip.getInt(local) != LOCAL_SIGNATURE) {
+                throw new IOException("Bad local header for " + name);
+            }
+            final byte[] bytes = method == 0 ? copy(zip, data, size) : inflate(zip, data, compressed, size);
+            if (isClass) {
+                versions.put(base, version);
+                classes.put(base, bytes);
+            } else {
+                manifest = bytes;
+            }
+        }
+        if (!versions.values().stream().allMatch(v -> v == 0) && !isMultiRelease(manifest)) {
+            return readBaseOnly(jar);
+        }
+        return classes;
+    }
+
+    private static byte[] copy(ByteBuffer zip, int data, int size) {
+        final byte[] bytes = new byte[size];
+        zip.get(data, bytes);
+        return bytes;
+    }
+
+    private static byte[] inflate(ByteBuffer zip, int data, int compressed, int size) throws DataFormatException {
+        final Inflater inflater = new Inflater(true);   // Zip entries are raw deflate, without a zlib header
+        try {
+            inflater.setInput(zip.slice(data, compressed));
+            final byte[] bytes = new byte[size];
+            int read = 0;
+            while (read < size && !inflater.finished()) {
+                final int n = inflater.inflate(bytes, read, size - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated entry");
+                }
+                read += n;
+            }
+            if (read != size) {
+                throw new DataFormatException("Entry is " + read + " bytes, not " + size);
+            }
+            return bytes;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static boolean isMultiRelease(byte[] manifest) throws IOException {
+        if (manifest == null) {
+            return false;
+        }
+        final Attributes attributes = new Manifest(new ByteArrayInputStream(manifest)).getMainAttributes();
+        return "true".equalsIgnoreCase(attributes.getValue("Multi-Release"));
+    }
+
+    /**
+     * A jar with versioned entries that is not multi-release: its versioned entries
+     * are ordinary files, so read it again through JarFile ignoring them. Rare enough
+     * not to need mapping.
+     */
+    private static Map<String, byte[]> readBaseOnly(Path jar) throws IOException {
+        try (JarFile file = new JarFile(jar.toFile())) {
+            return read(file);
+        }
+    }
+
+    private static Map<String, byte[]> readZipFile(Path jar) throws IOException {
+        try (JarFile file = new JarFile(jar.toFile(), false, ZipFile.OPEN_READ, Runtime.version())) {
+            return read(file);
+        }
+    }
+
+    private static Map<String, byte[]> read(JarFile file) throws IOException {
+        // A multi-release JarFile streams each class once, under its base name, at its runtime version
+        final Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (JarEntry entry : (Iterable<JarEntry>) file.versionedStream()::iterator) {
+            final String name = entry.getName();
+            if (name.endsWith(".class") && !name.startsWith(VERSIONS)) {
+                try (InputStream in = file.getInputStream(entry)) {
+                    classes.put(name, in.readAllBytes());
+                }
+            }
+        }
+        return classes;
+    }
+}
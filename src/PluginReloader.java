@@ -0,0 +1,251 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * PluginReloader keeps a running arena's champions and modifiers in step with its
+ * plugin folder. It watches the folder and its subdirectories with a WatchService,
+ * and once a burst of changes has settled it opens the folder's PluginCatalog again,
+ * which loads the plugins in a fresh class loader: a new generation.
+ *
+ * A new generation's modifiers are swapped into the ModifierVault registry in one
+ * step, replacing the previous generation's, and its champions become the roster
+ * returned by getGeneration. The generation is published through one atomic
+ * reference, so a consumer (such as a MatchHost, or a lobby offering champions to
+ * a MatchmakingQueue) that reads it once per decision sees one generation's roster
+ * whole, and the next decision sees the newest. A match in progress is not affected: its champions'
+ * classes come from the generation they were created in, and their arsenals draw
+ * from a vault pinned when they were created (see ModifierVault.pin).
+ *
+ * Nothing here keeps a reference to an old generation once it is replaced, so when
+ * the last match using it ends, its class loader and classes can be unloaded and
+ * their metaspace freed. Code that caches plugin classes (a roster held elsewhere,
+ * a registry copy in a replay recorder) holds on to their generation until it lets
+ * go of them.
+ */
+public class PluginReloader implements AutoCloseable {
+    private static final long QUIET_MILLIS = 250;     // How long changes must settle before reloading
+    private static final List<String> EXCLUDES = List.of(".*", "**/.*");
+
+    private final ModifierVault vault;
+    private final Path directory;
+    private final Path catalogFile;
+    private final WatchService watcher;
+    private final Thread thread;
+    private final AtomicReference<Generation> generation = new AtomicReference<>();
+    private volatile Consumer<Generation> listener;
+
+    /**
+     * Load the plugins in a folder and start watching it.
+     * @param vault The vault to swap modifiers into.
+     * @param directory The plugin folder.
+     * @param catalogFile The folder's catalog file (see PluginCatalog).
+     * @throws IOException if the folder cannot be watched.
+     * @throws IllegalArgumentException if the folder is not valid.
+     */
+    public PluginReloader(ModifierVault vault, String directory, Path catalogFile) throws IOException {
+        this.vault = vault;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.catalogFile = catalogFile;
+        this.watcher = FileSystems.getDefault().newWatchService();
+        register(this.directory);
+        generation.set(new Generation(0, null, List.of(), List.of()));
+        reload();
+        this.thread = new Thread(this::watch, "plugin-reloader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Get the current generation of plugins.
+     * @return The generation.
+     */
+    public Generation getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Set a listener to be told about each new generation, on the watching thread.
+     * @param listener The listener, or null for none.
+     */
+    public void setListener(Consumer<Generation> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Load the plugins again now, as a new generation, whether or not anything changed.
+     * @return The new generation.
+     */
+    public synchronized Generation reload() {
+        final PluginCatalog catalog = new PluginCatalog(directory.toString(), catalogFile, List.of(), EXCLUDES);
+        final Generation previous = generation.get();
+        final Generation next = new Generation(previous.number + 1, catalog,
+            catalog.getSubtypesOf(Champion.class), catalog.getSubtypesOf(BattleModifier.class));
+        publish(previous, next);
+        catalog.save();     // Champion names can be catalogued now that they have loaded
+        return next;
+    }
+
+    /**
+     * Unload one plugin directory of the current generation: its modifiers leave the
+     * vault and its champions the roster at once, and its classes are freed when the
+     * last match using them ends (see PluginCatalog.Plugin.getState). It stays
+     * unloaded until the next reload.
+     * @param plugin The plugin directory, from getGeneration().getPlugins().
+     * @return The generation without it, numbered as the next one.
+     * @throws IllegalArgumentException if the plugin is not from the current generation.
+     */
+    public synchronized Generation unload(PluginCatalog.Plugin plugin) {
+        final Generation previous = generation.get();
+        if (!previous.getPlugins().contains(plugin)) {
+            throw new IllegalArgumentException("Not a plugin of generation " + previous.number + ": " + plugin.getRoot());
+        }
+        final List<Class<? extends Champion>> champions = new ArrayList<>(previous.champions);
+        final List<Class<? extends BattleModifier>> modifiers = new ArrayList<>(previous.modifiers);
+        champions.removeIf(plugin::owns);
+        modifiers.removeIf(plugin::owns);
+        final Generation next = new Generation(previous.number + 1, previous.catalog, champions, modifiers);
+        publish(previous, next);
+        plugin.unload();
+        return next;
+    }
+
+    private void publish(Generation previous, Generation next) {
+        vault.swapModifiers(previous.modifiers, next.modifiers);
+        generation.set(next);
+        final Consumer<Generation> listener = this.listener;
+        if (listener != null) {
+            listener.accept(next);
+        }
+    }
+
+    private void register(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(root) && dir.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                             StandardWatchEventKinds.ENTRY_DELETE);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                // Wait for the burst (such as a whole build being copied in) to settle
+                while (key != null) {
+                    changed |= handle(key);
+                    key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (changed) {
+                    try {
+                        reload();
+                    } catch (RuntimeException e) {
+                        System.err.println("Plugin reload failed: " + e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private boolean handle(WatchKey key) {
+        final Path dir = (Path) key.watchable();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+                continue;
+            }
+            final Path file = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file)) {
+                try {
+                    register(file);
+                } catch (IOException e) {
+                    System.err.println("Cannot watch " + file + ": " + e.getMessage());
+                }
+                changed = true;
+            } else if (file.getFileName().toString().endsWith(".class") || PluginJar.isJar(file)) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Stop watching. The current generation stays in the vault.
+     * @throws IOException if the watch service cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        thread.interrupt();
+    }
+
+    /**
+     * One generation of plugins, loaded from one opening of the catalog (each plugin
+     * directory by its own class loader).
+     */
+    public static final class Generation {
+        /**
+         * The generation's number, counting up from 1.
+         */
+        public final int number;
+        private final PluginCatalog catalog;
+        private final List<Class<? extends Champion>> champions;
+        private final List<Class<? extends BattleModifier>> modifiers;
+
+        Generation(int number, PluginCatalog catalog, List<Class<? extends Champion>> champions,
+                   List<Class<? extends BattleModifier>> modifiers) {
+            this.number = number;
+            this.catalog = catalog;
+            this.champions = List.copyOf(champions);
+            this.modifiers = List.copyOf(modifiers);
+        }
+
+        /**
+         * @return The plugin champions, in order of their names.
+         */
+        public List<Class<? extends Champion>> getChampions() {
+            return champions;
+        }
+
+        /**
+         * @return The plugin modifiers, in order of their names.
+         */
+        public List<Class<? extends BattleModifier>> getModifiers() {
+            return modifiers;
+        }
+
+        /**
+         * @return The plugin directories the generation was loaded from, with their
+         *         footprints, including any unloaded since.
+         */
+        public List<PluginCatalog.Plugin> getPlugins() {
+            return catalog == null ? List.of() : catalog.getPlugins();
+        }
+    }
+}
@@ -0,0 +1,499 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * PluginWatchdog keeps plugin code from hanging a match thread. Matches run through
+ * runMatch, and while they do, a watchdog thread samples each match thread's CPU
+ * time with ThreadMXBean. Two budgets apply:
+ *
+ * - Per call: planning one champion's turn (bots preview modifier hooks), one
+ *   action, or one champion's turn-end modifier hooks. Modifier hooks triggered by
+ *   an action count towards the action's call.
+ * - Per match: the CPU time the match has spent in plugin code altogether.
+ *
+ * Both are measured by sampling, every poll interval, so a call is only noticed
+ * once it has been running for up to one interval, and the per-match total counts
+ * an interval's CPU time to plugin code if the thread was in it when sampled. This
+ * keeps the cost on the match thread to a field write and a compare-and-set per
+ * call.
+ *
+ * Each watched match is played on one of the watchdog's own threads while the
+ * caller waits for it. A match that runs over a budget is abandoned: the caller
+ * stops waiting, and gets a Forfeit with the champion whose plugin was running as
+ * the loser. The engine stays with the abandoned thread, so the caller must not
+ * touch it, its champions, log or controllers again. Java has no way to get a
+ * thread out of a loop that never calls back into the game (Thread.stop is gone
+ * from recent JDKs), and thread priorities are ignored on Linux, so the abandoned
+ * thread keeps its core busy. If the plugin code ever returns, the thread gives
+ * the match up at once, the next time the engine notes the start or end of plugin
+ * code. getAbandonedThreads counts the threads that have not, so a host can
+ * restart itself before they take over the machine.
+ *
+ * The plugin is found from the abandoned thread's stack: the innermost frame
+ * belonging to either champion's class, its actions, a modifier in either
+ * starting loadout or a modifier in the vault. It is quarantined at once: a
+ * modifier is removed from the ModifierVault, and a champion forfeits every match
+ * it is entered in from then on. Roster owners can drop quarantined champions with
+ * withoutQuarantined, or be told through setQuarantineListener.
+ */
+public class PluginWatchdog implements AutoCloseable {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final ModifierVault vault;
+    private final long callBudgetNanos;
+    private final long matchBudgetNanos;
+    private final long pollMillis;
+    private final Set<Watch> watches = ConcurrentHashMap.newKeySet();
+    // Weak, so unloaded plugins are forgotten
+    private final Set<Class<?>> quarantined = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final LongAdder aborted = new LongAdder();
+    private final AtomicInteger abandonedThreads = new AtomicInteger();
+    private final Thread thread;
+    private final ExecutorService matches;    // Plays watched matches; an abandoned thread is not reused
+    private volatile Consumer<Class<?>> quarantineListener;
+    private volatile boolean closed;
+
+    /**
+     * Start a watchdog.
+     * @param vault The vault to remove quarantined modifiers from.
+     * @param callBudgetMillis The CPU time one call of plugin code may take.
+     * @param matchBudgetMillis The CPU time a match may spend in plugin code.
+     * @throws IllegalArgumentException if a budget is not positive.
+     * @throws IllegalStateException if the JVM cannot measure thread CPU time.
+     */
+    public PluginWatchdog(ModifierVault vault, long callBudgetMillis, long matchBudgetMillis) {
+        if (callBudgetMillis <= 0 || matchBudgetMillis <= 0) {
+            throw new IllegalArgumentException("Budgets must be positive");
+        }
+        if (!THREADS.isThreadCpuTimeSupported()) {
+            throw new IllegalStateException("Thread CPU time is not supported by this JVM");
+        }
+        if (!THREADS.isThreadCpuTimeEnabled()) {
+            THREADS.setThreadCpuTimeEnabled(true);
+        }
+        this.vault = vault;
+        this.callBudgetNanos = callBudgetMillis * 1_000_000;
+        this.matchBudgetNanos = matchBudgetMillis * 1_000_000;
+        this.pollMillis = Math.max(1, Math.min(callBudgetMillis, matchBudgetMillis) / 4);
+        this.thread = new Thread(this::watch, "plugin-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+        this.matches = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "plugin-match");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Set a listener to be told when a plugin is quarantined, on the thread whose
+     * match it hung.
+     * @param listener The listener, or null for none.
+     */
+    public void setQuarantineListener(Consumer<Class<?>> listener) {
+        this.quarantineListener = listener;
+    }
+
+    /**
+     * Run a match under the watchdog's budgets, on one of the watchdog's threads with
+     * the current thread's seeded draws, waiting for it to end. If a champion's
+     * plugin runs over budget, the match is abandoned and that champion forfeits; the
+     * engine is left to the abandoned thread, and the result comes from the returned
+     * Forfeit. A quarantined champion forfeits at once, through the engine (see
+     * BattleEngine.getForfeitReason). Once the watchdog is closed, matches are run
+     * unwatched on the current thread.
+     * @param engine The match, which must not be over.
+     * @return The forfeit if the match was abandoned, in which case the engine must
+     *         not be touched again, or null if the engine is over and the caller's.
+     */
+    public Forfeit runMatch(BattleEngine engine) {
+        for (Champion champ : List.of(engine.getChampionA(), engine.getChampionB())) {
+            if (isQuarantined(champ.getClass())) {
+                engine.forfeit(champ, champ.getClass().getName() + " is quarantined");
+                return null;
+            }
+        }
+        final Watch watch = new Watch(engine, culprits(engine));
+        final SeededRandom draws = ModifierVault.getThreadRandom();
+        engine.setWatch(watch);
+        watches.add(watch);
+        try {
+            if (closed) {
+                throw new RejectedExecutionException("The watchdog is closed");
+            }
+            matches.execute(() -> play(watch, draws));
+        } catch (RejectedExecutionException e) {
+            watches.remove(watch);
+            engine.setWatch(null);
+            engine.runMatch();
+            return null;
+        }
+        try {
+            watch.done.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        } finally {
+            watches.remove(watch);
+        }
+        if (!watch.isAbandoned()) {
+            engine.setWatch(null);
+            return null;
+        }
+        // The engine keeps the watch, so the abandoned thread gives the match up if it gets back to it
+        aborted.increment();
+        if (watch.offender != null) {
+            quarantine(watch.offender);
+        }
+        return new Forfeit(watch);
+    }
+
+    /**
+     * Work out, on the caller's thread before the match starts, which plugin each
+     * class that may hang it belongs to: either champion's class and actions, the
+     * modifiers in either starting loadout, and the modifiers in the vault, which a
+     * champion may pick up during the match. Those are blamed on the side whose call
+     * it was (an owner of null).
+     */
+    private Map<String, Culprit> culprits(BattleEngine engine) {
+        final Map<String, Culprit> classes = new HashMap<>();
+        for (Champion champ : List.of(engine.getChampionA(), engine.getChampionB())) {
+            final Culprit self = new Culprit(champ.getClass(), champ);
+            classes.putIfAbsent(champ.getClass().getName(), self);
+            for (Action action : champ.getActionCatalog().asList()) {
+                classes.putIfAbsent(action.getClass().getName(), self);
+            }
+        }
+        for (Champion champ : List.of(engine.getChampionA(), engine.getChampionB())) {
+            for (BattleModifier mod : champ.getLoadout().getActiveModifiers()) {
+                final Culprit other = classes.putIfAbsent(mod.getClass().getName(), new Culprit(mod.getClass(), champ));
+                if (other != null && other.plugin == mod.getClass() && other.owner != champ) {
+                    // A modifier in both loadouts is blamed on the side whose call it was
+                    classes.put(mod.getClass().getName(), new Culprit(mod.getClass(), null));
+                }
+            }
+        }
+        for (Class<? extends BattleModifier> mod : vault.getRegistry()) {
+            classes.putIfAbsent(mod.getName(), new Culprit(mod, null));
+        }
+        return classes;
+    }
+
+    /**
+     * Play a watched match on one of the watchdog's threads.
+     */
+    private void play(Watch watch, SeededRandom draws) {
+        watch.thread = Thread.currentThread();
+        if (draws != null) {
+            ModifierVault.setThreadRandom(draws);
+        }
+        try {
+            watch.engine.runMatch();
+            watch.done.complete(null);
+        } catch (Abandoned e) {
+            // The caller has already moved on
+        } catch (Throwable e) {
+            if (!watch.isAbandoned()) {
+                watch.done.completeExceptionally(e);
+            }
+        } finally {
+            ModifierVault.clearThreadSeed();
+            if (watch.isAbandoned()) {
+                abandonedThreads.decrementAndGet();
+            }
+        }
+    }
+
+    private void watch() {
+        while (!closed) {
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (Watch watch : watches) {
+                final Thread t = watch.thread;
+                final long cpu = t == null ? -1 : THREADS.getThreadCpuTime(t.getId());
+                if (cpu >= 0) {
+                    check(watch, cpu);
+                }
+            }
+        }
+    }
+
+    private void check(Watch watch, long cpu) {
+        final int call = watch.call.get();
+        final Champion side = watch.side;
+        if (watch.lastCpu >= 0 && call != 0) {
+            watch.pluginCpu += cpu - watch.lastCpu;
+        }
+        watch.lastCpu = cpu;
+        if (call <= 0 || call != watch.lastCall) {
+            // A new call (or none, or already abandoned): its budget starts from here
+            watch.lastCall = call;
+            watch.callStartCpu = cpu;
+            return;
+        }
+        final String reason;
+        if (cpu - watch.callStartCpu > callBudgetNanos) {
+            reason = String.format("plugin code ran over its %d ms CPU budget per call", callBudgetNanos / 1_000_000);
+        } else if (watch.pluginCpu > matchBudgetNanos) {
+            reason = String.format("plugin code ran over its %d ms CPU budget per match", matchBudgetNanos / 1_000_000);
+        } else {
+            return;
+        }
+        final Culprit culprit = culprit(watch.culprits, watch.thread.getStackTrace());
+        watch.loser = culprit.owner != null ? culprit.owner : side;
+        watch.offender = culprit.plugin;
+        watch.reason = culprit.plugin == null ? reason : culprit.plugin.getName() + " " + reason;
+        // Counted first, so the match thread cannot give the match up and uncount itself before
+        abandonedThreads.incrementAndGet();
+        if (!watch.abandon(call)) {
+            abandonedThreads.decrementAndGet();
+            return;     // The call finished while the stack was being read
+        }
+        watch.done.complete(null);
+    }
+
+    /**
+     * Find the plugin that was running from a stack trace: the innermost frame whose
+     * class is one worked out by culprits.
+     */
+    private static Culprit culprit(Map<String, Culprit> classes, StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            final Culprit culprit = classes.get(frame.getClassName());
+            if (culprit != null) {
+                return culprit;
+            }
+        }
+        return new Culprit(null, null);
+    }
+
+    private void quarantine(Class<?> plugin) {
+        if (!quarantined.add(plugin)) {
+            return;     // Another match hung on it at the same time
+        }
+        if (BattleModifier.class.isAssignableFrom(plugin) && vault.getRegistry().contains(plugin)) {
+            vault.swapModifiers(List.of(plugin.asSubclass(BattleModifier.class)), List.of());
+        }
+        final Consumer<Class<?>> listener = quarantineListener;
+        if (listener != null) {
+            listener.accept(plugin);
+        }
+    }
+
+    /**
+     * Check whether a plugin has been quarantined.
+     * @param plugin A champion or modifier class.
+     * @return true if it has run over budget.
+     */
+    public boolean isQuarantined(Class<?> plugin) {
+        return quarantined.contains(plugin);
+    }
+
+    /**
+     * Get the classes in a roster that have not been quarantined.
+     * @param roster Champion or modifier classes.
+     * @param <T> Champion or BattleModifier.
+     * @return The classes that are not quarantined, in the same order.
+     */
+    public <T> List<Class<? extends T>> withoutQuarantined(List<Class<? extends T>> roster) {
+        return roster.stream().filter(c -> !isQuarantined(c)).collect(Collectors.toList());
+    }
+
+    /**
+     * Get the number of matches aborted so far.
+     * @return The number of aborted matches.
+     */
+    public long getAborted() {
+        return aborted.sum();
+    }
+
+    /**
+     * Get the number of threads of abandoned matches that are still stuck in plugin
+     * code. Each keeps a core busy until its plugin returns, which may be never, so
+     * a host that sees this grow should drain its matches and restart.
+     * @return The number of live abandoned threads.
+     */
+    public int getAbandonedThreads() {
+        return abandonedThreads.get();
+    }
+
+    /**
+     * Stop watching. Matches already running are no longer watched, and later ones
+     * run unwatched.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        matches.shutdown();
+    }
+
+    /**
+     * One watched match. The match thread numbers each call of plugin code and
+     * publishes its number in call as it starts, and 0 as it ends; the watchdog
+     * abandons a call by swapping its number for ABANDONED, after which the match
+     * thread's next start or end of plugin code throws Abandoned. The watchdog keeps
+     * its samples in the rest.
+     */
+    static final class Watch {
+        private static final int ABANDONED = -1;
+
+        final BattleEngine engine;
+        final Champion champA;
+        final Champion champB;
+        final Map<String, Culprit> culprits;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final AtomicInteger call = new AtomicInteger();
+        volatile Thread thread;     // The thread playing the match, once it has started
+        volatile Champion side;     // The champion whose plugin code is running, or null
+        private int current;        // The match thread's own copy of call
+        private int calls;
+        private int round;          // The match as it stood when the current call began, written
+        private int healthA;        // before call is, so whoever reads call after abandoning sees it
+        private int healthB;
+        Champion loser;             // Set by the watchdog before it abandons the match
+        Class<?> offender;
+        String reason;
+        long lastCpu = -1;          // The rest belong to the watchdog thread
+        long pluginCpu;
+        long callStartCpu;
+        int lastCall;
+
+        Watch(BattleEngine engine, Map<String, Culprit> culprits) {
+            this.engine = engine;
+            this.champA = engine.getChampionA();
+            this.champB = engine.getChampionB();
+            this.culprits = culprits;
+        }
+
+        /**
+         * Note that a call of plugin code is starting, on the match thread.
+         * @throws Abandoned if the watchdog has abandoned the match.
+         */
+        void enter(Champion champ) {
+            side = champ;
+            round = engine.getRound();
+            healthA = champA.getCurrentHealth();
+            healthB = champB.getCurrentHealth();
+            final int next = ++calls > 0 ? calls : (calls = 1);
+            if (!call.compareAndSet(current, next)) {
+                throw new Abandoned();
+            }
+            current = next;
+        }
+
+        /**
+         * Note that plugin code has returned, on the match thread.
+         * @throws Abandoned if the watchdog has abandoned the match.
+         */
+        void exit() {
+            side = null;
+            if (!call.compareAndSet(current, 0)) {
+                throw new Abandoned();
+            }
+            current = 0;
+        }
+
+        /**
+         * Abandon a call that is still running, on the watchdog thread.
+         * @return false if the call has already returned.
+         */
+        boolean abandon(int running) {
+            return call.compareAndSet(running, ABANDONED);
+        }
+
+        boolean isAbandoned() {
+            return call.get() == ABANDONED;
+        }
+    }
+
+    /**
+     * How an abandoned match ended: the champion whose plugin hung forfeits, with the
+     * match as it stood when the hanging call began.
+     */
+    public static final class Forfeit {
+        /** Why the loser forfeited. */
+        public final String reason;
+        private final String championA;
+        private final String championB;
+        private final int winner;
+        private final int rounds;
+        private final int healthA;
+        private final int healthB;
+        private final List<String> loadoutA;
+        private final List<String> loadoutB;
+
+        private Forfeit(Watch watch) {
+            final Champion a = watch.champA;
+            final Champion b = watch.champB;
+            this.reason = watch.reason;
+            this.championA = a.getClass().getName();
+            this.championB = b.getClass().getName();
+            this.winner = watch.loser == a ? MatchResult.WINNER_B : MatchResult.WINNER_A;
+            this.rounds = watch.round - 1;
+            this.healthA = watch.healthA;
+            this.healthB = watch.healthB;
+            // Worked out when the engine was made, and never changed
+            this.loadoutA = watch.engine.getInitialLoadout(a);
+            this.loadoutB = watch.engine.getInitialLoadout(b);
+        }
+
+        /**
+         * Get the result of the abandoned match.
+         * @param seed The match's seed.
+         * @return The result, in which the loser has lost.
+         */
+        public MatchResult toResult(long seed) {
+            return new MatchResult(championA, championB, winner, rounds, healthA, healthB, seed, loadoutA, loadoutB);
+        }
+    }
+
+    /**
+     * Thrown on an abandoned match's thread to give the match up, if the plugin code
+     * it was abandoned in ever returns.
+     */
+    static final class Abandoned extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Abandoned() {
+            super("The match was abandoned by the plugin watchdog", null, false, false);
+        }
+    }
+
+    /**
+     * The plugin class that was running and the champion that answers for it.
+     */
+    private static final class Culprit {
+        final Class<?> plugin;
+        final Champion owner;
+
+        Culprit(Class<?> plugin, Champion owner) {
+            this.plugin = plugin;
+            this.owner = owner;
+        }
+    }
+}
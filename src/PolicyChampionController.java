@@ -0,0 +1,60 @@
+import java.util.List;
+
+/**
+ * The PolicyChampionController class implements the ChampionController interface
+ * with a bot that chooses actions using a trained LinearPolicy, such as one exported
+ * by SelfPlayTrainer. Loadout swaps and discards are still chosen greedily, and
+ * champions the policy has not been trained for fall back to the greedy bot.
+ *
+ * Like the greedy bot, a controller keeps per-match scratch state, so each match
+ * thread should use its own instance.
+ */
+public class PolicyChampionController extends GreedyChampionController {
+    private final LinearPolicy policy;
+    private final double[] features = new double[LinearPolicy.FEATURES]; // Reused every turn
+
+    /**
+     * Constructor for the PolicyChampionController with a random seed.
+     * @param policy The policy used to choose actions.
+     */
+    public PolicyChampionController(LinearPolicy policy) {
+        super();
+        this.policy = policy;
+    }
+
+    /**
+     * Constructor for the PolicyChampionController.
+     * @param policy The policy used to choose actions.
+     * @param seed The seed used when choosing a champion.
+     */
+    public PolicyChampionController(LinearPolicy policy, long seed) {
+        super(seed);
+        this.policy = policy;
+    }
+
+    /**
+     * Get the policy this controller plays with.
+     * @return The policy.
+     */
+    public LinearPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Choose the action with the highest value under the policy.
+     * @param self The champion whose turn it is.
+     * @param opponent The opponent champion.
+     * @param actions The champion's actions.
+     * @param context A context with self as the wielder and opponent as the enemy.
+     * @return The index of the chosen action.
+     */
+    @Override
+    protected int chooseActionIndex(Champion self, Champion opponent, List<Action> actions, BattleContext context) {
+        final String championClass = self.getClass().getName();
+        if (!policy.knows(championClass)) {
+            return super.chooseActionIndex(self, opponent, actions, context);
+        }
+        LinearPolicy.features(self, opponent, features);
+        return policy.bestAction(championClass, actions.size(), features, playableMask(actions, self));
+    }
+}
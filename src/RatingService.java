@@ -0,0 +1,537 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RatingService keeps Glicko-2 ratings for players and for champion classes. It
+ * consumes results from live matches (a finished BattleEngine) and from simulated
+ * ones (a MatchResult), and rates both the players and the champion classes they
+ * played.
+ *
+ * Reporting a result never takes a lock: the result is added to a lock-free queue
+ * on each of the two rated entities, so any number of match threads can report at
+ * once. Results are applied in batches, one Glicko-2 rating period at a time, either
+ * when closePeriod is called or automatically once enough results are pending.
+ * Every update in a period is computed from the ratings as they were at the start
+ * of the period. Entities that did not play in a period are not touched; the growth
+ * of their rating deviation is applied the next time they are read or rated.
+ *
+ * Ratings can be persisted to an append-only file. Each closed period appends one
+ * line per updated entity, and the file is compacted down to one line per entity
+ * once it has grown to several times that size. The leaderboards are kept in
+ * sorted concurrent sets, so a top-K query only reads K entries however many
+ * entities are rated.
+ */
+public class RatingService implements AutoCloseable {
+    /**
+     * The kind of a rated entity.
+     */
+    public enum Kind { PLAYER, CHAMPION }
+
+    /**
+     * The rating of a new entity.
+     */
+    public static final double DEFAULT_RATING = 1500.0;
+    /**
+     * The rating deviation of a new entity, which is also the largest deviation.
+     */
+    public static final double DEFAULT_DEVIATION = 350.0;
+    /**
+     * The volatility of a new entity.
+     */
+    public static final double DEFAULT_VOLATILITY = 0.06;
+
+    private static final double SCALE = 173.7178;     // Converts between Glicko and Glicko-2 scales
+    private static final double TAU = 0.5;            // Constrains the change in volatility
+    private static final double EPSILON = 0.000001;   // Convergence tolerance for the volatility
+    private static final String HEADER = "# ChampionsArena ratings v1";
+    private static final int COMPACT_FACTOR = 4;      // Compact when the log has this many lines per entity
+    private static final int COMPACT_MINIMUM = 4096;
+
+    private final Map<String, Entity> entities = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entity> dirty = new ConcurrentLinkedQueue<>();
+    private final Map<Kind, ConcurrentSkipListSet<Standing>> leaderboards = new EnumMap<>(Map.of(
+        Kind.PLAYER, new ConcurrentSkipListSet<>(), Kind.CHAMPION, new ConcurrentSkipListSet<>()));
+    private final LongAdder pending = new LongAdder();
+    private final ReentrantLock periodLock = new ReentrantLock();
+    private final int periodSize;
+    private final Path file;
+
+    private volatile int period;
+    private BufferedWriter log;
+    private long logLines;
+
+    /**
+     * Constructor for an in-memory RatingService whose periods are closed by hand.
+     */
+    public RatingService() {
+        this.file = null;
+        this.periodSize = 0;
+    }
+
+    /**
+     * Constructor for a RatingService that loads and persists its ratings.
+     * @param file The append-only ratings file, or null to keep ratings in memory.
+     * @param periodSize The number of pending results that closes a rating period
+     *                   automatically, or 0 to only close periods by hand.
+     * @throws IOException if the ratings file cannot be read or opened.
+     */
+    public RatingService(Path file, int periodSize) throws IOException {
+        this.file = file;
+        this.periodSize = periodSize;
+        if (file != null) {
+            load();
+            log = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                                          StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (logLines == 0) {
+                log.write(HEADER);
+                log.newLine();
+                log.flush();
+            }
+        }
+    }
+
+    /**
+     * Report the result of a live match between two players.
+     * @param engine The engine that ran the match, after runMatch has returned.
+     * @param playerA The name of the player of the engine's first champion.
+     * @param playerB The name of the player of the engine's second champion.
+     */
+    public void report(BattleEngine engine, String playerA, String playerB) {
+        report(MatchResult.of(engine, 0L), playerA, playerB);
+    }
+
+    /**
+     * Report the result of a simulated match, which only rates the champion classes.
+     * @param result The result of the match.
+     */
+    public void report(MatchResult result) {
+        report(result, null, null);
+    }
+
+    /**
+     * Report the result of a match, rating the players if they are given and the
+     * champion classes. A mirror match does not change its champion's rating.
+     * @param result The result of the match.
+     * @param playerA The name of the first player, or null.
+     * @param playerB The name of the second player, or null.
+     */
+    public void report(MatchResult result, String playerA, String playerB) {
+        final double score = result.scoreA();
+        if (playerA != null && playerB != null && !playerA.equals(playerB)) {
+            record(entity(Kind.PLAYER, playerA), entity(Kind.PLAYER, playerB), score);
+        }
+        if (!result.championA.equals(result.championB)) {
+            record(entity(Kind.CHAMPION, result.championA), entity(Kind.CHAMPION, result.championB), score);
+        }
+        if (periodSize > 0 && pending.sum() >= periodSize && periodLock.tryLock()) {
+            try {
+                closePeriodLocked();
+            } catch (IOException e) {
+                System.err.println("Could not persist ratings: " + e.getMessage());
+            } finally {
+                periodLock.unlock();
+            }
+        }
+    }
+
+    private void record(Entity a, Entity b, double scoreA) {
+        a.outcomes.add(new Outcome(b, scoreA));
+        b.outcomes.add(new Outcome(a, 1.0 - scoreA));
+        pending.add(2);
+        markDirty(a);
+        markDirty(b);
+    }
+
+    private void markDirty(Entity e) {
+        if (e.dirty.compareAndSet(false, true)) {
+            dirty.add(e);
+        }
+    }
+
+    private Entity entity(Kind kind, String name) {
+        final String key = key(kind, name);
+        Entity e = entities.get(key);
+        if (e == null) {
+            e = entities.computeIfAbsent(key, k -> {
+                Entity created = new Entity(kind, name, new Rating(DEFAULT_RATING, DEFAULT_DEVIATION, DEFAULT_VOLATILITY, period));
+                leaderboards.get(kind).add(new Standing(created, created.rating.rating));
+                return created;
+            });
+        }
+        return e;
+    }
+
+    private static String key(Kind kind, String name) {
+        return (kind == Kind.PLAYER ? "P " : "C ") + name;
+    }
+
+    /**
+     * Close the current rating period: apply every pending result and persist the
+     * updated ratings. Reporting can continue while a period is being closed; results
+     * that arrive meanwhile are left for the next period.
+     * @return The number of entities whose ratings changed.
+     * @throws IOException if the ratings could not be persisted.
+     */
+    public int closePeriod() throws IOException {
+        periodLock.lock();
+        try {
+            return closePeriodLocked();
+        } finally {
+            periodLock.unlock();
+        }
+    }
+
+    private int closePeriodLocked() throws IOException {
+        final int closing = period;
+
+        // Take each dirty entity's outcomes first, so that every update below is
+        // computed from the ratings as they were at the start of the period
+        List<Entity> updated = new ArrayList<>();
+        List<List<Outcome>> outcomes = new ArrayList<>();
+        Entity e;
+        while ((e = dirty.poll()) != null) {
+            e.dirty.set(false);
+            List<Outcome> taken = new ArrayList<>();
+            Outcome o;
+            while ((o = e.outcomes.poll()) != null) {
+                taken.add(o);
+            }
+            if (!taken.isEmpty()) {
+                updated.add(e);
+                outcomes.add(taken);
+                pending.add(-taken.size());
+            }
+        }
+
+        Rating[] next = new Rating[updated.size()];
+        for (int i = 0; i < next.length; i++) {
+            next[i] = rate(updated.get(i).rating.at(closing), outcomes.get(i), closing);
+        }
+        for (int i = 0; i < next.length; i++) {
+            publish(updated.get(i), next[i]);
+        }
+        period = closing + 1;
+
+        if (log != null && next.length > 0) {
+            for (int i = 0; i < next.length; i++) {
+                writeLine(log, updated.get(i), next[i]);
+            }
+            log.flush();
+            logLines += next.length;
+            if (logLines > COMPACT_MINIMUM && logLines > (long) COMPACT_FACTOR * entities.size()) {
+                compact();
+            }
+        }
+        return next.length;
+    }
+
+    private void publish(Entity e, Rating rating) {
+        final ConcurrentSkipListSet<Standing> board = leaderboards.get(e.kind);
+        final double before = e.rating.rating;
+        e.rating = rating;
+        if (before != rating.rating) {
+            board.add(new Standing(e, rating.rating));
+            board.remove(new Standing(e, before));
+        }
+    }
+
+    /**
+     * Apply one period of results to a rating with the Glicko-2 algorithm.
+     * @param r The rating at the start of the period.
+     * @param outcomes The results of the period.
+     * @param closing The period being closed.
+     * @return The rating at the end of the period.
+     */
+    static Rating rate(Rating r, List<Outcome> outcomes, int closing) {
+        final double mu = (r.rating - DEFAULT_RATING) / SCALE;
+        final double phi = r.deviation / SCALE;
+        final double sigma = r.volatility;
+
+        double inverseV = 0.0;
+        double sum = 0.0;
+        for (Outcome o : outcomes) {
+            final Rating opponent = o.opponent.rating.at(closing);
+            final double muJ = (opponent.rating - DEFAULT_RATING) / SCALE;
+            final double phiJ = opponent.deviation / SCALE;
+            final double g = 1.0 / Math.sqrt(1.0 + 3.0 * phiJ * phiJ / (Math.PI * Math.PI));
+            final double expected = 1.0 / (1.0 + Math.exp(-g * (mu - muJ)));
+            inverseV += g * g * expected * (1.0 - expected);
+            sum += g * (o.score - expected);
+        }
+        final double v = 1.0 / inverseV;
+        final double delta = v * sum;
+
+        // Find the new volatility with the Illinois algorithm
+        final double a = Math.log(sigma * sigma);
+        double bigA = a;
+        double bigB;
+        if (delta * delta > phi * phi + v) {
+            bigB = Math.log(delta * delta - phi * phi - v);
+        } else {
+            int k = 1;
+            while (volatilityF(a - k * TAU, delta, phi, v, a) < 0) {
+                k++;
+            }
+            bigB = a - k * TAU;
+        }
+        double fA = volatilityF(bigA, delta, phi, v, a);
+        double fB = volatilityF(bigB, delta, phi, v, a);
+        while (Math.abs(bigB - bigA) > EPSILON) {
+            final double bigC = bigA + (bigA - bigB) * fA / (fB - fA);
+            final double fC = volatilityF(bigC, delta, phi, v, a);
+            if (fC * fB <= 0) {
+                bigA = bigB;
+                fA = fB;
+            } else {
+                fA /= 2.0;
+            }
+            bigB = bigC;
+            fB = fC;
+        }
+        final double newSigma = Math.exp(bigA / 2.0);
+
+        final double phiStar = Math.sqrt(phi * phi + newSigma * newSigma);
+        final double newPhi = 1.0 / Math.sqrt(1.0 / (phiStar * phiStar) + 1.0 / v);
+        final double newMu = mu + newPhi * newPhi * sum;
+        return new Rating(DEFAULT_RATING + SCALE * newMu, Math.min(DEFAULT_DEVIATION, SCALE * newPhi),
+                          newSigma, closing + 1);
+    }
+
+    private static double volatilityF(double x, double delta, double phi, double v, double a) {
+        final double ex = Math.exp(x);
+        final double denom = phi * phi + v + ex;
+        return ex * (delta * delta - phi * phi - v - ex) / (2.0 * denom * denom) - (x - a) / (TAU * TAU);
+    }
+
+    /**
+     * Get the current rating of an entity, including the growth of its deviation
+     * over the periods it has not played in.
+     * @param kind The kind of entity.
+     * @param name The player name or champion class name.
+     * @return The rating, or null if the entity has never been rated.
+     */
+    public Rating getRating(Kind kind, String name) {
+        final Entity e = entities.get(key(kind, name));
+        return e == null ? null : e.rating.at(period);
+    }
+
+    /**
+     * Get the highest rated entities of a kind.
+     * @param kind The kind of entity.
+     * @param k The number of entities to return.
+     * @return Up to k entries, highest rating first.
+     */
+    public List<Standing> top(Kind kind, int k) {
+        List<Standing> top = new ArrayList<>(k);
+        for (Standing s : leaderboards.get(kind)) {
+            if (top.size() == k) break;
+            top.add(s);
+        }
+        return top;
+    }
+
+    /**
+     * Get the number of rated entities.
+     * @return The number of players and champion classes with a rating.
+     */
+    public int size() {
+        return entities.size();
+    }
+
+    /**
+     * Get the index of the current, still open rating period.
+     * @return The current period.
+     */
+    public int getPeriod() {
+        return period;
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) {
+                throw new IllegalArgumentException("Not a ratings file: " + file);
+            }
+            logLines = 1;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                // Kind, rating, deviation, volatility, period, then the name, which may contain spaces
+                final String[] parts = line.split(" ", 6);
+                if (parts.length != 6) {
+                    throw new IllegalArgumentException("Bad ratings line: " + line);
+                }
+                final Kind kind = parts[0].equals("P") ? Kind.PLAYER : Kind.CHAMPION;
+                final Rating rating = new Rating(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                                                 Double.parseDouble(parts[3]), Integer.parseInt(parts[4]));
+                publish(entity(kind, parts[5]), rating);
+                period = Math.max(period, rating.period);
+                logLines++;
+            }
+        }
+    }
+
+    /**
+     * Rewrite the ratings file with one line per entity and switch to appending to it.
+     */
+    private void compact() throws IOException {
+        log.close();
+        final Path temp = file.resolveSibling(file.getFileName() + ".compact");
+        long lines = 1;
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (Entity e : entities.values()) {
+                writeLine(out, e, e.rating);
+                lines++;
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        logLines = lines;
+    }
+
+    private static void writeLine(BufferedWriter out, Entity e, Rating r) throws IOException {
+        out.write((e.kind == Kind.PLAYER ? "P " : "C ") + r.rating + ' ' + r.deviation + ' '
+                  + r.volatility + ' ' + r.period + ' ' + e.name);
+        out.newLine();
+    }
+
+    /**
+     * Close the current rating period and the ratings file.
+     * @throws IOException if the ratings could not be persisted.
+     */
+    @Override
+    public void close() throws IOException {
+        periodLock.lock();
+        try {
+            closePeriodLocked();
+            if (log != null) {
+                log.close();
+                log = null;
+            }
+        } finally {
+            periodLock.unlock();
+        }
+    }
+
+    /**
+     * A Glicko-2 rating on the Glicko scale.
+     */
+    static final class Rating {
+        final double rating;
+        final double deviation;
+        final double volatility;
+        final int period; // The first period this rating has not been updated for
+
+        Rating(double rating, double deviation, double volatility, int period) {
+            this.rating = rating;
+            this.deviation = deviation;
+            this.volatility = volatility;
+            this.period = period;
+        }
+
+        /**
+         * Get this rating as of a later period, with its deviation grown by its
+         * volatility once for every period it was not updated in.
+         * @param current The current period.
+         * @return The rating at the start of the current period.
+         */
+        Rating at(int current) {
+            if (current <= period) {
+                return this;
+            }
+            final double phi = deviation / SCALE;
+            final double grown = Math.sqrt(phi * phi + (current - period) * volatility * volatility);
+            return new Rating(rating, Math.min(DEFAULT_DEVIATION, SCALE * grown), volatility, current);
+        }
+
+        /**
+         * @return The rating and deviation, such as "1620 +/- 45".
+         */
+        @Override
+        public String toString() {
+            return String.format("%.0f +/- %.0f", rating, deviation);
+        }
+    }
+
+    /**
+     * A rated player or champion class.
+     */
+    static final class Entity {
+        final Kind kind;
+        final String name;
+        final ConcurrentLinkedQueue<Outcome> outcomes = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean dirty = new AtomicBoolean();
+        volatile Rating rating;
+
+        Entity(Kind kind, String name, Rating rating) {
+            this.kind = kind;
+            this.name = name;
+            this.rating = rating;
+        }
+    }
+
+    /**
+     * A result waiting for the end of the rating period.
+     */
+    static final class Outcome {
+        final Entity opponent;
+        final double score;
+
+        Outcome(Entity opponent, double score) {
+            this.opponent = opponent;
+            this.score = score;
+        }
+    }
+
+    /**
+     * A leaderboard entry. Entries are immutable; a rating change replaces the entry.
+     */
+    static final class Standing implements Comparable<Standing> {
+        private static final Comparator<Standing> ORDER =
+            Comparator.comparingDouble((Standing s) -> -s.rating).thenComparing(s -> s.entity.name);
+
+        final Entity entity;
+        final double rating;
+
+        Standing(Entity entity, double rating) {
+            this.entity = entity;
+            this.rating = rating;
+        }
+
+        @Override
+        public int compareTo(Standing other) {
+            return ORDER.compare(this, other);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Standing && compareTo((Standing) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(rating) * 31 + entity.name.hashCode();
+        }
+    }
+}
@@ -0,0 +1,694 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A Replay is a compact recording of a match from which the whole match can be
+ * re-run through the BattleEngine. A match is fully determined by its seed, the two
+ * champion classes, the modifier registry, the champions' initial loadouts and the
+ * ordered turn submissions, so that is all a replay stores:
+ *
+ * A header with the seed, round limit, a fingerprint of the registry, hashes of the
+ * champion class names and each champion's initial loadout and arsenal as registry
+ * indices.
+ * One record per turn submission, holding the action index, the number of modifiers
+ * the controller drew while planning the turn, the discarded slot and the arsenal
+ * slot of each swapped-in modifier. Records are written as one bit stream, in which
+ * a turn that picks one of a champion's first actions and swaps nothing takes seven
+ * bits.
+ * The Zobrist hash of the final match state, to check that a replay re-ran exactly.
+ * Optionally, a MatchSnapshot keyframe every few rounds. Seeking to a round restores
+ * the nearest keyframe before it and only re-simulates the rounds after that, so
+ * the cost of a seek depends on the keyframe interval and not on the length of the
+ * match. Each keyframe costs under a hundred bytes.
+ *
+ * Replays are recorded by wrapping each side's controller with a Recorder and are
+ * played back with ReplayController. The records of a round of greedy bot play take
+ * about 3 bytes against about 200 in the text log, so long matches are nearly two
+ * orders of magnitude smaller. The header takes about 50 bytes, most of it the seed,
+ * the final hash and the loadouts, which carry that much information whatever the
+ * encoding, so a typical match of five or six rounds is about 16 times smaller
+ * than its text log.
+ */
+public class Replay {
+    private static final byte[] MAGIC = {'C', 'R'};
+    private static final int VERSION = 3;   // Version 1 had no keyframes; 2 had a varint seed and records
+    private static final int ACTION_BITS = 4; // Action index + 1, 0 for none
+    private static final int SLOT_BITS = 3;   // Arsenal slot + 1, 0 for none
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int RECORD_FIELDS = 5; // Draws, discard, tactic, relic and gambit
+
+    final long seed;
+    final int maxRounds;
+    final long registryFingerprint;
+    final int championA;    // Hashes of the champion class names
+    final int championB;
+    final int[] initialA;   // Tactic, relic and gambit (registry index + 1, 0 for none), then the arsenal
+    final int[] initialB;
+    final int[] records;    // Two per round: the first champion's, then the second's
+    final long finalHash;
+    final int keyframeInterval;         // Rounds between keyframes, 0 for none
+    final MatchSnapshot[] keyframes;    // Keyframe i is taken at the start of round (i + 1) * keyframeInterval + 1
+
+    Replay(long seed, int maxRounds, long registryFingerprint, int championA, int championB,
+           int[] initialA, int[] initialB, int[] records, long finalHash,
+           int keyframeInterval, MatchSnapshot[] keyframes) {
+        this.seed = seed;
+        this.maxRounds = maxRounds;
+        this.registryFingerprint = registryFingerprint;
+        this.championA = championA;
+        this.championB = championB;
+        this.initialA = initialA;
+        this.initialB = initialB;
+        this.records = records;
+        this.finalHash = finalHash;
+        this.keyframeInterval = keyframeInterval;
+        this.keyframes = keyframes;
+    }
+
+    /**
+     * Get the number of rounds the recorded match lasted.
+     * @return The number of rounds.
+     */
+    public int getRounds() {
+        return records.length / 2;
+    }
+
+    /**
+     * Get the seed the match was played with.
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the record of one turn submission.
+     * @param turn The turn, from 0.
+     * @param side 0 for the first champion, 1 for the second.
+     * @return The packed submission record.
+     */
+    int record(int turn, int side) {
+        return records[turn * 2 + side];
+    }
+
+    /**
+     * Re-run the recorded match through a BattleEngine.
+     * @param vault The vault, whose registry must match the one the match was recorded with.
+     * @param roster The champion classes the recorded champions can be found in.
+     * @param log The log the re-run match writes to.
+     * @return The engine, after the match has finished.
+     * @throws IllegalArgumentException if the registry differs or a champion class is not in the roster.
+     * @throws IllegalStateException if the re-run match does not end in the recorded state.
+     */
+    public BattleEngine play(ModifierVault vault, List<Class<? extends Champion>> roster, BattleLog log) {
+        final List<Class<? extends BattleModifier>> registry = vault.getRegistry();
+        if (fingerprint(registry) != registryFingerprint) {
+            throw new IllegalArgumentException("The replay was recorded with a different modifier registry");
+        }
+        final ReplayController controllerA = new ReplayController(this, 0, resolve(championA, roster), registry);
+        final ReplayController controllerB = new ReplayController(this, 1, resolve(championB, roster), registry);
+
+        final BattleEngine engine;
+        ModifierVault.setThreadSeed(seed);
+        try {
+            final Champion champA = controllerA.chooseChampion("Player 1", roster).join();
+            final Champion champB = controllerB.chooseChampion("Player 2", roster).join();
+            engine = new BattleEngine(champA, champB, log, vault, controllerA, controllerB);
+            engine.setPrintLog(false);
+            engine.setMaxRounds(maxRounds);
+            engine.setSeed(seed);
+            engine.runMatch();
+        } finally {
+            ModifierVault.clearThreadSeed();
+        }
+
+        if (engine.getStateHash() != finalHash) {
+            throw new IllegalStateException("The replay diverged from the recorded match");
+        }
+        return engine;
+    }
+
+    /**
+     * Re-run the recorded match up to the start of a round, for a replay viewer or an
+     * analysis tool that wants to look at the match part way through. The nearest
+     * keyframe before the round is restored and only the rounds after it are played,
+     * so the engine's log only covers those rounds.
+     *
+     * The returned engine is for looking at; to play on from it, the thread's draws
+     * would have to be seeded as they were in the recorded match.
+     * @param vault The vault, whose registry must match the one the match was recorded with.
+     * @param roster The champion classes the recorded champions can be found in.
+     * @param round The round to seek to, from 1 up to one past the last round.
+     * @param log The log the re-run rounds write to.
+     * @return The engine, about to play the round (or over, when seeking past the last round).
+     * @throws IllegalArgumentException if the round is out of range, the registry differs
+     *         or a champion class is not in the roster.
+     */
+    public BattleEngine seek(ModifierVault vault, List<Class<? extends Champion>> roster, int round, BattleLog log) {
+        if (round < 1 || round > getRounds() + 1) {
+            throw new IllegalArgumentException("Round " + round + " is not in the replay");
+        }
+        final List<Class<? extends BattleModifier>> registry = vault.getRegistry();
+        if (fingerprint(registry) != registryFingerprint) {
+            throw new IllegalArgumentException("The replay was recorded with a different modifier registry");
+        }
+        final ReplayController controllerA = new ReplayController(this, 0, resolve(championA, roster), registry);
+        final ReplayController controllerB = new ReplayController(this, 1, resolve(championB, roster), registry);
+        final MatchSnapshot keyframe = keyframeBefore(round);
+
+        final BattleEngine engine;
+        ModifierVault.setThreadSeed(seed);
+        try {
+            final Champion champA = controllerA.chooseChampion("Player 1", roster).join();
+            final Champion champB = controllerB.chooseChampion("Player 2", roster).join();
+            engine = new BattleEngine(champA, champB, log, vault, controllerA, controllerB);
+            engine.setPrintLog(false);
+            engine.setMaxRounds(maxRounds);
+            engine.setSeed(seed);
+            if (keyframe != null) {
+                keyframe.restore(engine, registry);
+                controllerA.seek(keyframe.getRound() - 1);
+                controllerB.seek(keyframe.getRound() - 1);
+            }
+            while (engine.getRound() < round && !engine.isOver()) {
+                engine.playRound();
+            }
+        } finally {
+            ModifierVault.clearThreadSeed();
+        }
+        return engine;
+    }
+
+    /**
+     * Find the last keyframe taken at or before the start of a round.
+     * @param round The round.
+     * @return The keyframe, or null if there is none before the round.
+     */
+    private MatchSnapshot keyframeBefore(int round) {
+        if (keyframeInterval == 0 || keyframes.length == 0) {
+            return null;
+        }
+        final int index = Math.min((round - 1) / keyframeInterval - 1, keyframes.length - 1);
+        return index < 0 ? null : keyframes[index];
+    }
+
+    /**
+     * Get the number of keyframes in the replay.
+     * @return The number of keyframes.
+     */
+    public int getKeyframes() {
+        return keyframes.length;
+    }
+
+    private static Class<? extends Champion> resolve(int nameHash, List<Class<? extends Champion>> roster) {
+        Class<? extends Champion> found = null;
+        for (Class<? extends Champion> c : roster) {
+            if (c.getName().hashCode() == nameHash) {
+                if (found != null) {
+                    throw new IllegalArgumentException("Ambiguous champion classes: " + found.getName() + ", " + c.getName());
+                }
+                found = c;
+            }
+        }
+        if (found == null) {
+            throw new IllegalArgumentException("A recorded champion class is not in the roster");
+        }
+        return found;
+    }
+
+    /**
+     * Get a fingerprint of a modifier registry: its class names, in order.
+     * @param registry The registry.
+     * @return A 64-bit FNV-1a hash of the class names.
+     */
+    static long fingerprint(List<Class<? extends BattleModifier>> registry) {
+        long h = 0xCBF29CE484222325L;
+        for (Class<? extends BattleModifier> c : registry) {
+            for (byte b : c.getName().getBytes(StandardCharsets.UTF_8)) {
+                h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+            }
+            h = (h ^ ';') * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /**
+     * Pack a turn submission into a record.
+     * @param self The champion the submission is for, before the engine applies it.
+     * @param turn The submission.
+     * @param draws The number of modifiers the controller drew while planning.
+     * @return The packed record.
+     * @throws IllegalStateException if a swapped or discarded modifier is not in the
+     *         arsenal, the champion has too many actions to record or the controller
+     *         drew too many modifiers.
+     */
+    static int encode(Champion self, TurnSubmission turn, int draws) {
+        int action = 0;
+        if (turn.selectedAction != null) {
+            final int id = self.getActionCatalog().idOf(turn.selectedAction);
+            if (id != ActionCatalog.NONE) {
+                action = id + 1;
+            }
+            if (action >= 1 << ACTION_BITS) {
+                throw new IllegalStateException(self.getName() + " has too many actions to record");
+            }
+        }
+        int packed = slot(self, turn.newGambit);
+        packed = (packed << SLOT_BITS) | slot(self, turn.newRelic);
+        packed = (packed << SLOT_BITS) | slot(self, turn.newTactic);
+        packed = (packed << SLOT_BITS) | slot(self, turn.discardSlot);
+        if (draws < 0 || draws > SLOT_MASK) {
+            throw new IllegalStateException(self.getName() + "'s controller drew " + draws
+                                            + " modifiers in one turn, more than can be recorded");
+        }
+        packed = (packed << SLOT_BITS) | draws;
+        packed = (packed << ACTION_BITS) | action;
+        return packed;
+    }
+
+    private static int slot(Champion self, BattleModifier mod) {
+        if (mod == null) {
+            return 0;
+        }
+        final Arsenal arsenal = self.getArsenal();
+        for (int i = 0; i < arsenal.size(); i++) {
+            if (arsenal.getSlot(i) == mod) {
+                return i + 1;
+            }
+        }
+        throw new IllegalStateException(mod.getName() + " is not in " + self.getName() + "'s arsenal");
+    }
+
+    /**
+     * Unpack a record into the submission it was made from.
+     * @param self The champion the submission is for.
+     * @param record The packed record.
+     * @return The submission.
+     */
+    static TurnSubmission decode(Champion self, int record) {
+        final Arsenal arsenal = self.getArsenal();
+        final int action = record & ((1 << ACTION_BITS) - 1);
+        final int discard = (record >>> (ACTION_BITS + SLOT_BITS)) & SLOT_MASK;
+        final int tactic = (record >>> (ACTION_BITS + 2 * SLOT_BITS)) & SLOT_MASK;
+        final int relic = (record >>> (ACTION_BITS + 3 * SLOT_BITS)) & SLOT_MASK;
+        final int gambit = (record >>> (ACTION_BITS + 4 * SLOT_BITS)) & SLOT_MASK;
+        return new TurnSubmission(
+            action == 0 ? null : self.getActionCatalog().get(action - 1),
+            tactic == 0 ? null : (Tactic) arsenal.getSlot(tactic - 1),
+            relic == 0 ? null : (Relic) arsenal.getSlot(relic - 1),
+            gambit == 0 ? null : (Gambit) arsenal.getSlot(gambit - 1),
+            discard == 0 ? null : arsenal.getSlot(discard - 1));
+    }
+
+    /**
+     * Get the number of modifiers the controller drew while planning a turn.
+     * @param record The packed record.
+     * @return The number of draws.
+     */
+    static int draws(int record) {
+        return (record >>> ACTION_BITS) & SLOT_MASK;
+    }
+
+    /**
+     * Encode this replay in its compact binary form.
+     * @return The encoded replay.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + records.length * 2);
+        out.writeBytes(MAGIC);
+        putVarint(out, VERSION);
+        putLong(out, seed);
+        putVarint(out, maxRounds);
+        putLong(out, registryFingerprint);
+        putInt(out, championA);
+        putInt(out, championB);
+        putInts(out, initialA);
+        putInts(out, initialB);
+        putRecords(out, records);
+        putLong(out, finalHash);
+        putVarint(out, keyframeInterval);
+        putVarint(out, keyframes.length);
+        for (MatchSnapshot keyframe : keyframes) {
+            putBytes(out, keyframe.toBytes());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a replay from its binary form.
+     * @param bytes The encoded replay.
+     * @return The replay.
+     * @throws IllegalArgumentException if the bytes are not a replay of a known version.
+     */
+    public static Replay fromBytes(byte[] bytes) {
+        final ByteBuffer in = ByteBuffer.wrap(bytes);
+        try {
+            if (in.get() != MAGIC[0] || in.get() != MAGIC[1]) {
+                throw new IllegalArgumentException("Not a replay");
+            }
+            final long version = getVarint(in);
+            if (version < 1 || version > VERSION) {
+                throw new IllegalArgumentException("Unsupported replay version " + version);
+            }
+            final long seed = version >= 3 ? in.getLong() : unzigzag(getVarint(in));
+            final int maxRounds = (int) getVarint(in);
+            final long registry = in.getLong();
+            final int championA = in.getInt();
+            final int championB = in.getInt();
+            final int[] initialA = getInts(in);
+            final int[] initialB = getInts(in);
+            final int[] records = version >= 3 ? getRecords(in) : getInts(in);
+            final long finalHash = in.getLong();
+            final int keyframeInterval = version == 1 ? 0 : (int) getVarint(in);
+            final MatchSnapshot[] keyframes = new MatchSnapshot[version == 1 ? 0 : (int) getVarint(in)];
+            for (int i = 0; i < keyframes.length; i++) {
+                keyframes[i] = MatchSnapshot.fromBytes(getBytes(in));
+            }
+            return new Replay(seed, maxRounds, registry, championA, championB, initialA, initialB, records, finalHash,
+                              keyframeInterval, keyframes);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated replay", e);
+        }
+    }
+
+    static void putVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long getVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static void putBytes(ByteArrayOutputStream out, byte[] bytes) {
+        putVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    static byte[] getBytes(ByteBuffer in) {
+        final byte[] bytes = new byte[(int) getVarint(in)];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static void putLong(ByteArrayOutputStream out, long v) {
+        for (int i = 56; i >= 0; i -= 8) {
+            out.write((int) (v >>> i));
+        }
+    }
+
+    private static void putInt(ByteArrayOutputStream out, int v) {
+        for (int i = 24; i >= 0; i -= 8) {
+            out.write(v >>> i);
+        }
+    }
+
+    private static void putInts(ByteArrayOutputStream out, int[] values) {
+        putVarint(out, values.length);
+        for (int v : values) {
+            putVarint(out, v & 0xFFFFFFFFL);
+        }
+    }
+
+    private static int[] getInts(ByteBuffer in) {
+        final int[] values = new int[(int) getVarint(in)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (int) getVarint(in);
+        }
+        return values;
+    }
+
+    /**
+     * Write turn records as a bit stream. The action takes two bits for a champion's
+     * first two actions and three for the next two; each other field takes one bit
+     * when it is unused and four when it is used, so a turn that picks one of the
+     * first actions and swaps nothing fits in seven bits.
+     */
+    private static void putRecords(ByteArrayOutputStream out, int[] records) {
+        putVarint(out, records.length);
+        long bits = 0;
+        int count = 0;
+        for (int record : records) {
+            final int action = record & ((1 << ACTION_BITS) - 1);
+            if (action >= 1 && action <= 2) {
+                bits = bits << 2 | (action - 1);                        // 0a
+                count += 2;
+            } else if (action >= 3 && action <= 4) {
+                bits = bits << 3 | 0b100 | (action - 3);                // 10a
+                count += 3;
+            } else {
+                bits = bits << (2 + ACTION_BITS) | 0b11L << ACTION_BITS | action;
+                count += 2 + ACTION_BITS;
+            }
+            for (int field = 0; field < RECORD_FIELDS; field++) {
+                final int value = (record >>> (ACTION_BITS + field * SLOT_BITS)) & SLOT_MASK;
+                if (value == 0) {
+                    bits <<= 1;
+                    count += 1;
+                } else {
+                    bits = bits << (1 + SLOT_BITS) | 1L << SLOT_BITS | (value - 1);
+                    count += 1 + SLOT_BITS;
+                }
+            }
+            for (; count >= 8; count -= 8) {
+                out.write((int) (bits >>> (count - 8)));
+            }
+        }
+        if (count > 0) {
+            out.write((int) (bits << (8 - count)));
+        }
+    }
+
+    private static int[] getRecords(ByteBuffer in) {
+        final int[] records = new int[(int) getVarint(in)];
+        final BitReader bits = new BitReader(in);
+        for (int i = 0; i < records.length; i++) {
+            int action;
+            if (bits.read(1) == 0) {
+                action = 1 + bits.read(1);
+            } else if (bits.read(1) == 0) {
+                action = 3 + bits.read(1);
+            } else {
+                action = bits.read(ACTION_BITS);
+            }
+            int record = action;
+            for (int field = 0; field < RECORD_FIELDS; field++) {
+                if (bits.read(1) == 1) {
+                    record |= (bits.read(SLOT_BITS) + 1) << (ACTION_BITS + field * SLOT_BITS);
+                }
+            }
+            records[i] = record;
+        }
+        return records;
+    }
+
+    /**
+     * Reads a bit stream written by putRecords, most significant bit first.
+     */
+    private static final class BitReader {
+        private final ByteBuffer in;
+        private int bits;
+        private int count;
+
+        BitReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        int read(int n) {
+            while (count < n) {
+                bits = bits << 8 | (in.get() & 0xFF);
+                count += 8;
+            }
+            count -= n;
+            return (bits >>> count) & ((1 << n) - 1);
+        }
+    }
+
+    /**
+     * Records a match by wrapping the controllers of both champions. Use the wrapped
+     * controllers in place of the originals, with draws seeded by
+     * ModifierVault.setThreadSeed and the engine seeded with the same seed (as
+     * MatchSimulator does), then call finish once the match is over. To record
+     * keyframes, the recorder must also be the engine's MatchListener.
+     */
+    public static final class Recorder implements MatchListener {
+        private final long seed;
+        private final int maxRounds;
+        private final int keyframeInterval;
+        private final List<MatchSnapshot> keyframes = new ArrayList<>();
+        private final List<Class<? extends BattleModifier>> registry;
+        private final Map<Class<?>, Integer> registryIndex = new HashMap<>();
+        private final Side a;
+        private final Side b;
+
+        /**
+         * Constructor for a Recorder.
+         * @param vault The vault the match draws from.
+         * @param seed The seed of the match.
+         * @param maxRounds The round limit of the match.
+         * @param controllerA The first champion's controller.
+         * @param controllerB The second champion's controller.
+         */
+        public Recorder(ModifierVault vault, long seed, int maxRounds,
+                        ChampionController controllerA, ChampionController controllerB) {
+            this(vault, seed, maxRounds, 0, controllerA, controllerB);
+        }
+
+        /**
+         * Constructor for a Recorder that takes a keyframe every few rounds.
+         * @param vault The vault the match draws from.
+         * @param seed The seed of the match.
+         * @param maxRounds The round limit of the match.
+         * @param keyframeInterval The number of rounds between keyframes, or 0 for none.
+         * @param controllerA The first champion's controller.
+         * @param controllerB The second champion's controller.
+         * @throws IllegalArgumentException if keyframeInterval is negative.
+         */
+        public Recorder(ModifierVault vault, long seed, int maxRounds, int keyframeInterval,
+                        ChampionController controllerA, ChampionController controllerB) {
+            if (keyframeInterval < 0) {
+                throw new IllegalArgumentException("keyframeInterval must not be negative: " + keyframeInterval);
+            }
+            this.seed = seed;
+            this.maxRounds = maxRounds;
+            this.keyframeInterval = keyframeInterval;
+            this.registry = vault.getRegistry();
+            for (int i = 0; i < registry.size(); i++) {
+                registryIndex.put(registry.get(i), i);
+            }
+            this.a = new Side(controllerA);
+            this.b = new Side(controllerB);
+        }
+
+        /**
+         * @return The controller to use for the first champion.
+         */
+        public ChampionController controllerA() {
+            return a;
+        }
+
+        /**
+         * @return The controller to use for the second champion.
+         */
+        public ChampionController controllerB() {
+            return b;
+        }
+
+        /**
+         * Take a keyframe at the start of every keyframeInterval rounds.
+         * @param engine The engine running the recorded match.
+         */
+        @Override
+        public void onRoundStart(BattleEngine engine) {
+            final int round = engine.getRound();
+            if (keyframeInterval > 0 && round > 1 && (round - 1) % keyframeInterval == 0) {
+                keyframes.add(MatchSnapshot.capture(engine));
+            }
+        }
+
+        /**
+         * Build the replay of the finished match.
+         * @return The replay.
+         * @throws IllegalStateException if the match was not played through this recorder.
+         */
+        public Replay finish() {
+            if (a.champion == null || b.champion == null) {
+                throw new IllegalStateException("No match has been recorded");
+            }
+            final int rounds = Math.min(a.count, b.count);
+            final int[] records = new int[rounds * 2];
+            for (int i = 0; i < rounds; i++) {
+                records[2 * i] = a.records[i];
+                records[2 * i + 1] = b.records[i];
+            }
+            final long[] words = new long[MatchState.WORDS];
+            MatchState.encode(a.champion, b.champion, words);
+            return new Replay(seed, maxRounds, fingerprint(registry), a.champion.getClass().getName().hashCode(),
+                              b.champion.getClass().getName().hashCode(), a.initial, b.initial, records,
+                              ZobristHash.hash(words), keyframeInterval, keyframes.toArray(new MatchSnapshot[0]));
+        }
+
+        private int id(BattleModifier mod) {
+            if (mod == null) {
+                return 0;
+            }
+            final Integer index = registryIndex.get(mod.getClass());
+            if (index == null) {
+                throw new IllegalStateException(mod.getClass().getName() + " is not in the modifier registry");
+            }
+            return index + 1;
+        }
+
+        /**
+         * A recording wrapper around one champion's controller.
+         */
+        private final class Side implements ChampionController {
+            private final ChampionController delegate;
+            private Champion champion;
+            private int[] initial;
+            private int[] records = new int[64];
+            private int count;
+
+            Side(ChampionController delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public CompletableFuture<Champion> chooseChampion(String playerName,
+                    List<Class<? extends Champion>> availableChampions) {
+                return delegate.chooseChampion(playerName, availableChampions).thenApply(champ -> {
+                    final Loadout loadout = champ.getLoadout();
+                    final Arsenal arsenal = champ.getArsenal();
+                    initial = new int[3 + arsenal.size()];
+                    initial[0] = id(loadout.getTactic());
+                    initial[1] = id(loadout.getRelic());
+                    initial[2] = id(loadout.getPocketedGambit());
+                    for (int i = 0; i < arsenal.size(); i++) {
+                        initial[3 + i] = id(arsenal.getSlot(i)) - 1;
+                    }
+                    champion = champ;
+                    return champ;
+                });
+            }
+
+            @Override
+            public CompletableFuture<TurnSubmission> planTurn(Champion self, Champion opponent, ModifierVault vault) {
+                final int before = self.getArsenal().size();
+                return delegate.planTurn(self, opponent, vault).thenApply(turn -> {
+                    if (count == records.length) {
+                        records = Arrays.copyOf(records, count * 2);
+                    }
+                    records[count++] = encode(self, turn, self.getArsenal().size() - before);
+                    return turn;
+                });
+            }
+        }
+    }
+}
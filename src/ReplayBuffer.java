@@ -0,0 +1,119 @@
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed-size, lock-free ring buffer of training transitions. Self-play workers
+ * append the transitions of each finished game while a learner samples from it.
+ * Writers claim a slot with a single atomic increment, so many workers can add at
+ * once without locking; once the buffer is full the oldest transitions are
+ * overwritten.
+ */
+public class ReplayBuffer {
+    private final AtomicReferenceArray<Transition> slots;
+    private final AtomicLong cursor = new AtomicLong();
+    private final int mask;
+
+    /**
+     * Create a replay buffer.
+     * @param capacity The number of transitions to keep, rounded up to a power of two.
+     * @throws IllegalArgumentException if capacity is not positive or too large.
+     */
+    public ReplayBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        final int size = Math.max(Integer.highestOneBit(capacity - 1) << 1, 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Add a transition, overwriting the oldest one if the buffer is full.
+     * @param transition The transition to add.
+     */
+    public void add(Transition transition) {
+        final long index = cursor.getAndIncrement();
+        slots.set((int) (index & mask), transition);
+    }
+
+    /**
+     * Get the number of transitions currently held.
+     * @return The number of transitions in the buffer.
+     */
+    public int size() {
+        return (int) Math.min(cursor.get(), mask + 1L);
+    }
+
+    /**
+     * Get the total number of transitions ever added.
+     * @return The number of transitions added.
+     */
+    public long added() {
+        return cursor.get();
+    }
+
+    /**
+     * Sample a random transition.
+     * @param random The random source to sample with.
+     * @return A transition, or null if the buffer is empty or the chosen slot is
+     *         still being written.
+     */
+    public Transition sample(Random random) {
+        final int size = size();
+        if (size == 0) {
+            return null;
+        }
+        return slots.get(random.nextInt(size));
+    }
+
+    /**
+     * A single decision made during self-play: the state it was made in, the turn that
+     * was submitted and the return the decision eventually earned.
+     */
+    public static final class Transition {
+        /**
+         * The packed match state from the deciding champion's point of view.
+         */
+        public final long[] state;
+        /**
+         * The policy features of the state.
+         */
+        public final double[] features;
+        /**
+         * The name of the deciding champion's class.
+         */
+        public final String championClass;
+        /**
+         * The index of the chosen action in the champion's action list.
+         */
+        public final int action;
+        /**
+         * The turn that was submitted.
+         */
+        public final TurnSubmission submission;
+        /**
+         * The discounted reward earned from this decision to the end of the game.
+         */
+        public final double reward;
+
+        /**
+         * Constructor for Transition.
+         * @param state The packed match state from the deciding champion's point of view.
+         * @param features The policy features of the state.
+         * @param championClass The name of the deciding champion's class.
+         * @param action The index of the chosen action.
+         * @param submission The turn that was submitted.
+         * @param reward The discounted reward earned from this decision.
+         */
+        public Transition(long[] state, double[] features, String championClass,
+                          int action, TurnSubmission submission, double reward) {
+            this.state = state;
+            this.features = features;
+            this.championClass = championClass;
+            this.action = action;
+            this.submission = submission;
+            this.reward = reward;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The ReplayController class implements the ChampionController interface by playing
+ * back one side of a recorded Replay. It creates the recorded champion with its
+ * recorded initial loadout and arsenal, then submits the recorded turns in order.
+ *
+ * The match must be re-run with the same seed it was recorded with (see
+ * Replay.play), since the replay only stores the choices that were made and not
+ * the modifiers that were drawn.
+ */
+public class ReplayController implements ChampionController {
+    private final Replay replay;
+    private final int side;
+    private final Class<? extends Champion> championClass;
+    private final List<Class<? extends BattleModifier>> registry;
+    private int turn;
+
+    /**
+     * Constructor for the ReplayController.
+     * @param replay The replay to play back.
+     * @param side 0 to play the first champion, 1 to play the second.
+     * @param championClass The class of the recorded champion.
+     * @param registry The modifier registry the replay was recorded with.
+     */
+    public ReplayController(Replay replay, int side, Class<? extends Champion> championClass,
+                            List<Class<? extends BattleModifier>> registry) {
+        this.replay = replay;
+        this.side = side;
+        this.championClass = championClass;
+        this.registry = registry;
+    }
+
+    /**
+     * Create the recorded champion, ignoring the available champions, and give it
+     * its recorded initial loadout and arsenal.
+     * @param playerName The name of the player.
+     * @param availableChampions The champions that could be chosen, which are ignored.
+     * @return A CompletableFuture containing the champion, which completes
+     *         exceptionally if the champion could not be created.
+     */
+    @Override
+    public CompletableFuture<Champion> chooseChampion(String playerName,
+            List<Class<? extends Champion>> availableChampions) {
+        try {
+            // Creating the champion draws its arsenal, which keeps the seeded draws in step
+            final Champion champ = ChampionRegistry.get(championClass).create();
+            final int[] initial = side == 0 ? replay.initialA : replay.initialB;
+            final Loadout loadout = champ.getLoadout();
+            if (initial[0] != 0) {
+                loadout.swapTactic((Tactic) create(initial[0] - 1));
+            }
+            if (initial[1] != 0) {
+                loadout.swapRelic((Relic) create(initial[1] - 1));
+            }
+            if (initial[2] != 0) {
+                loadout.swapPocketedGambit((Gambit) create(initial[2] - 1));
+            }
+            List<BattleModifier> arsenal = new ArrayList<>();
+            for (int i = 3; i < initial.length; i++) {
+                arsenal.add(create(initial[i]));
+            }
+            champ.getArsenal().setSlots(arsenal);
+            return CompletableFuture.completedFuture(champ);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Continue from a later turn, after the match has been restored from a keyframe.
+     * @param turn The next turn to submit, from 0.
+     */
+    void seek(int turn) {
+        this.turn = turn;
+    }
+
+    private BattleModifier create(int registryIndex) throws ReflectiveOperationException {
+        return registry.get(registryIndex).getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Submit the next recorded turn, first making the draws the recorded controller
+     * made while planning it.
+     * @param self The champion whose turn it is.
+     * @param opponent The opponent champion.
+     * @param vault The vault containing available modifiers.
+     * @return A CompletableFuture containing the recorded TurnSubmission.
+     * @throws IllegalStateException if the replay has no more turns.
+     */
+    @Override
+    public CompletableFuture<TurnSubmission> planTurn(Champion self, Champion opponent, ModifierVault vault) {
+        if (turn >= replay.getRounds()) {
+            throw new IllegalStateException("The replay has no more turns");
+        }
+        final int record = replay.record(turn++, side);
+        for (int i = Replay.draws(record); i > 0; i--) {
+            self.getArsenal().draw();
+        }
+        return CompletableFuture.completedFuture(Replay.decode(self, record));
+    }
+}
@@ -0,0 +1,590 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * ResultStore is an append-only store of match results on disk. Each result is a
+ * fixed-width 48-byte record (time, seed, champion and loadout ids, winner, rounds
+ * and remaining health) in a memory-mapped segment file. Class names are stored
+ * once in a dictionary file and referred to by id.
+ *
+ * Records are packed into 4 KB pages, 85 to a page, and every page keeps two small
+ * indexes: the earliest and latest time of its records, and a 64-bit bitmap of the
+ * champion ids in it (id modulo 64). A query by champion and time range only reads
+ * the pages whose indexes could match. Since results are appended roughly in time
+ * order, a query for a recent week reads a short run of pages.
+ *
+ * Appending never takes a lock: a writer claims a slot with an atomic counter,
+ * writes the record into the mapped segment and publishes it by writing its time
+ * last, so any number of simulation threads can append at once. Only opening a new
+ * segment and adding a new class name to the dictionary are synchronized. Slots
+ * that were claimed but never written (if the process died) are skipped.
+ *
+ * The indexes of full segments are saved next to them; the indexes of the segment
+ * being written are rebuilt by scanning it when the store is opened. Full segments
+ * also get a column-oriented copy the first time MatchQuery scans them.
+ */
+public class ResultStore implements AutoCloseable {
+    static final int RECORD_SIZE = 48;
+    static final int PAGE_SIZE = 4096;
+    static final int RECORDS_PER_PAGE = PAGE_SIZE / RECORD_SIZE;
+    static final int PAGES_PER_SEGMENT = 4096;
+    static final int RECORDS_PER_SEGMENT = RECORDS_PER_PAGE * PAGES_PER_SEGMENT;
+
+    // Record layout
+    private static final int TIME = 0;       // long: epoch millis, 0 until the record is written
+    private static final int SEED = 8;       // long
+    private static final int CHAMPION = 16;  // int each for the first and second champion
+    private static final int LOADOUT = 24;   // short each for tactic, relic, gambit of A, then of B
+    private static final int WINNER = 36;    // byte: WINNER_A, WINNER_B or DRAW
+    private static final int HEALTH = 37;    // byte each for A and B
+    private static final int ROUNDS = 40;    // int
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final String NAMES = "names.txt";
+
+    private final Path directory;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final BufferedWriter namesOut;
+    private final AtomicLong next = new AtomicLong();
+    private final LongAdder pagesRead = new LongAdder();
+    private volatile String[] nameArray = {null};
+    private volatile Segment[] segments = new Segment[0];
+
+    /**
+     * Constructor for a ResultStore, which opens the store in a directory or creates it.
+     * @param directory The directory holding the store's files.
+     * @throws IOException if the store cannot be read or created.
+     */
+    public ResultStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        names.add(null); // Id 0 is an empty slot
+        final Path namesFile = directory.resolve(NAMES);
+        if (Files.exists(namesFile)) {
+            for (String name : Files.readAllLines(namesFile, StandardCharsets.UTF_8)) {
+                if (!name.isEmpty()) {
+                    ids.put(name, names.size());
+                    names.add(name);
+                }
+            }
+            nameArray = names.toArray(new String[0]);
+        }
+        namesOut = Files.newBufferedWriter(namesFile, StandardCharsets.UTF_8,
+                                           StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        final List<Segment> opened = new ArrayList<>();
+        while (Files.exists(segmentFile(opened.size()))) {
+            opened.add(new Segment(opened.size(), true));
+        }
+        segments = opened.toArray(new Segment[0]);
+        if (!opened.isEmpty()) {
+            final Segment last = opened.get(opened.size() - 1);
+            next.set((long) last.number * RECORDS_PER_SEGMENT + last.end());
+        }
+    }
+
+    private Path segmentFile(int number) {
+        return directory.resolve(String.format("segment-%05d.dat", number));
+    }
+
+    private Path indexFile(int number) {
+        return directory.resolve(String.format("segment-%05d.idx", number));
+    }
+
+    private Path columnFile(int number) {
+        return directory.resolve(String.format("segment-%05d.col", number));
+    }
+
+    /**
+     * Append the result of a match that has just finished.
+     * @param result The result.
+     */
+    public void append(MatchResult result) {
+        append(result, System.currentTimeMillis());
+    }
+
+    /**
+     * Append a match result with the time it was played.
+     * @param result The result.
+     * @param timeMillis When the match was played, in milliseconds since the epoch.
+     * @throws IllegalArgumentException if the time is not positive.
+     */
+    public void append(MatchResult result, long timeMillis) {
+        if (timeMillis <= 0) {
+            throw new IllegalArgumentException("The time must be positive: " + timeMillis);
+        }
+        final int championA = id(result.championA);
+        final int championB = id(result.championB);
+        final long slot = next.getAndIncrement();
+        final Segment segment = segment((int) (slot / RECORDS_PER_SEGMENT));
+        final int index = (int) (slot % RECORDS_PER_SEGMENT);
+        final int page = index / RECORDS_PER_PAGE;
+        final int at = offset(index);
+
+        final ByteBuffer buffer = segment.buffer;
+        buffer.putLong(at + SEED, result.seed);
+        buffer.putInt(at + CHAMPION, championA);
+        buffer.putInt(at + CHAMPION + 4, championB);
+        putLoadout(buffer, at + LOADOUT, result.loadoutA);
+        putLoadout(buffer, at + LOADOUT + 6, result.loadoutB);
+        buffer.put(at + WINNER, (byte) result.winner);
+        buffer.put(at + HEALTH, (byte) result.healthA);
+        buffer.put(at + HEALTH + 1, (byte) result.healthB);
+        buffer.putInt(at + ROUNDS, result.rounds);
+
+        // Index the page before publishing, so a query never skips a published record
+        segment.include(page, timeMillis, championA, championB);
+        LONGS.setRelease(buffer, at + TIME, timeMillis);
+    }
+
+    private void putLoadout(ByteBuffer buffer, int at, List<String> loadout) {
+        for (int i = 0; i < 3; i++) {
+            final int id = i < loadout.size() ? id(loadout.get(i)) : 0;
+            if (id > 0xFFFF) {
+                throw new IllegalStateException("Too many modifier classes to store");
+            }
+            buffer.putShort(at + 2 * i, (short) id);
+        }
+    }
+
+    static int offset(int index) {
+        return index / RECORDS_PER_PAGE * PAGE_SIZE + index % RECORDS_PER_PAGE * RECORD_SIZE;
+    }
+
+    /**
+     * Get the id of a class name, adding it to the dictionary if it is new.
+     * @param name The class name, or null.
+     * @return The id, or 0 for null.
+     */
+    int id(String name) {
+        if (name == null) {
+            return 0;
+        }
+        final Integer id = ids.get(name);
+        return id != null ? id : addName(name);
+    }
+
+    private synchronized int addName(String name) {
+        final Integer existing = ids.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            namesOut.write(name);
+            namesOut.newLine();
+            namesOut.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write to " + directory.resolve(NAMES), e);
+        }
+        final int id = names.size();
+        names.add(name);
+        nameArray = names.toArray(new String[0]);
+        ids.put(name, id);
+        return id;
+    }
+
+    /**
+     * Look up the id of a class name without adding it.
+     * @param name The class name.
+     * @return The id, or -1 if the name has never been stored.
+     */
+    int idOf(String name) {
+        final Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Get the class name with an id.
+     * @param id The id.
+     * @return The class name, or null for 0 or an unknown id.
+     */
+    String name(int id) {
+        final String[] array = nameArray;
+        return id > 0 && id < array.length ? array[id] : null;
+    }
+
+    private Segment segment(int number) {
+        final Segment[] current = segments;
+        if (number < current.length) {
+            return current[number];
+        }
+        synchronized (this) {
+            try {
+                while (segments.length <= number) {
+                    final Segment[] grown = Arrays.copyOf(segments, segments.length + 1);
+                    grown[grown.length - 1] = new Segment(grown.length - 1, false);
+                    segments = grown;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create a segment in " + directory, e);
+            }
+            return segments[number];
+        }
+    }
+
+    /**
+     * Get the number of segment files in the store.
+     * @return The number of segments.
+     */
+    int getSegments() {
+        return segments.length;
+    }
+
+    /**
+     * Get the results of a segment in column order. A full segment is converted once
+     * and its columns saved next to it; the segment being written is converted from
+     * the records written so far every time.
+     * @param number The segment.
+     * @return The segment's columns.
+     * @throws UncheckedIOException if the columns cannot be read or saved.
+     */
+    ColumnSegment columns(int number) {
+        final Segment segment = segments[number];
+        ColumnSegment columns = segment.columns;
+        if (columns != null) {
+            return columns;
+        }
+        synchronized (segment) {
+            try {
+                if (segment.columns != null) {
+                    return segment.columns;
+                }
+                final Path file = columnFile(number);
+                if (Files.exists(file)) {
+                    segment.columns = ColumnSegment.map(file);
+                    return segment.columns;
+                }
+                columns = segment.toColumns();
+                // A full segment of an earlier run will never get its missing records
+                if (columns.rows == RECORDS_PER_SEGMENT
+                        || (segment.reopened && number < segments.length - 1)) {
+                    columns.write(file);
+                    segment.columns = columns;
+                }
+                return columns;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read the columns of segment " + number, e);
+            }
+        }
+    }
+
+    /**
+     * Visit the stored results of a champion class within a time range, reading only
+     * the pages whose indexes could hold them.
+     * @param champion The champion's class name, or null for every champion.
+     * @param fromMillis The start of the time range, inclusive.
+     * @param toMillis The end of the time range, exclusive.
+     * @param action Called with each matching record. The record is only valid during
+     *               the call, and the action may be called from several threads at once.
+     * @return The number of matching records.
+     */
+    public long query(String champion, long fromMillis, long toMillis, Consumer<Record> action) {
+        final int id;
+        if (champion == null) {
+            id = 0;
+        } else {
+            final Integer known = ids.get(champion);
+            if (known == null) {
+                return 0;
+            }
+            id = known;
+        }
+        final long bit = id == 0 ? -1L : 1L << (id & 63);
+        return Stream.of(segments).parallel()
+            .filter(s -> s.maxTime.get() >= fromMillis && s.minTime.get() < toMillis)
+            .mapToLong(s -> s.query(id, bit, fromMillis, toMillis, action))
+            .sum();
+    }
+
+    /**
+     * Get the number of results in the store, including any still being written.
+     * @return The number of results.
+     */
+    public long size() {
+        return next.get();
+    }
+
+    /**
+     * Get the number of pages that queries have read so far.
+     * @return The number of pages read.
+     */
+    public long getPagesRead() {
+        return pagesRead.sum();
+    }
+
+    /**
+     * Get the number of pages in the store.
+     * @return The number of pages with at least one record.
+     */
+    public long getPages() {
+        final long records = next.get();
+        return records / RECORDS_PER_SEGMENT * PAGES_PER_SEGMENT
+            + (records % RECORDS_PER_SEGMENT + RECORDS_PER_PAGE - 1) / RECORDS_PER_PAGE;
+    }
+
+    /**
+     * Flush the segments to disk, save the indexes of full segments and close the store.
+     * @throws IOException if the store could not be saved.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment s : segments) {
+            s.buffer.force();
+            if (s.end() == RECORDS_PER_SEGMENT && !Files.exists(indexFile(s.number))) {
+                s.saveIndex();
+            }
+            s.channel.close();
+        }
+        namesOut.close();
+    }
+
+    /**
+     * A view of one stored record, passed to query actions.
+     */
+    public final class Record {
+        private ByteBuffer buffer;
+        private int at;
+
+        private Record() {
+        }
+
+        /** @return When the match was played, in milliseconds since the epoch. */
+        public long getTime() {
+            return buffer.getLong(at + TIME);
+        }
+
+        /** @return The seed the match was played with. */
+        public long getSeed() {
+            return buffer.getLong(at + SEED);
+        }
+
+        /**
+         * @param side 0 for the first champion, 1 for the second.
+         * @return The champion's class name.
+         */
+        public String getChampion(int side) {
+            return name(buffer.getInt(at + CHAMPION + 4 * side));
+        }
+
+        /**
+         * @param side 0 for the first champion, 1 for the second.
+         * @param slot 0 for the tactic, 1 for the relic, 2 for the gambit.
+         * @return The class name of the modifier the champion started with, or null for none.
+         */
+        public String getLoadout(int side, int slot) {
+            return name(buffer.getShort(at + LOADOUT + 6 * side + 2 * slot) & 0xFFFF);
+        }
+
+        /** @return MatchResult.WINNER_A, WINNER_B or DRAW. */
+        public int getWinner() {
+            return buffer.get(at + WINNER);
+        }
+
+        /** @return The number of rounds played. */
+        public int getRounds() {
+            return buffer.getInt(at + ROUNDS);
+        }
+
+        /**
+         * @param side 0 for the first champion, 1 for the second.
+         * @return The champion's health at the end of the match.
+         */
+        public int getHealth(int side) {
+            return buffer.get(at + HEALTH + side);
+        }
+
+        /**
+         * Copy the record into a MatchResult that outlives the query.
+         * @return The result.
+         */
+        public MatchResult toResult() {
+            return new MatchResult(getChampion(0), getChampion(1), getWinner(), getRounds(), getHealth(0),
+                getHealth(1), getSeed(), loadout(0), loadout(1));
+        }
+
+        private List<String> loadout(int side) {
+            return Collections.unmodifiableList(
+                Arrays.asList(getLoadout(side, 0), getLoadout(side, 1), getLoadout(side, 2)));
+        }
+    }
+
+    /**
+     * One mapped segment file and its page indexes.
+     */
+    private final class Segment {
+        final int number;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final AtomicLongArray pageMin = new AtomicLongArray(PAGES_PER_SEGMENT);
+        final AtomicLongArray pageMax = new AtomicLongArray(PAGES_PER_SEGMENT);
+        final AtomicLongArray pageChampions = new AtomicLongArray(PAGES_PER_SEGMENT);
+        final AtomicLong minTime = new AtomicLong(Long.MAX_VALUE);
+        final AtomicLong maxTime = new AtomicLong(Long.MIN_VALUE);
+        final boolean reopened;                // Whether the segment was written by an earlier run
+        volatile ColumnSegment columns;        // Set once the segment is full and converted
+
+        Segment(int number, boolean existing) throws IOException {
+            this.number = number;
+            this.reopened = existing;
+            this.channel = FileChannel.open(segmentFile(number), StandardOpenOption.CREATE,
+                                            StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) PAGE_SIZE * PAGES_PER_SEGMENT);
+            for (int p = 0; p < PAGES_PER_SEGMENT; p++) {
+                pageMin.set(p, Long.MAX_VALUE);
+                pageMax.set(p, Long.MIN_VALUE);
+            }
+            if (existing && !loadIndex()) {
+                rebuildIndex();
+            }
+        }
+
+        void include(int page, long time, int championA, int championB) {
+            pageMin.accumulateAndGet(page, time, Math::min);
+            pageMax.accumulateAndGet(page, time, Math::max);
+            pageChampions.accumulateAndGet(page, (1L << (championA & 63)) | (1L << (championB & 63)), (x, y) -> x | y);
+            minTime.accumulateAndGet(time, Math::min);
+            maxTime.accumulateAndGet(time, Math::max);
+        }
+
+        /**
+         * Get the index one past the last written record.
+         */
+        int end() {
+            for (int i = RECORDS_PER_SEGMENT - 1; i >= 0; i--) {
+                if (buffer.getLong(offset(i) + TIME) != 0) {
+                    return i + 1;
+                }
+            }
+            return 0;
+        }
+
+        long query(int id, long bit, long from, long to, Consumer<Record> action) {
+            final Record record = new Record();
+            record.buffer = buffer;
+            long matched = 0;
+            for (int p = 0; p < PAGES_PER_SEGMENT; p++) {
+                if ((pageChampions.get(p) & bit) == 0 || pageMax.get(p) < from || pageMin.get(p) >= to) {
+                    continue;
+                }
+                pagesRead.increment();
+                for (int r = 0; r < RECORDS_PER_PAGE; r++) {
+                    final int at = p * PAGE_SIZE + r * RECORD_SIZE;
+                    final long time = (long) LONGS.getAcquire(buffer, at + TIME);
+                    if (time == 0 || time < from || time >= to) { // 0 is a slot not written yet
+                        continue;
+                    }
+                    if (id != 0 && buffer.getInt(at + CHAMPION) != id && buffer.getInt(at + CHAMPION + 4) != id) {
+                        continue;
+                    }
+                    record.at = at;
+                    action.accept(record);
+                    matched++;
+                }
+            }
+            return matched;
+        }
+
+        /**
+         * Copy the written records into column order.
+         */
+        ColumnSegment toColumns() {
+            int rows = 0;
+            for (int i = 0; i < RECORDS_PER_SEGMENT; i++) {
+                if ((long) LONGS.getAcquire(buffer, offset(i) + TIME) != 0) {
+                    rows++;
+                }
+            }
+            final ColumnSegment columns = new ColumnSegment(rows);
+            int row = 0;
+            for (int i = 0; i < RECORDS_PER_SEGMENT && row < rows; i++) {
+                final int at = offset(i);
+                final long time = (long) LONGS.getAcquire(buffer, at + TIME);
+                if (time == 0) {
+                    continue;
+                }
+                columns.set(row, ColumnSegment.Column.TIME, time);
+                columns.set(row, ColumnSegment.Column.SEED, buffer.getLong(at + SEED));
+                columns.set(row, ColumnSegment.Column.CHAMPION_A, buffer.getInt(at + CHAMPION));
+                columns.set(row, ColumnSegment.Column.CHAMPION_B, buffer.getInt(at + CHAMPION + 4));
+                columns.set(row, ColumnSegment.Column.TACTIC_A, buffer.getShort(at + LOADOUT));
+                columns.set(row, ColumnSegment.Column.RELIC_A, buffer.getShort(at + LOADOUT + 2));
+                columns.set(row, ColumnSegment.Column.GAMBIT_A, buffer.getShort(at + LOADOUT + 4));
+                columns.set(row, ColumnSegment.Column.TACTIC_B, buffer.getShort(at + LOADOUT + 6));
+                columns.set(row, ColumnSegment.Column.RELIC_B, buffer.getShort(at + LOADOUT + 8));
+                columns.set(row, ColumnSegment.Column.GAMBIT_B, buffer.getShort(at + LOADOUT + 10));
+                columns.set(row, ColumnSegment.Column.WINNER, buffer.get(at + WINNER));
+                columns.set(row, ColumnSegment.Column.HEALTH_A, buffer.get(at + HEALTH));
+                columns.set(row, ColumnSegment.Column.HEALTH_B, buffer.get(at + HEALTH + 1));
+                columns.set(row, ColumnSegment.Column.ROUNDS, buffer.getInt(at + ROUNDS));
+                row++;
+            }
+            columns.finish();
+            return columns;
+        }
+
+        void rebuildIndex() {
+            IntStream.range(0, PAGES_PER_SEGMENT).parallel().forEach(p -> {
+                for (int r = 0; r < RECORDS_PER_PAGE; r++) {
+                    final int at = p * PAGE_SIZE + r * RECORD_SIZE;
+                    final long time = buffer.getLong(at + TIME);
+                    if (time != 0) {
+                        include(p, time, buffer.getInt(at + CHAMPION), buffer.getInt(at + CHAMPION + 4));
+                    }
+                }
+            });
+        }
+
+        void saveIndex() throws IOException {
+            final ByteBuffer out = ByteBuffer.allocate(PAGES_PER_SEGMENT * 24);
+            for (int p = 0; p < PAGES_PER_SEGMENT; p++) {
+                out.putLong(pageMin.get(p)).putLong(pageMax.get(p)).putLong(pageChampions.get(p));
+            }
+            Files.write(indexFile(number), out.array());
+        }
+
+        boolean loadIndex() throws IOException {
+            final Path file = indexFile(number);
+            if (!Files.exists(file)) {
+                return false;
+            }
+            final ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (in.remaining() != PAGES_PER_SEGMENT * 24) {
+                return false;
+            }
+            for (int p = 0; p < PAGES_PER_SEGMENT; p++) {
+                final long min = in.getLong();
+                final long max = in.getLong();
+                pageMin.set(p, min);
+                pageMax.set(p, max);
+                pageChampions.set(p, in.getLong());
+                minTime.accumulateAndGet(min, Math::min);
+                maxTime.accumulateAndGet(max, Math::max);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.Random;
+
+/**
+ * A Random that produces exactly the same sequence as java.util.Random, but whose
+ * state can be read and restored, so that a MatchSnapshot can capture where a
+ * match's turn order and draws are up to without serializing the generator.
+ *
+ * Only the generator's 48-bit seed is captured. The cached second value of
+ * nextGaussian is not, so matches must not draw Gaussians from it.
+ */
+class SeededRandom extends Random {
+    private static final long serialVersionUID = 1L;
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state; // Set by setSeed, which Random's constructor calls, so it has no initializer
+
+    /**
+     * Create a generator with the given seed.
+     * @param seed The seed, as for java.util.Random.
+     */
+    SeededRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Create a generator with an unpredictable seed.
+     */
+    SeededRandom() {
+        this(new Random().nextLong());
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * Get the generator's internal state.
+     * @return The 48-bit state.
+     */
+    long getState() {
+        return state;
+    }
+
+    /**
+     * Continue the sequence from a state returned by getState.
+     * @param state The 48-bit state.
+     */
+    void setState(long state) {
+        this.state = state & MASK;
+    }
+}
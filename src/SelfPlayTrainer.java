@@ -0,0 +1,333 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SelfPlayTrainer trains a LinearPolicy by having bots play against themselves.
+ * Worker threads each run headless matches through the BattleEngine with an
+ * exploring version of the policy on both sides. When a game ends, every decision
+ * made in it is labelled with its discounted reward (+1 for a win, -1 for a loss,
+ * 0 for a draw) and added to a lock-free ReplayBuffer. A learner thread samples the
+ * buffer and updates the policy while the games are being played, one batch of
+ * updates per batch of new transitions, so it does not spin on an idle buffer or
+ * take CPU from the workers faster than they feed it.
+ *
+ * The finished policy is written to a file that PolicyChampionController can play
+ * with (see the "policy" controller type of ChampionsArena). Everything runs on the
+ * CPU; throughput is reported as games per second, and as games per CPU second of
+ * the worker and learner threads, which is the rate one core sustains.
+ *
+ * Usage: java SelfPlayTrainer [games] [workers] [output file] [plugin folder]
+ */
+public class SelfPlayTrainer {
+    private static final int MAX_ROUNDS = 200;        // Games that run longer are draws
+    private static final double GAMMA = 0.95;         // Discount per decision back from the end of a game
+    private static final double EPSILON = 0.1;        // Chance of exploring a random action
+    private static final double LEARNING_RATE = 0.01;
+    private static final int BUFFER_CAPACITY = 1 << 18;
+    private static final int BATCH_SIZE = 256;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final LinearPolicy policy = new LinearPolicy();
+    private final ReplayBuffer buffer = new ReplayBuffer(BUFFER_CAPACITY);
+    private final List<Class<? extends Champion>> roster;
+    private final ModifierVault vault;
+
+    private final AtomicInteger gamesStarted = new AtomicInteger();
+    private final LongAdder gamesPlayed = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();      // CPU time of finished worker and learner threads
+    private volatile boolean playing;
+
+    /**
+     * Constructor for the SelfPlayTrainer.
+     * @param roster The champion classes to train on.
+     * @param vault The vault of battle modifiers.
+     */
+    public SelfPlayTrainer(List<Class<? extends Champion>> roster, ModifierVault vault) {
+        this.roster = roster;
+        this.vault = vault;
+    }
+
+    /**
+     * Train the policy by playing the given number of games.
+     * @param games The number of self-play games.
+     * @param workers The number of worker threads playing games.
+     * @return The trained policy.
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     */
+    public LinearPolicy train(int games, int workers) throws InterruptedException {
+        playing = true;
+        Thread learner = new Thread(this::learn, "self-play-learner");
+        learner.setDaemon(true);
+        learner.start();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            final long seed = 31L * i + 17L;
+            Thread worker = new Thread(() -> play(games, seed), "self-play-worker-" + i);
+            threads.add(worker);
+            worker.start();
+        }
+        for (Thread worker : threads) {
+            worker.join();
+        }
+
+        playing = false;
+        learner.join();
+        return policy;
+    }
+
+    /**
+     * Get the number of games played so far.
+     * @return The number of finished games.
+     */
+    public long getGamesPlayed() {
+        return gamesPlayed.sum();
+    }
+
+    /**
+     * Get the number of sampled policy updates made so far.
+     * @return The number of updates.
+     */
+    public long getUpdates() {
+        return updates.sum();
+    }
+
+    /**
+     * Get the number of transitions the workers have added to the replay buffer.
+     * @return The number of transitions.
+     */
+    public long getTransitions() {
+        return buffer.added();
+    }
+
+    /**
+     * Get the CPU time the worker and learner threads of finished train calls used.
+     * @return The CPU time in seconds, or -1 if the JVM cannot measure thread CPU time.
+     */
+    public double getCpuSeconds() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? cpuNanos.sum() / 1e9 : -1;
+    }
+
+    /**
+     * Add the current thread's CPU time to the trainer's total when it is done.
+     */
+    private void countCpuTime() {
+        if (THREADS.isCurrentThreadCpuTimeSupported()) {
+            cpuNanos.add(THREADS.getCurrentThreadCpuTime());
+        }
+    }
+
+    /**
+     * Play games until the shared game budget is used up.
+     * @param games The total number of games to play across all workers.
+     * @param seed The seed for this worker's random choices.
+     */
+    private void play(int games, long seed) {
+        final Random random = new Random(seed);
+        try {
+            while (gamesStarted.getAndIncrement() < games) {
+                ExploringController controllerA = new ExploringController(policy, random.nextLong());
+                ExploringController controllerB = new ExploringController(policy, random.nextLong());
+                Champion champA = controllerA.chooseChampion("Player 1", roster).join();
+                Champion champB = controllerB.chooseChampion("Player 2", roster).join();
+
+                BattleEngine engine = new BattleEngine(champA, champB, new BattleLog(), vault, controllerA, controllerB);
+                engine.setPrintLog(false);
+                engine.setMaxRounds(MAX_ROUNDS);
+                engine.setSeed(random.nextLong());
+                try {
+                    engine.runMatch();
+                } catch (RuntimeException e) {
+                    // A champion or modifier failed mid-game; drop the game rather than the worker
+                    failures.increment();
+                    continue;
+                }
+
+                final Champion winner = engine.getWinner();
+                controllerA.finish(winner == null ? 0.0 : (winner == champA ? 1.0 : -1.0), buffer);
+                controllerB.finish(winner == null ? 0.0 : (winner == champB ? 1.0 : -1.0), buffer);
+                gamesPlayed.increment();
+            }
+        } finally {
+            countCpuTime();
+        }
+    }
+
+    /**
+     * Sample a batch from the replay buffer and update the policy for every batch of
+     * transitions the workers add, until the workers have finished and the last full
+     * batch has been learned from.
+     */
+    private void learn() {
+        final Random random = new Random(7L);
+        long learned = 0;   // Transitions a batch of updates has been made for
+        try {
+            while (playing || buffer.added() - learned >= BATCH_SIZE) {
+                if (buffer.added() - learned < BATCH_SIZE) {
+                    LockSupport.parkNanos(1_000_000L);
+                    continue;
+                }
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    ReplayBuffer.Transition t = buffer.sample(random);
+                    if (t != null) {
+                        policy.update(t.championClass, t.action, t.features, t.reward, LEARNING_RATE);
+                    }
+                }
+                learned += BATCH_SIZE;
+                updates.add(BATCH_SIZE);
+            }
+        } finally {
+            countCpuTime();
+        }
+    }
+
+    /**
+     * Train a policy and export it.
+     * @param args The number of games, the number of workers, the output file and an
+     *             optional folder to load extra champions from.
+     * @throws IOException if the policy cannot be written.
+     * @throws InterruptedException if interrupted while training.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final int games = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        final Path output = Paths.get(args.length > 2 ? args[2] : "policy.txt");
+
+        List<Class<? extends Champion>> roster = new ArrayList<>();
+        roster.add(TrainingDummy.class);
+        roster.add(AdvancedTrainingDummy.class);
+        if (args.length > 3) {
+            roster.addAll(new DynamicClassLoader(args[3]).getSubtypesOf(Champion.class));
+        }
+        ModifierVault vault = ModifierVault.initialize(args.length > 3 ? args[3] : null);
+
+        SelfPlayTrainer trainer = new SelfPlayTrainer(roster, vault);
+        final long start = System.nanoTime();
+        LinearPolicy policy = trainer.train(games, workers);
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        policy.save(output);
+
+        final double cpuSeconds = trainer.getCpuSeconds();
+        System.out.printf("Played %d games on %d workers in %.2fs%n", trainer.getGamesPlayed(), workers, seconds);
+        if (cpuSeconds > 0) {
+            System.out.printf("Throughput: %.1f games/s, %.1f games per CPU second (%.2f CPU s)%n",
+                              trainer.getGamesPlayed() / seconds, trainer.getGamesPlayed() / cpuSeconds, cpuSeconds);
+        } else {
+            final int cores = Runtime.getRuntime().availableProcessors();
+            System.out.printf("Throughput: %.1f games/s, %.1f games/s per core (%d cores)%n",
+                              trainer.getGamesPlayed() / seconds, trainer.getGamesPlayed() / seconds / cores, cores);
+        }
+        System.out.printf("Transitions: %d added, %d sampled updates, %d failed games%n",
+                          trainer.getTransitions(), trainer.getUpdates(), trainer.failures.sum());
+        System.out.println("Policy written to " + output.toAbsolutePath());
+    }
+
+    /**
+     * A policy controller that explores with epsilon-greedy action choices and records
+     * each decision it makes so that it can be labelled with a reward when the game ends.
+     */
+    private static final class ExploringController extends PolicyChampionController {
+        private final Random random;
+        private final List<Pending> decisions = new ArrayList<>();
+
+        ExploringController(LinearPolicy policy, long seed) {
+            super(policy, seed);
+            this.random = new Random(seed ^ 0x9E3779B97F4A7C15L);
+        }
+
+        @Override
+        protected int chooseActionIndex(Champion self, Champion opponent, List<Action> actions, BattleContext context) {
+            final int count = Math.min(actions.size(), LinearPolicy.MAX_ACTIONS);
+            final int allowed = playableMask(actions, self) & ((1 << count) - 1);
+            final double[] features = new double[LinearPolicy.FEATURES];
+            LinearPolicy.features(self, opponent, features);
+
+            final int action;
+            if (random.nextDouble() < EPSILON) {
+                action = randomAllowed(allowed);
+            } else if (!getPolicy().knows(self.getClass().getName())) {
+                // Until the learner has seen this champion, start from the greedy bot's choice
+                action = Math.min(super.chooseActionIndex(self, opponent, actions, context), count - 1);
+            } else {
+                action = getPolicy().bestAction(self.getClass().getName(), count, features, allowed);
+            }
+
+            long[] state = new long[MatchState.WORDS];
+            MatchState.encode(self, opponent, state);
+            decisions.add(new Pending(state, features, self.getClass().getName(), action));
+            return action;
+        }
+
+        @Override
+        public CompletableFuture<TurnSubmission> planTurn(Champion self, Champion opponent, ModifierVault vault) {
+            final int before = decisions.size();
+            CompletableFuture<TurnSubmission> future = super.planTurn(self, opponent, vault);
+            if (decisions.size() > before) {
+                decisions.get(decisions.size() - 1).submission = future.join();
+            }
+            return future;
+        }
+
+        /**
+         * Pick a uniformly random action from a mask of allowed actions.
+         * @param allowed A mask with bit i set if action i may be chosen.
+         * @return The index of the chosen action, or 0 if none is allowed.
+         */
+        private int randomAllowed(int allowed) {
+            int pick = allowed == 0 ? 0 : random.nextInt(Integer.bitCount(allowed));
+            for (int a = 0; a < Integer.SIZE; a++) {
+                if ((allowed & (1 << a)) != 0 && pick-- == 0) {
+                    return a;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Label every recorded decision with its discounted reward and add it to the buffer.
+         * @param reward The reward for the end of the game from this side's point of view.
+         * @param buffer The buffer to add the transitions to.
+         */
+        void finish(double reward, ReplayBuffer buffer) {
+            double discounted = reward;
+            for (int i = decisions.size() - 1; i >= 0; i--) {
+                Pending p = decisions.get(i);
+                buffer.add(new ReplayBuffer.Transition(p.state, p.features, p.championClass,
+                                                       p.action, p.submission, discounted));
+                discounted *= GAMMA;
+            }
+            decisions.clear();
+        }
+    }
+
+    /**
+     * A decision waiting for the end of its game.
+     */
+    private static final class Pending {
+        final long[] state;
+        final double[] features;
+        final String championClass;
+        final int action;
+        TurnSubmission submission;
+
+        Pending(long[] state, double[] features, String championClass, int action) {
+            this.state = state;
+            this.features = features;
+            this.championClass = championClass;
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * SimulationCache runs batches of seeded matches between two champion classes and
+ * remembers their summaries, so a dashboard asking for the same batch again gets
+ * it back without replaying a single match.
+ *
+ * A batch is keyed by a SHA-256 hash of everything that decides its matches: the
+ * round limit, the controllers' policy name, the seed range, and the name and
+ * bytecode hash (see DynamicClassLoader.getBytecodeHash) of both champion classes,
+ * their actions' classes and every class in the modifier registry. Recompiling a
+ * champion, one of its actions or a modifier with different code changes the key,
+ * so the old summary is simply never asked for again. Classes that actions create
+ * along the way (such as temporary modifiers) are not hashed; change the policy name
+ * after changing only one of those.
+ *
+ * Summaries are kept in an in-memory LRU tier of a fixed number of entries and in
+ * an on-disk tier of one small file per key, which survives restarts. Disk hits are
+ * promoted to memory.
+ */
+public class SimulationCache {
+    private static final int VERSION = 1;
+
+    private final ModifierVault vault;
+    private final MatchSimulator simulator;
+    private final int maxRounds;
+    private final Path directory;
+    private final Map<String, Summary> memory;
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor for a SimulationCache.
+     * @param vault The vault whose registry the matches draw from.
+     * @param maxRounds The round limit of each match.
+     * @param directory The directory for the on-disk tier, created if needed.
+     * @param memoryEntries The most summaries kept in memory.
+     * @throws IOException if the directory cannot be created.
+     */
+    public SimulationCache(ModifierVault vault, int maxRounds, Path directory, int memoryEntries) throws IOException {
+        this.vault = vault;
+        this.maxRounds = maxRounds;
+        this.simulator = new MatchSimulator(vault, maxRounds);
+        this.directory = Files.createDirectories(directory);
+        this.memory = new LinkedHashMap<String, Summary>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Summary> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the summary of a batch of matches, simulating it only if it is not cached.
+     * Match i of the batch uses seed firstSeed + i, with controllers.apply(seed) for
+     * the first champion and controllers.apply(~seed) for the second.
+     * @param classA The first champion's class.
+     * @param classB The second champion's class.
+     * @param policy A name for the controllers' policy, such as "greedy". Batches with
+     *               the same name must use controllers that behave the same.
+     * @param controllers Creates a controller from a seed.
+     * @param firstSeed The seed of the first match.
+     * @param matches The number of matches.
+     * @return The summary of the batch.
+     * @throws UncheckedIOException if the on-disk tier cannot be used.
+     */
+    public Summary simulate(Class<? extends Champion> classA, Class<? extends Champion> classB, String policy,
+                            LongFunction<? extends ChampionController> controllers, long firstSeed, int matches) {
+        final String key = key(classA, classB, policy, firstSeed, matches);
+        synchronized (memory) {
+            final Summary cached = memory.get(key);
+            if (cached != null) {
+                memoryHits.increment();
+                return cached;
+            }
+        }
+        final Path file = directory.resolve(key + ".sim");
+        Summary summary = read(file);
+        if (summary != null) {
+            diskHits.increment();
+        } else {
+            misses.increment();
+            summary = run(classA, classB, controllers, firstSeed, matches);
+            write(file, summary);
+        }
+        synchronized (memory) {
+            memory.put(key, summary);
+        }
+        return summary;
+    }
+
+    private Summary run(Class<? extends Champion> classA, Class<? extends Champion> classB,
+                        LongFunction<? extends ChampionController> controllers, long firstSeed, int matches) {
+        final LongAdder winsA = new LongAdder();
+        final LongAdder winsB = new LongAdder();
+        final LongAdder rounds = new LongAdder();
+        IntStream.range(0, matches).parallel().forEach(i -> {
+            final long seed = firstSeed + i;
+            final MatchResult result = simulator.run(classA, controllers.apply(seed), classB, controllers.apply(~seed), seed);
+            if (result.winner == MatchResult.WINNER_A) {
+                winsA.increment();
+            } else if (result.winner == MatchResult.WINNER_B) {
+                winsB.increment();
+            }
+            rounds.add(result.rounds);
+        });
+        return new Summary(matches, winsA.sum(), winsB.sum(), rounds.sum());
+    }
+
+    private String key(Class<? extends Champion> classA, Class<? extends Champion> classB, String policy,
+                       long firstSeed, int matches) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(ByteBuffer.allocate(24).putInt(VERSION).putInt(maxRounds).putLong(firstSeed).putLong(matches).array());
+        digest.update(string(policy));
+        for (Class<?> type : championClasses(classA)) {
+            digest.update(string(type.getName()));
+            digest.update(DynamicClassLoader.getBytecodeHash(type));
+        }
+        digest.update((byte) 0);
+        for (Class<?> type : championClasses(classB)) {
+            digest.update(string(type.getName()));
+            digest.update(DynamicClassLoader.getBytecodeHash(type));
+        }
+        digest.update((byte) 0);
+        for (Class<?> type : vault.getRegistry()) {
+            digest.update(string(type.getName()));
+            digest.update(DynamicClassLoader.getBytecodeHash(type));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static byte[] string(String s) {
+        // Length-prefixed, so that neighbouring strings cannot run together
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes).array();
+    }
+
+    /**
+     * A champion class followed by the classes of its actions.
+     */
+    private static List<Class<?>> championClasses(Class<? extends Champion> type) {
+        final List<Class<?>> classes = new ArrayList<>();
+        classes.add(type);
+        for (Action action : ChampionRegistry.get(type).getActions().asList()) {
+            classes.add(action.getClass());
+        }
+        return classes;
+    }
+
+    private static Summary read(Path file) {
+        try {
+            final ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (in.remaining() != 36 || in.getInt() != VERSION) {
+                System.err.println("Ignoring a corrupt cache entry: " + file);
+                return null;
+            }
+            return new Summary(in.getLong(), in.getLong(), in.getLong(), in.getLong());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(Path file, Summary summary) {
+        final Path temp = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            Files.write(temp, ByteBuffer.allocate(36).putInt(VERSION).putLong(summary.matches)
+                .putLong(summary.winsA).putLong(summary.winsB).putLong(summary.rounds).array());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Get the number of batches answered from memory.
+     * @return The number of memory hits.
+     */
+    public long getMemoryHits() {
+        return memoryHits.sum();
+    }
+
+    /**
+     * Get the number of batches answered from disk.
+     * @return The number of disk hits.
+     */
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    /**
+     * Get the number of batches that had to be simulated.
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * The summary of a batch of matches.
+     */
+    public static final class Summary {
+        /**
+         * The number of matches played.
+         */
+        public final long matches;
+        /**
+         * The number of matches the first champion won.
+         */
+        public final long winsA;
+        /**
+         * The number of matches the second champion won.
+         */
+        public final long winsB;
+        /**
+         * The total number of rounds played.
+         */
+        public final long rounds;
+
+        /**
+         * Constructor for a Summary.
+         * @param matches The number of matches played.
+         * @param winsA The number of matches the first champion won.
+         * @param winsB The number of matches the second champion won.
+         * @param rounds The total number of rounds played.
+         */
+        public Summary(long matches, long winsA, long winsB, long rounds) {
+            this.matches = matches;
+            this.winsA = winsA;
+            this.winsB = winsB;
+            this.rounds = rounds;
+        }
+
+        /**
+         * Get the first champion's win rate, counting a draw as half a win.
+         * @return The win rate.
+         */
+        public double getWinRateA() {
+            return matches == 0 ? 0.5 : (winsA + 0.5 * (matches - winsA - winsB)) / matches;
+        }
+
+        /**
+         * @return A string representation of the summary.
+         */
+        @Override
+        public String toString() {
+            return String.format("%d matches: %d-%d with %d draws, %.1f%% win rate, %.1f rounds on average",
+                matches, winsA, winsB, matches - winsA - winsB, 100 * getWinRateA(),
+                matches == 0 ? 0.0 : (double) rounds / matches);
+        }
+    }
+}
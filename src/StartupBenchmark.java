@@ -0,0 +1,160 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * StartupBenchmark measures how long a fresh arena process takes to reach its first
+ * round, launched the way run.sh launches it (from the target directory) against
+ * launches from the jar, with and without the class data sharing archive that
+ * cds.sh records. Each launch plays a bot match in the given directory, so it scans
+ * the same plugin folder as run.sh does.
+ *
+ * The launches of each kind are interleaved, after one warm-up launch each that
+ * also brings the plugin catalog up to date. The matches' ratings are taken back out
+ * of the data directory's ratings.log afterwards.
+ *
+ * Usage: java StartupBenchmark [launches] [arena directory]
+ */
+public class StartupBenchmark {
+    private static final String FIRST_ROUND = "Round 1 begins!";
+    private static final String JAR = "champions-arena.jar";
+    private static final String ARCHIVE = "champions-arena.jsa";
+
+    private StartupBenchmark() {
+    }
+
+    /**
+     * The times of one launch.
+     */
+    static final class Launch {
+        final long firstRoundNanos;    // From starting the process to its first round
+        final long exitNanos;          // From starting the process to its exit
+
+        Launch(long firstRoundNanos, long exitNanos) {
+            this.firstRoundNanos = firstRoundNanos;
+            this.exitNanos = exitNanos;
+        }
+    }
+
+    /**
+     * Launch an arena process and time it.
+     * @param directory The directory to run it in.
+     * @param command The command line.
+     * @return The launch's times.
+     * @throws IOException if the process cannot be started, or exits without
+     *         playing a round.
+     * @throws InterruptedException if interrupted while waiting for the process.
+     */
+    static Launch launch(Path directory, List<String> command) throws IOException, InterruptedException {
+        final ProcessBuilder builder = new ProcessBuilder(command).directory(directory.toFile())
+            .redirectErrorStream(true);
+        final long start = System.nanoTime();
+        final Process process = builder.start();
+        long firstRound = -1;
+        try (BufferedReader out = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (firstRound < 0 && line.contains(FIRST_ROUND)) {
+                    firstRound = System.nanoTime() - start;
+                }
+            }
+        }
+        final int status = process.waitFor();
+        final long exit = System.nanoTime() - start;
+        if (firstRound < 0) {
+            throw new IOException("No round was played (exit status " + status + "): " + String.join(" ", command));
+        }
+        return new Launch(firstRound, exit);
+    }
+
+    private static double median(long[] nanos) {
+        final long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        final int n = sorted.length;
+        return (n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2.0) / 1e6;
+    }
+
+    /**
+     * Compare time to first round across launch kinds.
+     * @param args The number of timed launches of each kind, and the directory holding
+     *             target, the jar and the archive (run.sh's directory).
+     * @throws IOException if a launch fails or ratings.log cannot be restored.
+     * @throws InterruptedException if interrupted while waiting for a launch.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final int launches = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        final Path directory = Paths.get(args.length > 1 ? args[1] : ".").toAbsolutePath().normalize();
+        final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+        final List<String> names = new ArrayList<>();
+        final List<List<String>> commands = new ArrayList<>();
+        if (Files.isDirectory(directory.resolve("target"))) {
+            names.add("run.sh (-cp target)");
+            commands.add(List.of(java, "-cp", "target", "ChampionsArena", "bot"));
+        }
+        if (Files.isRegularFile(directory.resolve(JAR))) {
+            names.add("jar");
+            commands.add(List.of(java, "-cp", JAR, "ChampionsArena", "bot"));
+            if (Files.isRegularFile(directory.resolve(ARCHIVE))) {
+                names.add("jar + AppCDS");
+                // Fail rather than quietly run unshared if the archive does not match the jar
+                commands.add(List.of(java, "-XX:SharedArchiveFile=" + ARCHIVE, "-Xshare:on",
+                    "-cp", JAR, "ChampionsArena", "bot"));
+            } else {
+                System.out.println("No " + ARCHIVE + "; run cds.sh to record one");
+            }
+        } else {
+            System.out.println("No " + JAR + "; run build.sh to build one");
+        }
+        if (commands.isEmpty()) {
+            System.err.println("Nothing to launch in " + directory);
+            return;
+        }
+
+        // The bot matches are rated like any other; remember where the ratings file ended
+        final Path ratings = directory.resolve(ChampionsArena.DEFAULT_DATA_DIRECTORY).resolve("ratings.log");
+        final long ratingsLength = Files.exists(ratings) ? Files.size(ratings) : -1;
+        final long[][] firstRound = new long[commands.size()][launches];
+        final long[][] exit = new long[commands.size()][launches];
+        try {
+            for (List<String> command : commands) {
+                launch(directory, command);
+            }
+            for (int i = 0; i < launches; i++) {
+                for (int k = 0; k < commands.size(); k++) {
+                    final Launch launch = launch(directory, commands.get(k));
+                    firstRound[k][i] = launch.firstRoundNanos;
+                    exit[k][i] = launch.exitNanos;
+                }
+            }
+        } finally {
+            if (ratingsLength < 0) {
+                Files.deleteIfExists(ratings);
+            } else {
+                try (FileChannel channel = FileChannel.open(ratings, StandardOpenOption.WRITE)) {
+                    channel.truncate(ratingsLength);
+                }
+            }
+        }
+
+        System.out.printf("%d launches of each in %s%n", launches, directory);
+        System.out.printf("%-22s %16s %14s %14s%n", "Launch", "First round ms", "Fastest ms", "Exit ms");
+        final double baseline = median(firstRound[0]);
+        for (int k = 0; k < commands.size(); k++) {
+            final double median = median(firstRound[k]);
+            System.out.printf("%-22s %16.0f %14.0f %14.0f%s%n", names.get(k), median,
+                Arrays.stream(firstRound[k]).min().getAsLong() / 1e6, median(exit[k]),
+                k == 0 ? "" : String.format("  (%.0f%% of %s)", 100 * median / baseline, names.get(0)));
+        }
+    }
+}
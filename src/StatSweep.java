@@ -0,0 +1,312 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StatSweep explores the stat space of a champion for balancing. For a base champion
+ * it builds a variant for every legal point of the stat grid: every attack and
+ * defense power whose total is at most Champion.MAX_STAT_TOTAL, and max health from
+ * the health step up to Champion.MAX_HEALTH. A variant is a new instance of the
+ * base champion's class with only its stats changed (see Champion.setStats), so it
+ * keeps the base champion's actions and every other behaviour, such as a heal
+ * override, and no two matches share an action or a champion.
+ *
+ * Every variant plays the same seeded matches against each champion in the roster,
+ * with greedy bots on both sides. Grid points are simulated in parallel, and each
+ * worker thread reuses its controllers and battle log from point to point rather
+ * than building new ones for every match.
+ *
+ * Results are kept in a CSV cache file with one line per grid point, which is also
+ * the win-rate surface the sweep outputs. A grid point that is already in the cache
+ * for the same roster, number of matches and seed is not simulated again, so a
+ * sweep can be interrupted and resumed, or widened to a finer health step.
+ *
+ * Usage: java StatSweep [plugin folder] [champion class] [matches per opponent] [health step] [cache file]
+ */
+public class StatSweep {
+    private static final String HEADER = "champion,attack,defense,maxHealth,roster,matches,seed,winRate";
+
+    private final List<Class<? extends Champion>> roster;
+    private final MatchSimulator simulator;
+    private final long seed;
+    private final long[] seeds;
+    private final String rosterKey;
+
+    private final Map<String, Point> cache = new ConcurrentHashMap<>();
+    private final ThreadLocal<VariantController> variantControllers = ThreadLocal.withInitial(VariantController::new);
+    private final ThreadLocal<GreedyChampionController> opponentControllers =
+        ThreadLocal.withInitial(GreedyChampionController::new);
+
+    /**
+     * Constructor for the StatSweep.
+     * @param vault The vault of battle modifiers.
+     * @param roster The champion classes every variant plays against.
+     * @param matchesPerOpponent The number of seeded matches played against each roster champion.
+     * @param seed The seed for the match seeds.
+     */
+    public StatSweep(ModifierVault vault, List<Class<? extends Champion>> roster, int matchesPerOpponent, long seed) {
+        if (roster.isEmpty()) {
+            throw new IllegalArgumentException("The roster cannot be empty");
+        }
+        if (matchesPerOpponent < 1) {
+            throw new IllegalArgumentException("At least one match per opponent is required");
+        }
+        this.roster = List.copyOf(roster);
+        this.simulator = new MatchSimulator(vault);
+        this.seed = seed;
+        this.seeds = new long[matchesPerOpponent];
+        Random random = new Random(seed);
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong();
+        }
+
+        // Cached results are only valid for the roster they were played against
+        StringBuilder names = new StringBuilder();
+        this.roster.stream().map(Class::getName).sorted().forEach(n -> names.append(n).append(';'));
+        this.rosterKey = Integer.toHexString(names.toString().hashCode());
+    }
+
+    /**
+     * Sweep the stat grid of a champion, simulating only the grid points that are
+     * not already cached.
+     * @param base The champion class whose variants are swept.
+     * @param healthStep The distance between max health values on the grid.
+     * @return Every point of the grid, cached or newly simulated.
+     * @throws IllegalArgumentException if the base champion cannot be created.
+     */
+    public List<Point> sweep(Class<? extends Champion> base, int healthStep) {
+        if (healthStep < 1) {
+            throw new IllegalArgumentException("The health step must be positive");
+        }
+        final ChampionRegistry.Entry template = ChampionRegistry.get(base);
+
+        List<Point> grid = new ArrayList<>();
+        for (int attack = 0; attack <= Champion.MAX_STAT_TOTAL; attack++) {
+            for (int defense = 0; attack + defense <= Champion.MAX_STAT_TOTAL; defense++) {
+                for (int health = healthStep; health <= Champion.MAX_HEALTH; health += healthStep) {
+                    grid.add(new Point(base.getName(), attack, defense, health, Double.NaN));
+                }
+            }
+        }
+
+        return grid.parallelStream()
+            .map(p -> {
+                Point cached = cache.get(key(p));
+                return cached != null ? cached : simulate(p, template);
+            })
+            .toList();
+    }
+
+    /**
+     * Play a grid point's matches against the whole roster and cache the result.
+     * @param point The grid point, without a win rate.
+     * @param template The base champion's registry entry.
+     * @return The grid point with its win rate.
+     */
+    private Point simulate(Point point, ChampionRegistry.Entry template) {
+        final VariantController self = variantControllers.get();
+        final GreedyChampionController opponent = opponentControllers.get();
+        double score = 0;
+        for (Class<? extends Champion> opponentClass : roster) {
+            for (long matchSeed : seeds) {
+                score += simulator.run(
+                    () -> self.create(template.create(), point.attack, point.defense, point.maxHealth), self,
+                    () -> opponent.chooseChampion("Player 2", List.of(opponentClass)).join(), opponent,
+                    matchSeed).scoreA();
+            }
+        }
+        Point result = new Point(point.champion, point.attack, point.defense, point.maxHealth,
+                                 score / (roster.size() * seeds.length));
+        cache.put(key(result), result);
+        return result;
+    }
+
+    private String key(Point p) {
+        return p.champion + ',' + p.attack + ',' + p.defense + ',' + p.maxHealth + ','
+            + rosterKey + ',' + seeds.length + ',' + seed;
+    }
+
+    /**
+     * Load cached results from a file written by save. Lines for other rosters,
+     * match counts or seeds are kept in the file but never match a grid point.
+     * @param file The cache file. Nothing is loaded if it does not exist.
+     * @throws IOException if the file cannot be read.
+     */
+    public void load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) {
+                throw new IllegalArgumentException("Not a stat sweep file: " + file);
+            }
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                final String[] parts = line.split(",");
+                if (parts.length != 8) {
+                    throw new IllegalArgumentException("Bad stat sweep line: " + line);
+                }
+                final String key = String.join(",", parts[0], parts[1], parts[2], parts[3], parts[4], parts[5], parts[6]);
+                cache.put(key, new Point(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                                         Integer.parseInt(parts[3]), Double.parseDouble(parts[7])));
+            }
+        }
+    }
+
+    /**
+     * Save every cached result to a file, one CSV line per grid point.
+     * @param file The file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(Path file) throws IOException {
+        List<String> keys = new ArrayList<>(cache.keySet());
+        keys.sort(null);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (String key : keys) {
+                out.write(key + ',' + cache.get(key).winRate);
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Get the number of cached grid points.
+     * @return The number of grid points with a known win rate.
+     */
+    public int cachedPoints() {
+        return cache.size();
+    }
+
+    /**
+     * Sweep the stat grid of one or all roster champions and print the win-rate
+     * surface at each champion's own max health, along with its best variants.
+     * @param args An optional plugin folder, champion class name, number of matches
+     *             per opponent, health step and cache file.
+     * @throws IOException if the cache file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        final String folder = args.length > 0 && !args[0].isEmpty() ? args[0] : null;
+        final String only = args.length > 1 && !args[1].isEmpty() ? args[1] : null;
+        final int matches = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        final int healthStep = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        final Path cacheFile = Paths.get(args.length > 4 ? args[4] : "stat-sweep.csv");
+
+        ModifierVault vault = ModifierVault.initialize(folder);
+        Set<Class<? extends Champion>> roster = new LinkedHashSet<>();
+        roster.add(TrainingDummy.class);
+        roster.add(AdvancedTrainingDummy.class);
+        if (folder != null) {
+            roster.addAll(new DynamicClassLoader(folder).getSubtypesOf(Champion.class));
+        }
+
+        StatSweep sweep = new StatSweep(vault, new ArrayList<>(roster), matches, 42L);
+        sweep.load(cacheFile);
+        final int cachedBefore = sweep.cachedPoints();
+
+        for (Class<? extends Champion> base : roster) {
+            if (only != null && !only.equals(base.getName()) && !only.equals(base.getSimpleName())) continue;
+
+            final long start = System.nanoTime();
+            List<Point> surface = sweep.sweep(base, healthStep);
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s: %d grid points in %.1fs%n", base.getSimpleName(), surface.size(), seconds);
+
+            printSurface(surface, ChampionRegistry.get(base));
+        }
+
+        sweep.save(cacheFile);
+        System.out.println("Simulated " + (sweep.cachedPoints() - cachedBefore) + " new grid points; results in " + cacheFile);
+    }
+
+    /**
+     * Print a champion's win rate by attack and defense at the health step nearest
+     * its own max health, followed by its best variants overall.
+     * @param surface The swept grid points.
+     * @param original The champion's registry entry, with its real stats.
+     */
+    private static void printSurface(List<Point> surface, ChampionRegistry.Entry original) {
+        final int health = surface.stream()
+            .mapToInt(p -> p.maxHealth)
+            .boxed()
+            .min(Comparator.comparingInt(h -> Math.abs(h - original.getMaxHealth())))
+            .orElse(original.getMaxHealth());
+
+        System.out.println("  Win rate at " + health + " HP (rows: attack, columns: defense, [current stats])");
+        StringBuilder columns = new StringBuilder("   ");
+        for (int defense = 0; defense <= Champion.MAX_STAT_TOTAL; defense++) {
+            columns.append(String.format("%7d", defense));
+        }
+        System.out.println(columns);
+        for (int attack = 0; attack <= Champion.MAX_STAT_TOTAL; attack++) {
+            StringBuilder row = new StringBuilder(String.format("%3d", attack));
+            for (Point p : surface) {
+                if (p.attack == attack && p.maxHealth == health) {
+                    final boolean current = attack == original.getAttackPower() && p.defense == original.getDefensePower();
+                    row.append(String.format(current ? " [%.2f]" : "  %.2f ", p.winRate));
+                }
+            }
+            System.out.println(row);
+        }
+
+        System.out.println("  Best variants:");
+        surface.stream()
+            .sorted(Comparator.comparingDouble((Point p) -> -p.winRate))
+            .limit(5)
+            .forEach(p -> System.out.printf("    %2d ATK %2d DEF %3d HP  win %.3f%n",
+                                            p.attack, p.defense, p.maxHealth, p.winRate));
+    }
+
+    /**
+     * A point of the stat grid with the variant's win rate against the roster.
+     */
+    static final class Point {
+        final String champion;
+        final int attack;
+        final int defense;
+        final int maxHealth;
+        final double winRate;
+
+        Point(String champion, int attack, int defense, int maxHealth, double winRate) {
+            this.champion = champion;
+            this.attack = attack;
+            this.defense = defense;
+            this.maxHealth = maxHealth;
+            this.winRate = winRate;
+        }
+    }
+
+    /**
+     * A greedy bot for variants, which can give a new champion a grid point's stats
+     * and pick its initial loadout.
+     */
+    static final class VariantController extends GreedyChampionController {
+        /**
+         * Make a new champion into a variant.
+         * @param champ A new instance of the base champion's class.
+         * @param attack The variant's attack power.
+         * @param defense The variant's defense power.
+         * @param maxHealth The variant's max health.
+         * @return The variant, ready to play.
+         */
+        Champion create(Champion champ, int attack, int defense, int maxHealth) {
+            champ.setStats(attack, defense, maxHealth);
+            selectInitialLoadoutFor(champ);
+            return champ;
+        }
+    }
+}
@@ -0,0 +1,508 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tournament runs a tournament between many entrants, each playing a champion class
+ * with a greedy bot. Three formats are supported:
+ *
+ * ROUND_ROBIN: every entrant plays every other entrant once.
+ * SWISS: entrants play a fixed number of rounds against opponents with the same score.
+ * SINGLE_ELIMINATION: a seeded knockout bracket, with byes for the top seeds when the
+ * number of entrants is not a power of two.
+ *
+ * Matches are scheduled on a work-stealing ForkJoinPool. A bracket match starts as
+ * soon as both of the matches feeding it have finished, rather than when its whole
+ * round is over. Swiss rounds are paired by walking the standings from the top and
+ * giving each entrant the highest placed opponent it has not met. Rather than wait
+ * for the whole previous round, an entrant is paired as soon as it has reported and
+ * so has every entrant that could still finish the previous round level with or
+ * above its partner, so the top of the standings can play on while the bottom is
+ * still playing, and the pairings are the same whichever matches finish first.
+ * With an odd field, each round's bye goes to a fixed entrant, the lowest seeds in
+ * turn.
+ *
+ * Every result is applied to the standings as soon as it is known, using striped
+ * counters so that many match threads can report at once, and is passed to an
+ * optional listener. Each match has its own seed derived from the tournament seed,
+ * the round and the entrants, so a tournament's matches do not depend on the order
+ * in which the pool happens to run them.
+ *
+ * To run a tournament between the game's champions: java ChampionsArena tournament
+ */
+public class Tournament {
+    /**
+     * A tournament format.
+     */
+    public enum Format { ROUND_ROBIN, SWISS, SINGLE_ELIMINATION }
+
+    /**
+     * Receives every result of a tournament as it is decided. Listeners are called
+     * from match threads, possibly many at once.
+     */
+    public interface Listener {
+        /**
+         * Called when a match has finished and the standings have been updated.
+         * @param round The round of the match, from 1.
+         * @param a The first entrant.
+         * @param b The second entrant, or null for a bye.
+         * @param result The result of the match, or null for a bye.
+         */
+        void onMatch(int round, Entrant a, Entrant b, MatchResult result);
+    }
+
+    private final MatchSimulator simulator;
+    private final List<Entrant> entrants;
+    private final ForkJoinPool pool;
+    private final long seed;
+    private final LongAdder matchesPlayed = new LongAdder();
+    private final ThreadLocal<GreedyChampionController> controllersA = ThreadLocal.withInitial(GreedyChampionController::new);
+    private final ThreadLocal<GreedyChampionController> controllersB = ThreadLocal.withInitial(GreedyChampionController::new);
+    private volatile Listener listener;
+
+    /**
+     * Constructor for a Tournament.
+     * @param simulator The simulator that plays the matches.
+     * @param roster The champion class of each entrant, in seed order. A class may
+     *               appear more than once.
+     * @param pool The pool the matches are scheduled on.
+     * @param seed The seed the match seeds are derived from.
+     */
+    public Tournament(MatchSimulator simulator, List<Class<? extends Champion>> roster, ForkJoinPool pool, long seed) {
+        if (roster.size() < 2) {
+            throw new IllegalArgumentException("A tournament needs at least two entrants");
+        }
+        this.simulator = simulator;
+        this.pool = pool;
+        this.seed = seed;
+        List<Entrant> list = new ArrayList<>();
+        for (int i = 0; i < roster.size(); i++) {
+            list.add(new Entrant(i, roster.get(i)));
+        }
+        this.entrants = List.copyOf(list);
+    }
+
+    /**
+     * Set the listener that receives every result. Must be set before the tournament starts.
+     * @param listener The listener, or null for none.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Get the number of matches played so far.
+     * @return The number of matches played, not counting byes.
+     */
+    public long getMatchesPlayed() {
+        return matchesPlayed.sum();
+    }
+
+    /**
+     * Get the current standings: by points, then wins, then seed.
+     * @return A snapshot of the entrants in standings order.
+     */
+    public List<Entrant> getStandings() {
+        List<Entrant> standings = new ArrayList<>(entrants);
+        sortByStandings(standings);
+        return standings;
+    }
+
+    /**
+     * Sort entrants by points, then wins, then seed.
+     */
+    private void sortByStandings(List<Entrant> list) {
+        // Read every counter once, since results keep arriving while we sort
+        final long[] halfPoints = new long[entrants.size()];
+        final long[] wins = new long[entrants.size()];
+        for (Entrant e : entrants) {
+            halfPoints[e.index] = e.halfPoints.sum();
+            wins[e.index] = e.wins.sum();
+        }
+        list.sort(Comparator.comparingLong((Entrant e) -> -halfPoints[e.index])
+            .thenComparingLong(e -> -wins[e.index])
+            .thenComparingInt(e -> e.index));
+    }
+
+    /**
+     * Run the tournament. A tournament can only be run once.
+     * @param format The tournament format.
+     * @return A future completed with the final standings when every match has finished.
+     */
+    public CompletableFuture<List<Entrant>> run(Format format) {
+        final CompletableFuture<?> done;
+        switch (format) {
+            case ROUND_ROBIN:
+                done = runRoundRobin();
+                break;
+            case SWISS:
+                done = runSwiss(swissRounds(entrants.size()));
+                break;
+            case SINGLE_ELIMINATION:
+                done = runBracket();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format " + format);
+        }
+        return done.thenApply(ignored -> getStandings());
+    }
+
+    /**
+     * Get the usual number of Swiss rounds for a field: enough to find a single
+     * entrant with a perfect score.
+     * @param entrants The number of entrants.
+     * @return The number of rounds.
+     */
+    public static int swissRounds(int entrants) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(1, entrants - 1));
+    }
+
+    private CompletableFuture<?> runRoundRobin() {
+        final int n = entrants.size();
+        List<CompletableFuture<?>> matches = new ArrayList<>(n * (n - 1) / 2);
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                final Entrant a = entrants.get(i);
+                final Entrant b = entrants.get(j);
+                matches.add(CompletableFuture.runAsync(() -> play(1, a, b), pool));
+            }
+        }
+        return CompletableFuture.allOf(matches.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private CompletableFuture<?> runBracket() {
+        int size = 1;
+        while (size < entrants.size()) {
+            size <<= 1;
+        }
+
+        // Standard seeding: 1 plays the last seed, 2 the second-to-last, and so on,
+        // with the top two seeds in opposite halves. Seeds past the field are byes.
+        int[] order = {0};
+        while (order.length < size) {
+            final int[] next = new int[order.length * 2];
+            for (int i = 0; i < order.length; i++) {
+                next[2 * i] = order[i];
+                next[2 * i + 1] = order.length * 2 - 1 - order[i];
+            }
+            order = next;
+        }
+
+        List<CompletableFuture<Entrant>> level = new ArrayList<>();
+        for (int slot : order) {
+            level.add(CompletableFuture.completedFuture(slot < entrants.size() ? entrants.get(slot) : null));
+        }
+        int round = 1;
+        while (level.size() > 1) {
+            final int r = round;
+            List<CompletableFuture<Entrant>> next = new ArrayList<>(level.size() / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                next.add(level.get(i).thenCombineAsync(level.get(i + 1), (a, b) -> knockout(r, a, b), pool));
+            }
+            level = next;
+            round++;
+        }
+        return level.get(0);
+    }
+
+    /**
+     * Play a bracket match and return the entrant who advances. A draw is decided by
+     * remaining health, then by the match seed.
+     */
+    private Entrant knockout(int round, Entrant a, Entrant b) {
+        if (a == null || b == null) {
+            final Entrant advancing = a == null ? b : a;
+            if (advancing != null) {
+                bye(round, advancing);
+            }
+            return advancing;
+        }
+        final MatchResult result = play(round, a, b);
+        if (result.winner != MatchResult.DRAW) {
+            return result.winner == MatchResult.WINNER_A ? a : b;
+        }
+        if (result.healthA != result.healthB) {
+            return result.healthA > result.healthB ? a : b;
+        }
+        return (result.seed & 1) == 0 ? a : b;
+    }
+
+    private CompletableFuture<?> runSwiss(int rounds) {
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final SwissRound[] swiss = new SwissRound[rounds + 2];
+        for (int r = 1; r <= rounds + 1; r++) {
+            swiss[r] = new SwissRound(r, rounds, swiss, done);
+        }
+        // Everyone starts on zero points, so the first round pairs entrants in seed order
+        for (Entrant e : entrants) {
+            swiss[1].arrive(e);
+        }
+        return done;
+    }
+
+    /**
+     * The entrants that have reported for one Swiss round and are waiting for an
+     * opponent. Arrivals are synchronized on the round, so rounds do not contend with
+     * each other.
+     */
+    private final class SwissRound {
+        private final int round;
+        private final int lastRound;
+        private final SwissRound[] rounds;
+        private final CompletableFuture<Void> done;
+        private final Entrant byeEntrant;
+        private final List<Entrant> waiting = new ArrayList<>();
+        private int reported;
+
+        SwissRound(int round, int lastRound, SwissRound[] rounds, CompletableFuture<Void> done) {
+            this.round = round;
+            this.lastRound = lastRound;
+            this.rounds = rounds;
+            this.done = done;
+            final int n = entrants.size();
+            this.byeEntrant = n % 2 == 1 && round <= lastRound ? entrants.get(Math.floorMod(n - round, n)) : null;
+        }
+
+        /**
+         * An entrant has finished its previous round and is ready for this one.
+         * @param e The entrant.
+         */
+        void arrive(Entrant e) {
+            final long report = (long) round << 32 | e.halfPoints.sum();
+            if (round > lastRound || e == byeEntrant) {
+                e.swissReport = report;
+            }
+            if (round > lastRound) {
+                synchronized (this) {
+                    if (++reported < entrants.size()) {
+                        return;
+                    }
+                }
+                done.complete(null);
+                return;
+            }
+
+            if (e == byeEntrant) {
+                schedule(() -> {
+                    bye(round, e);
+                    rounds[round + 1].arrive(e);
+                });
+            } else {
+                // Report and wait together, so that pairing never sees the entrant in neither place
+                synchronized (this) {
+                    e.swissReport = report;
+                    reported++;
+                    waiting.add(e);
+                }
+                settle();
+            }
+            // Having reported, the entrant can no longer score this round's points early,
+            // which may settle entrants already waiting for the next round
+            if (round < lastRound) {
+                rounds[round + 1].settle();
+            }
+        }
+
+        /**
+         * Pair every waiting entrant whose opponent is decided, and start their matches.
+         */
+        void settle() {
+            final List<Entrant[]> pairs;
+            synchronized (this) {
+                pairs = pairSettled();
+            }
+            for (Entrant[] pair : pairs) {
+                schedule(() -> {
+                    play(round, pair[0], pair[1]);
+                    rounds[round + 1].arrive(pair[0]);
+                    rounds[round + 1].arrive(pair[1]);
+                });
+            }
+        }
+
+        /**
+         * Pair the waiting entrants from the top of the standings down: each plays the
+         * highest placed entrant left that it has not met, or the highest placed one if
+         * it has met them all. Only entrants on more points than any entrant yet to
+         * report could reach are paired, since their places above everyone still to
+         * come are final; the walk stops at the first entrant that could still meet a
+         * better partner among those.
+         * @return The new pairs, the higher placed entrant first.
+         */
+        private List<Entrant[]> pairSettled() {
+            final List<Entrant[]> pairs = new ArrayList<>();
+            if (waiting.isEmpty()) {
+                return pairs;
+            }
+            final boolean everyone = reported == entrants.size() - (byeEntrant == null ? 0 : 1);
+            long bound = -1;
+            if (!everyone) {
+                for (Entrant x : entrants) {
+                    final long report = x.swissReport;
+                    final int reportedFor = (int) (report >>> 32);
+                    if (reportedFor < round && x != byeEntrant) {
+                        bound = Math.max(bound, (report & 0xFFFFFFFFL) + 2L * (round - reportedFor));
+                    }
+                }
+            }
+
+            sortByStandings(waiting);
+            while (!waiting.isEmpty()) {
+                final Entrant e = waiting.get(0);
+                if (!everyone && e.halfPoints.sum() <= bound) {
+                    break;
+                }
+                int partner = -1;
+                for (int i = 1; i < waiting.size(); i++) {
+                    final Entrant candidate = waiting.get(i);
+                    if (!everyone && candidate.halfPoints.sum() <= bound) {
+                        break;
+                    }
+                    if (!e.opponents.contains(candidate.index)) {
+                        partner = i;
+                        break;
+                    }
+                }
+                if (partner < 0) {
+                    if (!everyone) {
+                        break;
+                    }
+                    partner = 1;
+                }
+                pairs.add(new Entrant[] {e, waiting.remove(partner)});
+                waiting.remove(0);
+            }
+            return pairs;
+        }
+
+        private void schedule(Runnable task) {
+            CompletableFuture.runAsync(task, pool).exceptionally(ex -> {
+                done.completeExceptionally(ex);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Play a match and apply its result to the standings.
+     */
+    private MatchResult play(int round, Entrant a, Entrant b) {
+        final MatchResult result = simulator.run(a.champion, controllersA.get(), b.champion, controllersB.get(),
+                                                 matchSeed(round, a, b));
+        a.opponents.add(b.index);
+        b.opponents.add(a.index);
+        a.record(result.winner == MatchResult.WINNER_A, result.winner == MatchResult.DRAW);
+        b.record(result.winner == MatchResult.WINNER_B, result.winner == MatchResult.DRAW);
+        matchesPlayed.increment();
+
+        final Listener l = listener;
+        if (l != null) {
+            l.onMatch(round, a, b, result);
+        }
+        return result;
+    }
+
+    /**
+     * Give an entrant a bye, which counts as a win.
+     */
+    private void bye(int round, Entrant e) {
+        e.halfPoints.add(2);
+        final Listener l = listener;
+        if (l != null) {
+            l.onMatch(round, e, null, null);
+        }
+    }
+
+    private long matchSeed(int round, Entrant a, Entrant b) {
+        long h = seed ^ (round * 0x9E3779B97F4A7C15L) ^ (((long) a.index << 32) | b.index);
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * An entrant in a tournament and its running record.
+     */
+    public static final class Entrant {
+        final int index;
+        final Class<? extends Champion> champion;
+        final LongAdder halfPoints = new LongAdder(); // 2 for a win, 1 for a draw
+        final LongAdder wins = new LongAdder();
+        final LongAdder draws = new LongAdder();
+        final LongAdder losses = new LongAdder();
+        final Set<Integer> opponents = ConcurrentHashMap.newKeySet();
+        volatile long swissReport;                    // The last Swiss round reported for, and the half points then
+
+        Entrant(int index, Class<? extends Champion> champion) {
+            this.index = index;
+            this.champion = champion;
+        }
+
+        void record(boolean won, boolean drew) {
+            if (won) {
+                wins.increment();
+                halfPoints.add(2);
+            } else if (drew) {
+                draws.increment();
+                halfPoints.add(1);
+            } else {
+                losses.increment();
+            }
+        }
+
+        /**
+         * @return The entrant's position in the roster, from 0; its seed is one more.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return The champion class the entrant plays.
+         */
+        public Class<? extends Champion> getChampion() {
+            return champion;
+        }
+
+        /**
+         * @return The entrant's points: 1 for a win or bye and 0.5 for a draw.
+         */
+        public double getPoints() {
+            return halfPoints.sum() / 2.0;
+        }
+
+        /**
+         * @return The number of matches the entrant has won, not counting byes.
+         */
+        public long getWins() {
+            return wins.sum();
+        }
+
+        /**
+         * @return The number of matches the entrant has drawn.
+         */
+        public long getDraws() {
+            return draws.sum();
+        }
+
+        /**
+         * @return The number of matches the entrant has lost.
+         */
+        public long getLosses() {
+            return losses.sum();
+        }
+
+        /**
+         * @return The entrant's seed and champion, such as "#12 TrainingDummy".
+         */
+        @Override
+        public String toString() {
+            return "#" + (index + 1) + " " + champion.getSimpleName();
+        }
+    }
+}
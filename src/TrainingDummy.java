@@ -50,6 +50,11 @@ class Headbutt extends Action {
         super("Headbutt");
     }
 
+    @Override
+    public int getBaseDamage() {
+        return 8;
+    }
+
     /**
      * Executes the Headbutt action.
      * This action deals 8 damage to the opponent.
@@ -57,13 +62,13 @@ class Headbutt extends Action {
      */
     @Override
     public void execute(BattleContext context) {
-        final int baseDamage = 8;
+        final int baseDamage = getBaseDamage();
         final int actualDamage = context.enemy.takeDamage(baseDamage, context);
 
         context.getLog().addEntry(
             context.wielder, context.enemy, getName(),
             context.wielder.getName() + " headbutts for " + actualDamage + " damage!",
-            context.round, BattleLog.EntryType.ACTION
+            context.round, BattleLog.EntryType.ACTION, actualDamage
         );
     }
 }
@@ -99,6 +104,11 @@ class Bandaid extends Action {
         super("Bandaid");
     }
 
+    @Override
+    public int getBaseHealing() {
+        return 5;
+    }
+
     /**
      * Executes the Bandaid action.
      * This action heals the champion for a fixed amount of health.
@@ -106,13 +116,13 @@ class Bandaid extends Action {
      */
     @Override
     public void execute(BattleContext context) {
-        final int baseHealing = 5;
+        final int baseHealing = getBaseHealing();
         final int actualHealed = context.wielder.heal(baseHealing, context);
 
         context.getLog().addEntry(
             context.wielder, null, getName(),
             context.wielder.getName() + " slaps on a bandaid and heals " + actualHealed + " HP.",
-            context.round, BattleLog.EntryType.ACTION
+            context.round, BattleLog.EntryType.ACTION, actualHealed
         );
     }
 }
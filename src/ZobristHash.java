@@ -0,0 +1,93 @@
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist hashing for packed match states. Every byte position of every packed
+ * word has its own table of 256 random keys, and the hash of a state is the XOR
+ * of the keys selected by its bytes. Because XOR is its own inverse, the hash can
+ * be updated incrementally when a state changes by XORing out the keys of the
+ * bytes that changed and XORing in their new keys.
+ *
+ * The keys are generated from a fixed seed and MatchState's modifier ids come from
+ * class names, so the hash of a state is the same in every process and can be
+ * shared between threads and hosts.
+ */
+public final class ZobristHash {
+    private static final int BYTES_PER_WORD = 8;
+    private static final long KEY_SEED = 0x5EED_C0DE_2B1D_F00DL;
+
+    private static final long[] KEYS = new long[MatchState.WORDS * BYTES_PER_WORD * 256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(KEY_SEED);
+        for (int i = 0; i < KEYS.length; i++) {
+            KEYS[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * An unused constructor, this class only has static methods.
+     */
+    private ZobristHash() {
+    }
+
+    /**
+     * Compute the full hash of a packed state.
+     * @param words The packed words of a match state.
+     * @return The Zobrist hash of the state.
+     */
+    public static long hash(long[] words) {
+        long hash = 0;
+        for (int w = 0; w < MatchState.WORDS; w++) {
+            hash ^= hashWord(w, words[w]);
+        }
+        return hash;
+    }
+
+    /**
+     * Incrementally update a hash after a state has changed. Only the bytes that
+     * differ between the two states are visited, so small changes such as a health
+     * update cost a couple of table lookups.
+     * @param hash The hash of the state before the change.
+     * @param before The packed words before the change.
+     * @param after The packed words after the change.
+     * @return The hash of the state after the change.
+     */
+    public static long update(long hash, long[] before, long[] after) {
+        for (int w = 0; w < MatchState.WORDS; w++) {
+            long diff = before[w] ^ after[w];
+            while (diff != 0) {
+                final int b = Long.numberOfTrailingZeros(diff) >>> 3;
+                final int shift = b * BYTES_PER_WORD;
+                hash ^= key(w, b, (int) (before[w] >>> shift) & 0xFF);
+                hash ^= key(w, b, (int) (after[w] >>> shift) & 0xFF);
+                diff &= ~(0xFFL << shift);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Hash all eight bytes of a single word.
+     * @param w The index of the word.
+     * @param word The packed word.
+     * @return The XOR of the keys for each byte of the word.
+     */
+    private static long hashWord(int w, long word) {
+        long hash = 0;
+        for (int b = 0; b < BYTES_PER_WORD; b++) {
+            hash ^= key(w, b, (int) (word >>> (b * BYTES_PER_WORD)) & 0xFF);
+        }
+        return hash;
+    }
+
+    /**
+     * Look up the key for a byte value at a byte position.
+     * @param w The index of the word.
+     * @param b The index of the byte within the word.
+     * @param value The value of the byte.
+     * @return The random key.
+     */
+    private static long key(int w, int b, int value) {
+        return KEYS[((w * BYTES_PER_WORD) + b) * 256 + value];
+    }
+}
@@ -0,0 +1,22 @@
+#!/bin/bash
+set -e
+
+# Clean test output
+echo "🧹 Cleaning test output..."
+rm -rf target-test
+mkdir -p target-test/classes target-test/plugins
+
+# Compile the game and the tests. Lebron.java is left out: it does not compile
+# against the current Champion API, and no test uses it.
+echo "🛠️  Compiling Java source and test files..."
+javac -encoding UTF-8 -source 8 -target 8 -d target-test/classes \
+    $(find src test -maxdepth 1 -name "*.java" ! -name "Lebron.java") -Xlint:-options
+
+# The test plugins are compiled on their own, so that only a plugin class loader can load them
+echo "🔌 Compiling test plugins..."
+javac -encoding UTF-8 -source 8 -target 8 -cp target-test/classes -d target-test/plugins \
+    test/plugins/*.java -Xlint:-options
+
+# Run every test, or the test classes named on the command line
+echo "🧪 Running tests..."
+java -Dtest.plugins=target-test/plugins -cp target-test/classes TestRunner "$@"
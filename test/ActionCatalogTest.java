@@ -0,0 +1,66 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests that an action's id in its champion's ActionCatalog is its place in
+ * getActions(), the same for every champion of the class and for every new instance
+ * of the action, so ids recorded in one match mean the same in another.
+ */
+public final class ActionCatalogTest {
+    private ActionCatalogTest() {
+    }
+
+    public static void testIdsFollowTheOrderOfGetActions() {
+        TestRunner.vault();
+        for (Class<? extends Champion> type : List.of(TrainingDummy.class, AdvancedTrainingDummy.class,
+                                                      TestRunner.pluginChampion())) {
+            final Champion champ = ChampionRegistry.get(type).create();
+            final ActionCatalog catalog = champ.getActionCatalog();
+            final List<Action> actions = champ.getActions();
+            TestRunner.checkEquals(actions.size(), catalog.size(), "actions of " + type.getName());
+            for (int id = 0; id < actions.size(); id++) {
+                TestRunner.checkEquals(actions.get(id).getName(), catalog.get(id).getName(), "action " + id + " of " + type.getName());
+                // getActions returns new instances, which are matched by class
+                TestRunner.checkEquals(id, catalog.idOf(actions.get(id)), "id of " + actions.get(id).getName());
+            }
+            TestRunner.checkEquals(names(actions), names(catalog.asList()), "the catalog as a list");
+        }
+    }
+
+    public static void testIdsAreSharedByEveryChampionOfAClass() {
+        TestRunner.vault();
+        final Champion first = ChampionRegistry.get(AdvancedTrainingDummy.class).create();
+        final Champion second = ChampionRegistry.get(AdvancedTrainingDummy.class).create();
+        TestRunner.check(first.getActionCatalog() == second.getActionCatalog(), "one catalog for the class");
+        TestRunner.check(ChampionRegistry.get(AdvancedTrainingDummy.class).getActions() == first.getActionCatalog(),
+            "the registry's catalog is the class's");
+
+        // A plugin loaded again is a class of its own, with a catalog of its own and the same ids
+        final Champion plugin = ChampionRegistry.get(TestRunner.pluginChampion()).create();
+        final Champion reloaded = ChampionRegistry.get(TestRunner.pluginChampion()).create();
+        TestRunner.check(plugin.getActionCatalog() != reloaded.getActionCatalog(), "a catalog for each loading");
+        TestRunner.checkEquals(plugin.getActionCatalog().toString(), reloaded.getActionCatalog().toString(),
+            "the reloaded plugin's actions");
+    }
+
+    public static void testActionsFromElsewhereHaveNoId() {
+        TestRunner.vault();
+        final ActionCatalog catalog = ChampionRegistry.get(TrainingDummy.class).getActions();
+        TestRunner.checkEquals(ActionCatalog.NONE, catalog.idOf(null), "id of no action");
+        final Champion plugin = ChampionRegistry.get(TestRunner.pluginChampion()).create();
+        final List<Action> actions = plugin.getActions();
+        TestRunner.checkEquals(ActionCatalog.NONE, catalog.idOf(actions.get(actions.size() - 1)),
+            "id of the plugin's own attack");
+        TestRunner.checkThrows(IllegalArgumentException.class, () -> new ActionCatalog(Arrays.asList((Action) null)),
+            "cataloguing a null action");
+    }
+
+    private static List<String> names(List<Action> actions) {
+        final List<String> names = new ArrayList<>();
+        for (Action action : actions) {
+            names.add(action.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Tests that the ChampionRegistry's metadata matches the champions it describes, and
+ * that working it out, which creates a prototype champion, leaves the current
+ * thread's seeded draws alone, so a match plays the same whether or not its champions
+ * were registered before it began.
+ */
+public final class ChampionRegistryTest {
+    private ChampionRegistryTest() {
+    }
+
+    public static void testEntryDescribesTheChampion() {
+        TestRunner.vault();
+        final Class<? extends Champion> type = TestRunner.pluginChampion();
+        final ChampionRegistry.Entry entry = ChampionRegistry.get(type);
+        final Champion champ = entry.create();
+        TestRunner.checkEquals(type, champ.getClass(), "the class of a created champion");
+        TestRunner.checkEquals("Slugger", entry.getDisplayName(), "display name");
+        TestRunner.checkEquals(champ.getName(), entry.getName(), "name");
+        TestRunner.checkEquals(champ.getAttackPower(), entry.getAttackPower(), "attack power");
+        TestRunner.checkEquals(champ.getDefensePower(), entry.getDefensePower(), "defense power");
+        TestRunner.checkEquals(champ.getMaxHealth(), entry.getMaxHealth(), "health");
+        TestRunner.checkEquals(champ.getActionCatalog().toString(), entry.getActionNames().toString(), "actions");
+        TestRunner.check(ChampionRegistry.get(type) == entry, "the entry is worked out once");
+    }
+
+    public static void testFirstLookupLeavesSeededDrawsAlone() {
+        TestRunner.vault();
+        ModifierVault.setThreadSeed(42);
+        try {
+            final SeededRandom seeded = ModifierVault.getThreadRandom();
+            seeded.nextInt();
+            final long state = seeded.getState();
+            ChampionRegistry.get(TestRunner.pluginChampion());
+            TestRunner.check(ModifierVault.getThreadRandom() == seeded, "the thread's draws are still seeded");
+            TestRunner.checkEquals(state, seeded.getState(), "where the thread's draws are up to");
+        } finally {
+            ModifierVault.clearThreadSeed();
+        }
+
+        ChampionRegistry.get(TestRunner.pluginChampion());
+        TestRunner.checkEquals(null, ModifierVault.getThreadRandom(), "the unseeded thread's draws");
+    }
+
+    public static void testMatchesDoNotDependOnWhatIsRegistered() {
+        final MatchSimulator simulator = new MatchSimulator(TestRunner.vault());
+        for (long seed = 0; seed < 10; seed++) {
+            // Each discovery loads the plugin as a new class, which the registry has not seen
+            final Class<? extends Champion> unregistered = TestRunner.pluginChampion();
+            final Class<? extends Champion> registered = TestRunner.pluginChampion();
+            ChampionRegistry.get(registered);
+            TestRunner.checkEquals(play(simulator, registered, seed), play(simulator, unregistered, seed),
+                "match " + seed + " with the champion first registered during it");
+        }
+    }
+
+    private static String play(MatchSimulator simulator, Class<? extends Champion> plugin, long seed) {
+        return simulator.run(plugin, new GreedyChampionController(seed),
+            AdvancedTrainingDummy.class, new GreedyChampionController(~seed), seed).toString();
+    }
+}
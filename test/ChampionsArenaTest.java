@@ -0,0 +1,58 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Tests that the profile mode cds.sh records a class data sharing archive with runs
+ * on a machine without a display or a console, and plays the same match every time.
+ */
+public final class ChampionsArenaTest {
+    private ChampionsArenaTest() {
+    }
+
+    public static void testProfileRunsHeadless() throws IOException, InterruptedException {
+        final Path directory = Files.createTempDirectory("arena");
+        try {
+            final String first = profile(directory);
+            TestRunner.check(first.contains("Round 1 begins!"), "the profile played a match:\n" + first);
+            TestRunner.check(first.contains("is victorious!") || first.contains("draw"), "the match ended:\n" + first);
+            TestRunner.checkEquals(first, profile(directory), "the output of a second profile run");
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Run the profile mode in a fresh process, headless and with no input.
+     * @return What the process printed.
+     */
+    private static String profile(Path directory) throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Djava.awt.headless=true");
+        command.add("-cp");
+        command.add(Paths.get(System.getProperty("java.class.path")).toAbsolutePath().toString());
+        command.add("ChampionsArena");
+        command.add("profile");
+        final Path output = directory.resolve("profile.out");
+        final Process process = new ProcessBuilder(command).directory(directory.toFile())
+            .redirectErrorStream(true).redirectOutput(output.toFile()).start();
+        process.getOutputStream().close();
+        TestRunner.check(process.waitFor(60, TimeUnit.SECONDS), "the profile run finished within a minute");
+        final String printed = new String(Files.readAllBytes(output), StandardCharsets.UTF_8);
+        TestRunner.checkEquals(0, process.exitValue(), "the profile run's exit status, having printed:\n" + printed);
+        Files.delete(output);
+        return printed;
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests that the HookProfiler counts each modifier hook call while it is on and none
+ * while it is off, and that profiled matches report the hooks of their modifiers.
+ */
+public final class HookProfilerTest {
+    private HookProfilerTest() {
+    }
+
+    public static void testCallsAreCountedOnlyWhileEnabled() {
+        final BattleModifier doubling = new Doubling();
+        HookProfiler.reset();
+        try {
+            TestRunner.checkEquals(10, HookProfiler.modifyAttack(doubling, 5, null), "unprofiled attack");
+            HookProfiler.setEnabled(true);
+            for (int i = 0; i < 3; i++) {
+                TestRunner.checkEquals(10, HookProfiler.modifyAttack(doubling, 5, null), "profiled attack");
+            }
+            HookProfiler.onTurnEnd(doubling, null);
+            HookProfiler.onTurnEnd(doubling, null);
+            HookProfiler.setEnabled(false);
+            HookProfiler.modifyDefense(doubling, 5, null);
+
+            final Map<HookProfiler.Hook, Long> calls = new HashMap<>();
+            for (HookProfiler.Row row : HookProfiler.report()) {
+                if (row.className.equals(Doubling.class.getName())) {
+                    calls.put(row.hook, row.calls);
+                }
+            }
+            final Map<HookProfiler.Hook, Long> expected = new HashMap<>();
+            expected.put(HookProfiler.Hook.MODIFY_ATTACK, 3L);
+            expected.put(HookProfiler.Hook.ON_TURN_END, 2L);
+            TestRunner.checkEquals(expected, calls, "calls of each hook");
+            TestRunner.check(HookProfiler.formatReport().contains(Doubling.class.getName()), "the table lists the modifier");
+
+            HookProfiler.reset();
+            TestRunner.checkEquals(0, HookProfiler.report().size(), "rows after a reset");
+        } finally {
+            HookProfiler.setEnabled(false);
+            HookProfiler.reset();
+        }
+    }
+
+    public static void testProfiledMatchesReportTheirHooks() {
+        final MatchSimulator simulator = new MatchSimulator(TestRunner.vault());
+        HookProfiler.reset();
+        HookProfiler.setEnabled(true);
+        try {
+            for (long seed = 0; seed < 20; seed++) {
+                simulator.run(TrainingDummy.class, new GreedyChampionController(seed),
+                    AdvancedTrainingDummy.class, new GreedyChampionController(~seed), seed);
+            }
+        } finally {
+            HookProfiler.setEnabled(false);
+        }
+        try {
+            long calls = 0;
+            for (HookProfiler.Row row : HookProfiler.report()) {
+                TestRunner.check(row.calls > 0 && row.nanos >= 0, "a row of calls: " + row.className + " " + row.hook);
+                calls += row.calls;
+            }
+            TestRunner.check(calls > 0, "20 matches called " + calls + " modifier hooks");
+        } finally {
+            HookProfiler.reset();
+        }
+    }
+
+    /**
+     * A modifier that doubles attacks.
+     */
+    private static final class Doubling extends BattleModifier {
+        Doubling() {
+            super("Doubling", "Doubles attacks", 3);
+        }
+
+        @Override
+        public int modifyAttack(int baseDamage, BattleContext context) {
+            return baseDamage * 2;
+        }
+
+        @Override
+        public void onTurnEnd(BattleContext context) {
+        }
+    }
+}
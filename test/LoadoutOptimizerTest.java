@@ -0,0 +1,49 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests that LoadoutOptimizer's evolution is repeatable for a seed, reports its
+ * progress to a listener, and ends even when the genome space is smaller than the
+ * population.
+ */
+public final class LoadoutOptimizerTest {
+    private static final List<Class<? extends Champion>> ROSTER = List.of(TrainingDummy.class, AdvancedTrainingDummy.class);
+
+    private LoadoutOptimizerTest() {
+    }
+
+    public static void testSameSeedEvolvesTheSameFront() {
+        final List<String> first = front(new LoadoutOptimizer(TestRunner.vault(), ROSTER, 2, 5L));
+        final List<String> second = front(new LoadoutOptimizer(TestRunner.vault(), ROSTER, 2, 5L));
+        TestRunner.check(!first.isEmpty(), "the front is not empty");
+        TestRunner.checkEquals(first, second, "front");
+    }
+
+    public static void testProgressGoesToTheListener() {
+        final LoadoutOptimizer optimizer = new LoadoutOptimizer(TestRunner.vault(), ROSTER, 1, 5L);
+        final List<LoadoutOptimizer.Progress> progress = new ArrayList<>();
+        optimizer.setProgressListener(progress::add);
+        optimizer.evolve(TrainingDummy.class, 3, 4);
+
+        TestRunner.checkEquals(3, progress.size(), "generations reported");
+        for (int i = 0; i < progress.size(); i++) {
+            TestRunner.checkEquals(i + 1, progress.get(i).generation, "generation number");
+            TestRunner.check(progress.get(i).frontSize > 0, "generation " + (i + 1) + " has a front");
+        }
+    }
+
+    public static void testPopulationLargerThanTheGenomeSpaceEnds() {
+        // With no modifier preferences a genome is just a swap margin and a discard threshold: 64 genomes
+        final LoadoutOptimizer optimizer = new LoadoutOptimizer(TestRunner.vault(), List.of(), ROSTER, 1, 5L);
+        final List<LoadoutOptimizer.Scored> front = optimizer.evolve(TrainingDummy.class, 2, 100);
+        TestRunner.check(!front.isEmpty(), "the front is not empty");
+    }
+
+    private static List<String> front(LoadoutOptimizer optimizer) {
+        final List<String> genomes = new ArrayList<>();
+        for (LoadoutOptimizer.Scored scored : optimizer.evolve(AdvancedTrainingDummy.class, 2, 6)) {
+            genomes.add(scored.genome + " " + scored.fitness.winRate + " " + scored.fitness.variance);
+        }
+        return genomes;
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Tests that the entries written to a LogArchive are read back column by column,
+ * that a projected read skips the columns it was not asked for, and that a
+ * simulator with an archive writes the log of every match it plays.
+ */
+public final class LogArchiveTest {
+    private LogArchiveTest() {
+    }
+
+    public static void testProjectedReadReturnsWhatWasWritten() throws IOException {
+        final ModifierVault vault = TestRunner.vault();
+        final Path file = Files.createTempFile("logs", ".archive");
+        try {
+            // Enough matches to fill more than one block
+            final List<String> written = new ArrayList<>();
+            try (LogArchive.Writer writer = new LogArchive.Writer(file)) {
+                for (long seed = 0; written.size() <= LogArchive.BLOCK_ENTRIES; seed++) {
+                    final BattleLog log = play(vault, seed);
+                    writer.write(seed, log);
+                    for (BattleLog.Entry e : log.getLog()) {
+                        written.add(seed + " " + e.round + " " + (e.actor == null ? null : e.actor.getName())
+                                    + " " + e.actionName + " " + e.amount);
+                    }
+                }
+            }
+
+            final List<String> read = new ArrayList<>();
+            final long projectedBytes;
+            int blocks = 0;
+            try (LogArchive.Reader reader = new LogArchive.Reader(file, EnumSet.of(LogArchive.Column.MATCH,
+                    LogArchive.Column.ROUND, LogArchive.Column.ACTOR, LogArchive.Column.ACTION, LogArchive.Column.AMOUNT))) {
+                for (LogArchive.Block block = reader.next(); block != null; block = reader.next()) {
+                    for (int i = 0; i < block.size(); i++) {
+                        read.add(block.getMatch(i) + " " + block.getRound(i) + " " + block.getActor(i)
+                                 + " " + block.getAction(i) + " " + block.getAmount(i));
+                    }
+                    final LogArchive.Block b = block;
+                    TestRunner.checkThrows(IllegalStateException.class, () -> b.getDescription(0),
+                        "reading a column that was not asked for");
+                    blocks++;
+                }
+                projectedBytes = reader.getBytesRead();
+            }
+            TestRunner.checkEquals(written, read, "entries read back");
+            TestRunner.check(blocks >= 2, "the entries span " + blocks + " blocks");
+
+            try (LogArchive.Reader reader = new LogArchive.Reader(file, EnumSet.allOf(LogArchive.Column.class))) {
+                while (reader.next() != null) {
+                }
+                TestRunner.check(projectedBytes < reader.getBytesRead(), "read " + projectedBytes
+                                 + " bytes for five columns against " + reader.getBytesRead() + " for all of them");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public static void testSimulatorArchivesEveryLog() throws IOException {
+        final ModifierVault vault = TestRunner.vault();
+        final Path file = Files.createTempFile("logs", ".archive");
+        try {
+            final MatchSimulator simulator = new MatchSimulator(vault);
+            final List<String> expected = new ArrayList<>();
+            try (LogArchive.Writer writer = new LogArchive.Writer(file)) {
+                simulator.setLogArchive(writer);
+                for (long seed = 0; seed < 10; seed++) {
+                    simulator.run(TrainingDummy.class, new GreedyChampionController(seed),
+                        AdvancedTrainingDummy.class, new GreedyChampionController(~seed), seed);
+                    for (BattleLog.Entry e : play(vault, seed).getLog()) {
+                        expected.add(seed + " " + e.type + " " + e.description);
+                    }
+                }
+                simulator.setLogArchive(null);
+                simulator.run(TrainingDummy.class, new GreedyChampionController(), TrainingDummy.class,
+                    new GreedyChampionController(), 99);
+            }
+
+            final List<String> archived = new ArrayList<>();
+            try (LogArchive.Reader reader = new LogArchive.Reader(file, EnumSet.of(LogArchive.Column.MATCH,
+                    LogArchive.Column.TYPE, LogArchive.Column.DESCRIPTION))) {
+                for (LogArchive.Block block = reader.next(); block != null; block = reader.next()) {
+                    for (int i = 0; i < block.size(); i++) {
+                        archived.add(block.getMatch(i) + " " + block.getType(i) + " " + block.getDescription(i));
+                    }
+                }
+            }
+            TestRunner.checkEquals(expected, archived, "archived entries");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Play the seeded greedy match between the two training dummies that a simulator
+     * would, into a log of its own.
+     */
+    private static BattleLog play(ModifierVault vault, long seed) {
+        final GreedyChampionController controllerA = new GreedyChampionController(seed);
+        final GreedyChampionController controllerB = new GreedyChampionController(~seed);
+        final BattleLog log = new BattleLog();
+        ModifierVault.setThreadSeed(seed);
+        try {
+            final Champion champA = controllerA.chooseChampion("Player 1", List.of(TrainingDummy.class)).join();
+            final Champion champB = controllerB.chooseChampion("Player 2", List.of(AdvancedTrainingDummy.class)).join();
+            final BattleEngine engine = new BattleEngine(champA, champB, log, vault, controllerA, controllerB);
+            engine.setPrintLog(false);
+            engine.setMaxRounds(MatchSimulator.DEFAULT_MAX_ROUNDS);
+            engine.setSeed(seed);
+            engine.runMatch();
+        } finally {
+            ModifierVault.clearThreadSeed();
+        }
+        return log;
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tests that MatchCheckpoints keeps the latest checkpoint of every match in flight
+ * across reopening the file, and that a MatchHost resumes those matches, including
+ * matches between plugin champions.
+ */
+public final class MatchCheckpointsTest {
+    private MatchCheckpointsTest() {
+    }
+
+    public static void testInFlightMatchesSurviveReopening() throws IOException {
+        final ModifierVault vault = TestRunner.vault();
+        final Path file = Files.createTempFile("checkpoints", ".wal");
+        try {
+            final MatchSnapshotTest.Played played = MatchSnapshotTest.playTo(vault, 3);
+            try (MatchCheckpoints checkpoints = new MatchCheckpoints(file)) {
+                checkpoints.begin(1, 11, "Ann", "Bob", TrainingDummy.class, AdvancedTrainingDummy.class);
+                checkpoints.begin(2, 22, "Cat", "Dan", TrainingDummy.class, TrainingDummy.class);
+                checkpoints.checkpoint(1, played.snapshot, 7);
+                checkpoints.end(2);
+            } finally {
+                played.finish();
+            }
+
+            try (MatchCheckpoints checkpoints = new MatchCheckpoints(file)) {
+                final List<MatchCheckpoints.InFlight> inFlight = checkpoints.getInFlight();
+                TestRunner.checkEquals(1, inFlight.size(), "matches in flight");
+                final MatchCheckpoints.InFlight match = inFlight.get(0);
+                TestRunner.checkEquals(1L, match.id, "id");
+                TestRunner.checkEquals(11L, match.seed, "seed");
+                TestRunner.checkEquals("Bob", match.playerB, "second player");
+                TestRunner.checkEquals(AdvancedTrainingDummy.class.getName(), match.championB, "second champion");
+                TestRunner.checkEquals(3, match.getCheckpoint().getRound(), "checkpoint round");
+                TestRunner.checkEquals(7, match.getLogPosition(), "log position");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public static void testTornRecordIsCutOff() throws IOException {
+        final Path file = Files.createTempFile("checkpoints", ".wal");
+        try {
+            try (MatchCheckpoints checkpoints = new MatchCheckpoints(file)) {
+                checkpoints.begin(1, 11, "Ann", "Bob", TrainingDummy.class, TrainingDummy.class);
+            }
+            // Half of a begin record, as if the process died while appending it
+            final byte[] whole = Files.readAllBytes(file);
+            try (MatchCheckpoints checkpoints = new MatchCheckpoints(file)) {
+                checkpoints.begin(2, 22, "Cat", "Dan", TrainingDummy.class, TrainingDummy.class);
+            }
+            final byte[] longer = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(longer, whole.length + (longer.length - whole.length) / 2));
+
+            try (MatchCheckpoints checkpoints = new MatchCheckpoints(file)) {
+                TestRunner.checkEquals(1, checkpoints.getInFlight().size(), "matches in flight");
+                TestRunner.checkEquals(1L, checkpoints.getInFlight().get(0).id, "surviving match");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public static void testHostResumesFromTheCheckpoint() throws IOException {
+        final ModifierVault vault = TestRunner.vault();
+        final Path file = Files.createTempFile("checkpoints", ".wal");
+        try {
+            final MatchSnapshotTest.Played played = MatchSnapshotTest.playTo(vault, 5);
+            try (MatchCheckpoints checkpoints = new MatchCheckpoints(file)) {
+                checkpoints.begin(1, 11, "Ann", "Bob", TrainingDummy.class, AdvancedTrainingDummy.class);
+                checkpoints.checkpoint(1, played.snapshot, 9);
+            } finally {
+                played.finish();
+            }
+
+            try (MatchCheckpoints checkpoints = new MatchCheckpoints(file)) {
+                final MatchHost host = new MatchHost(vault, 1);
+                host.setCheckpoints(checkpoints);
+                final List<CompletableFuture<MatchResult>> resumed = host.resume();
+                TestRunner.checkEquals(1, resumed.size(), "resumed matches");
+                final MatchResult result = resumed.get(0).join();
+                TestRunner.check(result.rounds >= 5, "the match carried on from round 5, not round 1");
+                TestRunner.checkEquals(0, checkpoints.getInFlight().size(), "matches in flight after resuming");
+                host.shutdown();
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public static void testHostResumesPluginChampions() throws Exception {
+        final Class<? extends Champion> plugin = TestRunner.pluginChampion();
+        final ModifierVault vault = TestRunner.vault();
+        final Path file = Files.createTempFile("checkpoints", ".wal");
+        try {
+            try (MatchCheckpoints checkpoints = new MatchCheckpoints(file)) {
+                checkpoints.begin(1, 11, "Ann", "Bob", plugin, TrainingDummy.class);
+            }
+
+            try (MatchCheckpoints checkpoints = new MatchCheckpoints(file)) {
+                final MatchHost host = new MatchHost(vault, 1);
+                host.setCheckpoints(checkpoints);
+                // The application's class loader cannot see the plugin, so the match is left for later
+                TestRunner.checkEquals(0, host.resume().size(), "resumed without the plugin");
+                TestRunner.checkEquals(1, checkpoints.getInFlight().size(), "matches in flight");
+
+                host.setChampions(List.of(plugin));
+                final List<CompletableFuture<MatchResult>> resumed = host.resume();
+                TestRunner.checkEquals(1, resumed.size(), "resumed with the plugin");
+                TestRunner.checkEquals(plugin.getName(), resumed.get(0).join().championA, "first champion");
+                TestRunner.checkEquals(0, checkpoints.getInFlight().size(), "matches in flight after resuming");
+                host.shutdown();
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tests that a MatchSnapshot taken between rounds carries the match on exactly as
+ * if it had not been interrupted.
+ */
+public final class MatchSnapshotTest {
+    private static final long SEED = 1234;
+    private static final int SNAPSHOT_ROUND = 4;
+
+    private MatchSnapshotTest() {
+    }
+
+    public static void testRestoredMatchEndsAsTheUninterruptedOne() {
+        final ModifierVault vault = TestRunner.vault();
+        final Played original = playTo(vault, SNAPSHOT_ROUND);
+        final MatchSnapshot snapshot = original.snapshot;
+        original.finish();
+
+        final BattleEngine resumed = resume(vault, MatchSnapshot.fromBytes(snapshot.toBytes()), vault.getRegistry());
+        TestRunner.checkEquals(SNAPSHOT_ROUND, snapshot.getRound(), "snapshot round");
+        TestRunner.checkEquals(original.engine.getStateHash(), resumed.getStateHash(), "final state hash");
+        TestRunner.checkEquals(original.result.winner, MatchResult.of(resumed, SEED).winner, "winner");
+        TestRunner.checkEquals(original.result.rounds, MatchResult.of(resumed, SEED).rounds, "rounds");
+    }
+
+    public static void testRestoreDoesNotDependOnRegistryOrder() {
+        final ModifierVault vault = TestRunner.vault();
+        final Played original = playTo(vault, SNAPSHOT_ROUND);
+        final List<String> arsenal = arsenalOf(original.engine.getChampionA());
+        final MatchSnapshot snapshot = original.snapshot;
+        original.finish();
+
+        // As after a reload or a restart with other plugins: the same classes at other positions
+        final List<Class<? extends BattleModifier>> reordered = new ArrayList<>(vault.getRegistry());
+        Collections.reverse(reordered);
+        final BattleEngine resumed = newEngine(vault);
+        ModifierVault.setThreadSeed(SEED);
+        try {
+            snapshot.restore(resumed, reordered);
+            TestRunner.checkEquals(arsenal, arsenalOf(resumed.getChampionA()), "restored arsenal");
+            resumed.runMatch();
+        } finally {
+            ModifierVault.clearThreadSeed();
+        }
+        TestRunner.checkEquals(original.engine.getStateHash(), resumed.getStateHash(), "final state hash");
+    }
+
+    public static void testCorruptSnapshotIsRejected() {
+        final ModifierVault vault = TestRunner.vault();
+        final Played original = playTo(vault, SNAPSHOT_ROUND);
+        final byte[] bytes = original.snapshot.toBytes();
+        original.finish();
+
+        final MatchSnapshot truncated = MatchSnapshot.fromBytes(Arrays.copyOf(bytes, bytes.length / 2));
+        TestRunner.checkThrows(IllegalArgumentException.class,
+            () -> resume(vault, truncated, vault.getRegistry()), "restoring a truncated snapshot");
+    }
+
+    public static void testCaptureNeedsSeededDraws() {
+        final ModifierVault vault = TestRunner.vault();
+        final BattleEngine engine;
+        ModifierVault.setThreadSeed(SEED);
+        try {
+            engine = newEngine(vault);
+        } finally {
+            ModifierVault.clearThreadSeed();
+        }
+        TestRunner.checkThrows(IllegalStateException.class, () -> MatchSnapshot.capture(engine), "capturing unseeded");
+    }
+
+    /**
+     * Play a seeded match up to the start of a round and snapshot it there.
+     */
+    static Played playTo(ModifierVault vault, int round) {
+        ModifierVault.setThreadSeed(SEED);
+        final BattleEngine engine = newEngine(vault);
+        while (engine.getRound() < round) {
+            engine.playRound();
+        }
+        TestRunner.check(!engine.isOver(), "the match should last past round " + round);
+        return new Played(engine, MatchSnapshot.capture(engine));
+    }
+
+    private static BattleEngine resume(ModifierVault vault, MatchSnapshot snapshot,
+                                       List<Class<? extends BattleModifier>> registry) {
+        ModifierVault.setThreadSeed(SEED);
+        try {
+            final BattleEngine engine = newEngine(vault);
+            snapshot.restore(engine, registry);
+            engine.runMatch();
+            return engine;
+        } finally {
+            ModifierVault.clearThreadSeed();
+        }
+    }
+
+    static BattleEngine newEngine(ModifierVault vault) {
+        final ChampionController controller = new StateController();
+        final BattleEngine engine = new BattleEngine(new TrainingDummy(), new AdvancedTrainingDummy(),
+            new BattleLog(), vault, controller, controller);
+        engine.setPrintLog(false);
+        engine.setMaxRounds(MatchSimulator.DEFAULT_MAX_ROUNDS);
+        engine.setSeed(SEED);
+        return engine;
+    }
+
+    private static List<String> arsenalOf(Champion champ) {
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < champ.getArsenal().size(); i++) {
+            final BattleModifier mod = champ.getArsenal().getSlot(i);
+            names.add(mod == null ? null : mod.getClass().getName());
+        }
+        return names;
+    }
+
+    /**
+     * A match played part way, on the current thread's seeded draws.
+     */
+    static final class Played {
+        final BattleEngine engine;
+        final MatchSnapshot snapshot;
+        MatchResult result;
+
+        Played(BattleEngine engine, MatchSnapshot snapshot) {
+            this.engine = engine;
+            this.snapshot = snapshot;
+        }
+
+        void finish() {
+            try {
+                engine.runMatch();
+                result = MatchResult.of(engine, SEED);
+            } finally {
+                ModifierVault.clearThreadSeed();
+            }
+        }
+    }
+
+    /**
+     * A bot whose every choice follows from the state of the match, unlike the greedy
+     * bot's exploration draws, so that a restored match is played the same way.
+     */
+    static final class StateController implements ChampionController {
+        @Override
+        public CompletableFuture<Champion> chooseChampion(String playerName,
+                                                          List<Class<? extends Champion>> availableChampions) {
+            return CompletableFuture.completedFuture(ChampionRegistry.get(availableChampions.get(0)).create());
+        }
+
+        @Override
+        public CompletableFuture<TurnSubmission> planTurn(Champion self, Champion opponent, ModifierVault vault) {
+            final ActionCatalog actions = self.getActionCatalog();
+            final int pick = (self.getCurrentHealth() + 3 * opponent.getCurrentHealth()) % actions.size();
+            return CompletableFuture.completedFuture(new TurnSubmission(actions.get(pick), null, null, null, null));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests that a packed MatchState, and so its Zobrist hash, depends only on the state
+ * of the match and not on the process that packed it.
+ */
+public final class MatchStateTest {
+    private static final long SEED = 99;
+
+    private MatchStateTest() {
+    }
+
+    public static void testIdsComeFromClassNames() {
+        for (Class<? extends BattleModifier> type : TestRunner.vault().getRegistry()) {
+            final int id = MatchState.modifierId(type);
+            TestRunner.checkEquals(MatchState.idOf(type.getName()), id, type.getName() + "'s id");
+            TestRunner.check(id >= 1 && id < 1 << 12, type.getName() + "'s id fits in a slot: " + id);
+        }
+    }
+
+    public static void testHashIsTheSameInAnotherProcess() throws IOException, InterruptedException {
+        final String here = hashesOfASeededMatch();
+
+        // A JVM that meets the modifier classes in the opposite order, as a long-running host might
+        final Process other = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", System.getProperty("java.class.path"), MatchStateTest.class.getName())
+            .redirectErrorStream(true)
+            .start();
+        final String there;
+        try (InputStream in = other.getInputStream()) {
+            there = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+        }
+        TestRunner.checkEquals(0, other.waitFor(), "the other JVM's exit status");
+        TestRunner.checkEquals(here, there, "state hashes in the other JVM");
+    }
+
+    /**
+     * Play a seeded greedy match and list the state hash at the start and at the end.
+     */
+    private static String hashesOfASeededMatch() {
+        final ModifierVault vault = TestRunner.vault();
+        ModifierVault.setThreadSeed(SEED);
+        try {
+            final BattleEngine engine = new BattleEngine(new TrainingDummy(), new AdvancedTrainingDummy(),
+                new BattleLog(), vault, new GreedyChampionController(SEED), new GreedyChampionController(~SEED));
+            engine.setPrintLog(false);
+            engine.setMaxRounds(MatchSimulator.DEFAULT_MAX_ROUNDS);
+            engine.setSeed(SEED);
+            final String start = Long.toHexString(MatchState.capture(engine.getChampionA(), engine.getChampionB()).getHash());
+            engine.runMatch();
+            return start + " " + Long.toHexString(engine.getStateHash());
+        } finally {
+            ModifierVault.clearThreadSeed();
+        }
+    }
+
+    /**
+     * Print the state hashes of the seeded match, after giving ids to the modifier
+     * classes in the reverse of the registry's order. Run by testHashIsTheSameInAnotherProcess.
+     * @param args Unused.
+     */
+    public static void main(String[] args) {
+        final List<Class<? extends BattleModifier>> classes = new ArrayList<>(TestRunner.vault().getRegistry());
+        Collections.reverse(classes);
+        for (Class<? extends BattleModifier> type : classes) {
+            MatchState.modifierId(type);
+        }
+        System.out.println(hashesOfASeededMatch());
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests that a MatchmakingQueue pairs players within their rating window, and that
+ * no player is matched twice or matched after cancelling, however enqueues, cancels
+ * and sweeps interleave.
+ */
+public final class MatchmakingQueueTest {
+    private MatchmakingQueueTest() {
+    }
+
+    public static void testPairsPlayersWithinTheWindow() {
+        final List<MatchmakingQueue.Match> matches = new ArrayList<>();
+        final MatchmakingQueue queue = new MatchmakingQueue(25, 100, 400, matches::add);
+        final MatchmakingQueue.Ticket a = queue.enqueue("Ann", 1500, TrainingDummy.class);
+        TestRunner.check(!a.getMatch().isDone(), "a lone player waits");
+        final MatchmakingQueue.Ticket b = queue.enqueue("Bob", 1510, AdvancedTrainingDummy.class);
+
+        TestRunner.checkEquals(1, matches.size(), "matches made");
+        final MatchmakingQueue.Match match = matches.get(0);
+        TestRunner.check(a.getMatch().join() == match && b.getMatch().join() == match, "both players get the match");
+        TestRunner.check(match.a == a && match.b == b || match.a == b && match.b == a, "the match pairs them");
+        TestRunner.checkEquals(1L, queue.getMatched(), "matched count");
+        TestRunner.checkEquals(0L, queue.getWaiting(), "waiting count");
+    }
+
+    public static void testWindowWidensWhilePlayersWait() throws InterruptedException {
+        final List<MatchmakingQueue.Match> matches = new ArrayList<>();
+        final MatchmakingQueue queue = new MatchmakingQueue(25, 10_000, 400, matches::add);
+        final MatchmakingQueue.Ticket a = queue.enqueue("Ann", 1500, TrainingDummy.class);
+        final MatchmakingQueue.Ticket b = queue.enqueue("Bob", 1700, TrainingDummy.class);
+        TestRunner.checkEquals(0, matches.size(), "matches made at once");
+        TestRunner.checkEquals(2L, queue.getWaiting(), "waiting count");
+
+        Thread.sleep(50);   // 50 ms at 10000 per second widens the window by 500, capped at 400
+        TestRunner.checkEquals(1, queue.sweep(), "pairs made by the sweep");
+        TestRunner.check(a.getMatch().isDone() && b.getMatch().isDone(), "both players are matched");
+        TestRunner.checkEquals(0L, queue.getWaiting(), "waiting count");
+    }
+
+    public static void testCancelledPlayerIsNeverMatched() {
+        final List<MatchmakingQueue.Match> matches = new ArrayList<>();
+        final MatchmakingQueue queue = new MatchmakingQueue(25, 100, 400, matches::add);
+        final MatchmakingQueue.Ticket a = queue.enqueue("Ann", 1500, TrainingDummy.class);
+        TestRunner.check(queue.cancel(a), "a waiting player can cancel");
+        TestRunner.check(!queue.cancel(a), "a player cannot cancel twice");
+        TestRunner.check(a.getMatch().isCancelled(), "the cancelled player's future is cancelled");
+
+        queue.enqueue("Bob", 1500, TrainingDummy.class);
+        queue.sweep();
+        TestRunner.checkEquals(0, matches.size(), "matches made");
+        TestRunner.checkEquals(1L, queue.getWaiting(), "waiting count");
+    }
+
+    public static void testMatchedPlayerCannotCancel() {
+        final MatchmakingQueue queue = new MatchmakingQueue(25, 100, 400, m -> { });
+        final MatchmakingQueue.Ticket a = queue.enqueue("Ann", 1500, TrainingDummy.class);
+        queue.enqueue("Bob", 1500, TrainingDummy.class);
+        TestRunner.check(!queue.cancel(a), "a matched player cannot cancel");
+        TestRunner.check(a.getMatch().isDone() && !a.getMatch().isCancelled(), "the match stands");
+    }
+
+    public static void testConcurrentPlayersAreMatchedAtMostOnce() throws InterruptedException {
+        final int threads = 4;
+        final int perThread = 5000;
+        final Queue<MatchmakingQueue.Match> matches = new ConcurrentLinkedQueue<>();
+        final Queue<MatchmakingQueue.Ticket> tickets = new ConcurrentLinkedQueue<>();
+        final Queue<MatchmakingQueue.Ticket> cancelled = new ConcurrentLinkedQueue<>();
+        final MatchmakingQueue queue = new MatchmakingQueue(25, 1000, 400, matches::add);
+        queue.startSweeper(1, TimeUnit.MILLISECONDS);
+
+        final List<Thread> players = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            final Thread player = new Thread(() -> {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                final List<MatchmakingQueue.Ticket> mine = new ArrayList<>();
+                for (int i = 0; i < perThread; i++) {
+                    final MatchmakingQueue.Ticket ticket =
+                        queue.enqueue("p" + id + "-" + i, 1500 + 200 * random.nextGaussian(), TrainingDummy.class);
+                    tickets.add(ticket);
+                    mine.add(ticket);
+                    // Cancel an earlier ticket now and then, which may be being matched right now
+                    if (random.nextInt(3) == 0) {
+                        final MatchmakingQueue.Ticket victim = mine.get(random.nextInt(mine.size()));
+                        if (queue.cancel(victim)) {
+                            cancelled.add(victim);
+                        }
+                    }
+                }
+            }, "player-" + t);
+            players.add(player);
+            player.start();
+        }
+        for (Thread player : players) {
+            player.join();
+        }
+        queue.stopSweeper();
+        Thread.sleep(100);  // Let the sweeper finish the sweep it may be in
+        queue.sweep();
+
+        final Map<MatchmakingQueue.Ticket, MatchmakingQueue.Match> matchOf = new IdentityHashMap<>();
+        for (MatchmakingQueue.Match match : matches) {
+            for (MatchmakingQueue.Ticket ticket : List.of(match.a, match.b)) {
+                TestRunner.check(matchOf.put(ticket, match) == null, ticket.player + " was matched twice");
+                TestRunner.check(ticket.getMatch().join() == match, ticket.player + "'s future has another match");
+            }
+        }
+        for (MatchmakingQueue.Ticket ticket : cancelled) {
+            TestRunner.check(!matchOf.containsKey(ticket), ticket.player + " was matched after cancelling");
+        }
+        TestRunner.checkEquals((long) matches.size(), queue.getMatched(), "matched count");
+        TestRunner.checkEquals((long) (threads * perThread), 2L * matches.size() + cancelled.size() + queue.getWaiting(),
+            "every player matched, cancelled or waiting");
+        int waiting = 0;
+        for (MatchmakingQueue.Ticket ticket : tickets) {
+            if (!ticket.getMatch().isDone()) {
+                waiting++;
+            }
+        }
+        TestRunner.checkEquals(queue.getWaiting(), (long) waiting, "players still waiting");
+    }
+}
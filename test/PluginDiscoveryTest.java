@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+/**
+ * Tests plugin discovery and the plugin catalog against a folder laid out like the
+ * one run.sh scans: the plugins next to a copy of the game's own classes.
+ */
+public final class PluginDiscoveryTest {
+    private static final List<String> EXCLUDES = List.of(".*", "**/.*");
+    private static final List<Class<?>> GAME_CLASSES = List.of(
+        Champion.class, BattleModifier.class, Action.class, TrainingDummy.class, AdvancedTrainingDummy.class);
+
+    private PluginDiscoveryTest() {
+    }
+
+    public static void testPluginIsNotOnTheApplicationClassPath() {
+        try {
+            Class.forName("Slugger");
+        } catch (ClassNotFoundException e) {
+            return;
+        }
+        throw new AssertionError("The test plugin must only be loadable from its own folder");
+    }
+
+    public static void testDiscoveryFindsPluginsNextToTheGamesClasses() throws IOException {
+        final Path folder = arenaFolder();
+        try {
+            final DynamicClassLoader loader = DynamicClassLoader.discover(folder.toString(), List.of(), EXCLUDES);
+            TestRunner.checkEquals(List.of("Slugger"), names(loader.getSubtypesOf(Champion.class)), "champions");
+            TestRunner.checkEquals(List.of(), names(loader.getSubtypesOf(BattleModifier.class)), "modifiers");
+            TestRunner.check(loader.getSubtypesOf(Champion.class).get(0).getClassLoader()
+                != PluginDiscoveryTest.class.getClassLoader(), "the plugin has its own class loader");
+        } finally {
+            delete(folder);
+        }
+    }
+
+    public static void testCatalogFindsPluginsNextToTheGamesClasses() throws IOException {
+        final Path folder = arenaFolder();
+        try {
+            final Path file = folder.resolve(PluginCatalog.CATALOG_FILE);
+            final PluginCatalog first = new PluginCatalog(folder.toString(), file, List.of(), EXCLUDES);
+            TestRunner.checkEquals(List.of("Slugger"), names(first.getSubtypesOf(Champion.class)), "champions");
+            first.save();
+
+            // Reopened from the saved catalog, without reading the class files again
+            final PluginCatalog second = new PluginCatalog(folder.toString(), file, List.of(), EXCLUDES);
+            TestRunner.checkEquals(0, second.getFilesRead(), "class files read again");
+            TestRunner.checkEquals(List.of("Slugger"), names(second.getSubtypesOf(Champion.class)), "champions");
+        } finally {
+            delete(folder);
+        }
+    }
+
+    public static void testJarPluginsUseTheirNewestUsableRelease() throws IOException {
+        TestRunner.vault();    // Champions draw their arsenals from it
+        final Path folder = Files.createTempDirectory("arena");
+        try {
+            final int runtime = Runtime.version().feature();
+            // A multi-release jar whose release 9 Slugger has 80 hit points, and whose
+            // Slugger for a later Java than this one has 90
+            writeJar(folder.resolve("release.jar"), true, runtime + 1);
+            TestRunner.checkEquals(80, health(folder), "hit points of the Slugger in a multi-release jar");
+            final PluginCatalog catalog = new PluginCatalog(folder.toString(), folder.resolve(PluginCatalog.CATALOG_FILE),
+                                                            List.of(), EXCLUDES);
+            TestRunner.checkEquals(80, health(folder, catalog.getSubtypesOf(Champion.class)),
+                "hit points of the catalogued Slugger");
+
+            // Without the Multi-Release attribute, versioned entries are ignored
+            Files.delete(folder.resolve("release.jar"));
+            Files.delete(folder.resolve(PluginCatalog.CATALOG_FILE));
+            writeJar(folder.resolve("plain.jar"), false, runtime + 1);
+            TestRunner.checkEquals(60, health(folder), "hit points of the Slugger in a plain jar");
+        } finally {
+            delete(folder);
+        }
+    }
+
+    /**
+     * Write the test plugin to a jar, with a Slugger of 80 hit points for release 9
+     * and one of 90 for a later release.
+     */
+    private static void writeJar(Path jar, boolean multiRelease, int laterRelease) throws IOException {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (multiRelease) {
+            manifest.getMainAttributes().put(Attributes.Name.MULTI_RELEASE, "true");
+        }
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+            for (String name : List.of("Slugger.class", "Swing.class")) {
+                out.putNextEntry(new JarEntry(name));
+                out.write(Files.readAllBytes(TestRunner.pluginFolder().resolve(name)));
+            }
+            out.putNextEntry(new JarEntry("META-INF/versions/9/Slugger.class"));
+            out.write(TestRunner.recompiledSlugger(80));
+            out.putNextEntry(new JarEntry("META-INF/versions/" + laterRelease + "/Slugger.class"));
+            out.write(TestRunner.recompiledSlugger(90));
+        }
+    }
+
+    private static int health(Path folder) {
+        return health(folder, DynamicClassLoader.discover(folder.toString(), List.of(), EXCLUDES).getSubtypesOf(Champion.class));
+    }
+
+    private static int health(Path folder, List<Class<? extends Champion>> champions) {
+        TestRunner.checkEquals(List.of("Slugger"), names(champions), "champions in " + folder);
+        return ChampionRegistry.get(champions.get(0)).create().getMaxHealth();
+    }
+
+    public static void testUnloadedPluginIsCollectedOnceUnused() throws Exception {
+        final Path folder = arenaFolder();
+        try {
+            final PluginCatalog.Plugin plugin = loadAndUnload(folder);
+            for (int i = 0; i < 100 && plugin.getState() != PluginCatalog.State.COLLECTED; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            TestRunner.checkEquals(PluginCatalog.State.COLLECTED, plugin.getState(), "the state once nothing uses the plugin");
+            TestRunner.checkEquals(0, plugin.getLoadedClasses(), "classes still counted for the plugin");
+        } finally {
+            delete(folder);
+        }
+    }
+
+    /**
+     * Load the plugin champion and create one, then unload its directory while the
+     * champion is still in use.
+     * @return The unloaded plugin directory, which nothing left uses.
+     */
+    private static PluginCatalog.Plugin loadAndUnload(Path folder) throws Exception {
+        TestRunner.vault();    // Champions draw their arsenals from it
+        final PluginCatalog catalog = new PluginCatalog(folder.toString(), folder.resolve(PluginCatalog.CATALOG_FILE),
+                                                        List.of(), EXCLUDES);
+        final Class<? extends Champion> slugger = catalog.getSubtypesOf(Champion.class).get(0);
+        final Champion inUse = slugger.getDeclaredConstructor().newInstance();
+        PluginCatalog.Plugin owner = null;
+        for (PluginCatalog.Plugin plugin : catalog.getPlugins()) {
+            if (plugin.owns(slugger)) {
+                owner = plugin;
+            }
+        }
+        TestRunner.check(owner != null, "a plugin directory owns the champion");
+        TestRunner.checkEquals(PluginCatalog.State.LOADED, owner.getState(), "the state before unloading");
+        TestRunner.check(owner.getLoadedClasses() > 0, "classes loaded from the plugin");
+
+        owner.unload();
+        TestRunner.checkEquals(List.of(), catalog.getSubtypesOf(Champion.class), "champions after unloading");
+        System.gc();
+        // The champion in use keeps its class, and so its class loader, alive
+        TestRunner.checkEquals(PluginCatalog.State.UNLOADING, owner.getState(), "the state while the champion is in use");
+        TestRunner.checkEquals("Slugger", inUse.getName(), "the champion in use");
+        return owner;
+    }
+
+    /**
+     * Make a folder holding the test plugin, and some of the game's own class files
+     * in target/, as run.sh's folder does once build.sh has run.
+     */
+    private static Path arenaFolder() throws IOException {
+        final Path folder = Files.createTempDirectory("arena");
+        final Path plugins = Files.createDirectories(folder.resolve("plugins"));
+        try (Stream<Path> files = Files.list(TestRunner.pluginFolder())) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, plugins.resolve(file.getFileName().toString()), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        final Path target = Files.createDirectories(folder.resolve("target"));
+        for (Class<?> type : GAME_CLASSES) {
+            try (InputStream in = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+                Files.copy(in, target.resolve(type.getSimpleName() + ".class"));
+            }
+        }
+        return folder;
+    }
+
+    private static List<String> names(List<? extends Class<?>> classes) {
+        final List<String> names = new ArrayList<>();
+        for (Class<?> type : classes) {
+            names.add(type.getName());
+        }
+        return names;
+    }
+
+    private static void delete(Path folder) throws IOException {
+        Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
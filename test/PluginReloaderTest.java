@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Tests that the consumers of a PluginReloader, the players of a MatchmakingQueue and
+ * a MatchHost, see each generation of plugins as it is published.
+ */
+public final class PluginReloaderTest {
+    private PluginReloaderTest() {
+    }
+
+    public static void testQueueAndHostPlayTheCurrentGeneration() throws Exception {
+        final ModifierVault vault = TestRunner.vault();
+        final Path folder = copyPlugins();
+        try (PluginReloader plugins = new PluginReloader(vault, folder.toString(),
+                                                         folder.resolve(PluginCatalog.CATALOG_FILE))) {
+            final MatchHost host = new MatchHost(vault, 1);
+            host.setPlugins(plugins);
+            try {
+                final PluginReloader.Generation first = plugins.getGeneration();
+                TestRunner.checkEquals(1, first.number, "the first generation");
+                TestRunner.checkEquals(1, first.getChampions().size(), "champions of the first generation");
+                final Class<? extends Champion> slugger = first.getChampions().get(0);
+
+                final CompletableFuture<MatchResult> hosted = new CompletableFuture<>();
+                final MatchmakingQueue queue = new MatchmakingQueue(100, 0, 100,
+                    match -> host.host(match).whenComplete((r, e) -> {
+                        if (e != null) {
+                            hosted.completeExceptionally(e);
+                        } else {
+                            hosted.complete(r);
+                        }
+                    }));
+                queue.enqueue("Ann", 1500, plugins.getGeneration().getChampions().get(0));
+                queue.enqueue("Bob", 1500, TrainingDummy.class);
+                TestRunner.checkEquals(slugger.getName(), hosted.get(30, TimeUnit.SECONDS).championA,
+                    "the champion picked from the first generation");
+
+                // The next generation replaces the roster at once, for every consumer
+                Files.delete(folder.resolve("Slugger.class"));
+                final PluginReloader.Generation second = plugins.reload();
+                TestRunner.check(plugins.getGeneration() == second, "the reloaded generation is published");
+                TestRunner.checkEquals(0, second.getChampions().size(), "champions after removing the Slugger");
+                TestRunner.checkEquals(List.of(slugger), first.getChampions(), "the first generation's roster after the reload");
+            } finally {
+                host.shutdown();
+            }
+        } finally {
+            delete(folder);
+        }
+    }
+
+    public static void testHostResumesChampionsOfTheReloadedGeneration() throws Exception {
+        final ModifierVault vault = TestRunner.vault();
+        final Path folder = copyPlugins();
+        final Path file = Files.createTempFile("checkpoints", ".wal");
+        try (PluginReloader plugins = new PluginReloader(vault, folder.toString(),
+                                                         folder.resolve(PluginCatalog.CATALOG_FILE))) {
+            final Class<? extends Champion> original = plugins.getGeneration().getChampions().get(0);
+            try (MatchCheckpoints checkpoints = new MatchCheckpoints(file)) {
+                checkpoints.begin(1, 11, "Ann", "Bob", original, TrainingDummy.class);
+            }
+
+            // Copying the plugin in again is noticed by the watcher, which loads a new generation
+            final CountDownLatch reloaded = new CountDownLatch(1);
+            plugins.setListener(g -> reloaded.countDown());
+            final Path classFile = folder.resolve("Slugger.class");
+            Files.write(classFile, Files.readAllBytes(classFile));
+            TestRunner.check(reloaded.await(30, TimeUnit.SECONDS), "the changed plugin was reloaded");
+            final Class<? extends Champion> current = plugins.getGeneration().getChampions().get(0);
+            TestRunner.check(current != original, "the reloaded Slugger is a class of its own");
+
+            try (MatchCheckpoints checkpoints = new MatchCheckpoints(file)) {
+                final MatchHost host = new MatchHost(vault, 1);
+                host.setCheckpoints(checkpoints);
+                host.setPlugins(plugins);
+                try {
+                    final List<CompletableFuture<MatchResult>> resumed = host.resume();
+                    TestRunner.checkEquals(1, resumed.size(), "resumed matches");
+                    TestRunner.checkEquals(current.getName(), resumed.get(0).join().championA, "first champion");
+                } finally {
+                    host.shutdown();
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            delete(folder);
+        }
+    }
+
+    /**
+     * Copy the compiled test plugins to a folder of their own.
+     */
+    private static Path copyPlugins() throws IOException {
+        final Path folder = Files.createTempDirectory("plugins");
+        try (Stream<Path> files = Files.list(TestRunner.pluginFolder())) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, folder.resolve(file.getFileName()));
+            }
+        }
+        return folder;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests that PluginWatchdog ends a match whose plugin code never returns with that
+ * plugin's champion forfeiting and the plugin quarantined, leaving the engine to the
+ * stuck thread and counting that thread until it gets out, without touching matches
+ * that stay in budget.
+ */
+public final class PluginWatchdogTest {
+    private PluginWatchdogTest() {
+    }
+
+    public static void testWatchedMatchesPlayAsUnwatched() {
+        final ModifierVault vault = TestRunner.vault();
+        final MatchSimulator simulator = new MatchSimulator(vault);
+        try (PluginWatchdog watchdog = new PluginWatchdog(vault, 200, 1000)) {
+            for (long seed = 0; seed < 50; seed++) {
+                simulator.setWatchdog(null);
+                final MatchResult unwatched = simulator.run(TrainingDummy.class, new GreedyChampionController(seed),
+                    AdvancedTrainingDummy.class, new GreedyChampionController(~seed), seed);
+                simulator.setWatchdog(watchdog);
+                final MatchResult watched = simulator.run(TrainingDummy.class, new GreedyChampionController(seed),
+                    AdvancedTrainingDummy.class, new GreedyChampionController(~seed), seed);
+                TestRunner.checkEquals(unwatched.toString(), watched.toString(), "result of match " + seed);
+            }
+            TestRunner.checkEquals(0L, watchdog.getAborted(), "aborted matches");
+        }
+    }
+
+    public static void testHangingModifierForfeits() throws InterruptedException {
+        final ModifierVault vault = TestRunner.vault();
+        final MatchSimulator simulator = new MatchSimulator(vault);
+        final AtomicBoolean release = Hang.release = new AtomicBoolean();
+        try {
+            try (PluginWatchdog watchdog = new PluginWatchdog(vault, 50, 200)) {
+                final List<Class<?>> quarantined = new CopyOnWriteArrayList<>();
+                watchdog.setQuarantineListener(quarantined::add);
+                simulator.setWatchdog(watchdog);
+                final long start = System.nanoTime();
+                final MatchResult result = simulator.run(TrainingDummy::new, new GreedyChampionController(1),
+                    PluginWatchdogTest::hanging, new GreedyChampionController(2), 1);
+                final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                TestRunner.checkEquals(MatchResult.WINNER_A, result.winner, "winner");
+                TestRunner.check(millis < 5000, "the match ended " + millis + " ms in, not once the hang was over");
+                TestRunner.checkEquals(1L, watchdog.getAborted(), "aborted matches");
+                TestRunner.check(watchdog.isQuarantined(Hang.class), "the first hang quarantines the modifier");
+                TestRunner.checkEquals(List.of(Hang.class), quarantined, "plugins the listener was told of");
+                TestRunner.checkEquals(1, watchdog.getAbandonedThreads(), "threads still stuck in the modifier");
+
+                // Once the plugin returns, the abandoned thread gives the match up, and ends as the watchdog is closed
+                release.set(true);
+                final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (watchdog.getAbandonedThreads() > 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                TestRunner.checkEquals(0, watchdog.getAbandonedThreads(), "threads stuck after the release");
+            }
+            final Thread abandoned = Hang.thread;
+            abandoned.join(5000);
+            TestRunner.check(!abandoned.isAlive(), "the abandoned thread ended after the plugin returned");
+        } finally {
+            release.set(true);
+        }
+    }
+
+    public static void testAbandonedEngineIsLeftToItsThread() throws InterruptedException {
+        final ModifierVault vault = TestRunner.vault();
+        final AtomicBoolean release = Hang.release = new AtomicBoolean();
+        final List<Thread> ended = new CopyOnWriteArrayList<>();
+        final BattleEngine engine = new BattleEngine(new TrainingDummy(), hanging(), new BattleLog(), vault,
+                                                     new GreedyChampionController(1), new GreedyChampionController(2));
+        engine.setPrintLog(false);
+        engine.setSeed(1);
+        engine.setListener(new MatchListener() {
+            @Override
+            public void onMatchEnd(BattleEngine e) {
+                ended.add(Thread.currentThread());
+            }
+        });
+        try {
+            try (PluginWatchdog watchdog = new PluginWatchdog(vault, 50, 200)) {
+                final PluginWatchdog.Forfeit forfeit = watchdog.runMatch(engine);
+                TestRunner.check(forfeit != null, "the match was abandoned");
+                TestRunner.check(forfeit.reason.startsWith(Hang.class.getName()), "the reason names the modifier: " + forfeit.reason);
+                final MatchResult result = forfeit.toResult(1);
+                TestRunner.checkEquals(MatchResult.WINNER_A, result.winner, "winner");
+                TestRunner.checkEquals(TrainingDummy.class.getName(), result.championA, "first champion");
+            }
+        } finally {
+            release.set(true);
+        }
+        final Thread abandoned = Hang.thread;
+        abandoned.join(5000);
+        TestRunner.check(!abandoned.isAlive(), "the abandoned thread ended after the plugin returned");
+        TestRunner.checkEquals(null, engine.getForfeitReason(), "the abandoned engine's forfeit reason");
+        TestRunner.checkEquals(null, engine.getWinner(), "the abandoned engine's winner");
+        TestRunner.checkEquals(List.of(), ended, "threads that ended the abandoned engine");
+    }
+
+    private static Champion hanging() {
+        final Champion champ = new AdvancedTrainingDummy();
+        champ.getLoadout().addTemporaryModifier(new Hang());
+        return champ;
+    }
+
+    /**
+     * A modifier that does not return from modifyDefense until the test that made it
+     * releases it, standing in for a plugin stuck in a loop.
+     */
+    static final class Hang extends TemporaryModifier {
+        static volatile AtomicBoolean release = new AtomicBoolean();
+        static volatile Thread thread;     // The last thread to hang
+
+        private final AtomicBoolean released = release;
+
+        Hang() {
+            super("Hang", "Never returns.", 1_000_000);
+        }
+
+        @Override
+        public int modifyDefense(int damage, BattleContext context) {
+            thread = Thread.currentThread();
+            while (!released.get()) {
+                // Spin without calling back into the game
+            }
+            return damage;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Tests the Glicko-2 update against the worked example in Glickman's description of
+ * the system, and that compacting the ratings file keeps every rating.
+ */
+public final class RatingServiceTest {
+    private RatingServiceTest() {
+    }
+
+    public static void testUpdateMatchesGlickmansExample() {
+        // A 1500 player with deviation 200 beats a 1400 player, then loses to 1550 and 1700 players
+        final List<RatingService.Outcome> outcomes = List.of(
+            new RatingService.Outcome(opponent(1400, 30), 1.0),
+            new RatingService.Outcome(opponent(1550, 100), 0.0),
+            new RatingService.Outcome(opponent(1700, 300), 0.0));
+        final RatingService.Rating rated = RatingService.rate(
+            new RatingService.Rating(1500, 200, RatingService.DEFAULT_VOLATILITY, 0), outcomes, 0);
+
+        TestRunner.check(Math.abs(rated.rating - 1464.06) < 0.01, "rating " + rated.rating);
+        TestRunner.check(Math.abs(rated.deviation - 151.52) < 0.01, "deviation " + rated.deviation);
+        TestRunner.check(Math.abs(rated.volatility - 0.05999) < 0.00001, "volatility " + rated.volatility);
+        TestRunner.checkEquals(1, rated.period, "period of the new rating");
+    }
+
+    public static void testDeviationGrowsOverIdlePeriods() {
+        final RatingService.Rating idle = new RatingService.Rating(1500, 50, 0.06, 0);
+        final RatingService.Rating later = idle.at(10);
+        // Each idle period adds the volatility, on the Glicko-2 scale, to the deviation in quadrature
+        final double expected = 173.7178 * Math.sqrt(Math.pow(50 / 173.7178, 2) + 10 * 0.06 * 0.06);
+        TestRunner.check(Math.abs(later.deviation - expected) < 1e-9, "deviation after 10 idle periods " + later.deviation);
+        TestRunner.checkEquals(1500.0, later.rating, "rating after idle periods");
+    }
+
+    public static void testCompactionKeepsEveryRating() throws IOException {
+        final Path directory = Files.createTempDirectory("ratings");
+        final Path file = directory.resolve("ratings.log");
+        try {
+            final RatingService.Rating ann;
+            final RatingService.Rating bob;
+            final RatingService.Rating champion;
+            try (RatingService ratings = new RatingService(file, 0)) {
+                // Every period appends a line for each of the two players and the two champions
+                for (int i = 0; i < 1500; i++) {
+                    ratings.report(new MatchResult("TrainingDummy", "AdvancedTrainingDummy",
+                        i % 3 == 0 ? MatchResult.WINNER_A : MatchResult.WINNER_B, 5, 0, 0, i), "ann", "bob");
+                    ratings.closePeriod();
+                }
+                ann = ratings.getRating(RatingService.Kind.PLAYER, "ann");
+                bob = ratings.getRating(RatingService.Kind.PLAYER, "bob");
+                champion = ratings.getRating(RatingService.Kind.CHAMPION, "TrainingDummy");
+            }
+
+            final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            TestRunner.check(lines.size() < 4096, "the file was compacted to " + lines.size() + " lines");
+            TestRunner.check(!Files.exists(directory.resolve("ratings.log.compact")), "no compaction file is left behind");
+
+            try (RatingService reloaded = new RatingService(file, 0)) {
+                TestRunner.checkEquals(4, reloaded.size(), "rated entities after reloading");
+                checkSameRating(ann, reloaded.getRating(RatingService.Kind.PLAYER, "ann"), "ann's rating");
+                checkSameRating(bob, reloaded.getRating(RatingService.Kind.PLAYER, "bob"), "bob's rating");
+                checkSameRating(champion, reloaded.getRating(RatingService.Kind.CHAMPION, "TrainingDummy"),
+                    "the champion's rating");
+                TestRunner.checkEquals(1500, reloaded.getPeriod(), "the current period");
+                TestRunner.checkEquals("bob", reloaded.top(RatingService.Kind.PLAYER, 1).get(0).entity.name,
+                    "the top player");
+            }
+        } finally {
+            for (Path p : List.of(file, directory.resolve("ratings.log.compact"), directory)) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    private static void checkSameRating(RatingService.Rating expected, RatingService.Rating actual, String what) {
+        TestRunner.checkEquals(expected.rating, actual.rating, what);
+        TestRunner.checkEquals(expected.deviation, actual.deviation, what + "'s deviation");
+        TestRunner.checkEquals(expected.volatility, actual.volatility, what + "'s volatility");
+    }
+
+    private static RatingService.Entity opponent(double rating, double deviation) {
+        return new RatingService.Entity(RatingService.Kind.PLAYER, rating + "/" + deviation,
+            new RatingService.Rating(rating, deviation, RatingService.DEFAULT_VOLATILITY, 0));
+    }
+}
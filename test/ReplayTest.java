@@ -0,0 +1,102 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests that a recorded match re-runs from its encoded replay to the same result and
+ * final state, that seeking through keyframes lands where re-running from the start
+ * does, and that a turn which cannot be recorded faithfully is refused.
+ */
+public final class ReplayTest {
+    private static final List<Class<? extends Champion>> ROSTER = List.of(TrainingDummy.class, AdvancedTrainingDummy.class);
+
+    private ReplayTest() {
+    }
+
+    public static void testRecordedMatchesReplayExactly() {
+        final ModifierVault vault = TestRunner.vault();
+        final Random random = new Random(42L);
+        long recordBytes = 0;
+        long logBytes = 0;
+        for (int m = 0; m < 200; m++) {
+            final long seed = random.nextLong();
+            final Recorded recorded = record(vault, seed, m, 0);
+            final MatchResult result = recorded.result;
+            final Replay replay = Replay.fromBytes(recorded.replay.toBytes());
+            TestRunner.checkEquals(seed, replay.getSeed(), "seed of match " + m);
+            TestRunner.checkEquals(result.rounds, replay.getRounds(), "rounds of match " + m);
+
+            // play checks the final state hash, and throws if the re-run diverged
+            final BattleLog log = new BattleLog();
+            final MatchResult replayed = MatchResult.of(replay.play(vault, ROSTER, log), seed);
+            TestRunner.checkEquals(result.toString(), replayed.toString(), "replayed result of match " + m);
+
+            final Replay withoutRecords = new Replay(replay.seed, replay.maxRounds, replay.registryFingerprint,
+                replay.championA, replay.championB, replay.initialA, replay.initialB, new int[0],
+                replay.finalHash, 0, new MatchSnapshot[0]);
+            recordBytes += replay.toBytes().length - withoutRecords.toBytes().length;
+            for (BattleLog.Entry e : log.getLog()) {
+                logBytes += e.toString().getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        }
+        TestRunner.check(logBytes >= 60 * recordBytes,
+            "turn records take " + recordBytes + " bytes against " + logBytes + " of text log");
+    }
+
+    public static void testSeekingThroughKeyframesMatchesReplayingFromTheStart() {
+        final ModifierVault vault = TestRunner.vault();
+        final Random random = new Random(7L);
+        for (int m = 0; m < 50; m++) {
+            final Replay replay = Replay.fromBytes(record(vault, random.nextLong(), m, 2).replay.toBytes());
+            final Replay withoutKeyframes = new Replay(replay.seed, replay.maxRounds, replay.registryFingerprint,
+                replay.championA, replay.championB, replay.initialA, replay.initialB, replay.records,
+                replay.finalHash, 0, new MatchSnapshot[0]);
+            for (int round = 1; round <= replay.getRounds() + 1; round++) {
+                TestRunner.checkEquals(withoutKeyframes.seek(vault, ROSTER, round, new BattleLog()).getStateHash(),
+                    replay.seek(vault, ROSTER, round, new BattleLog()).getStateHash(),
+                    "state at round " + round + " of match " + m);
+            }
+        }
+    }
+
+    public static void testTooManyDrawsAreRefused() {
+        final Champion champ = ChampionRegistry.get(TrainingDummy.class).create();
+        final TurnSubmission turn = new TurnSubmission(null, null, null, null, null);
+        TestRunner.checkEquals(7, Replay.draws(Replay.encode(champ, turn, 7)), "draws of a record");
+        TestRunner.checkThrows(IllegalStateException.class, () -> Replay.encode(champ, turn, 8), "recording eight draws");
+    }
+
+    public static void testCorruptReplayIsRefused() {
+        final byte[] bytes = record(TestRunner.vault(), 3L, 0, 0).replay.toBytes();
+        TestRunner.checkThrows(IllegalArgumentException.class,
+            () -> Replay.fromBytes(Arrays.copyOf(bytes, bytes.length / 2)), "reading half a replay");
+        bytes[0] = 'X';
+        TestRunner.checkThrows(IllegalArgumentException.class, () -> Replay.fromBytes(bytes), "reading a bad magic number");
+    }
+
+    /**
+     * Record a seeded greedy match, the champions depending on the match number.
+     */
+    private static Recorded record(ModifierVault vault, long seed, int m, int keyframeInterval) {
+        final Replay.Recorder recorder = new Replay.Recorder(vault, seed, MatchSimulator.DEFAULT_MAX_ROUNDS, keyframeInterval,
+            new GreedyChampionController(seed), new GreedyChampionController(~seed));
+        final Class<? extends Champion> classA = ROSTER.get(m % 2);
+        final Class<? extends Champion> classB = ROSTER.get((m / 2) % 2);
+        final MatchResult result = new MatchSimulator(vault).run(
+            () -> recorder.controllerA().chooseChampion("Player 1", List.of(classA)).join(), recorder.controllerA(),
+            () -> recorder.controllerB().chooseChampion("Player 2", List.of(classB)).join(), recorder.controllerB(),
+            seed, recorder);
+        return new Recorded(recorder.finish(), result);
+    }
+
+    private static final class Recorded {
+        final Replay replay;
+        final MatchResult result;
+
+        Recorded(Replay replay, MatchResult result) {
+            this.replay = replay;
+            this.result = result;
+        }
+    }
+}
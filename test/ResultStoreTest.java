@@ -0,0 +1,150 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Tests that results appended to a ResultStore from many threads at once are all
+ * found again, that queries skip the pages their indexes rule out, and that a
+ * simulator with a store keeps the result of every match it plays.
+ */
+public final class ResultStoreTest {
+    private static final long START = 1_700_000_000_000L;
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 2000;
+
+    private ResultStoreTest() {
+    }
+
+    public static void testConcurrentAppendsAreAllQueried() throws Exception {
+        final Path directory = Files.createTempDirectory("results");
+        try {
+            try (ResultStore store = new ResultStore(directory)) {
+                appendConcurrently(store);
+                checkContents(store);
+            }
+            // The indexes of the segment being written are rebuilt on opening
+            try (ResultStore reopened = new ResultStore(directory)) {
+                checkContents(reopened);
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    public static void testQueriesSkipPagesTheIndexesRuleOut() throws Exception {
+        final Path directory = Files.createTempDirectory("results");
+        try (ResultStore store = new ResultStore(directory)) {
+            appendConcurrently(store);
+            final long pages = store.getPages();
+
+            // The first tenth of the time range lies in roughly the first tenth of the pages
+            long before = store.getPagesRead();
+            final long early = store.query(null, START, START + PER_THREAD / 10, r -> { });
+            TestRunner.checkEquals((long) THREADS * PER_THREAD / 10, early, "results in the first tenth of the time range");
+            final long earlyPages = store.getPagesRead() - before;
+            TestRunner.check(earlyPages < pages / 4, "read " + earlyPages + " of " + pages + " pages for a tenth of the time range");
+
+            // A champion that is only in the last results is only looked for in their pages
+            for (int i = 0; i < 10; i++) {
+                store.append(result("Rare", "TrainingDummy", i), START + PER_THREAD + i);
+            }
+            before = store.getPagesRead();
+            final long rare = store.query("Rare", 0, Long.MAX_VALUE, r -> { });
+            TestRunner.checkEquals(10L, rare, "results of the rare champion");
+            TestRunner.check(store.getPagesRead() - before <= 2, "read " + (store.getPagesRead() - before)
+                             + " pages for a champion in the last page");
+            TestRunner.checkEquals(0L, store.query("Unknown", 0, Long.MAX_VALUE, r -> { }), "results of an unknown champion");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    public static void testSimulatorStoresEveryResult() throws IOException {
+        final Path directory = Files.createTempDirectory("results");
+        try (ResultStore store = new ResultStore(directory)) {
+            final MatchSimulator simulator = new MatchSimulator(TestRunner.vault());
+            simulator.setResultStore(store);
+            final Set<String> played = ConcurrentHashMap.newKeySet();
+            for (long seed = 0; seed < 20; seed++) {
+                played.add(simulator.run(TrainingDummy.class, new GreedyChampionController(seed),
+                    AdvancedTrainingDummy.class, new GreedyChampionController(~seed), seed).toString());
+            }
+            simulator.setResultStore(null);
+            simulator.run(TrainingDummy.class, new GreedyChampionController(), TrainingDummy.class,
+                new GreedyChampionController(), 99);
+
+            final Set<String> stored = ConcurrentHashMap.newKeySet();
+            store.query(TrainingDummy.class.getName(), 0, Long.MAX_VALUE, r -> stored.add(r.toResult().toString()));
+            TestRunner.checkEquals(played, stored, "stored results");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Append THREADS * PER_THREAD results from THREADS threads at once. The i-th
+     * result of every thread is played at START + i, by a champion named for its
+     * thread against a training dummy.
+     */
+    private static void appendConcurrently(ResultStore store) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final Future<?>[] writers = new Future<?>[THREADS];
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                writers[t] = executor.submit(() -> {
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        store.append(result("Champion" + thread, "TrainingDummy", (long) thread << 32 | i), START + i);
+                    }
+                });
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        TestRunner.checkEquals((long) THREADS * PER_THREAD, store.size(), "results appended");
+    }
+
+    private static void checkContents(ResultStore store) {
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            final Set<Long> seeds = ConcurrentHashMap.newKeySet();
+            final LongAdder wrong = new LongAdder();
+            final long found = store.query("Champion" + t, START, START + PER_THREAD, r -> {
+                seeds.add(r.getSeed());
+                if (r.getTime() != START + (int) r.getSeed() || r.getSeed() >>> 32 != thread
+                        || !"TrainingDummy".equals(r.getChampion(1)) || r.getRounds() != 5) {
+                    wrong.increment();
+                }
+            });
+            TestRunner.checkEquals((long) PER_THREAD, found, "results of thread " + t);
+            TestRunner.checkEquals(PER_THREAD, seeds.size(), "distinct results of thread " + t);
+            TestRunner.checkEquals(0L, wrong.sum(), "results of thread " + t + " that were not as appended");
+        }
+    }
+
+    private static MatchResult result(String championA, String championB, long seed) {
+        return new MatchResult(championA, championB, MatchResult.WINNER_A, 5, 40, 0, seed,
+                               List.of("SomeTactic"), List.of());
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+import java.util.List;
+
+/**
+ * Tests that SelfPlayTrainer's learner keeps pace with the games played, making one
+ * batch of updates per batch of new transitions rather than spinning on the buffer.
+ */
+public final class SelfPlayTrainerTest {
+    private static final int BATCH_SIZE = 256;
+
+    private SelfPlayTrainerTest() {
+    }
+
+    public static void testLearnerUpdatesOncePerBatchOfTransitions() throws InterruptedException {
+        final SelfPlayTrainer trainer = new SelfPlayTrainer(
+            List.of(TrainingDummy.class, AdvancedTrainingDummy.class), TestRunner.vault());
+        trainer.train(200, 2);
+
+        final long transitions = trainer.getTransitions();
+        TestRunner.checkEquals(200L, trainer.getGamesPlayed(), "games played");
+        TestRunner.check(transitions >= BATCH_SIZE, "a batch of transitions was added: " + transitions);
+        TestRunner.checkEquals(transitions / BATCH_SIZE * BATCH_SIZE, trainer.getUpdates(),
+            "updates for " + transitions + " transitions");
+        TestRunner.check(trainer.getCpuSeconds() != 0, "the trainer's CPU time was measured");
+    }
+}
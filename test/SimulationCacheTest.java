@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Tests that a SimulationCache answers a batch it has seen from memory, or from disk
+ * after a restart, and that recompiling a champion with different code makes the
+ * cache simulate its batches again.
+ */
+public final class SimulationCacheTest {
+    private static final List<String> EXCLUDES = List.of(".*", "**/.*");
+
+    private SimulationCacheTest() {
+    }
+
+    public static void testRepeatedBatchIsAnsweredFromTheCache() throws IOException {
+        final Path directory = Files.createTempDirectory("simulations");
+        try {
+            final SimulationCache cache = new SimulationCache(TestRunner.vault(), MatchSimulator.DEFAULT_MAX_ROUNDS, directory, 1);
+            final SimulationCache.Summary simulated = simulate(cache, TrainingDummy.class, 0);
+            TestRunner.checkEquals(1L, cache.getMisses(), "batches simulated");
+            TestRunner.checkEquals(50L, simulated.matches, "matches simulated");
+            TestRunner.checkEquals(simulated, simulate(cache, TrainingDummy.class, 0), "the batch asked for again");
+            TestRunner.checkEquals(1L, cache.getMemoryHits(), "batches answered from memory");
+
+            // Another seed range is another batch, and pushes the first out of memory
+            simulate(cache, TrainingDummy.class, 100);
+            TestRunner.checkEquals(2L, cache.getMisses(), "batches simulated");
+            checkSameSummary(simulated, simulate(cache, TrainingDummy.class, 0), "the batch read from disk");
+            TestRunner.checkEquals(1L, cache.getDiskHits(), "batches answered from disk");
+
+            final SimulationCache restarted = new SimulationCache(TestRunner.vault(), MatchSimulator.DEFAULT_MAX_ROUNDS, directory, 1);
+            checkSameSummary(simulated, simulate(restarted, TrainingDummy.class, 0), "the batch after a restart");
+            TestRunner.checkEquals(0L, restarted.getMisses(), "batches simulated after a restart");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    public static void testChangedBytecodeIsSimulatedAgain() throws IOException {
+        final Path directory = Files.createTempDirectory("simulations");
+        final Path original = copyPlugins();
+        final Path recompiled = copyPlugins();
+        try {
+            Files.write(recompiled.resolve("Slugger.class"), TestRunner.recompiledSlugger(80));
+
+            final SimulationCache cache = new SimulationCache(TestRunner.vault(), MatchSimulator.DEFAULT_MAX_ROUNDS, directory, 16);
+            final Class<? extends Champion> slugger = discover(original);
+            simulate(cache, slugger, 0);
+            simulate(cache, slugger, 0);
+            TestRunner.checkEquals(1L, cache.getMisses(), "batches simulated for the original Slugger");
+
+            // Loaded again from the same class file, it is the same batch
+            final SimulationCache restarted = new SimulationCache(TestRunner.vault(), MatchSimulator.DEFAULT_MAX_ROUNDS, directory, 16);
+            simulate(restarted, discover(original), 0);
+            TestRunner.checkEquals(1L, restarted.getDiskHits(), "batches of the reloaded Slugger answered from disk");
+
+            final Class<? extends Champion> changed = discover(recompiled);
+            TestRunner.checkEquals(80, ChampionRegistry.get(changed).create().getMaxHealth(), "the recompiled Slugger's health");
+            simulate(restarted, changed, 0);
+            TestRunner.checkEquals(1L, restarted.getMisses(), "batches simulated for the recompiled Slugger");
+        } finally {
+            delete(directory);
+            delete(original);
+            delete(recompiled);
+        }
+    }
+
+    private static SimulationCache.Summary simulate(SimulationCache cache, Class<? extends Champion> champion, long firstSeed) {
+        return cache.simulate(champion, AdvancedTrainingDummy.class, "greedy", GreedyChampionController::new, firstSeed, 50);
+    }
+
+    private static void checkSameSummary(SimulationCache.Summary expected, SimulationCache.Summary actual, String what) {
+        TestRunner.checkEquals(expected.toString(), actual.toString(), what);
+    }
+
+    private static Class<? extends Champion> discover(Path folder) {
+        final List<Class<? extends Champion>> champions =
+            DynamicClassLoader.discover(folder.toString(), List.of(), EXCLUDES).getSubtypesOf(Champion.class);
+        TestRunner.checkEquals(1, champions.size(), "plugin champions");
+        return champions.get(0);
+    }
+
+    /**
+     * Copy the compiled test plugins to a folder of their own.
+     */
+    private static Path copyPlugins() throws IOException {
+        final Path folder = Files.createTempDirectory("plugins");
+        try (Stream<Path> files = Files.list(TestRunner.pluginFolder())) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, folder.resolve(file.getFileName()));
+            }
+        }
+        return folder;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+}
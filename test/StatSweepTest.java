@@ -0,0 +1,70 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests that StatSweep's variants play as the base champion would with other stats,
+ * keeping its behaviour beyond its actions.
+ */
+public final class StatSweepTest {
+    private static final List<Class<? extends Champion>> ROSTER = List.of(AdvancedTrainingDummy.class);
+
+    private StatSweepTest() {
+    }
+
+    public static void testVariantAtTheBaseStatsPlaysAsTheBase() {
+        final List<StatSweep.Point> surface =
+            new StatSweep(TestRunner.vault(), ROSTER, 4, 3L).sweep(TrainingDummy.class, 50);
+
+        // The same matches, seeded as StatSweep seeds them, played by TrainingDummy itself
+        final MatchSimulator simulator = new MatchSimulator(TestRunner.vault());
+        final Random seeds = new Random(3L);
+        double score = 0;
+        for (int i = 0; i < 4; i++) {
+            score += simulator.run(TrainingDummy.class, new GreedyChampionController(),
+                AdvancedTrainingDummy.class, new GreedyChampionController(), seeds.nextLong()).scoreA();
+        }
+        TestRunner.checkEquals(score / 4, find(surface, 5, 5, 50).winRate, "win rate of the 5/5/50 variant");
+    }
+
+    public static void testVariantKeepsTheBaseChampionsBehaviour() {
+        // The same actions as TrainingDummy, whose Bandaid no longer heals
+        final List<Double> dummy = winRates(new StatSweep(TestRunner.vault(), ROSTER, 4, 3L).sweep(TrainingDummy.class, 50));
+        final List<Double> unhealable = winRates(new StatSweep(TestRunner.vault(), ROSTER, 4, 3L).sweep(Unhealable.class, 50));
+        TestRunner.check(!dummy.equals(unhealable), "a champion that cannot heal sweeps as one that can");
+        double dummyTotal = 0;
+        double unhealableTotal = 0;
+        for (int i = 0; i < dummy.size(); i++) {
+            dummyTotal += dummy.get(i);
+            unhealableTotal += unhealable.get(i);
+        }
+        TestRunner.check(unhealableTotal < dummyTotal, "not healing loses more: " + unhealableTotal + " vs " + dummyTotal);
+    }
+
+    private static StatSweep.Point find(List<StatSweep.Point> surface, int attack, int defense, int maxHealth) {
+        for (StatSweep.Point p : surface) {
+            if (p.attack == attack && p.defense == defense && p.maxHealth == maxHealth) {
+                return p;
+            }
+        }
+        throw new AssertionError("No grid point " + attack + "/" + defense + "/" + maxHealth);
+    }
+
+    private static List<Double> winRates(List<StatSweep.Point> surface) {
+        final List<Double> rates = new ArrayList<>();
+        for (StatSweep.Point p : surface) {
+            rates.add(p.winRate);
+        }
+        return rates;
+    }
+
+    /**
+     * A TrainingDummy whose healing never takes.
+     */
+    public static final class Unhealable extends TrainingDummy {
+        @Override
+        public int heal(int baseAmount, BattleContext context) {
+            return 0;
+        }
+    }
+}
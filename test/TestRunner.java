@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * TestRunner runs the behaviour tests in test/ (see test.sh). A test is a public
+ * static method of a test class whose name starts with "test" and that takes no
+ * arguments; it passes if it returns and fails if it throws. The checks below
+ * throw AssertionError, so tests do not depend on the JVM's -ea flag.
+ *
+ * Usage: java TestRunner [test class...]
+ */
+public final class TestRunner {
+    private static final List<Class<?>> TESTS = List.of(
+        ActionCatalogTest.class,
+        ChampionsArenaTest.class,
+        ChampionRegistryTest.class,
+        MatchStateTest.class,
+        SelfPlayTrainerTest.class,
+        LoadoutOptimizerTest.class,
+        StatSweepTest.class,
+        MatchmakingQueueTest.class,
+        MatchSnapshotTest.class,
+        MatchCheckpointsTest.class,
+        PluginDiscoveryTest.class,
+        PluginReloaderTest.class,
+        PluginWatchdogTest.class,
+        RatingServiceTest.class,
+        HookProfilerTest.class,
+        ReplayTest.class,
+        LogArchiveTest.class,
+        ResultStoreTest.class,
+        SimulationCacheTest.class,
+        TournamentTest.class);
+    private static final List<String> EXCLUDES = List.of(".*", "**/.*");
+
+    private TestRunner() {
+    }
+
+    /**
+     * Run every test, or those of the named test classes, and exit with status 1 if
+     * any failed.
+     * @param args The names of the test classes to run, or none for all of them.
+     * @throws ClassNotFoundException if a named test class does not exist.
+     */
+    public static void main(String[] args) throws ClassNotFoundException {
+        final List<Class<?>> classes = new ArrayList<>();
+        for (String name : args) {
+            classes.add(Class.forName(name));
+        }
+        if (classes.isEmpty()) {
+            classes.addAll(TESTS);
+        }
+
+        int passed = 0;
+        final List<String> failed = new ArrayList<>();
+        for (Class<?> type : classes) {
+            final Method[] methods = type.getMethods();
+            Arrays.sort(methods, Comparator.comparing(Method::getName));
+            for (Method method : methods) {
+                if (!method.getName().startsWith("test") || !Modifier.isStatic(method.getModifiers())
+                        || method.getParameterCount() != 0) {
+                    continue;
+                }
+                final String name = type.getName() + "." + method.getName();
+                final long start = System.nanoTime();
+                try {
+                    method.invoke(null);
+                    passed++;
+                    System.out.printf("PASS %s (%.0f ms)%n", name, (System.nanoTime() - start) / 1e6);
+                } catch (InvocationTargetException e) {
+                    failed.add(name);
+                    System.out.println("FAIL " + name);
+                    e.getCause().printStackTrace(System.out);
+                } catch (IllegalAccessException e) {
+                    failed.add(name);
+                    System.out.println("FAIL " + name + ": " + e);
+                }
+            }
+        }
+
+        System.out.println(passed + " passed, " + failed.size() + " failed");
+        if (!failed.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Get the modifier vault, with only the default modifiers. The vault can only be
+     * initialized once per process, so every test shares it.
+     * @return The vault.
+     */
+    static synchronized ModifierVault vault() {
+        return ModifierVault.isInitialized() ? ModifierVault.getInstance() : ModifierVault.initialize(null);
+    }
+
+    /**
+     * Get the folder test.sh compiles the test plugins into, which is not on the
+     * class path.
+     * @return The folder.
+     */
+    static Path pluginFolder() {
+        final String folder = System.getProperty("test.plugins");
+        check(folder != null, "test.plugins must name the compiled test plugins (see test.sh)");
+        return Paths.get(folder);
+    }
+
+    /**
+     * Get the test plugin champion, discovered in the plugin folder.
+     * @return The plugin's champion class.
+     */
+    static Class<? extends Champion> pluginChampion() {
+        final List<Class<? extends Champion>> champions =
+            DynamicClassLoader.discover(pluginFolder().toString(), List.of(), EXCLUDES).getSubtypesOf(Champion.class);
+        checkEquals(1, champions.size(), "plugin champions");
+        return champions.get(0);
+    }
+
+    /**
+     * Get the class file of the test plugin champion as if it had been recompiled
+     * with other hit points: its constructor's push of 60 is patched.
+     * @param health The hit points, from -128 to 127.
+     * @return The patched class file.
+     * @throws IOException if the compiled plugin cannot be read.
+     */
+    static byte[] recompiledSlugger(int health) throws IOException {
+        final byte[] bytes = Files.readAllBytes(pluginFolder().resolve("Slugger.class"));
+        int patched = 0;
+        for (int i = 0; i + 1 < bytes.length; i++) {
+            if (bytes[i] == 0x10 && bytes[i + 1] == 60) {   // bipush 60
+                bytes[i + 1] = (byte) health;
+                patched++;
+            }
+        }
+        checkEquals(1, patched, "pushes of the Slugger's hit points");
+        return bytes;
+    }
+
+    /**
+     * Check that a condition holds.
+     * @param condition The condition.
+     * @param message What was expected.
+     * @throws AssertionError if it does not.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * Check that a value is the one expected.
+     * @param expected The expected value.
+     * @param actual The actual value.
+     * @param what What the value is.
+     * @throws AssertionError if they differ.
+     */
+    static void checkEquals(Object expected, Object actual, String what) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    /**
+     * Check that running some code throws an exception of a given type.
+     * @param type The expected exception type.
+     * @param code The code.
+     * @param what What the code does.
+     * @return The exception.
+     * @throws AssertionError if it returns or throws something else.
+     */
+    static <T extends Throwable> T checkThrows(Class<T> type, Runnable code, String what) {
+        try {
+            code.run();
+        } catch (Throwable e) {
+            if (type.isInstance(e)) {
+                return type.cast(e);
+            }
+            throw new AssertionError(what + ": expected " + type.getName() + " but got " + e, e);
+        }
+        throw new AssertionError(what + ": expected " + type.getName() + " but nothing was thrown");
+    }
+}
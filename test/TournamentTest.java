@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests that bracket and Swiss matches start as soon as the matches they depend on
+ * are over, without waiting for the rest of their round, and that Swiss pairings and
+ * byes come out the same however the matches are scheduled.
+ */
+public final class TournamentTest {
+    private static final long SEED = 7;
+
+    private TournamentTest() {
+    }
+
+    public static void testBracketAdvancesTheWinnersOfEachFeedingMatch() {
+        final List<String> matches = Collections.synchronizedList(new ArrayList<>());
+        final Map<Integer, Integer> lastRound = Collections.synchronizedMap(new HashMap<>());
+        final List<Tournament.Entrant> standings = run(Tournament.Format.SINGLE_ELIMINATION, 6, 4, (round, a, b, result) -> {
+            matches.add(round + ":" + a.getIndex() + (b == null ? "" : "-" + b.getIndex()));
+            // Everyone in a later round went through the round before it
+            for (Tournament.Entrant e : b == null ? List.of(a) : List.of(a, b)) {
+                final Integer previous = lastRound.put(e.getIndex(), round);
+                TestRunner.checkEquals(round - 1, previous == null ? 0 : previous, e + "'s previous round");
+            }
+        });
+
+        // Six entrants fill a bracket of eight, the top two seeds taking the byes
+        TestRunner.check(matches.contains("1:0") && matches.contains("1:1"), "byes for the top seeds: " + matches);
+        TestRunner.checkEquals(2 + 5, matches.size(), "byes and matches");
+        final Tournament.Entrant champion = standings.get(0);
+        TestRunner.checkEquals(3, lastRound.get(champion.getIndex()), "the champion's last round");
+        TestRunner.checkEquals(0L, champion.getLosses(), "the champion's losses");
+    }
+
+    public static void testBracketMatchDoesNotWaitForTheRestOfItsRound() throws InterruptedException {
+        // With eight entrants, seeds 1 and 8 feed one semi-final and seeds 2, 3, 6 and 7 the other
+        final CountDownLatch otherSemiFinal = new CountDownLatch(1);
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        run(Tournament.Format.SINGLE_ELIMINATION, 8, 4, (round, a, b, result) -> {
+            if (round == 1 && a.getIndex() == 0) {
+                overlapped.set(await(otherSemiFinal));
+            } else if (round == 2 && a.getIndex() != 0 && b.getIndex() != 0) {
+                otherSemiFinal.countDown();
+            }
+        });
+        TestRunner.check(overlapped.get(), "the other semi-final was played while seed 1's first match was unfinished");
+    }
+
+    public static void testSwissPairingsDoNotDependOnScheduling() {
+        for (int size : new int[] {16, 13}) {
+            final Map<String, String> oneWorker = swissPairings(size, 1);
+            final Map<String, String> fourWorkers = swissPairings(size, 4);
+            TestRunner.checkEquals(oneWorker, fourWorkers, "pairings of " + size + " entrants on 1 and 4 workers");
+        }
+    }
+
+    public static void testSwissRoundsPairEveryoneOnceAndRotateTheBye() {
+        final int size = 13;
+        final int rounds = Tournament.swissRounds(size);
+        final Map<Integer, Set<Integer>> seen = new HashMap<>();
+        final Map<Integer, Integer> byes = new HashMap<>();
+        run(Tournament.Format.SWISS, size, 4, (round, a, b, result) -> {
+            synchronized (seen) {
+                for (Tournament.Entrant e : b == null ? List.of(a) : List.of(a, b)) {
+                    TestRunner.check(seen.computeIfAbsent(round, r -> new HashSet<>()).add(e.getIndex()),
+                        e + " played twice in round " + round);
+                }
+                if (b == null) {
+                    byes.put(round, a.getIndex());
+                }
+            }
+        });
+        for (int round = 1; round <= rounds; round++) {
+            TestRunner.checkEquals(size, seen.get(round).size(), "entrants in round " + round);
+            TestRunner.checkEquals(size - round, byes.get(round), "the bye in round " + round);
+        }
+    }
+
+    public static void testSwissTopTablesDoNotWaitForTheRestOfTheRound() throws InterruptedException {
+        // Hold up a round 2 match between two losers of round 1: nobody in it can reach
+        // the top of the standings, so the top of round 3 can still be paired and played
+        final Set<Integer> lostRoundOne = Collections.synchronizedSet(new HashSet<>());
+        final CountDownLatch roundThree = new CountDownLatch(1);
+        final AtomicBoolean held = new AtomicBoolean();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        run(Tournament.Format.SWISS, 16, 4, (round, a, b, result) -> {
+            if (round == 1 && result.winner != MatchResult.DRAW) {
+                lostRoundOne.add((result.winner == MatchResult.WINNER_A ? b : a).getIndex());
+            } else if (round == 2 && lostRoundOne.contains(a.getIndex()) && lostRoundOne.contains(b.getIndex())
+                       && held.compareAndSet(false, true)) {
+                overlapped.set(await(roundThree));
+            } else if (round == 3) {
+                roundThree.countDown();
+            }
+        });
+        TestRunner.check(held.get(), "a round 2 match between round 1 losers was held up");
+        TestRunner.check(overlapped.get(), "round 3 began while a round 2 match was unfinished");
+    }
+
+    /**
+     * Play a Swiss tournament and list its pairings, as "round:higher" to "lower".
+     */
+    private static Map<String, String> swissPairings(int size, int workers) {
+        final Map<String, String> pairings = Collections.synchronizedMap(new HashMap<>());
+        run(Tournament.Format.SWISS, size, workers, (round, a, b, result) ->
+            pairings.put(round + ":" + a.getIndex(), b == null ? "bye" : b.getIndex() + " " + result));
+        return pairings;
+    }
+
+    /**
+     * Run a tournament of training dummies, alternating the two kinds.
+     */
+    private static List<Tournament.Entrant> run(Tournament.Format format, int size, int workers,
+                                                Tournament.Listener listener) {
+        final List<Class<? extends Champion>> roster = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            roster.add(i % 2 == 0 ? AdvancedTrainingDummy.class : TrainingDummy.class);
+        }
+        final ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            final Tournament tournament = new Tournament(new MatchSimulator(TestRunner.vault()), roster, pool, SEED);
+            tournament.setListener(listener);
+            return tournament.run(format).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Wait a while for a latch, from a match thread.
+     * @return Whether the latch opened in time.
+     */
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
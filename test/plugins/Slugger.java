@@ -0,0 +1,44 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A plugin champion for the tests. test.sh compiles it apart from the game and the
+ * tests, so that only a plugin class loader can load it.
+ */
+public class Slugger extends Champion {
+    /**
+     * The name of the Slugger champion.
+     */
+    public static final String NAME = "Slugger";
+
+    /**
+     * Constructor for Slugger.
+     */
+    public Slugger() {
+        super(NAME, 7, 3, 60);
+    }
+
+    @Override
+    public List<Action> getActions() {
+        List<Action> actions = new ArrayList<>(super.getActions());
+        actions.add(new Swing());
+        return actions;
+    }
+}
+
+/**
+ * The Slugger's only attack.
+ */
+class Swing extends Action {
+    Swing() {
+        super("Swing");
+    }
+
+    @Override
+    public void execute(BattleContext context) {
+        final int damage = context.enemy.takeDamage(7, context);
+        context.getLog().addEntry(context.wielder, context.enemy, getName(),
+            context.wielder.getName() + " swings for " + damage + " damage!",
+            context.round, BattleLog.EntryType.ACTION, damage);
+    }
+}